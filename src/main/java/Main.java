@@ -12,12 +12,17 @@ public class Main {
     /**
      * The main method that serves as the entry point for the application.
      * It checks the command-line arguments to decide whether to run the data storage or the health data simulator.
+     * {@code DataStorage <directory>} runs the data storage with persistence in the given directory.
      *
      * @param args the command-line arguments
      * @throws IOException if an I/O error occurs
      */
     public static void main(String[] args) throws IOException {
         if (args.length > 0 && args[0].equals("DataStorage")) {
+            if (args.length > 1) {
+                // Restores the data of earlier runs and keeps new data durable
+                DataStorage.getInstance().enablePersistence(args[1]);
+            }
             DataStorage.getInstance().runDataStorage(); // Assuming a runDataStorage method is needed
         } else {
             HealthDataSimulator.getInstance().runSimulation(args);
@@ -3,6 +3,7 @@ package com.alerts;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordListener;
 import com.strategies.AlertStrategy;
 import com.strategies.BloodPressureStrategy;
 import com.strategies.ECGStrategy;
@@ -16,10 +17,30 @@ import java.util.List;
  * and generating alerts when certain predefined conditions are met. This class
  * relies on a {@link DataStorage} instance to access patient data and evaluate
  * it against specific health criteria.
+ *
+ * <p>Besides evaluating a patient's full history with {@link #evaluateData(Patient)},
+ * the generator can monitor the storage incrementally: after {@link #startMonitoring()}
+ * every new record is pushed to {@link #onRecord(PatientRecord)} and checked against
+ * a small per-patient state, so each reading costs O(1) regardless of history length
+ * and is evaluated once. Hypotensive hypoxemia is then reported once when it begins, rather
+ * than with every reading while it lasts.
+ *
+ * <p>Both paths keep the strategies of every patient in an {@link AlertStateRegistry}, so
+ * trends are detected across evaluation cycles and the strategy buffers are reused instead of
+ * reallocated. {@link #evaluateData(Patient)} only evaluates the records that arrived since
+ * the previous evaluation of the patient. States of patients without new records for
+ * 30 minutes are evicted.
  */
-public class AlertGenerator {
+public class AlertGenerator implements RecordListener {
+    private static final AlertFactory ECG_ALERTS = new ECGAlertFactory();
+    private static final AlertFactory BLOOD_PRESSURE_ALERTS = new BloodPressureAlertFactory();
+    private static final AlertFactory BLOOD_OXYGEN_ALERTS = new BloodOxygenAlertFactory();
+    private static final long IDLE_STATE_MILLIS = 30 * 60 * 1000;
+
     private static DataStorage dataStorage;
     private static List<Alert> alerts;
+    private static AlertStateRegistry evaluatedPatients;
+    private final AlertStateRegistry monitoredPatients = new AlertStateRegistry(IDLE_STATE_MILLIS);
 
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}
@@ -35,6 +56,7 @@ public class AlertGenerator {
         }
         AlertGenerator.dataStorage = dataStorage;
         AlertGenerator.alerts = alerts;
+        AlertGenerator.evaluatedPatients = new AlertStateRegistry(IDLE_STATE_MILLIS);
     }
 
     /**
@@ -50,47 +72,77 @@ public class AlertGenerator {
         }
         AlertGenerator.dataStorage = dataStorage;
         AlertGenerator.alerts = new ArrayList<>();
+        AlertGenerator.evaluatedPatients = new AlertStateRegistry(IDLE_STATE_MILLIS);
     }
 
     /**
      * Evaluates the specified patient's data to determine if any alert conditions
      * are met. If a condition is met, an alert is added to the alerts list.
+     * Only records newer than the last record evaluated for the patient are checked; the
+     * strategies carry their windows over from the previous evaluation, so trends spanning
+     * several evaluations are detected. Records that arrive later with an already evaluated
+     * timestamp are not checked.
      *
      * @param patient the patient data to evaluate for alert conditions
      * @return a list of generated alerts
      */
     public static List<Alert> evaluateData(Patient patient) {
-        List<PatientRecord> records = dataStorage.getRecords(patient.getPatientId(), 0, System.currentTimeMillis());
-        checkBloodPressure(patient, records, new BloodPressureStrategy());
-        checkBloodSaturationAlerts(patient, records, new OxygenSaturationStrategy());
-        checkHypotensiveHypoxemiaAlerts(patient, records, new BloodPressureStrategy(), new OxygenSaturationStrategy());
-        checkECGDataAlerts(patient, records, new ECGStrategy());
-        return alerts;
+        long now = System.currentTimeMillis();
+        while (true) {
+            PatientAlertState state = evaluatedPatients.acquire(patient.getPatientId(), now);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                List<PatientRecord> records = dataStorage.getRecords(patient.getPatientId(), state.evaluatedUntil + 1, now);
+                if (!records.isEmpty()) {
+                    checkBloodPressure(patient, records, state.bloodPressure);
+                    checkBloodSaturationAlerts(patient, records, state.saturation);
+                    checkHypotensiveHypoxemiaAlerts(patient, records);
+                    checkECGDataAlerts(patient, records, state.ecg);
+                    state.evaluatedUntil = lastTimestamp(records);
+                    state.lastUsed = now;
+                }
+                return alerts;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest timestamp of the records. The records are iterated rather than indexed:
+     * the view returned by the storage merges the series of the patient as it is iterated, while
+     * indexing it would first build the merge order of all the records.
+     */
+    private static long lastTimestamp(List<PatientRecord> records) {
+        long last = Long.MIN_VALUE;
+        for (PatientRecord record : records) {
+            last = Math.max(last, record.getTimestamp());
+        }
+        return last;
     }
 
     /**
      * Checks the ECG data for alerts related to abnormal heart rates and irregular beat patterns.
      * Abnormal heart rates are defined as below 50 or above 100 beats per minute. Irregular beat patterns
      * are identified based on the time intervals between successive heartbeats, with a tolerance of 200 milliseconds
-     * from the expected interval calculated based on the average beats per minute.
+     * from the expected interval calculated based on the average beats per minute. The first interval is measured
+     * from the last heartbeat the strategy saw in a previous evaluation.
      *
      * @param patient   The patient whose ECG data is being checked.
      * @param records   A list of patient records containing heart rate data and associated timestamps.
      * @param strategy  The strategy to use for evaluating ECG data.
      */
     private static void checkECGDataAlerts(Patient patient, List<PatientRecord> records, ECGStrategy strategy) {
-        AlertFactory factory = new ECGAlertFactory();
-
+        boolean irregularBeat = false;
         for (PatientRecord record : records) {
-            if (record.getRecordType().equals("HeartRate") && strategy.checkAlert(record)) {
-                Alert alert = factory.createAlert(patient.getPatientId(), "AbnormalHeartRate", record.getTimestamp());
-                alert = new RepeatedAlertDecorator(alert, 3);
-                triggerAlert(alert);
+            if (record.getRecordType().equals("HeartRate")) {
+                checkHeartRate(record, strategy);
+                irregularBeat |= strategy.isIrregularBeat(record);
             }
         }
 
-        if (strategy.checkIrregularBeat(records)) {
-            Alert alert = factory.createAlert(patient.getPatientId(), "IrregularHeartBeat", System.currentTimeMillis());
+        if (irregularBeat) {
+            Alert alert = ECG_ALERTS.createAlert(patient.getPatientId(), "IrregularHeartBeat", System.currentTimeMillis());
             alert = new RepeatedAlertDecorator(alert, 3);
             triggerAlert(alert);
         }
@@ -99,29 +151,31 @@ public class AlertGenerator {
     /**
      * Checks for concurrent hypotension and hypoxemia within the patient's records.
      * Hypotension is identified by a systolic blood pressure below 90 mmHg. Hypoxemia is defined as
-     * a blood saturation level below 92%. An alert is triggered if both conditions are found in the
-     * same set of records.
+     * a blood saturation level below 92%. An alert is triggered for every pair of a hypotensive and a
+     * hypoxemic record in the same set of records, so the number of alerts is the product of their
+     * counts. The hypoxemic records are counted once up front instead of being searched for again
+     * for every hypotensive record.
      *
      * @param patient    The patient whose records are being evaluated.
      * @param records    A list of patient records that includes blood pressure and blood saturation measurements.
-     * @param bpStrategy The strategy to use for evaluating blood pressure data.
-     * @param satStrategy The strategy to use for evaluating blood saturation data.
      */
-    private static void checkHypotensiveHypoxemiaAlerts(Patient patient, List<PatientRecord> records, BloodPressureStrategy bpStrategy, OxygenSaturationStrategy satStrategy) {
-        AlertFactory factory = new BloodPressureAlertFactory();
+    private static void checkHypotensiveHypoxemiaAlerts(Patient patient, List<PatientRecord> records) {
+        int hypoxemicRecords = 0;
+        for (PatientRecord record : records) {
+            if (record.getRecordType().equals("BloodSaturation") && record.getMeasurementValue() < 92) {
+                hypoxemicRecords++;
+            }
+        }
+        if (hypoxemicRecords == 0) {
+            return;
+        }
 
         for (PatientRecord record : records) {
-            if (record.getRecordType().equals("BloodPressure") && bpStrategy.checkAlert(record)) {
-                double systolic = record.getMeasurementValues()[0];
-                for (PatientRecord saturationRecord : records) {
-                    if (saturationRecord.getRecordType().equals("BloodSaturation") && satStrategy.checkAlert(saturationRecord)) {
-                        double saturation = saturationRecord.getMeasurementValue();
-                        if (systolic < 90 && saturation < 92) {
-                            Alert alert = factory.createAlert(record.getPatientId(), "HypotensiveHypoxemiaAlert", record.getTimestamp());
-                            alert = new PriorityAlertDecorator(alert, 1);  // Example of using decorator
-                            triggerAlert(alert);
-                        }
-                    }
+            if (record.getRecordType().equals("BloodPressure") && record.getMeasurementValues()[0] < 90) {
+                for (int i = 0; i < hypoxemicRecords; i++) {
+                    Alert alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "HypotensiveHypoxemiaAlert", record.getTimestamp());
+                    alert = new PriorityAlertDecorator(alert, 1);  // Example of using decorator
+                    triggerAlert(alert);
                 }
             }
         }
@@ -137,26 +191,11 @@ public class AlertGenerator {
      * @param strategy  The strategy to use for evaluating blood saturation data.
      */
     private static void checkBloodSaturationAlerts(Patient patient, List<PatientRecord> records, AlertStrategy strategy) {
-        AlertFactory factory = new BloodOxygenAlertFactory();
         OxygenSaturationStrategy oxygenStrategy = (OxygenSaturationStrategy) strategy;
 
         for (PatientRecord record : records) {
             if (record.getRecordType().equals("BloodSaturation")) {
-                boolean alertTriggered = strategy.checkAlert(record);
-
-                if (alertTriggered) {
-                    if (oxygenStrategy.isLowSaturationAlert(record)) {
-                        Alert alert = factory.createAlert(record.getPatientId(), "LowBloodSaturation", record.getTimestamp());
-                        alert = new PriorityAlertDecorator(alert, 2);  // Example of using decorator
-                        triggerAlert(alert);
-                    }
-
-                    if (oxygenStrategy.isRapidDropAlert(record)) {
-                        Alert alert = factory.createAlert(record.getPatientId(), "RapidBloodSaturationDrop", record.getTimestamp());
-                        alert = new PriorityAlertDecorator(alert, 2);  // Example of using decorator
-                        triggerAlert(alert);
-                    }
-                }
+                checkBloodSaturation(record, oxygenStrategy);
             }
         }
     }
@@ -174,37 +213,158 @@ public class AlertGenerator {
      * @param strategy  The strategy to use for evaluating blood pressure data.
      */
     private static void checkBloodPressure(Patient patient, List<PatientRecord> records, AlertStrategy strategy) {
-        AlertFactory factory = new BloodPressureAlertFactory();
         BloodPressureStrategy bpStrategy = (BloodPressureStrategy) strategy;
 
         for (PatientRecord record : records) {
             if (record.getRecordType().equals("BloodPressure")) {
-                boolean alertTriggered = strategy.checkAlert(record);
-
-                if (alertTriggered) {
-                    Alert alert = null;
-
-                    if (bpStrategy.checkCriticalThresholdAlert(record)) {
-                        alert = factory.createAlert(record.getPatientId(), "CriticalBloodPressureThreshold", record.getTimestamp());
-                    } else if (bpStrategy.checkIncreasingSystolicTrend()) {
-                        alert = factory.createAlert(record.getPatientId(), "IncreasingSystolicBloodPressureTrend", record.getTimestamp());
-                    } else if (bpStrategy.checkDecreasingSystolicTrend()) {
-                        alert = factory.createAlert(record.getPatientId(), "DecreasingSystolicBloodPressureTrend", record.getTimestamp());
-                    } else if (bpStrategy.checkIncreasingDiastolicTrend()) {
-                        alert = factory.createAlert(record.getPatientId(), "IncreasingDiastolicBloodPressureTrend", record.getTimestamp());
-                    } else if (bpStrategy.checkDecreasingDiastolicTrend()) {
-                        alert = factory.createAlert(record.getPatientId(), "DecreasingDiastolicBloodPressureTrend", record.getTimestamp());
-                    }
+                checkBloodPressure(record, bpStrategy);
+            }
+        }
+    }
+
+    /**
+     * Checks a single heart rate record for an abnormal rate.
+     *
+     * @param record   the heart rate record
+     * @param strategy the strategy to use for evaluating ECG data
+     */
+    private static void checkHeartRate(PatientRecord record, ECGStrategy strategy) {
+        if (strategy.checkAlert(record)) {
+            Alert alert = ECG_ALERTS.createAlert(record.getPatientId(), "AbnormalHeartRate", record.getTimestamp());
+            alert = new RepeatedAlertDecorator(alert, 3);
+            triggerAlert(alert);
+        }
+    }
+
+    /**
+     * Checks a single blood saturation record for low saturation and for a rapid drop
+     * relative to the readings the strategy has seen before.
+     *
+     * @param record   the blood saturation record
+     * @param strategy the strategy to use for evaluating blood saturation data
+     */
+    private static void checkBloodSaturation(PatientRecord record, OxygenSaturationStrategy strategy) {
+        boolean alertTriggered = strategy.checkAlert(record);
+
+        if (alertTriggered) {
+            if (strategy.isLowSaturationAlert(record)) {
+                Alert alert = BLOOD_OXYGEN_ALERTS.createAlert(record.getPatientId(), "LowBloodSaturation", record.getTimestamp());
+                alert = new PriorityAlertDecorator(alert, 2);  // Example of using decorator
+                triggerAlert(alert);
+            }
+
+            if (strategy.isRapidDropAlert(record)) {
+                Alert alert = BLOOD_OXYGEN_ALERTS.createAlert(record.getPatientId(), "RapidBloodSaturationDrop", record.getTimestamp());
+                alert = new PriorityAlertDecorator(alert, 2);  // Example of using decorator
+                triggerAlert(alert);
+            }
+        }
+    }
+
+    /**
+     * Checks a single blood pressure record for critical thresholds and, together with
+     * the readings the strategy has seen before, for trends.
+     *
+     * @param record   the blood pressure record
+     * @param strategy the strategy to use for evaluating blood pressure data
+     */
+    private static void checkBloodPressure(PatientRecord record, BloodPressureStrategy strategy) {
+        boolean alertTriggered = strategy.checkAlert(record);
+
+        if (alertTriggered) {
+            Alert alert = null;
+
+            if (strategy.checkCriticalThresholdAlert(record)) {
+                alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "CriticalBloodPressureThreshold", record.getTimestamp());
+            } else if (strategy.checkIncreasingSystolicTrend()) {
+                alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "IncreasingSystolicBloodPressureTrend", record.getTimestamp());
+            } else if (strategy.checkDecreasingSystolicTrend()) {
+                alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "DecreasingSystolicBloodPressureTrend", record.getTimestamp());
+            } else if (strategy.checkIncreasingDiastolicTrend()) {
+                alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "IncreasingDiastolicBloodPressureTrend", record.getTimestamp());
+            } else if (strategy.checkDecreasingDiastolicTrend()) {
+                alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "DecreasingDiastolicBloodPressureTrend", record.getTimestamp());
+            }
 
-                    if (alert != null) {
-                        alert = new RepeatedAlertDecorator(alert, 5);  // Example of using decorator
-                        triggerAlert(alert);
+            if (alert != null) {
+                alert = new RepeatedAlertDecorator(alert, 5);  // Example of using decorator
+                triggerAlert(alert);
+            }
+        }
+    }
+
+    /**
+     * Starts incremental monitoring: registers this generator with the data storage so
+     * that every record added from now on is evaluated by {@link #onRecord(PatientRecord)}.
+     */
+    public void startMonitoring() {
+        dataStorage.addRecordListener(this);
+    }
+
+    /**
+     * Stops incremental monitoring and discards the per-patient evaluation state.
+     */
+    public void stopMonitoring() {
+        dataStorage.removeRecordListener(this);
+        monitoredPatients.clear();
+    }
+
+    /**
+     * Evaluates a single new record against the state kept for its patient. Heart rate,
+     * blood pressure and blood saturation records are checked with the same criteria as
+     * {@link #evaluateData(Patient)}; an irregular beat is detected from the interval to
+     * the previous heart rate record, and hypotensive hypoxemia when the latest blood
+     * pressure and saturation readings become both critically low. Records of a patient are
+     * expected in time order.
+     *
+     * @param record the record that was just stored
+     */
+    @Override
+    public void onRecord(PatientRecord record) {
+        long now = System.currentTimeMillis();
+        PatientAlertState state = monitoredPatients.acquire(record.getPatientId(), now);
+        synchronized (state) {
+            if (state.evicted) {
+                onRecord(record);
+                return;
+            }
+            state.lastUsed = now;
+            switch (record.getRecordType()) {
+                case "HeartRate":
+                    checkHeartRate(record, state.ecg);
+                    if (state.ecg.isIrregularBeat(record)) {
+                        Alert alert = ECG_ALERTS.createAlert(record.getPatientId(), "IrregularHeartBeat", record.getTimestamp());
+                        triggerAlert(new RepeatedAlertDecorator(alert, 3));
                     }
-                }
+                    break;
+                case "BloodPressure":
+                    if (record.getMeasurementValues() == null) {
+                        break;
+                    }
+                    checkBloodPressure(record, state.bloodPressure);
+                    state.hypotensive = record.getMeasurementValues()[0] < 90;
+                    checkHypotensiveHypoxemia(record, state);
+                    break;
+                case "BloodSaturation":
+                    checkBloodSaturation(record, state.saturation);
+                    state.hypoxemic = record.getMeasurementValue() < 92;
+                    checkHypotensiveHypoxemia(record, state);
+                    break;
+                default:
+                    break;
             }
         }
     }
 
+    private static void checkHypotensiveHypoxemia(PatientRecord record, PatientAlertState state) {
+        boolean wasHypotensiveHypoxemic = state.hypotensiveHypoxemic;
+        state.hypotensiveHypoxemic = state.hypotensive && state.hypoxemic;
+        if (state.hypotensiveHypoxemic && !wasHypotensiveHypoxemic) {
+            Alert alert = BLOOD_PRESSURE_ALERTS.createAlert(record.getPatientId(), "HypotensiveHypoxemiaAlert", record.getTimestamp());
+            triggerAlert(new PriorityAlertDecorator(alert, 1));
+        }
+    }
+
     /**
      * Triggers an alert for the monitoring system. This method can be extended to
      * notify medical staff, log the alert, or perform other actions. The method
@@ -214,7 +374,9 @@ public class AlertGenerator {
      * @param alert the alert object containing details about the alert condition
      */
     protected static void triggerAlert(Alert alert) {
-        alerts.add(alert);
+        synchronized (AlertGenerator.class) {
+            alerts.add(alert);
+        }
         System.out.println("Alert triggered: " + alert.toString());
     }
 
@@ -0,0 +1,100 @@
+package com.alerts;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link PatientAlertState} of every patient under evaluation, so that the strategies
+ * and their preallocated windows are reused from one evaluation to the next instead of being
+ * rebuilt for every call.
+ *
+ * <p>States of patients that have not produced new records for the idle timeout are evicted.
+ * The sweep runs at most once per timeout, piggybacking on {@link #acquire(int, long)}, so it
+ * costs nothing per record. Only the evaluation watermark of an evicted patient is remembered,
+ * so that a patient coming back is not re-evaluated from the start of its history.
+ */
+final class AlertStateRegistry {
+    private final long idleMillis;
+    private final ConcurrentHashMap<Integer, PatientAlertState> states = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> evictedWatermarks = new ConcurrentHashMap<>();
+    private volatile long nextSweep;
+
+    /**
+     * Constructs an empty registry.
+     *
+     * @param idleMillis how long a patient may go without new records before its state is evicted
+     */
+    AlertStateRegistry(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Returns the state of a patient, creating it if the patient has none. Callers lock the state
+     * and acquire it again if it was {@linkplain PatientAlertState#evicted evicted} in the meantime.
+     *
+     * @param patientId the patient whose state is needed
+     * @param now       the current wall-clock time, in milliseconds since the Unix epoch
+     * @return the state of the patient
+     */
+    PatientAlertState acquire(int patientId, long now) {
+        if (now >= nextSweep) {
+            nextSweep = now + idleMillis;
+            evictIdle(now);
+        }
+        PatientAlertState state = states.get(patientId);
+        if (state != null) {
+            return state;
+        }
+        return states.computeIfAbsent(patientId, id -> {
+            Long watermark = evictedWatermarks.remove(id);
+            return new PatientAlertState(watermark == null ? -1 : watermark, now);
+        });
+    }
+
+    /**
+     * Evicts the states of all patients that have not seen new records for the idle timeout.
+     *
+     * @param now the current wall-clock time, in milliseconds since the Unix epoch
+     * @return the number of evicted states
+     */
+    int evictIdle(long now) {
+        int evicted = 0;
+        Iterator<Map.Entry<Integer, PatientAlertState>> iterator = states.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, PatientAlertState> entry = iterator.next();
+            PatientAlertState state = entry.getValue();
+            if (now - state.lastUsed < idleMillis) {
+                continue;
+            }
+            synchronized (state) {
+                if (now - state.lastUsed >= idleMillis) {
+                    if (state.evaluatedUntil >= 0) {
+                        evictedWatermarks.put(entry.getKey(), state.evaluatedUntil);
+                    }
+                    state.evicted = true;
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the number of patients with a live state.
+     *
+     * @return the number of states held
+     */
+    int size() {
+        return states.size();
+    }
+
+    /**
+     * Discards all states and watermarks.
+     */
+    void clear() {
+        states.clear();
+        evictedWatermarks.clear();
+    }
+}
@@ -0,0 +1,29 @@
+package com.alerts;
+
+import com.strategies.BloodPressureStrategy;
+import com.strategies.ECGStrategy;
+import com.strategies.OxygenSaturationStrategy;
+
+/**
+ * The bounded state that alert evaluation keeps for one patient: the strategies with their
+ * sliding windows, whether the latest blood pressure and saturation readings indicate
+ * hypotension and hypoxemia and whether both were already reported together, and how far the
+ * patient's records have been evaluated.
+ * Instances are owned by an {@link AlertStateRegistry} and guarded by their own monitor.
+ */
+final class PatientAlertState {
+    final BloodPressureStrategy bloodPressure = new BloodPressureStrategy();
+    final OxygenSaturationStrategy saturation = new OxygenSaturationStrategy();
+    final ECGStrategy ecg = new ECGStrategy();
+    boolean hypotensive;
+    boolean hypoxemic;
+    boolean hypotensiveHypoxemic;  // both at once, as of the last blood pressure or saturation record
+    long evaluatedUntil;  // timestamp of the last record evaluated by AlertGenerator.evaluateData
+    volatile long lastUsed;  // wall-clock time the state last saw new records
+    boolean evicted;  // set once the registry has dropped this state
+
+    PatientAlertState(long evaluatedUntil, long now) {
+        this.evaluatedUntil = evaluatedUntil;
+        this.lastUsed = now;
+    }
+}
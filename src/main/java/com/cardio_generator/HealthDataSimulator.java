@@ -1,15 +1,15 @@
 package com.cardio_generator;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 
 import com.cardio_generator.generators.AlertGenerator;
@@ -20,6 +20,8 @@ import com.cardio_generator.generators.ECGDataGenerator;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.RollingPolicy;
+import com.cardio_generator.outputs.SegmentOutputStrategy;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
 
@@ -33,10 +35,22 @@ import com.cardio_generator.outputs.WebSocketOutputStrategy;
  */
 public class HealthDataSimulator {
 
+    private static final long ROLLING_MAX_BYTES = 256L << 20; // Segment size of the rolling file output
+    private static final int TCP_RING_CAPACITY = 8192; // Lines queued per TCP client
+    private static final int WEBSOCKET_BATCH_READINGS = 64; // Readings per batched WebSocket message
+    private static final long WEBSOCKET_LINGER_MILLIS = 5; // Longest wait of a reading for its batch
+    private static final long WEBSOCKET_MAX_BUFFERED_BYTES = 16L << 20; // Backlog of a WebSocket client before it is shed
+    private static final int WEBSOCKET_HISTORY_READINGS = 1 << 17; // Readings kept for WebSocket clients to resume from
+    private static final String DEFAULT_VIRTUAL_START = "2024-01-01T00:00:00Z"; // Start of '--speedup max' runs without --start
+
     private static int patientCount = 50; // Default number of patients
-    private static ScheduledExecutorService scheduler;
+    private static long seed = ThreadLocalRandom.current().nextLong(); // Seed of the generated values, random unless given
+    private static SimulationClock clock = SimulationClock.realTime(); // Time of the simulation
+    private static long durationMillis; // Simulated time to run for, 0 to run until stopped
+    private static long startMillis = -1; // Simulated time to start at with a virtual clock, -1 for the default
+    private static boolean virtualThreads; // Whether each patient runs on a virtual thread instead of the engine
+    private static Simulation simulation;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
     private static HealthDataSimulator instance;
 
     private HealthDataSimulator() {
@@ -62,7 +76,12 @@ public class HealthDataSimulator {
      *             Acceptable arguments include:
      *             -h: to display help information
      *             --patient-count <count>: to specify the number of patients
-     *             --output <type>: to define the output method (console, file, websocket, tcp)
+     *             --seed <seed>: to generate the same values on every run
+     *             --speedup <factor>: to run the simulated time faster than real time, or as fast as possible (max)
+     *             --start <time>: to start a simulation run as fast as possible at this time
+     *             --duration <hours>: to stop after a number of simulated hours
+     *             --executor <type>: to run patients on the engine or on virtual threads (engine, virtual)
+     *             --output <type>: to define the output method (console, file, rolling-file, segment, websocket, tcp)
      * @throws IOException If an I/O error occurs while setting up the output strategy.
      */
     public static void main(String[] args) throws IOException {
@@ -73,12 +92,35 @@ public class HealthDataSimulator {
     public void runSimulation(String[] args) throws IOException {
         parseArguments(args);
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        simulation = virtualThreads
+                ? PatientThreadSimulation.withVirtualThreads(outputStrategy, clock)
+                : new SimulationEngine(outputStrategy, clock);
+        if (durationMillis > 0) {
+            simulation.setDuration(durationMillis, TimeUnit.MILLISECONDS);
+        }
 
         List<Integer> patientIds = initializePatientIds(patientCount);
         Collections.shuffle(patientIds); // Randomize the order of patient IDs
 
         scheduleTasksForPatients(patientIds);
+
+        if (virtualThreads || durationMillis > 0) {
+            // Virtual threads are daemon threads: wait for them to keep the JVM running
+            try {
+                simulation.awaitTermination();
+            } catch (InterruptedException e) {
+                simulation.close();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (durationMillis > 0 && outputStrategy instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) outputStrategy).close(); // Flushes the readings of the simulated time
+            } catch (Exception e) {
+                System.err.println("Error closing the output: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -103,6 +145,66 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using a random seed.");
+                        }
+                    }
+                    break;
+                case "--speedup":
+                    if (i + 1 < args.length) {
+                        String speedupArg = args[++i];
+                        try {
+                            // The start of a virtual clock is set once all options are read
+                            clock = speedupArg.equals("max")
+                                    ? SimulationClock.virtual(0)
+                                    : SimulationClock.scaled(Double.parseDouble(speedupArg));
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Error: Invalid speedup. Use a positive factor or 'max'. Running in real time.");
+                        }
+                    }
+                    break;
+                case "--start":
+                    if (i + 1 < args.length) {
+                        String startArg = args[++i];
+                        try {
+                            startMillis = parseStart(startArg);
+                        } catch (IllegalArgumentException | DateTimeParseException e) {
+                            System.err.println("Error: Invalid start. Use milliseconds since the epoch or an ISO-8601 instant.");
+                        }
+                    }
+                    break;
+                case "--duration":
+                    if (i + 1 < args.length) {
+                        try {
+                            double hours = Double.parseDouble(args[++i]);
+                            if (!(hours > 0)) {
+                                throw new NumberFormatException();
+                            }
+                            durationMillis = Math.round(hours * TimeUnit.HOURS.toMillis(1));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid duration. Running until stopped.");
+                        }
+                    }
+                    break;
+                case "--executor":
+                    if (i + 1 < args.length) {
+                        String executorArg = args[++i];
+                        if (executorArg.equals("virtual")) {
+                            virtualThreads = PatientThreadSimulation.isVirtualThreadSupported();
+                            if (!virtualThreads) {
+                                System.err.println("Error: Virtual threads need Java 21 or later. Using the engine executor.");
+                            }
+                        } else if (executorArg.equals("engine")) {
+                            virtualThreads = false;
+                        } else {
+                            System.err.println("Unknown executor. Using default (engine).");
+                        }
+                    }
+                    break;
                 case "--output":
                     if (i + 1 < args.length) {
                         String outputArg = args[++i];
@@ -115,21 +217,41 @@ public class HealthDataSimulator {
                                 Files.createDirectories(outputPath);
                             }
                             outputStrategy = new FileOutputStrategy(baseDirectory);
+                        } else if (outputArg.startsWith("rolling-file:")) {
+                            outputStrategy = new FileOutputStrategy(outputArg.substring(13),
+                                    new RollingPolicy(TimeUnit.HOURS.toMillis(1)).withMaxBytes(ROLLING_MAX_BYTES));
+                        } else if (outputArg.startsWith("segment:")) {
+                            outputStrategy = new SegmentOutputStrategy(outputArg.substring(8));
                         } else if (outputArg.startsWith("websocket:")) {
+                            String[] webSocketArgs = outputArg.substring(10).split(":");
                             try {
-                                int port = Integer.parseInt(outputArg.substring(10));
-                                outputStrategy = new WebSocketOutputStrategy(port);
+                                int port = Integer.parseInt(webSocketArgs[0]);
+                                WebSocketOutputStrategy webSocketOutput;
+                                if (webSocketArgs.length > 1 && webSocketArgs[1].equals("batched")) {
+                                    webSocketOutput = new WebSocketOutputStrategy(port, WEBSOCKET_BATCH_READINGS,
+                                            WEBSOCKET_LINGER_MILLIS, WEBSOCKET_MAX_BUFFERED_BYTES);
+                                } else {
+                                    webSocketOutput = new WebSocketOutputStrategy(port);
+                                }
+                                webSocketOutput.enableHistory(WEBSOCKET_HISTORY_READINGS);
+                                outputStrategy = webSocketOutput;
                                 System.out.println("WebSocket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for WebSocket output. Please specify a valid port number.");
                             }
                         } else if (outputArg.startsWith("tcp:")) {
+                            String[] tcpArgs = outputArg.substring(4).split(":");
                             try {
-                                int port = Integer.parseInt(outputArg.substring(4));
-                                outputStrategy = new TcpOutputStrategy(port);
+                                int port = Integer.parseInt(tcpArgs[0]);
+                                TcpOutputStrategy.SlowConsumerPolicy policy = tcpArgs.length > 1
+                                        ? TcpOutputStrategy.SlowConsumerPolicy.valueOf(tcpArgs[1].toUpperCase().replace('-', '_'))
+                                        : TcpOutputStrategy.SlowConsumerPolicy.DROP_OLDEST;
+                                outputStrategy = new TcpOutputStrategy(port, policy, TCP_RING_CAPACITY);
                                 System.out.println("TCP socket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+                            } catch (IllegalArgumentException e) {
+                                System.err.println("Invalid slow-consumer policy for TCP output. Use drop-oldest, disconnect or block.");
                             }
                         } else {
                             System.err.println("Unknown output type. Using default (console).");
@@ -142,6 +264,32 @@ public class HealthDataSimulator {
                     System.exit(1);
             }
         }
+        if (clock.isVirtual()) {
+            // A fixed start, so that a seed gives the same readings on every run
+            clock = SimulationClock.virtual(startMillis >= 0 ? startMillis : Instant.parse(DEFAULT_VIRTUAL_START).toEpochMilli());
+        } else if (startMillis >= 0) {
+            System.err.println("Error: --start is only used with '--speedup max'. Starting at the current time.");
+        }
+    }
+
+    /**
+     * Parses the start of a simulation, given in milliseconds since the Unix epoch or as an
+     * ISO-8601 instant such as {@code 2024-01-01T00:00:00Z}.
+     *
+     * @throws IllegalArgumentException if the start is negative
+     * @throws DateTimeParseException   if the start is neither a number nor an instant
+     */
+    private static long parseStart(String start) {
+        long millis;
+        try {
+            millis = Long.parseLong(start);
+        } catch (NumberFormatException e) {
+            millis = Instant.parse(start).toEpochMilli();
+        }
+        if (millis < 0) {
+            throw new IllegalArgumentException("Start before the epoch: " + start);
+        }
+        return millis;
     }
 
     /**
@@ -153,14 +301,31 @@ public class HealthDataSimulator {
         System.out.println("Options:");
         System.out.println("  -h                       Show help and exit.");
         System.out.println("  --patient-count <count>  Specify the number of patients to simulate data for (default: 50).");
+        System.out.println("  --seed <seed>            Generate the same values for each patient on every run with this seed.");
+        System.out.println("  --speedup <factor>       Run the simulated time this many times faster than real time, or as fast");
+        System.out.println("                           as possible with 'max'. Readings are stamped with the simulated time.");
+        System.out.println("  --start <time>           With '--speedup max', start the simulated time at this time, in milliseconds");
+        System.out.println("                           since the epoch or as an ISO-8601 instant (default: " + DEFAULT_VIRTUAL_START + "),");
+        System.out.println("                           so that a seed gives the same readings on every run.");
+        System.out.println("  --duration <hours>       Stop after this many simulated hours (default: run until stopped).");
+        System.out.println("  --executor <type>        Define how patients are run: 'engine' (default) shares a worker thread");
+        System.out.println("                           per processor between them, 'virtual' runs each patient on a virtual");
+        System.out.println("                           thread so that blocking outputs do not hold up other patients (Java 21+).");
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
-        System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'rolling-file:<directory>' for hourly CSV segments with a manifest,");
+        System.out.println("                             'segment:<directory>' for compressed segment files,");
+        System.out.println("                             'websocket:<port>[:batched]' for WebSocket output, batched sends");
+        System.out.println("                             up to 64 readings per message to every client at once; the");
+        System.out.println("                             latest 131072 readings are kept for reconnecting clients,");
+        System.out.println("                             'tcp:<port>[:<policy>]' for TCP socket output, where the policy for");
+        System.out.println("                             slow clients is drop-oldest (default), disconnect or block.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println("  This command simulates data for 100 patients and sends the output to WebSocket clients connected to port 8080.");
+        System.out.println("  java HealthDataSimulator --patient-count 1000 --speedup max --duration 168 --seed 1 --output segment:./week");
+        System.out.println("  This command writes a week of readings for 1000 patients as fast as possible.");
     }
 
     /**
@@ -178,34 +343,17 @@ public class HealthDataSimulator {
     }
 
     /**
-     * Schedules periodic generation tasks for each patient.
+     * Schedules periodic generation tasks for each patient and starts the simulation, which runs
+     * them on a worker thread per available processor, or on a virtual thread per patient.
      *
      * @param patientIds The list of patient IDs for which to schedule tasks.
      */
     private void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
-
-        for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
-        }
-    }
-
-    /**
-     * Schedules a recurring task with a randomized initial delay.
-     *
-     * @param task     The task to be executed periodically.
-     * @param period   The period between successive executions.
-     * @param timeUnit The time unit of the period and initial delay.
-     */
-    private void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+        simulation.schedule(new ECGDataGenerator(patientCount, seed), 1, TimeUnit.SECONDS);
+        simulation.schedule(new BloodSaturationDataGenerator(patientCount, seed), 1, TimeUnit.SECONDS);
+        simulation.schedule(new BloodPressureDataGenerator(patientCount, seed), 1, TimeUnit.MINUTES);
+        simulation.schedule(new BloodLevelsDataGenerator(patientCount, seed), 2, TimeUnit.MINUTES);
+        simulation.schedule(new AlertGenerator(patientCount, seed), 20, TimeUnit.SECONDS);
+        simulation.start(patientIds);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Runs each patient of a simulation on a thread of its own, which loops over the generators of
+ * the patient and parks until the next one is due. With virtual threads, a patient blocked in a
+ * slow output, such as a TCP client applying back-pressure or a file being written, releases its
+ * carrier thread to the other patients instead of stalling a whole shard as in
+ * {@link SimulationEngine}.
+ *
+ * <p>Each patient follows the {@link SimulationClock} of the simulation on its own: with a
+ * virtual clock, the patients race through their simulated time independently of each other.
+ *
+ * <p>Virtual threads need Java 21 or later. The project is built for Java 11, so they are created
+ * through reflection; {@link #isVirtualThreadSupported()} tells whether the running JVM has them.
+ */
+public final class PatientThreadSimulation implements Simulation {
+    private final OutputStrategy outputStrategy;
+    private final ThreadFactory threadFactory;
+    private final SimulationClock clock;
+    private final List<PatientDataGenerator> generators = new ArrayList<>();
+    private final List<Long> periodNanos = new ArrayList<>();
+    private final LongAdder fired = new LongAdder();
+    private final AtomicLong maxLatenessNanos = new AtomicLong();
+    private long durationNanos = Long.MAX_VALUE;
+    private List<Thread> threads;
+    private volatile boolean running;
+
+    /**
+     * Constructs a simulation in real time running its patients on threads of the given factory.
+     *
+     * @param outputStrategy the output of the generators, called from every patient thread
+     * @param threadFactory  the factory of the patient threads
+     */
+    public PatientThreadSimulation(OutputStrategy outputStrategy, ThreadFactory threadFactory) {
+        this(outputStrategy, threadFactory, SimulationClock.realTime());
+    }
+
+    /**
+     * Constructs a simulation running its patients on threads of the given factory.
+     *
+     * @param outputStrategy the output of the generators, called from every patient thread
+     * @param threadFactory  the factory of the patient threads
+     * @param clock          the time of the simulation
+     */
+    public PatientThreadSimulation(OutputStrategy outputStrategy, ThreadFactory threadFactory, SimulationClock clock) {
+        this.outputStrategy = outputStrategy;
+        this.threadFactory = threadFactory;
+        this.clock = clock;
+    }
+
+    /**
+     * Constructs a simulation in real time running its patients on virtual threads.
+     *
+     * @param outputStrategy the output of the generators, called from every patient thread
+     * @return the simulation
+     * @throws UnsupportedOperationException if the JVM has no virtual threads
+     */
+    public static PatientThreadSimulation withVirtualThreads(OutputStrategy outputStrategy) {
+        return withVirtualThreads(outputStrategy, SimulationClock.realTime());
+    }
+
+    /**
+     * Constructs a simulation running its patients on virtual threads.
+     *
+     * @param outputStrategy the output of the generators, called from every patient thread
+     * @param clock          the time of the simulation
+     * @return the simulation
+     * @throws UnsupportedOperationException if the JVM has no virtual threads
+     */
+    public static PatientThreadSimulation withVirtualThreads(OutputStrategy outputStrategy, SimulationClock clock) {
+        return new PatientThreadSimulation(outputStrategy, virtualThreadFactory(), clock);
+    }
+
+    /**
+     * Tells whether the running JVM has virtual threads.
+     *
+     * @return {@code true} on Java 21 or later
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            virtualThreadFactory();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "patient-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the period is not positive
+     */
+    @Override
+    public synchronized void schedule(PatientDataGenerator generator, long period, TimeUnit unit) {
+        if (threads != null) {
+            throw new IllegalStateException("Simulation already started");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period + " " + unit);
+        }
+        generators.add(generator);
+        periodNanos.add(unit.toNanos(period));
+    }
+
+    @Override
+    public synchronized void setDuration(long duration, TimeUnit unit) {
+        if (threads != null) {
+            throw new IllegalStateException("Simulation already started");
+        }
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration + " " + unit);
+        }
+        durationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Starts a thread per patient. The first run of each generator is spread evenly over its
+     * first period, as in {@link SimulationEngine}.
+     *
+     * @throws IllegalStateException if the simulation has been started
+     */
+    @Override
+    public synchronized void start(List<Integer> patientIds) {
+        if (threads != null) {
+            throw new IllegalStateException("Simulation already started");
+        }
+        PatientDataGenerator[] patientGenerators = generators.toArray(new PatientDataGenerator[0]);
+        long[] periods = new long[patientGenerators.length];
+        for (int g = 0; g < periods.length; g++) {
+            periods[g] = periodNanos.get(g);
+        }
+        threads = new ArrayList<>(patientIds.size());
+        running = true;
+        clock.start();
+        for (int patientId : patientIds) {
+            Thread thread = threadFactory.newThread(() -> run(patientId, patientGenerators, periods));
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    private void run(int patientId, PatientDataGenerator[] patientGenerators, long[] periods) {
+        long[] due = new long[periods.length]; // simulated time elapsed since the start
+        for (int g = 0; g < periods.length; g++) {
+            due[g] = SimulationEngine.firstRun(patientId, g, periods[g]);
+        }
+        while (running) {
+            long next = Long.MAX_VALUE;
+            for (long time : due) {
+                next = Math.min(next, time);
+            }
+            if (next >= durationNanos) {
+                return;
+            }
+            long wait = clock.nanosUntil(next);
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            for (int g = 0; g < due.length && running; g++) {
+                if (due[g] == next) {
+                    long lateness = -clock.nanosUntil(next);
+                    if (lateness > maxLatenessNanos.get()) {
+                        maxLatenessNanos.accumulateAndGet(lateness, Math::max);
+                    }
+                    try {
+                        patientGenerators[g].generate(patientId, clock.millisAt(next), outputStrategy);
+                    } catch (RuntimeException e) {
+                        System.err.println("Generator failed for patient " + patientId + ": " + e);
+                    }
+                    fired.increment();
+                    due[g] += periods[g];
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getFiredCount() {
+        return fired.sum();
+    }
+
+    @Override
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos.get();
+    }
+
+    /**
+     * Returns the number of patient threads started.
+     */
+    public synchronized int getThreadCount() {
+        return threads == null ? 0 : threads.size();
+    }
+
+    /**
+     * {@inheritDoc} Virtual threads do not keep the JVM alive, so a program with nothing else to
+     * do waits here.
+     */
+    @Override
+    public void awaitTermination() throws InterruptedException {
+        List<Thread> started;
+        synchronized (this) {
+            started = threads == null ? List.of() : threads;
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Thread> started;
+        synchronized (this) {
+            running = false;
+            started = threads == null ? List.of() : threads;
+        }
+        // Unparked rather than interrupted: an interrupt would close the channel of an output writing for the patient
+        for (Thread thread : started) {
+            LockSupport.unpark(thread);
+        }
+        for (Thread thread : started) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
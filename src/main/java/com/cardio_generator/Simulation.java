@@ -0,0 +1,71 @@
+package com.cardio_generator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+
+/**
+ * Runs generators periodically for every patient of a simulation, on a {@link SimulationClock}.
+ * Generators are scheduled first, then the simulation is started for a set of patients and runs
+ * until closed or for a set duration.
+ *
+ * @see SimulationEngine
+ * @see PatientThreadSimulation
+ */
+public interface Simulation extends AutoCloseable {
+    /**
+     * Runs a generator periodically for every patient once the simulation is started.
+     *
+     * @param generator the generator
+     * @param period    the time between two runs for a patient
+     * @param unit      the unit of the period
+     * @throws IllegalArgumentException if the period is too short for the simulation
+     * @throws IllegalStateException    if the simulation has been started
+     */
+    void schedule(PatientDataGenerator generator, long period, TimeUnit unit);
+
+    /**
+     * Stops the simulation once the given simulated time has elapsed, instead of running until
+     * closed.
+     *
+     * @param duration the simulated time to run for
+     * @param unit     the unit of the duration
+     * @throws IllegalArgumentException if the duration is not positive
+     * @throws IllegalStateException    if the simulation has been started
+     */
+    void setDuration(long duration, TimeUnit unit);
+
+    /**
+     * Starts running the scheduled generators.
+     *
+     * @param patientIds the patients to simulate
+     * @throws IllegalStateException if the simulation has been started
+     */
+    void start(List<Integer> patientIds);
+
+    /**
+     * Returns the number of generator runs so far.
+     */
+    long getFiredCount();
+
+    /**
+     * Returns the longest delay so far between the time a generator run was due and its start.
+     *
+     * @return the delay, in nanoseconds
+     */
+    long getMaxLatenessNanos();
+
+    /**
+     * Waits until the simulation has run for its duration or is closed.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void awaitTermination() throws InterruptedException;
+
+    /**
+     * Stops the simulation, waiting for the generators being run to return.
+     */
+    @Override
+    void close();
+}
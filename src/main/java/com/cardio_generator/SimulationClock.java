@@ -0,0 +1,110 @@
+package com.cardio_generator;
+
+/**
+ * The time of a simulation, which the simulations run their generators on and stamp their
+ * readings with. A clock maps the time elapsed in the simulation to a time of day, and to the
+ * wall-clock instant at which the simulation reaches it:
+ *
+ * <ul>
+ *     <li>{@link #realTime()} keeps pace with the wall clock, as the simulator always did;</li>
+ *     <li>{@link #scaled(double)} runs a given number of times faster (or slower) than the wall
+ *     clock, a speedup of 60 simulating an hour a minute;</li>
+ *     <li>{@link #virtual(long)} does not wait at all: a simulation fires its generators one
+ *     after the other as fast as the CPU allows, which is how a week of readings for a storage
+ *     benchmark takes minutes instead of a week.</li>
+ * </ul>
+ *
+ * <p>A reading is stamped with the time it was due in the simulation rather than the time it
+ * was generated at, so with a virtual clock, a start time and a seed, a simulation produces the
+ * same readings on every run.
+ */
+public final class SimulationClock {
+    private final double speedup; // infinite for a virtual clock
+    private final long startMillis; // the time of day the simulation starts at, or -1 for the time it is started
+    private volatile long startedMillis;
+    private volatile long startNanos;
+
+    private SimulationClock(double speedup, long startMillis) {
+        if (!(speedup > 0)) {
+            throw new IllegalArgumentException("Speedup must be positive: " + speedup);
+        }
+        this.speedup = speedup;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Returns a clock keeping pace with the wall clock.
+     */
+    public static SimulationClock realTime() {
+        return new SimulationClock(1, -1);
+    }
+
+    /**
+     * Returns a clock running faster than the wall clock, from the time it is started.
+     *
+     * @param speedup the simulated time that elapses per unit of wall-clock time
+     * @throws IllegalArgumentException if the speedup is not positive
+     */
+    public static SimulationClock scaled(double speedup) {
+        return new SimulationClock(speedup, -1);
+    }
+
+    /**
+     * Returns a clock that advances as fast as the simulation can generate its readings.
+     *
+     * @param startMillis the time of day the simulation starts at, in milliseconds since the
+     *                    Unix epoch
+     */
+    public static SimulationClock virtual(long startMillis) {
+        return new SimulationClock(Double.POSITIVE_INFINITY, startMillis);
+    }
+
+    /**
+     * Tells whether the clock advances without waiting for the wall clock.
+     */
+    public boolean isVirtual() {
+        return speedup == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the simulated time that elapses per unit of wall-clock time.
+     *
+     * @return the speedup, infinite for a virtual clock
+     */
+    public double getSpeedup() {
+        return speedup;
+    }
+
+    /**
+     * Starts the simulated time. Called by a simulation as it starts.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        startedMillis = startMillis >= 0 ? startMillis : System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time of day after some time elapsed in the simulation.
+     *
+     * @param elapsedNanos the simulated time elapsed since the start
+     * @return the time, in milliseconds since the Unix epoch
+     */
+    long millisAt(long elapsedNanos) {
+        return startedMillis + elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * Returns the wall-clock time left until the simulation reaches some elapsed time.
+     *
+     * @param elapsedNanos the simulated time elapsed since the start
+     * @return the time to wait, in nanoseconds, zero or negative if the time has been reached,
+     *         always zero for a virtual clock
+     */
+    long nanosUntil(long elapsedNanos) {
+        if (isVirtual()) {
+            return 0;
+        }
+        long wallNanos = speedup == 1 ? elapsedNanos : (long) (elapsedNanos / speedup);
+        return startNanos + wallNanos - System.nanoTime();
+    }
+}
@@ -0,0 +1,354 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cardio_generator.generators.BatchDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.BatchOutputStrategy;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Runs the generators of a simulation for many patients on a few threads. The patients are split
+ * into shards, one per worker thread, and each worker keeps the generators of its patients in a
+ * hashed timing wheel: a ring of slots, one per tick, spanning the longest generator period.
+ * Every tick, a worker fires all the generators filed in the slot of the tick in one pass, then
+ * files each of them again in the slot of its next run. A patient is always served by the same
+ * worker, so generators may keep per-patient state without locking.
+ *
+ * <p>Generators run at a fixed rate: a worker that falls behind fires the ticks it missed in
+ * order, as {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate} would. The
+ * first run of each patient is spread evenly over the first period of the generator, so that
+ * every tick fires about the same number of generators, and at the same offset on every run.
+ *
+ * <p>The ticks follow a {@link SimulationClock}: in real time by default, faster with a scaled
+ * clock, and without waiting with a virtual clock, each worker then going through its ticks as
+ * fast as it can. Generators are passed the simulated time of their tick.
+ *
+ * <p>When the output is a {@link BatchOutputStrategy}, the patients due in a tick for each
+ * {@link BatchDataGenerator} are collected and generated as one batch, which is passed to the
+ * output in one call. Other generators, and all generators with other outputs, run per patient.
+ */
+public final class SimulationEngine implements Simulation {
+    /**
+     * The default resolution of the engine, in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    private final OutputStrategy outputStrategy;
+    private final BatchOutputStrategy batchOutput; // null if the output does not take batches
+    private final int shardCount;
+    private final long tickNanos;
+    private final SimulationClock clock;
+    private long durationNanos = Long.MAX_VALUE;
+    private final List<PatientDataGenerator> generators = new ArrayList<>();
+    private final List<Long> periodTicks = new ArrayList<>();
+    private Shard[] shards;
+    private volatile boolean running;
+
+    /**
+     * Constructs an engine in real time with a shard per available processor and the default tick.
+     *
+     * @param outputStrategy the output of the generators
+     */
+    public SimulationEngine(OutputStrategy outputStrategy) {
+        this(outputStrategy, SimulationClock.realTime());
+    }
+
+    /**
+     * Constructs an engine with a shard per available processor and the default tick.
+     *
+     * @param outputStrategy the output of the generators
+     * @param clock          the time of the simulation
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, SimulationClock clock) {
+        this(outputStrategy, Runtime.getRuntime().availableProcessors(), DEFAULT_TICK_MILLIS, clock);
+    }
+
+    /**
+     * Constructs an engine in real time.
+     *
+     * @param outputStrategy the output of the generators, called from every worker thread
+     * @param shardCount     the number of worker threads
+     * @param tickMillis     the resolution of the engine, in milliseconds
+     * @throws IllegalArgumentException if the shard count or the tick is not positive
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, int shardCount, long tickMillis) {
+        this(outputStrategy, shardCount, tickMillis, SimulationClock.realTime());
+    }
+
+    /**
+     * Constructs an engine.
+     *
+     * @param outputStrategy the output of the generators, called from every worker thread
+     * @param shardCount     the number of worker threads
+     * @param tickMillis     the resolution of the engine, in simulated milliseconds
+     * @param clock          the time of the simulation
+     * @throws IllegalArgumentException if the shard count or the tick is not positive
+     */
+    public SimulationEngine(OutputStrategy outputStrategy, int shardCount, long tickMillis, SimulationClock clock) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.outputStrategy = outputStrategy;
+        this.batchOutput = outputStrategy instanceof BatchOutputStrategy ? (BatchOutputStrategy) outputStrategy : null;
+        this.shardCount = shardCount;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void setDuration(long duration, TimeUnit unit) {
+        if (shards != null) {
+            throw new IllegalStateException("Engine already started");
+        }
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration + " " + unit);
+        }
+        durationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * {@inheritDoc} The period is rounded to the tick.
+     *
+     * @throws IllegalArgumentException if the period is shorter than a tick
+     */
+    @Override
+    public synchronized void schedule(PatientDataGenerator generator, long period, TimeUnit unit) {
+        if (shards != null) {
+            throw new IllegalStateException("Engine already started");
+        }
+        long ticks = Math.round((double) unit.toNanos(period) / tickNanos);
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Period shorter than a tick: " + period + " " + unit);
+        }
+        generators.add(generator);
+        periodTicks.add(ticks);
+    }
+
+    /**
+     * Shards the patients and starts the worker threads.
+     *
+     * @param patientIds the patients to simulate, dealt to the shards in order
+     * @throws IllegalStateException if the engine has been started
+     */
+    @Override
+    public synchronized void start(List<Integer> patientIds) {
+        if (shards != null) {
+            throw new IllegalStateException("Engine already started");
+        }
+        long longestPeriod = 1;
+        for (long ticks : periodTicks) {
+            longestPeriod = Math.max(longestPeriod, ticks);
+        }
+        // The wheel spans more than the longest period, so a slot only holds the generators due in its tick
+        int slotCount = Integer.highestOneBit((int) Math.min(longestPeriod, 1 << 29) * 2 + 1);
+
+        int[][] patients = new int[shardCount][];
+        for (int s = 0; s < shardCount; s++) {
+            patients[s] = new int[(patientIds.size() - s + shardCount - 1) / shardCount];
+        }
+        for (int i = 0; i < patientIds.size(); i++) {
+            patients[i % shardCount][i / shardCount] = patientIds.get(i);
+        }
+
+        shards = new Shard[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            shards[s] = new Shard(patients[s], slotCount);
+        }
+        running = true;
+        clock.start();
+        for (int s = 0; s < shardCount; s++) {
+            Thread thread = new Thread(shards[s], "simulation-shard-" + s);
+            shards[s].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns when a generator first runs for a patient, spreading the patients evenly over the
+     * period of the generator by the golden ratio.
+     *
+     * @param patientId      the patient
+     * @param generatorIndex the order in which the generator was scheduled
+     * @param period         the period of the generator
+     * @return the first run, between 0 inclusive and the period exclusive
+     */
+    static long firstRun(int patientId, int generatorIndex, long period) {
+        double fraction = ((long) patientId * 0x9e3779b97f4a7c15L + generatorIndex * 0x632be59bd9b4e019L >>> 11) * 0x1.0p-53;
+        return (long) (fraction * period);
+    }
+
+    /**
+     * Returns the number of worker threads.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public long getFiredCount() {
+        long fired = 0;
+        for (Shard shard : startedShards()) {
+            fired += shard.fired;
+        }
+        return fired;
+    }
+
+    @Override
+    public long getMaxLatenessNanos() {
+        long lateness = 0;
+        for (Shard shard : startedShards()) {
+            lateness = Math.max(lateness, shard.maxLatenessNanos);
+        }
+        return lateness;
+    }
+
+    private synchronized Shard[] startedShards() {
+        return shards == null ? new Shard[0] : shards;
+    }
+
+    @Override
+    public void awaitTermination() throws InterruptedException {
+        for (Shard shard : startedShards()) {
+            shard.thread.join();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Shard shard : startedShards()) {
+            LockSupport.unpark(shard.thread);
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * The patients of a worker thread. Each entry of the wheel is a generator of a patient; the
+     * entries filed in a slot are linked through {@code next}. Batch generators have a buffer of
+     * the patients due in the tick being fired, and of their values.
+     */
+    private final class Shard implements Runnable {
+        private final PatientDataGenerator[] generatorsByIndex = generators.toArray(new PatientDataGenerator[0]);
+        private final long[] periods = new long[generators.size()];
+        private final int[] patients; // by entry
+        private final int[] generatorIndexes; // by entry
+        private final int[] next; // by entry, -1 at the end of a slot
+        private final int[] slots; // the first entry of each slot, -1 if empty
+        private final int mask;
+        private final String[][] batchLabels; // by generator, null if it runs per patient
+        private final int[][] batchPatients;
+        private final double[][] batchValues;
+        private final int[] batchCounts;
+        private Thread thread;
+        private volatile long fired;
+        private volatile long maxLatenessNanos;
+
+        Shard(int[] shardPatients, int slotCount) {
+            int entryCount = shardPatients.length * generatorsByIndex.length;
+            patients = new int[entryCount];
+            generatorIndexes = new int[entryCount];
+            next = new int[entryCount];
+            slots = new int[slotCount];
+            mask = slotCount - 1;
+            Arrays.fill(slots, -1);
+            batchLabels = new String[generatorsByIndex.length][];
+            batchPatients = new int[generatorsByIndex.length][];
+            batchValues = new double[generatorsByIndex.length][];
+            batchCounts = new int[generatorsByIndex.length];
+            for (int g = 0; g < periods.length; g++) {
+                periods[g] = periodTicks.get(g);
+                if (batchOutput != null && generatorsByIndex[g] instanceof BatchDataGenerator) {
+                    batchLabels[g] = ((BatchDataGenerator) generatorsByIndex[g]).getLabels();
+                    batchPatients[g] = new int[shardPatients.length];
+                    batchValues[g] = new double[batchLabels[g].length * shardPatients.length];
+                }
+            }
+            int entry = 0;
+            for (int patientId : shardPatients) {
+                for (int g = 0; g < generatorsByIndex.length; g++, entry++) {
+                    patients[entry] = patientId;
+                    generatorIndexes[entry] = g;
+                    file(entry, firstRun(patientId, g, periods[g]));
+                }
+            }
+        }
+
+        private void file(int entry, long tick) {
+            int slot = (int) (tick & mask);
+            next[entry] = slots[slot];
+            slots[slot] = entry;
+        }
+
+        @Override
+        public void run() {
+            long tick = 0; // the next tick to fire
+            long endTick = durationNanos / tickNanos + (durationNanos % tickNanos == 0 ? 0 : 1);
+            while (running && tick < endTick) {
+                long wait = clock.nanosUntil(tick * tickNanos);
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                } else {
+                    fire(tick++);
+                }
+            }
+        }
+
+        private void fire(long tick) {
+            int slot = (int) (tick & mask);
+            int entry = slots[slot];
+            slots[slot] = -1;
+            long elapsedNanos = tick * tickNanos;
+            long now = clock.millisAt(elapsedNanos);
+            long count = 0;
+            long maxLateness = maxLatenessNanos;
+            while (entry >= 0 && running) {
+                int following = next[entry];
+                int g = generatorIndexes[entry];
+                maxLateness = Math.max(maxLateness, -clock.nanosUntil(elapsedNanos));
+                if (batchPatients[g] != null) {
+                    batchPatients[g][batchCounts[g]++] = patients[entry];
+                } else {
+                    try {
+                        generatorsByIndex[g].generate(patients[entry], now, outputStrategy);
+                    } catch (RuntimeException e) {
+                        System.err.println("Generator failed for patient " + patients[entry] + ": " + e);
+                    }
+                }
+                count++;
+                file(entry, tick + periods[g]);
+                entry = following;
+            }
+            for (int g = 0; g < batchCounts.length; g++) {
+                if (batchCounts[g] > 0) {
+                    fireBatch(g, now);
+                }
+            }
+            fired += count;
+            maxLatenessNanos = maxLateness;
+        }
+
+        private void fireBatch(int g, long now) {
+            int count = batchCounts[g];
+            batchCounts[g] = 0;
+            try {
+                ((BatchDataGenerator) generatorsByIndex[g]).generateBatch(batchPatients[g], count, now, batchValues[g]);
+                batchOutput.outputBatch(batchPatients[g], count, now, batchLabels[g], batchValues[g]);
+            } catch (RuntimeException e) {
+                System.err.println("Generator failed for a batch of " + count + " patients: " + e);
+            }
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
 import com.cardio_generator.outputs.OutputStrategy;
 /**
  * Generates alert data for patients. Alerts can either be triggered or resolved based on
  * predefined probabilities. This generator simulates the process of monitoring patients and
  * generating alert signals that might indicate a change in their condition.
  */
-public class AlertGenerator implements PatientDataGenerator {
+public class AlertGenerator implements BatchDataGenerator {
+    private static final String[] LABELS = {"Alert"};
+    private static final double TRIGGERED = 1;
+    private static final double RESOLVED = 0;
+    private static final long SALT = 5;
 
-    // Constants should be all uppercase with underscore separation
-    public static final Random RANDOM_GENERATOR = new Random();
+    private final PatientRandom random;
     // Change variable name to lowerCamelCase
     /**
      * Array to hold alert states for each patient.
@@ -21,11 +22,22 @@ public class AlertGenerator implements PatientDataGenerator {
     // Change variable name to lowerCamelCase and change visibility into private
 
     /**
-     * Constructs an AlertGenerator for a specified number of patients.
+     * Constructs an AlertGenerator for a specified number of patients, with a random seed.
      *
      * @param patientCount the number of patients to monitor for alerts.
      */
     public AlertGenerator(int patientCount) {
+        this(patientCount, PatientRandom.randomSeed());
+    }
+
+    /**
+     * Constructs an AlertGenerator for a specified number of patients.
+     *
+     * @param patientCount the number of patients to monitor for alerts.
+     * @param seed         the seed of the random values, the same seed giving the same alerts for a patient.
+     */
+    public AlertGenerator(int patientCount, long seed) {
+        random = new PatientRandom(patientCount, seed, SALT);
         alertStates = new boolean[patientCount + 1];
     }
 
@@ -38,28 +50,63 @@ public class AlertGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
-            if (alertStates[patientId]) {
-                if (RANDOM_GENERATOR.nextDouble() < 0.9) { // 90% chance to resolve
-                    alertStates[patientId] = false;
-                    // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
-                }
-            } else {
-                //change variable name to lowerCamelCase
-                double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
-                double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
-                boolean alertTriggered = RANDOM_GENERATOR.nextDouble() < p;
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
 
-                if (alertTriggered) {
-                    alertStates[patientId] = true;
-                    // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
-                }
+    @Override
+    public void generate(int patientId, long now, OutputStrategy outputStrategy) {
+        try {
+            double alert = nextAlert(patientId);
+            if (alert == RESOLVED) {
+                // Output the alert
+                outputStrategy.output(patientId, now, "Alert", "resolved");
+            } else if (alert == TRIGGERED) {
+                outputStrategy.output(patientId, now, "Alert", "triggered");
             }
         } catch (Exception e) {
             System.err.println("An error occurred while generating alert data for patient " + patientId);
             e.printStackTrace();
         }
     }
+
+    @Override
+    public String[] getLabels() {
+        return LABELS.clone();
+    }
+
+    /**
+     * Generates the alerts of a batch of patients: 1 for an alert triggered, 0 for an alert
+     * resolved and {@link Double#NaN} for a patient whose alert state did not change.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives the alert of each patient
+     */
+    @Override
+    public void generateBatch(int[] patientIds, int count, long now, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = nextAlert(patientIds[i]);
+        }
+    }
+
+    private double nextAlert(int patientId) {
+        if (alertStates[patientId]) {
+            if (random.nextDouble(patientId) < 0.9) { // 90% chance to resolve
+                alertStates[patientId] = false;
+                return RESOLVED;
+            }
+        } else {
+            //change variable name to lowerCamelCase
+            double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
+            double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
+            boolean alertTriggered = random.nextDouble(patientId) < p;
+
+            if (alertTriggered) {
+                alertStates[patientId] = true;
+                return TRIGGERED;
+            }
+        }
+        return Double.NaN;
+    }
 }
@@ -0,0 +1,36 @@
+package com.cardio_generator.generators;
+
+/**
+ * A {@link PatientDataGenerator} that can also generate the values of many patients in one call,
+ * for load generation. A batch is written into a primitive array: there is no output strategy
+ * call, clock read or string per value, and the loop over the patients is a plain counted loop
+ * over arrays that the JIT compiles as a whole.
+ *
+ * <p>The values are laid out by label, then by patient: the value of label {@code v} for the
+ * patient at index {@code i} of the batch is at {@code out[v * count + i]}, where the labels are
+ * those returned by {@link #getLabels()}. A generator with nothing to report for a patient, such
+ * as an alert that neither triggers nor resolves, writes {@link Double#NaN}.
+ *
+ * <p>Like {@link #generate}, a batch advances the state each generator keeps per patient, so the
+ * two can be mixed, and batches of different patients can be generated concurrently.
+ */
+public interface BatchDataGenerator extends PatientDataGenerator {
+    /**
+     * Returns the labels of the values generated for each patient, in the order they are laid
+     * out by {@link #generateBatch}.
+     *
+     * @return the labels, such as {@code "SystolicPressure"}
+     */
+    String[] getLabels();
+
+    /**
+     * Generates the values of a batch of patients.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives {@code getLabels().length * count} values
+     * @throws ArrayIndexOutOfBoundsException if an array is too short for the batch
+     */
+    void generateBatch(int[] patientIds, int count, long now, double[] out);
+}
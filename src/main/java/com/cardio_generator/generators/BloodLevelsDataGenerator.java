@@ -1,25 +1,37 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
 import com.cardio_generator.outputs.OutputStrategy;
 
 /**
- * The {@code BloodLevelsDataGenerator} class implements the {@link PatientDataGenerator} interface.
+ * The {@code BloodLevelsDataGenerator} class implements the {@link BatchDataGenerator} interface.
  * It generates blood level data for patients, including cholesterol, white blood cells, and red blood cells.
  */
-public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+public class BloodLevelsDataGenerator implements BatchDataGenerator {
+    private static final long SALT = 4;
+    private static final String[] LABELS = {"Cholesterol", "WhiteBloodCells", "RedBloodCells"};
+    private final PatientRandom random;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
+    /**
+     * Constructs a new {@code BloodLevelsDataGenerator} for a specified number of patients, with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
+    public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, PatientRandom.randomSeed());
+    }
+
     /**
      * Constructs a new {@code BloodLevelsDataGenerator} for a specified number of patients.
      * Initializes baseline values for cholesterol, white blood cells, and red blood cells for each patient.
      *
      * @param patientCount the number of patients
+     * @param seed         the seed of the random values, the same seed giving the same values for a patient
      */
-    public BloodLevelsDataGenerator(int patientCount) {
+    public BloodLevelsDataGenerator(int patientCount, long seed) {
+        random = new PatientRandom(patientCount, seed, SALT);
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -27,9 +39,9 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
         // Generate baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
-            baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
-            baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
+            baselineCholesterol[i] = 150 + random.nextDouble(i) * 50; // Initial random baseline
+            baselineWhiteCells[i] = 4 + random.nextDouble(i) * 6; // Initial random baseline
+            baselineRedCells[i] = 4.5 + random.nextDouble(i) * 1.5; // Initial random baseline
         }
     }
 
@@ -42,19 +54,59 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    @Override
+    public void generate(int patientId, long now, OutputStrategy outputStrategy) {
         try {
             // Generate values around the baseline for realism
-            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
-            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
-            double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
+            double cholesterol = nextCholesterol(patientId);
+            double whiteCells = nextWhiteCells(patientId);
+            double redCells = nextRedCells(patientId);
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells", Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, now, "Cholesterol", Double.toString(cholesterol));
+            outputStrategy.output(patientId, now, "WhiteBloodCells", Double.toString(whiteCells));
+            outputStrategy.output(patientId, now, "RedBloodCells", Double.toString(redCells));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public String[] getLabels() {
+        return LABELS.clone();
+    }
+
+    /**
+     * Generates the blood levels of a batch of patients: the cholesterol of the patients,
+     * followed by their white blood cells, then by their red blood cells.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives {@code 3 * count} values
+     */
+    @Override
+    public void generateBatch(int[] patientIds, int count, long now, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = nextCholesterol(patientIds[i]);
+            out[count + i] = nextWhiteCells(patientIds[i]);
+            out[2 * count + i] = nextRedCells(patientIds[i]);
+        }
+    }
+
+    private double nextCholesterol(int patientId) {
+        return baselineCholesterol[patientId] + (random.nextDouble(patientId) - 0.5) * 10; // Small variation
+    }
+
+    private double nextWhiteCells(int patientId) {
+        return baselineWhiteCells[patientId] + (random.nextDouble(patientId) - 0.5) * 1; // Small variation
+    }
+
+    private double nextRedCells(int patientId) {
+        return baselineRedCells[patientId] + (random.nextDouble(patientId) - 0.5) * 0.2; // Small variation
+    }
 }
@@ -1,33 +1,43 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
 import com.cardio_generator.outputs.OutputStrategy;
 
 /**
- * The {@code BloodPressureDataGenerator} class implements the {@link PatientDataGenerator} interface.
+ * The {@code BloodPressureDataGenerator} class implements the {@link BatchDataGenerator} interface.
  * It generates blood pressure data for patients, including systolic and diastolic pressure values.
  */
-public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
-
+public class BloodPressureDataGenerator implements BatchDataGenerator {
+    private static final long SALT = 3;
+    private static final String[] LABELS = {"SystolicPressure", "DiastolicPressure"};
+    private final PatientRandom random;
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
+    /**
+     * Constructs a new {@code BloodPressureDataGenerator} for a specified number of patients, with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
+    public BloodPressureDataGenerator(int patientCount) {
+        this(patientCount, PatientRandom.randomSeed());
+    }
+
     /**
      * Constructs a new {@code BloodPressureDataGenerator} for a specified number of patients.
      * Initializes baseline values for systolic and diastolic pressure for each patient.
      *
      * @param patientCount the number of patients
+     * @param seed         the seed of the random values, the same seed giving the same values for a patient
      */
-    public BloodPressureDataGenerator(int patientCount) {
+    public BloodPressureDataGenerator(int patientCount, long seed) {
+        random = new PatientRandom(patientCount, seed, SALT);
         lastSystolicValues = new int[patientCount + 1];
         lastDiastolicValues = new int[patientCount + 1];
 
         // Initialize with baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
-            lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
+            lastSystolicValues[i] = 110 + random.nextInt(i, 20); // Random baseline between 110 and 130
+            lastDiastolicValues[i] = 70 + random.nextInt(i, 15); // Random baseline between 70 and 85
         }
     }
 
@@ -40,24 +50,59 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    @Override
+    public void generate(int patientId, long now, OutputStrategy outputStrategy) {
         try {
-            int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
-            int diastolicVariation = random.nextInt(5) - 2;
-            int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
-            int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
-            // Ensure the blood pressure stays within a realistic and safe range
-            newSystolicValue = Math.min(Math.max(newSystolicValue, 90), 180);
-            newDiastolicValue = Math.min(Math.max(newDiastolicValue, 60), 120);
-            lastSystolicValues[patientId] = newSystolicValue;
-            lastDiastolicValues[patientId] = newDiastolicValue;
-
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
+            int newSystolicValue = nextSystolic(patientId);
+            int newDiastolicValue = nextDiastolic(patientId);
+
+            outputStrategy.output(patientId, now, "SystolicPressure",
                     Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
+            outputStrategy.output(patientId, now, "DiastolicPressure",
                     Double.toString(newDiastolicValue));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public String[] getLabels() {
+        return LABELS.clone();
+    }
+
+    /**
+     * Generates the blood pressure values of a batch of patients: the systolic pressures of the
+     * patients, followed by their diastolic pressures.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives {@code 2 * count} values
+     */
+    @Override
+    public void generateBatch(int[] patientIds, int count, long now, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = nextSystolic(patientIds[i]);
+            out[count + i] = nextDiastolic(patientIds[i]);
+        }
+    }
+
+    private int nextSystolic(int patientId) {
+        int systolicVariation = random.nextInt(patientId, 5) - 2; // -2, -1, 0, 1, or 2
+        // Ensure the blood pressure stays within a realistic and safe range
+        int newSystolicValue = Math.min(Math.max(lastSystolicValues[patientId] + systolicVariation, 90), 180);
+        lastSystolicValues[patientId] = newSystolicValue;
+        return newSystolicValue;
+    }
+
+    private int nextDiastolic(int patientId) {
+        int diastolicVariation = random.nextInt(patientId, 5) - 2;
+        int newDiastolicValue = Math.min(Math.max(lastDiastolicValues[patientId] + diastolicVariation, 60), 120);
+        lastDiastolicValues[patientId] = newDiastolicValue;
+        return newDiastolicValue;
+    }
 }
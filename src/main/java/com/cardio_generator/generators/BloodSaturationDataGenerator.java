@@ -1,7 +1,5 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
-
 import com.cardio_generator.outputs.OutputStrategy;
 /**
  * Generates blood saturation data for patients in a health monitoring system.
@@ -14,22 +12,34 @@ import com.cardio_generator.outputs.OutputStrategy;
  * @author John Doe
  */
 
-public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+public class BloodSaturationDataGenerator implements BatchDataGenerator {
+    private static final long SALT = 2;
+    private static final String[] LABELS = {"Saturation"};
+    private final PatientRandom random;
     private int[] lastSaturationValues;
+    /**
+     * Constructs a BloodSaturationDataGenerator for a specified number of patients, with a random seed.
+     *
+     * @param patientCount the total number of patients to manage saturation data for
+     */
+    public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, PatientRandom.randomSeed());
+    }
+
     /**
      * Constructs a BloodSaturationDataGenerator for a specified number of patients.
      * Initializes last known saturation values for each patient between 95% and 100%.
      *
      * @param patientCount the total number of patients to manage saturation data for
+     * @param seed         the seed of the random values, the same seed giving the same values for a patient
      */
-
-    public BloodSaturationDataGenerator(int patientCount) {
+    public BloodSaturationDataGenerator(int patientCount, long seed) {
+        random = new PatientRandom(patientCount, seed, SALT);
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+            lastSaturationValues[i] = 95 + random.nextInt(i, 6); // Initializes with a value between 95 and 100
         }
     }
     /**
@@ -43,19 +53,49 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    @Override
+    public void generate(int patientId, long now, OutputStrategy outputStrategy) {
         try {
-            // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
-            int newSaturationValue = lastSaturationValues[patientId] + variation;
-
-            // Ensure the saturation stays within a realistic and healthy range
-            newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
-            lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
+            int newSaturationValue = nextSaturation(patientId);
+            outputStrategy.output(patientId, now, "Saturation",
                     Double.toString(newSaturationValue) + "%");
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
+
+    @Override
+    public String[] getLabels() {
+        return LABELS.clone();
+    }
+
+    /**
+     * Generates the saturation values of a batch of patients, in percent.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives the saturation of each patient
+     */
+    @Override
+    public void generateBatch(int[] patientIds, int count, long now, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = nextSaturation(patientIds[i]);
+        }
+    }
+
+    private int nextSaturation(int patientId) {
+        // Simulate blood saturation values
+        int variation = random.nextInt(patientId, 3) - 1; // -1, 0, or 1 to simulate small fluctuations
+        int newSaturationValue = lastSaturationValues[patientId] + variation;
+
+        // Ensure the saturation stays within a realistic and healthy range
+        newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
+        lastSaturationValues[patientId] = newSaturationValue;
+        return newSaturationValue;
+    }
 }
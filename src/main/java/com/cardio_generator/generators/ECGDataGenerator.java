@@ -1,24 +1,36 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
 import com.cardio_generator.outputs.OutputStrategy;
 
 /**
- * The {@code ECGDataGenerator} class implements the {@link PatientDataGenerator} interface.
+ * The {@code ECGDataGenerator} class implements the {@link BatchDataGenerator} interface.
  * It generates electrocardiogram (ECG) data for patients, simulating the ECG waveform with sinusoids.
  */
-public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+public class ECGDataGenerator implements BatchDataGenerator {
+    private static final long SALT = 1;
+    private static final String[] LABELS = {"ECG"};
+    private final PatientRandom random;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
+    /**
+     * Constructs a new {@code ECGDataGenerator} for a specified number of patients, with a random seed.
+     *
+     * @param patientCount the number of patients
+     */
+    public ECGDataGenerator(int patientCount) {
+        this(patientCount, PatientRandom.randomSeed());
+    }
+
     /**
      * Constructs a new {@code ECGDataGenerator} for a specified number of patients.
      * Initializes the last ECG values for each patient.
      *
      * @param patientCount the number of patients
+     * @param seed         the seed of the random values, the same seed giving the same values for a patient
      */
-    public ECGDataGenerator(int patientCount) {
+    public ECGDataGenerator(int patientCount, long seed) {
+        random = new PatientRandom(patientCount, seed, SALT);
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
@@ -35,10 +47,15 @@ public class ECGDataGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    @Override
+    public void generate(int patientId, long now, OutputStrategy outputStrategy) {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
+            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId], now);
+            outputStrategy.output(patientId, now, "ECG", Double.toString(ecgValue));
             lastEcgValues[patientId] = ecgValue;
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
@@ -46,18 +63,41 @@ public class ECGDataGenerator implements PatientDataGenerator {
         }
     }
 
+    @Override
+    public String[] getLabels() {
+        return LABELS.clone();
+    }
+
+    /**
+     * Generates the ECG values of a batch of patients at the same time.
+     *
+     * @param patientIds the patients, the first {@code count} of which are generated
+     * @param count      the number of patients in the batch
+     * @param now        the time of the values, in milliseconds since the Unix epoch
+     * @param out        receives the ECG value of each patient
+     */
+    @Override
+    public void generateBatch(int[] patientIds, int count, long now, double[] out) {
+        for (int i = 0; i < count; i++) {
+            int patientId = patientIds[i];
+            out[i] = simulateEcgWaveform(patientId, lastEcgValues[patientId], now);
+            lastEcgValues[patientId] = out[i];
+        }
+    }
+
     /**
      * Simulates the ECG waveform for a specified patient based on the last ECG value.
      * The waveform is generated using sinusoids to represent different components of the ECG signal.
      *
      * @param patientId     the unique identifier of the patient
      * @param lastEcgValue  the last ECG value for the patient
+     * @param now           the time of the value, in milliseconds since the Unix epoch
      * @return the simulated ECG value
      */
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(int patientId, double lastEcgValue, long now) {
         // Simplified ECG waveform generation based on sinusoids
-        double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double hr = 60.0 + random.nextDouble(patientId) * 20.0; // Simulate heart rate variability between 60 and 80 bpm
+        double t = now / 1000.0; // Use the time of the value to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
@@ -65,6 +105,6 @@ public class ECGDataGenerator implements PatientDataGenerator {
         double qrsComplex = 0.5 * Math.sin(2 * PI * 3 * ecgFrequency * t); // QRS is higher frequency
         double tWave = 0.2 * Math.sin(2 * PI * 2 * ecgFrequency * t + PI / 4); // T wave is offset
 
-        return pWave + qrsComplex + tWave + random.nextDouble() * 0.05; // Add small noise
+        return pWave + qrsComplex + tWave + random.nextDouble(patientId) * 0.05; // Add small noise
     }
 }
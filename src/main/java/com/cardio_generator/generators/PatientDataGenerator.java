@@ -22,4 +22,17 @@ public interface PatientDataGenerator {
      * @param outputStrategy the output mechanism to which the generated data will be sent
      */
     void generate(int patientId, OutputStrategy outputStrategy);
+
+    /**
+     * Generates data for a specific patient at a given time, which the data is stamped with in
+     * place of the current time, so that a simulation can run on a clock of its own. The default
+     * implementation ignores the time and calls {@link #generate(int, OutputStrategy)}.
+     *
+     * @param patientId the unique identifier for the patient for whom data is being generated
+     * @param now the time of the data, in milliseconds since the Unix epoch
+     * @param outputStrategy the output mechanism to which the generated data will be sent
+     */
+    default void generate(int patientId, long now, OutputStrategy outputStrategy) {
+        generate(patientId, outputStrategy);
+    }
 }
@@ -0,0 +1,70 @@
+package com.cardio_generator.generators;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A stream of random numbers per patient, for the generators. Each patient has a SplitMix64
+ * state of its own, the algorithm of {@link java.util.SplittableRandom}, kept in an array like
+ * the rest of the per-patient state of a generator: drawing a number is a few arithmetic
+ * operations on that patient's slot, with no shared seed for the threads running the simulation
+ * to contend on. A patient must only be generated by one thread at a time, as the simulations
+ * do.
+ *
+ * <p>The streams are derived from a seed and a salt, so a generator given the same seed draws
+ * the same numbers for a patient on every run, whatever the threads or the order in which the
+ * patients are generated; the salt keeps the streams of different generators apart.
+ */
+final class PatientRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long[] states; // by patient id
+
+    /**
+     * Constructs the streams of patients 0 to {@code patientCount}.
+     *
+     * @param patientCount the highest patient id
+     * @param seed         the seed of the simulation
+     * @param salt         a constant of the generator
+     */
+    PatientRandom(int patientCount, long seed, long salt) {
+        states = new long[patientCount + 1];
+        long base = mix64(seed ^ mix64(salt));
+        for (int i = 0; i < states.length; i++) {
+            states[i] = mix64(base + i * GOLDEN_GAMMA);
+        }
+    }
+
+    /**
+     * Returns a seed for a simulation that was not given one.
+     */
+    static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Returns the next number of a patient, uniform between 0 inclusive and 1 exclusive.
+     */
+    double nextDouble(int patientId) {
+        return (nextLong(patientId) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns the next number of a patient, uniform between 0 inclusive and {@code bound}
+     * exclusive.
+     *
+     * @param bound a positive bound
+     */
+    int nextInt(int patientId, int bound) {
+        return (int) (((nextLong(patientId) >>> 32) * bound) >>> 32);
+    }
+
+    private long nextLong(int patientId) {
+        return mix64(states[patientId] += GOLDEN_GAMMA);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,26 @@
+package com.cardio_generator.outputs;
+
+import com.cardio_generator.generators.BatchDataGenerator;
+
+/**
+ * An {@link OutputStrategy} that can also take the values of many patients in one call, as
+ * generated by a {@link BatchDataGenerator}. The
+ * {@link com.cardio_generator.SimulationEngine SimulationEngine} passes every batch generator
+ * run in a tick to such an output as a single batch, so that neither the generator nor the
+ * output handles a string per value.
+ */
+public interface BatchOutputStrategy extends OutputStrategy {
+    /**
+     * Outputs the values of a batch of patients, laid out as described in
+     * {@link BatchDataGenerator}: the value of label {@code v} for the patient at index
+     * {@code i} is at {@code values[v * count + i]}. {@link Double#NaN} values are not output.
+     * Alerts are 1 when triggered and 0 when resolved.
+     *
+     * @param patientIds the patients, the first {@code count} of which are in the batch
+     * @param count      the number of patients in the batch
+     * @param timestamp  the time of the values
+     * @param labels     the labels of the values
+     * @param values     the {@code labels.length * count} values
+     */
+    void outputBatch(int[] patientIds, int count, long timestamp, String[] labels, double[] values);
+}
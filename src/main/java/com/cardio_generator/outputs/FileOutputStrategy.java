@@ -1,11 +1,27 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.SegmentManifest;
+
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Some of the documentation I consulted on chatgpt;
@@ -15,59 +31,439 @@ import java.util.concurrent.ConcurrentHashMap;
  * specific label-based text files within a designated base directory.
  * Usage: Instantiate with a base directory and then use the output method to write data
  * for specific patients identified by a unique ID.
+ *
+ * <p>The simulator threads only format their line and queue it. A single writer thread keeps
+ * one open channel per label and collects the lines of each label in a buffer, which is written
+ * to the file when it is full, once per flush interval, on {@link #flush()}, on {@link #close()}
+ * and, for a strategy not closed by then, when the JVM shuts down. When the writer falls behind
+ * and the queue is full, {@link #output} waits for it rather than letting memory grow.
+ *
+ * <p>With a {@link RollingPolicy}, the lines of a label are instead cut into segment files per
+ * time window of the reading timestamps, such as {@code ECG-2026-10-17T14.csv} for the readings
+ * of 14:00 to 15:00 UTC, with a new segment whenever one reaches the maximum size and optionally
+ * separate segments per patient shard ({@code ECG-s3-2026-10-17T14.csv}). Segments hold the
+ * comma-separated lines read by {@code FileDataReader}, with the {@code %} of saturation values
+ * dropped, and the {@link SegmentManifest} of the directory lists the time range of each segment
+ * so a reader can skip the segments outside the range it loads.
  * @author Tepels
  */
 
 // Corrected class name to UpperCamelCase
-public class FileOutputStrategy implements OutputStrategy {
+public class FileOutputStrategy implements OutputStrategy, AutoCloseable {
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DRAIN_BATCH = 4096;
 
     // Change variable name to lowerCamelCase and private visibility
-    private String baseDirectory;
+    private final Path baseDirectory;
+    private final long flushIntervalNanos;
+    private final RollingPolicy rollingPolicy; // null when every label has a single file
+    private final DateTimeFormatter windowFormat;
+    private final SegmentManifest manifest;    // only used by the writer thread
+    private boolean manifestChanged;
+
+    private final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<String, LabelFile> files = new HashMap<>(); // only used by the writer thread
+    private final Thread writer;
+    private final Thread shutdownHook = new Thread(this::close, "file-closer");
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Line closeMarker = new Line(0, 0L, null, null, true); // released once the writer has exited
+    private volatile boolean exited; // set by the writer before its last drain of the queue
 
-    // Changed to private visibility and corrected naming to UPPER_CASE for constants
-    private final ConcurrentHashMap<String, String> fileMap = new ConcurrentHashMap<>();
     /**
-     * Constructs a new FileOutputStrategy with a specified base directory for storing output files.
+     * Constructs a new FileOutputStrategy with a specified base directory for storing output files,
+     * flushing them once a second.
      *
      * @param baseDirectory the root directory where output files will be managed and stored
      */
 
     // Constructor name change to match class name and parameter to lowerCamelCase
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a new FileOutputStrategy with a specified base directory for storing output files.
+     *
+     * @param baseDirectory the root directory where output files will be managed and stored
+     * @param flushInterval the longest time a line is buffered before it is written to its file
+     * @param unit          the time unit of {@code flushInterval}
+     */
+    public FileOutputStrategy(String baseDirectory, long flushInterval, TimeUnit unit) {
+        this(Paths.get(baseDirectory), flushInterval, unit, null, null);
+    }
+
+    /**
+     * Constructs a new FileOutputStrategy writing rolling segments to a directory, flushing them
+     * once a second. Segments listed in the manifest of the directory are kept, and new segments
+     * never reuse their names.
+     *
+     * @param baseDirectory the directory of the segments and their manifest, created if missing
+     * @param rollingPolicy when to start a new segment
+     * @throws IOException if the directory cannot be created or its manifest cannot be read
+     */
+    public FileOutputStrategy(String baseDirectory, RollingPolicy rollingPolicy) throws IOException {
+        this(baseDirectory, rollingPolicy, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a new FileOutputStrategy writing rolling segments to a directory.
+     *
+     * @param baseDirectory the directory of the segments and their manifest, created if missing
+     * @param rollingPolicy when to start a new segment
+     * @param flushInterval the longest time a line is buffered before it is written to its segment
+     * @param unit          the time unit of {@code flushInterval}
+     * @throws IOException if the directory cannot be created or its manifest cannot be read
+     */
+    public FileOutputStrategy(String baseDirectory, RollingPolicy rollingPolicy, long flushInterval, TimeUnit unit)
+            throws IOException {
+        this(Files.createDirectories(Paths.get(baseDirectory)), flushInterval, unit, rollingPolicy,
+                readManifest(Paths.get(baseDirectory)));
+    }
+
+    private FileOutputStrategy(Path baseDirectory, long flushInterval, TimeUnit unit, RollingPolicy rollingPolicy,
+                               SegmentManifest manifest) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushInterval);
+        }
         this.baseDirectory = baseDirectory;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.rollingPolicy = rollingPolicy;
+        this.windowFormat = rollingPolicy == null ? null : windowFormat(rollingPolicy.getWindowMillis());
+        this.manifest = manifest;
+        this.writer = new Thread(this::writeLines, "file-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private static SegmentManifest readManifest(Path directory) throws IOException {
+        SegmentManifest manifest = SegmentManifest.read(directory);
+        return manifest != null ? manifest : new SegmentManifest();
+    }
+
+    /**
+     * Returns the format of the start of a window in segment names, as precise as the window.
+     */
+    private static DateTimeFormatter windowFormat(long windowMillis) {
+        String pattern = windowMillis % TimeUnit.HOURS.toMillis(1) == 0 ? "yyyy-MM-dd'T'HH"
+                : windowMillis % TimeUnit.MINUTES.toMillis(1) == 0 ? "yyyy-MM-dd'T'HHmm"
+                : "yyyy-MM-dd'T'HHmmss";
+        return DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC);
     }
+
     /**
      * Writes formatted patient data to a file determined by the label. If the file does not exist,
-     * it is created. If it does exist, data is appended to the end of the file.
+     * it is created. If it does exist, data is appended to the end of the file. The line is
+     * buffered and reaches the file within the flush interval. With a rolling policy, the file is
+     * the current segment of the label, window and shard of the reading.
      *
      * @param patientId the unique identifier of the patient
      * @param timestamp the timestamp of the data recording
      * @param label the category or type of data being recorded (e.g., "Alert", "VitalStats")
      * @param data the actual data to be written into the file
-     * @throws IOException if an error occurs during file creation or data writing
      */
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        if (closed.get()) {
+            System.err.println("Error writing to file " + label + ".txt: output is closed");
+            return;
+        }
+        if (rollingPolicy != null) {
+            // The line format of FileDataReader: patientId,measurementValue,recordType,timestamp
+            String value = data.endsWith("%") ? data.substring(0, data.length() - 1) : data;
+            String line = new StringBuilder(32 + label.length() + value.length())
+                    .append(patientId).append(',').append(value).append(',').append(label).append(',')
+                    .append(timestamp).append('\n')
+                    .toString();
+            enqueue(new Line(patientId, timestamp, label, line, false));
+            return;
+        }
+        // Same line as "Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", without the format parsing
+        String line = new StringBuilder(48 + label.length() + data.length())
+                .append("Patient ID: ").append(patientId)
+                .append(", Timestamp: ").append(timestamp)
+                .append(", Label: ").append(label)
+                .append(", Data: ").append(data)
+                .append(System.lineSeparator())
+                .toString();
+        enqueue(new Line(patientId, timestamp, label, line, false));
+    }
+
+    /**
+     * Writes every line output so far to its file. Once the strategy is being closed, waits for
+     * the close to write them instead.
+     */
+    public void flush() {
+        if (!closed.get()) {
+            Line marker = new Line(0, 0L, null, null, false);
+            // A marker queued once the writer has exited is never taken; the close writes its lines
+            if (enqueue(marker) && !exited) {
+                await(marker);
+                return;
+            }
+        }
+        await(closeMarker);
+    }
+
+    /**
+     * Writes every line output so far to its file and closes the files. Lines output afterwards
+     * are dropped. Concurrent and later calls wait for the first one to complete.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // The JVM is shutting down, possibly running this very hook
+            }
+            enqueue(closeMarker);
+        }
+        await(closeMarker);
+    }
+
+    /**
+     * Queues a line or marker for the writer, waiting while the queue is full.
+     *
+     * @return {@code false} if the writer has exited, or the caller was interrupted
+     */
+    private boolean enqueue(Line line) {
+        if (exited) {
+            return false;
+        }
+        try {
+            queue.put(line);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void await(Line marker) {
         try {
-            // Create the directory, variable name changed to lowerCamelCase
-            Files.createDirectories(Paths.get(baseDirectory));
-        } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
+            marker.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void writeLines() {
+        List<Line> batch = new ArrayList<>(DRAIN_BATCH);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (true) {
+            try {
+                Line first = queue.poll(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                // Not expected, as the thread is private; keep writing until closed
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Line line = batch.get(i);
+                if (line.label != null) {
+                    append(line);
+                } else if (line.close) {
+                    close(batch.subList(i + 1, batch.size()));
+                    return;
+                } else {
+                    flushFiles(false);
+                    line.done.countDown();
+                }
+            }
+            batch.clear();
+            if (System.nanoTime() - deadline >= 0) {
+                flushFiles(false);
+                deadline = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+    }
+
+    private void append(Line line) {
+        if (rollingPolicy != null) {
+            appendToSegment(line);
             return;
         }
+        LabelFile file = files.get(line.label);
+        if (file == null) {
+            try {
+                // Create the directory, variable name changed to lowerCamelCase
+                Files.createDirectories(baseDirectory);
+                file = new LabelFile(baseDirectory.resolve(line.label + ".txt"));
+                files.put(line.label, file);
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + baseDirectory.resolve(line.label + ".txt") + ": "
+                        + e.getMessage());
+                return;
+            }
+        }
+        file.append(line.text.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // change variable name to lowerCamelCase
-        String filePath = fileMap.computeIfAbsent(label, k -> Paths.get(baseDirectory, label + ".txt").toString());
+    private void appendToSegment(Line line) {
+        int shard = rollingPolicy.shardOf(line.patientId);
+        String series = rollingPolicy.getPatientShards() == 1 ? line.label : line.label + "-s" + shard;
+        long window = Math.floorDiv(line.timestamp, rollingPolicy.getWindowMillis());
+        byte[] bytes = line.text.getBytes(StandardCharsets.UTF_8);
+        LabelFile file = files.get(series);
+        // A late reading of an earlier window stays in the current segment, whose range covers it
+        if (file != null && (window > file.window
+                || file.size + bytes.length > rollingPolicy.getMaxBytes() && file.entry.getLines() > 0)) {
+            file.flush();
+            file.close();
+            files.remove(series);
+            file = null;
+        }
+        if (file == null) {
+            String prefix = series + "-" + windowFormat.format(Instant.ofEpochMilli(
+                    window * rollingPolicy.getWindowMillis()));
+            String name = prefix + ".csv";
+            for (int sequence = 1; manifest.contains(name) || Files.exists(baseDirectory.resolve(name)); sequence++) {
+                name = prefix + "." + sequence + ".csv";
+            }
+            try {
+                file = new LabelFile(baseDirectory.resolve(name));
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + baseDirectory.resolve(name) + ": " + e.getMessage());
+                return;
+            }
+            file.window = window;
+            file.entry = manifest.add(name, line.label, shard);
+            files.put(series, file);
+        }
+        file.append(bytes);
+        file.entry.include(line.timestamp);
+        manifestChanged = true;
+    }
 
-        // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(Paths.get(filePath), StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
-        } catch (Exception e) {
-            // More specific exception handling could be implemented here if desired
-            System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+    private void flushFiles(boolean close) {
+        for (LabelFile file : files.values()) {
+            file.flush();
+            if (close) {
+                file.close();
+            }
+        }
+        if (close) {
+            files.clear();
         }
+        // The manifest is written after the lines it counts
+        if (manifestChanged) {
+            try {
+                manifest.write(baseDirectory);
+                manifestChanged = false;
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + baseDirectory.resolve(SegmentManifest.FILE_NAME) + ": "
+                        + e.getMessage());
+            }
+        }
+    }
 
+    /**
+     * Writes the lines that raced with the close marker, closes the files and releases every
+     * thread waiting for a marker. Whoever queues a marker after the last drain sees that the
+     * writer has exited and waits for the close marker instead, and lines queued after it are
+     * dropped, so the queue never fills up again.
+     */
+    private void close(List<Line> rest) {
+        List<Line> racing = new ArrayList<>(rest);
+        exited = true;
+        queue.drainTo(racing);
+        List<Line> waiting = new ArrayList<>();
+        for (Line line : racing) {
+            if (line.label != null) {
+                append(line);
+            } else {
+                waiting.add(line);
+            }
+        }
+        flushFiles(true);
+        for (Line other : waiting) {
+            other.done.countDown();
+        }
+        closeMarker.done.countDown();
+    }
+
+    /**
+     * A line queued for its label file, or a flush or close marker when the label is null.
+     */
+    private static final class Line {
+        final int patientId;
+        final long timestamp;
+        final String label;
+        final String text;
+        final boolean close;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Line(int patientId, long timestamp, String label, String text, boolean close) {
+            this.patientId = patientId;
+            this.timestamp = timestamp;
+            this.label = label;
+            this.text = text;
+            this.close = close;
+        }
+    }
+
+    /**
+     * The open file of one label, or segment of one label and shard, and its pending bytes.
+     */
+    private static final class LabelFile {
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long size; // including the pending bytes
+        long window; // of a segment, the time window it was opened for
+        SegmentManifest.Entry entry; // of a segment, its manifest entry
+
+        LabelFile(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                    StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        void append(byte[] bytes) {
+            size += bytes.length;
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        void flush() {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer bytes) {
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                // More specific exception handling could be implemented here if desired
+                System.err.println("Error writing to file " + path + ": " + e.getMessage());
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + path + ": " + e.getMessage());
+            }
+        }
     }
 }
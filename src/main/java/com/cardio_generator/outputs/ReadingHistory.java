@@ -0,0 +1,75 @@
+package com.cardio_generator.outputs;
+
+/**
+ * The most recent readings sent by an output, kept in a fixed-size ring so that clients
+ * reconnecting after an outage can be sent what they missed. Once full, every new reading
+ * replaces the oldest one. Not thread-safe.
+ */
+final class ReadingHistory {
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final String[] labels;
+    private final String[] data;
+    private int next; // the slot of the next reading
+    private int size;
+    private long added; // the position of the next reading, counting every reading ever added
+
+    /**
+     * Constructs a history of the given number of readings.
+     *
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    ReadingHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.patientIds = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.labels = new String[capacity];
+        this.data = new String[capacity];
+    }
+
+    void add(int patientId, long timestamp, String label, String value) {
+        patientIds[next] = patientId;
+        timestamps[next] = timestamp;
+        labels[next] = label;
+        data[next] = value;
+        next = (next + 1) % patientIds.length;
+        if (size < patientIds.length) {
+            size++;
+        }
+        added++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position the next reading will be added at, the first reading ever added being
+     * at position 0.
+     */
+    long position() {
+        return added;
+    }
+
+    /**
+     * Receives the readings of the history.
+     */
+    interface Visitor {
+        void visit(int patientId, long timestamp, String label, String data);
+    }
+
+    /**
+     * Visits the readings added before a position, oldest first.
+     *
+     * @param end the position of the first reading not visited, as returned by {@link #position()}
+     */
+    void forEachBefore(long end, Visitor visitor) {
+        int capacity = patientIds.length;
+        long count = Math.min(size, end - (added - size));
+        for (int i = 0, slot = (next - size + capacity) % capacity; i < count; i++, slot = (slot + 1) % capacity) {
+            visitor.visit(patientIds[slot], timestamps[slot], labels[slot], data[slot]);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how {@link FileOutputStrategy} cuts the readings of a label into segment files: one
+ * segment per time window of the reading timestamps, a new one whenever a segment reaches a
+ * maximum size, and optionally one series of segments per patient shard. For example, hourly
+ * segments of at most 64 MiB, with the patients spread over 8 shards:
+ *
+ * <pre>{@code
+ * RollingPolicy policy = new RollingPolicy(TimeUnit.HOURS.toMillis(1))
+ *         .withMaxBytes(64L << 20)
+ *         .withPatientShards(8);
+ * }</pre>
+ *
+ * Policies are immutable; the {@code with} methods return a new policy.
+ */
+public final class RollingPolicy {
+    private final long windowMillis;
+    private final long maxBytes;
+    private final int patientShards;
+
+    /**
+     * Constructs a policy with one segment per time window, of unlimited size and not sharded.
+     *
+     * @param windowMillis the width of the time windows, in milliseconds; a multiple of one second
+     * @throws IllegalArgumentException if the window is not a positive multiple of one second
+     */
+    public RollingPolicy(long windowMillis) {
+        this(windowMillis, Long.MAX_VALUE, 1);
+    }
+
+    private RollingPolicy(long windowMillis, long maxBytes, int patientShards) {
+        if (windowMillis <= 0 || windowMillis % TimeUnit.SECONDS.toMillis(1) != 0) {
+            throw new IllegalArgumentException("Window must be a positive multiple of one second: " + windowMillis);
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum segment size must be positive: " + maxBytes);
+        }
+        if (patientShards <= 0) {
+            throw new IllegalArgumentException("Number of patient shards must be positive: " + patientShards);
+        }
+        this.windowMillis = windowMillis;
+        this.maxBytes = maxBytes;
+        this.patientShards = patientShards;
+    }
+
+    /**
+     * Returns a copy of this policy that also starts a new segment when a segment reaches a size.
+     * A segment holds at least one line, so it may exceed the size by the length of a line.
+     *
+     * @param maxBytes the maximum size of a segment, in bytes
+     * @return the extended policy
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public RollingPolicy withMaxBytes(long maxBytes) {
+        return new RollingPolicy(windowMillis, maxBytes, patientShards);
+    }
+
+    /**
+     * Returns a copy of this policy that writes the readings of a label to separate segments per
+     * shard of patients, the shard of a patient being its identifier modulo the shard count.
+     *
+     * @param patientShards the number of shards, 1 for no sharding
+     * @return the extended policy
+     * @throws IllegalArgumentException if the number of shards is not positive
+     */
+    public RollingPolicy withPatientShards(int patientShards) {
+        return new RollingPolicy(windowMillis, maxBytes, patientShards);
+    }
+
+    /**
+     * Returns the width of the time windows.
+     *
+     * @return the window, in milliseconds
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Returns the size at which a new segment is started.
+     *
+     * @return the maximum size, in bytes, or {@code Long.MAX_VALUE} for no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of patient shards.
+     *
+     * @return the number of shards, 1 if the segments are not sharded
+     */
+    public int getPatientShards() {
+        return patientShards;
+    }
+
+    /**
+     * Returns the shard of a patient.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the shard, from 0 to the shard count exclusive
+     */
+    public int shardOf(int patientId) {
+        return Math.floorMod(patientId, patientShards);
+    }
+}
@@ -0,0 +1,146 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.SegmentFileDataReader;
+import com.data_management.SegmentWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements an output strategy that archives readings in a compressed segment file, to be read
+ * back with {@link SegmentFileDataReader}. A regular stream of readings takes a few bytes per
+ * reading instead of the line of about 60 characters written by {@link FileOutputStrategy}.
+ *
+ * <p>Only numeric data is archived; a trailing {@code %}, as in saturation readings, is dropped.
+ * Readings with other data, such as alerts, are skipped, which is reported once per label.
+ * Batches from the {@link com.cardio_generator.SimulationEngine SimulationEngine} are appended
+ * without formatting their values as strings; their alerts are skipped as well, so both paths
+ * archive the same readings.
+ *
+ * <p>Encoded readings are written to the file once per flush interval and when the JVM shuts
+ * down, so a crash loses at most the readings of the last interval.
+ */
+public class SegmentOutputStrategy implements BatchOutputStrategy, AutoCloseable {
+    private static final String ALERT_LABEL = "Alert";
+
+    private static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 60;
+
+    private final SegmentWriter writer;
+    private final ScheduledExecutorService flusher;
+    private final Set<String> skippedLabels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs a strategy writing a new segment file in the given directory, flushing once a
+     * minute.
+     *
+     * @param baseDirectory the directory of the segment files, created if missing
+     * @throws IOException if the segment file cannot be created
+     */
+    public SegmentOutputStrategy(String baseDirectory) throws IOException {
+        this(baseDirectory, DEFAULT_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructs a strategy writing a new segment file in the given directory.
+     *
+     * @param baseDirectory the directory of the segment files, created if missing
+     * @param flushInterval the time between two writes of the encoded readings to the file
+     * @param unit          the time unit of {@code flushInterval}
+     * @throws IOException if the segment file cannot be created
+     */
+    public SegmentOutputStrategy(String baseDirectory, long flushInterval, TimeUnit unit) throws IOException {
+        Path directory = Paths.get(baseDirectory);
+        Files.createDirectories(directory);
+        this.writer = new SegmentWriter(directory.resolve(
+                "segment-" + System.currentTimeMillis() + SegmentFileDataReader.SEGMENT_EXTENSION));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "segment-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(() -> {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + writer.getFile() + ": " + e.getMessage());
+            }
+        }, flushInterval, flushInterval, unit);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + writer.getFile() + ": " + e.getMessage());
+            }
+        }, "segment-closer"));
+    }
+
+    /**
+     * Adds a numeric reading to the segment.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the timestamp of the data recording
+     * @param label     the category or type of data being recorded (e.g., "ECG")
+     * @param data      the measured value, optionally followed by {@code %}
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        String number = data.endsWith("%") ? data.substring(0, data.length() - 1) : data;
+        double value;
+        try {
+            value = Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            if (skippedLabels.add(label)) {
+                System.err.println("Skipping non-numeric " + label + " data in segment output: " + data);
+            }
+            return;
+        }
+        try {
+            writer.append(patientId, label, timestamp, value);
+        } catch (IOException e) {
+            System.err.println("Error writing to file " + writer.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the values of a batch to the segment, except alerts.
+     */
+    @Override
+    public void outputBatch(int[] patientIds, int count, long timestamp, String[] labels, double[] values) {
+        try {
+            for (int v = 0; v < labels.length; v++) {
+                String label = labels[v];
+                if (ALERT_LABEL.equals(label)) {
+                    if (skippedLabels.add(label)) {
+                        System.err.println("Skipping non-numeric " + label + " data in segment output");
+                    }
+                    continue;
+                }
+                for (int i = 0, at = v * count; i < count; i++, at++) {
+                    if (!Double.isNaN(values[at])) {
+                        writer.append(patientIds[i], label, timestamp, values[at]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing to file " + writer.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic flush and closes the segment, writing its index.
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        writer.close();
+    }
+}
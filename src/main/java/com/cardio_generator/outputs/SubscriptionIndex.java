@@ -0,0 +1,257 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.WireEncoder;
+import org.java_websocket.WebSocket;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the patient and label subscriptions of WebSocket clients as an inverted index, from a
+ * patient to the clients subscribed to all of its labels and from a patient and label to the
+ * clients subscribed to just that label, so that a reading only touches the clients interested in
+ * it. Clients subscribe and unsubscribe with text messages:
+ *
+ * <pre>
+ * subscribe:1,2,3            every label of patients 1, 2 and 3
+ * subscribe:4:ECG,Saturation the ECG and saturation readings of patient 4
+ * unsubscribe:2              the subscription to every label of patient 2
+ * unsubscribe:4:ECG          the subscription to the ECG readings of patient 4
+ * subscribe:*                every reading again, dropping the subscriptions
+ * </pre>
+ *
+ * A client that never subscribed receives every reading. After its first subscription, it only
+ * receives the readings it is subscribed to, none if it unsubscribes from all of them.
+ * Unsubscribing removes exactly the subscriptions named, so unsubscribing from one label of a
+ * patient subscribed to with all labels has no effect.
+ *
+ * <p>Lookups do not lock: every topic holds an array of its subscribers that is replaced, not
+ * modified, when subscriptions change, which is rare compared to readings.
+ */
+final class SubscriptionIndex {
+    private static final Subscriber[] NONE = new Subscriber[0];
+    private static final String ALL_LABELS = "*";
+
+    private final Map<Integer, Topics> byPatient = new ConcurrentHashMap<>();
+    private final Map<WebSocket, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Set<WebSocket> unfiltered = ConcurrentHashMap.newKeySet(); // clients receiving every reading
+
+    /**
+     * Registers a new client, which receives every reading until it subscribes.
+     */
+    void open(WebSocket conn) {
+        unfiltered.add(conn);
+    }
+
+    /**
+     * Removes a client and its subscriptions.
+     */
+    synchronized void close(WebSocket conn) {
+        unfiltered.remove(conn);
+        Subscriber subscriber = subscribers.remove(conn);
+        if (subscriber != null) {
+            for (String topic : subscriber.topics) {
+                removeFromTopic(subscriber, topic);
+            }
+        }
+    }
+
+    /**
+     * Tells whether any client has subscriptions.
+     */
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /**
+     * Returns the number of clients with subscriptions.
+     */
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Returns the number of subscriptions of all clients, a patient with all labels counting once.
+     */
+    int subscriptionCount() {
+        int count = 0;
+        for (Subscriber subscriber : subscribers.values()) {
+            count += subscriber.topics.size();
+        }
+        return count;
+    }
+
+    /**
+     * Tells whether a client receives a reading, because it receives every reading or because it
+     * is subscribed to the reading.
+     */
+    boolean receives(WebSocket conn, int patientId, String label) {
+        if (unfiltered.contains(conn)) {
+            return true;
+        }
+        Subscriber subscriber = subscribers.get(conn);
+        return subscriber != null && (subscriber.wholePatients.contains(patientId)
+                || subscriber.topics.contains(patientId + ":" + label));
+    }
+
+    /**
+     * Returns the clients receiving every reading.
+     */
+    Set<WebSocket> unfiltered() {
+        return unfiltered;
+    }
+
+    /**
+     * Returns the clients with subscriptions.
+     */
+    Iterable<Subscriber> subscribers() {
+        return subscribers.values();
+    }
+
+    /**
+     * Applies a subscription message of a client.
+     *
+     * @return {@code false} if the message is not a well-formed subscription message
+     */
+    synchronized boolean handle(WebSocket conn, String message) {
+        String[] parts = message.trim().split(":", -1);
+        boolean subscribe = parts[0].equals("subscribe");
+        if (!subscribe && !parts[0].equals("unsubscribe") || parts.length < 2 || parts.length > 3) {
+            return false;
+        }
+        if (subscribe && parts.length == 2 && parts[1].equals(ALL_LABELS)) {
+            close(conn);
+            unfiltered.add(conn);
+            return true;
+        }
+        int[] patientIds;
+        try {
+            patientIds = Arrays.stream(parts[1].split(",")).mapToInt(id -> Integer.parseInt(id.trim())).toArray();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        String[] labels = parts.length == 3 ? parts[2].split(",") : new String[]{ALL_LABELS};
+
+        Subscriber subscriber = subscribers.get(conn);
+        if (subscriber == null) {
+            if (!subscribe) {
+                return true;
+            }
+            subscriber = new Subscriber(conn);
+            subscribers.put(conn, subscriber);
+            unfiltered.remove(conn);
+        }
+        for (int patientId : patientIds) {
+            for (String label : labels) {
+                String topic = patientId + ":" + label.trim();
+                if (subscribe && subscriber.topics.add(topic)) {
+                    addToTopic(subscriber, topic);
+                } else if (!subscribe && subscriber.topics.remove(topic)) {
+                    removeFromTopic(subscriber, topic);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void addToTopic(Subscriber subscriber, String topic) {
+        int separator = topic.indexOf(':');
+        Topics topics = byPatient.computeIfAbsent(Integer.parseInt(topic.substring(0, separator)), id -> new Topics());
+        String label = topic.substring(separator + 1);
+        if (label.equals(ALL_LABELS)) {
+            subscriber.wholePatients.add(Integer.parseInt(topic.substring(0, separator)));
+            topics.allLabels = append(topics.allLabels, subscriber);
+        } else {
+            topics.byLabel.put(label, append(topics.byLabel.getOrDefault(label, NONE), subscriber));
+        }
+    }
+
+    private void removeFromTopic(Subscriber subscriber, String topic) {
+        int separator = topic.indexOf(':');
+        int patientId = Integer.parseInt(topic.substring(0, separator));
+        Topics topics = byPatient.get(patientId);
+        String label = topic.substring(separator + 1);
+        if (label.equals(ALL_LABELS)) {
+            subscriber.wholePatients.remove(patientId);
+            topics.allLabels = remove(topics.allLabels, subscriber);
+        } else {
+            Subscriber[] remaining = remove(topics.byLabel.get(label), subscriber);
+            if (remaining.length == 0) {
+                topics.byLabel.remove(label);
+            } else {
+                topics.byLabel.put(label, remaining);
+            }
+        }
+        if (topics.allLabels.length == 0 && topics.byLabel.isEmpty()) {
+            byPatient.remove(patientId);
+        }
+    }
+
+    private static Subscriber[] append(Subscriber[] array, Subscriber subscriber) {
+        Subscriber[] extended = Arrays.copyOf(array, array.length + 1);
+        extended[array.length] = subscriber;
+        return extended;
+    }
+
+    private static Subscriber[] remove(Subscriber[] array, Subscriber subscriber) {
+        int index = Arrays.asList(array).indexOf(subscriber);
+        Subscriber[] reduced = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, reduced, index, array.length - index - 1);
+        return reduced;
+    }
+
+    /**
+     * Receives each subscriber of a reading.
+     */
+    interface Visitor {
+        void visit(Subscriber subscriber);
+    }
+
+    /**
+     * Visits every client subscribed to a reading, once, whether it is subscribed to the label or
+     * to all labels of the patient.
+     */
+    void forEachSubscriber(int patientId, String label, Visitor visitor) {
+        Topics topics = byPatient.get(patientId);
+        if (topics == null) {
+            return;
+        }
+        for (Subscriber subscriber : topics.allLabels) {
+            visitor.visit(subscriber);
+        }
+        Subscriber[] labelSubscribers = topics.byLabel.get(label);
+        if (labelSubscribers != null) {
+            for (Subscriber subscriber : labelSubscribers) {
+                if (!subscriber.wholePatients.contains(patientId)) {
+                    visitor.visit(subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * The subscribers of the readings of one patient.
+     */
+    private static final class Topics {
+        volatile Subscriber[] allLabels = NONE;
+        final Map<String, Subscriber[]> byLabel = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A client with subscriptions, and its pending batch in broadcast mode.
+     */
+    static final class Subscriber {
+        final WebSocket conn;
+        final Set<String> topics = ConcurrentHashMap.newKeySet(); // "patientId:label" or "patientId:*"
+        final Set<Integer> wholePatients = ConcurrentHashMap.newKeySet(); // patients subscribed to with all labels
+        final StringBuilder batch = new StringBuilder(); // guarded by the batch lock of the strategy
+        int batchReadings;
+        final WireEncoder.Batch frames = new WireEncoder.Batch(); // for a binary client, instead of the text batch
+
+        Subscriber(WebSocket conn) {
+            this.conn = conn;
+        }
+    }
+}
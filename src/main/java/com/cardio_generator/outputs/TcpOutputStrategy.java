@@ -1,49 +1,184 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.WireEncoder;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Implements an OutputStrategy to send data over a TCP connection.
- * This class sets up a TCP server that waits for a client connection and then sends data
- * over this connection formatted as a CSV string whenever output is called.
+ * This class sets up a TCP server that accepts any number of clients at any time and sends data
+ * to every connected client formatted as a CSV string whenever output is called.
  *
  * Usage: Instantiate this with a specific TCP port and use the output method to send data
- * to a connected TCP client.
+ * to the connected TCP clients.
+ *
+ * <p>The server runs on a single selector thread. {@link #output} encodes the line once and
+ * queues it in the bounded outbound ring of every client; the selector thread copies the queued
+ * lines of a client into a direct buffer and writes them with as few system calls as the socket
+ * allows. What happens when a client reads slower than the data is produced and its ring fills
+ * up is set by the {@link SlowConsumerPolicy}; with the default policy, the simulator threads
+ * never wait for a client. No lock is held across clients: each client is queued to under its
+ * own lock, so a client that blocks a simulator thread does not hold up the other threads while
+ * they queue to the other clients. A client receives the readings of each simulator thread in
+ * the order they were output.
+ *
+ * <p>A client may ask for the compact binary protocol described in {@link WireEncoder} by sending
+ * the line {@value WireEncoder#NEGOTIATION_MESSAGE}. From the next reading on, its stream carries
+ * {@link WireEncoder#STREAM_HEADER} followed by binary frames instead of text lines, one frame per
+ * reading; readings with non-numeric data, such as alerts, are not sent to binary clients. Under
+ * {@link SlowConsumerPolicy#DROP_OLDEST}, a binary client whose ring is full misses the newest
+ * frame instead of the oldest, so the header and the frames defining labels are never lost; a
+ * dropped label definition is sent again with the next frame. Each client tracks how much of the
+ * label dictionary it was sent, and a frame is preceded by the definitions the client lacks.
  *
  * @author Tepels
  */
 
-public class TcpOutputStrategy implements OutputStrategy {
+public class TcpOutputStrategy implements OutputStrategy, AutoCloseable {
+    /**
+     * What {@link #output} does when the outbound ring of a client is full.
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * Drops the oldest queued line of the client to make room; the client misses data but
+         * stays connected.
+         */
+        DROP_OLDEST,
+        /**
+         * Disconnects the client, which may reconnect and start over with current data.
+         */
+        DISCONNECT,
+        /**
+         * Waits until the client has read enough, so that no client misses data; a stalled client
+         * stalls the simulator threads.
+         */
+        BLOCK
+    }
+
+    private static final int DEFAULT_RING_CAPACITY = 8192; // lines per client
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_REQUEST_LENGTH = 256;
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final SlowConsumerPolicy policy;
+    private final int ringCapacity;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Queue<Client> ready = new ConcurrentLinkedQueue<>(); // clients with new lines to write
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final Object encoderLock = new Object(); // never held while queueing
+    private final WireEncoder encoder = new WireEncoder(); // guarded by the encoder lock
+    private final WireEncoder.Batch frame = new WireEncoder.Batch(); // guarded by the encoder lock
+    private final Set<String> skippedLabels = ConcurrentHashMap.newKeySet();
+    private byte[] dictionary = new byte[0]; // the frames defining every label; guarded by the encoder lock
+    private final Thread selectorThread;
+    private volatile boolean closed;
 
+    /**
+     * Starts a server on the given port that drops the oldest lines of slow clients.
+     *
+     * @param port the TCP port, or 0 for any free port
+     */
     public TcpOutputStrategy(int port) {
+        this(port, SlowConsumerPolicy.DROP_OLDEST, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * Starts a server on the given port.
+     *
+     * @param port         the TCP port, or 0 for any free port
+     * @param policy       what to do when the ring of a client is full
+     * @param ringCapacity the number of lines queued per client
+     * @throws IllegalArgumentException if the capacity is not positive
+     * @throws IllegalStateException    if the server cannot be started
+     */
+    public TcpOutputStrategy(int port, SlowConsumerPolicy policy, int ringCapacity) {
+        if (ringCapacity <= 0) {
+            throw new IllegalArgumentException("Ring capacity must be positive: " + ringCapacity);
+        }
+        this.policy = policy;
+        this.ringCapacity = ringCapacity;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("Cannot start TCP server on port " + port, e);
         }
+        System.out.println("TCP Server started on port " + getPort());
+
+        // Serve clients in a new thread to not block the main thread
+        selectorThread = new Thread(this::serve, "tcp-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
     }
 
     /**
-     * Sends data to a connected TCP client formatted as CSV. The data includes the patient ID,
+     * Returns the number of connected clients.
+     *
+     * @return the number of clients
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Returns the number of connected clients that asked for the binary protocol.
+     *
+     * @return the number of binary clients
+     */
+    public int getBinaryClientCount() {
+        int count = 0;
+        for (Client client : clients) {
+            if (client.binaryRequested) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of lines dropped for slow clients, counting a line once per client.
+     *
+     * @return the number of dropped lines
+     */
+    public long getDroppedLines() {
+        return droppedLines.get();
+    }
+
+    /**
+     * Sends data to the connected TCP clients formatted as CSV. The data includes the patient ID,
      * timestamp, label, and the data string.
      *
      * @param patientId the unique identifier of the patient
@@ -54,9 +189,385 @@ public class TcpOutputStrategy implements OutputStrategy {
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clients.isEmpty()) {
+            return;
+        }
+        byte[] line = null;
+        Frame binary = null;
+        for (Client client : clients) {
+            boolean binaryRequested = client.binaryRequested;
+            if (binaryRequested && binary == null) {
+                binary = encode(patientId, timestamp, label, data);
+            } else if (!binaryRequested && line == null) {
+                String message = patientId + "," + timestamp + "," + label + "," + data + System.lineSeparator();
+                line = message.getBytes(StandardCharsets.UTF_8);
+            }
+            // Held while queueing, also while waiting for room, so that a label definition is
+            // queued before the frames using it and no line is queued among the frames
+            synchronized (client.queueLock) {
+                if (!binaryRequested) {
+                    if (client.offer(line)) {
+                        schedule(client);
+                    }
+                    continue;
+                }
+                if (!client.binary) {
+                    if (!client.offer(concat(WireEncoder.STREAM_HEADER, binary.dictionary))) {
+                        // The header was dropped, the stream stays text until the next reading
+                        continue;
+                    }
+                    schedule(client);
+                    client.binary = true;
+                    client.dictionarySent = binary.dictionary.length;
+                }
+                if (binary.reading.length == 0) {
+                    continue;
+                }
+                byte[] bytes = binary.reading;
+                if (client.lostFrame) {
+                    bytes = concat(binary.dictionary, bytes);
+                } else if (client.dictionarySent < binary.dictionary.length) {
+                    // The dictionary only grows, so the definitions the client lacks are its tail
+                    bytes = concat(Arrays.copyOfRange(binary.dictionary, client.dictionarySent,
+                            binary.dictionary.length), bytes);
+                }
+                client.lostFrame = false;
+                client.dictionarySent = Math.max(client.dictionarySent, binary.dictionary.length);
+                if (client.offer(bytes)) {
+                    schedule(client);
+                }
+            }
+        }
+    }
+
+    /**
+     * A reading encoded for binary clients, with the label dictionary as of its encoding, which
+     * defines the label of the reading.
+     */
+    private static final class Frame {
+        final byte[] reading;    // empty if the data is not numeric
+        final byte[] dictionary;
+
+        Frame(byte[] reading, byte[] dictionary) {
+            this.reading = reading;
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * Encodes a reading into a frame.
+     *
+     * @return the frame, with an empty reading if the data is not numeric
+     */
+    private Frame encode(int patientId, long timestamp, String label, String data) {
+        double value;
+        try {
+            value = WireEncoder.valueOf(data);
+        } catch (NumberFormatException e) {
+            if (skippedLabels.add(label)) {
+                System.err.println("Skipping non-numeric " + label + " data for binary clients: " + data);
+            }
+            synchronized (encoderLock) {
+                return new Frame(new byte[0], dictionary);
+            }
+        }
+        synchronized (encoderLock) {
+            int labelId = encoder.labelId(label);
+            if (encoder.takeNewLabels() != null) {
+                dictionary = encoder.dictionary();
+            }
+            frame.add(patientId, timestamp, labelId, value);
+            byte[] reading = frame.toFrame();
+            frame.clear();
+            return new Frame(reading, dictionary);
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    private void schedule(Client client) {
+        if (!client.scheduled.getAndSet(true)) {
+            ready.add(client);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Disconnects every client and stops the server.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The loop of the selector thread.
+     */
+    private void serve() {
+        ByteBuffer input = ByteBuffer.allocate(1024);
+        try {
+            while (!closed) {
+                selector.select();
+                Client client;
+                while ((client = ready.poll()) != null) {
+                    // Cleared before writing, so that a line queued from now on schedules the client again
+                    client.scheduled.set(false);
+                    write(client);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    client = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        // Clients only send requests; reading also detects that they disconnected
+                        input.clear();
+                        try {
+                            if (client.channel.read(input) < 0) {
+                                disconnect(client);
+                                continue;
+                            }
+                        } catch (IOException e) {
+                            disconnect(client);
+                            continue;
+                        }
+                        readRequests(client, input.flip());
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(client);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("TCP server stopped: " + e.getMessage());
+        } finally {
+            for (Client client : clients) {
+                disconnect(client);
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing TCP server: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Client client = new Client(channel, ringCapacity);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        System.out.println("Client connected: " + channel.socket().getInetAddress());
+    }
+
+    /**
+     * Collects the request lines of a client. The only request is the one for the binary
+     * protocol; other lines, and lines too long to be requests, are ignored.
+     */
+    private static void readRequests(Client client, ByteBuffer input) {
+        while (input.hasRemaining()) {
+            char c = (char) input.get();
+            if (c == '\n') {
+                if (client.request.toString().trim().equals(WireEncoder.NEGOTIATION_MESSAGE)) {
+                    client.binaryRequested = true;
+                }
+                client.request.setLength(0);
+            } else if (client.request.length() < MAX_REQUEST_LENGTH) {
+                client.request.append(c);
+            }
+        }
+    }
+
+    /**
+     * Writes the queued lines of a client until its socket buffer is full, and waits for the
+     * socket to become writable again if lines are left.
+     */
+    private void write(Client client) {
+        if (!client.key.isValid()) {
+            return;
+        }
+        if (client.overflowed) {
+            System.out.println("Disconnecting slow client: " + client.channel.socket().getInetAddress());
+            disconnect(client);
+            return;
+        }
+        try {
+            while (true) {
+                if (!client.staging.hasRemaining()) {
+                    client.staging.clear();
+                    client.drainTo(client.staging);
+                    client.staging.flip();
+                    if (!client.staging.hasRemaining()) {
+                        client.key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                }
+                client.channel.write(client.staging);
+                if (client.staging.hasRemaining()) {
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            disconnect(client);
+        }
+    }
+
+    private void disconnect(Client client) {
+        clients.remove(client);
+        if (client.key != null) {
+            client.key.cancel();
+        }
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client: " + e.getMessage());
+        }
+        client.release();
+    }
+
+    /**
+     * A connected client with its ring of lines queued for it and the bytes being written.
+     */
+    private final class Client {
+        final SocketChannel channel;
+        final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE).flip();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final StringBuilder request = new StringBuilder(); // the request line being read
+        SelectionKey key;
+        volatile boolean overflowed; // set under the DISCONNECT policy
+        volatile boolean binaryRequested;
+        final Object queueLock = new Object(); // orders what producers queue for this client
+        boolean binary;     // the stream header was queued; guarded by the queue lock
+        boolean lostFrame;  // a frame was dropped since the last one queued; guarded by the queue lock
+        int dictionarySent; // bytes of the dictionary queued; guarded by the queue lock
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final byte[][] ring;
+        private int head;       // index of the oldest line
+        private int size;       // number of queued lines
+        private int headOffset; // bytes of the oldest line already copied to the staging buffer
+        private boolean released;
+
+        Client(SocketChannel channel, int capacity) {
+            this.channel = channel;
+            this.ring = new byte[capacity][];
+        }
+
+        /**
+         * Queues a line, applying the slow-consumer policy if the ring is full.
+         *
+         * @return {@code true} if the selector thread needs to look at the client
+         */
+        boolean offer(byte[] line) {
+            lock.lock();
+            try {
+                if (released) {
+                    return false;
+                }
+                if (size == ring.length) {
+                    switch (policy) {
+                        case DROP_OLDEST:
+                            if (binary) {
+                                // The older frames may define labels, and the oldest is maybe the header
+                                lostFrame = true;
+                                droppedLines.incrementAndGet();
+                                return false;
+                            }
+                            if (headOffset == 0) {
+                                ring[head] = null;
+                                head = (head + 1) % ring.length;
+                                size--;
+                                droppedLines.incrementAndGet();
+                                break;
+                            }
+                            // The oldest line is partly written; drop the new one instead
+                            droppedLines.incrementAndGet();
+                            return false;
+                        case DISCONNECT:
+                            overflowed = true;
+                            droppedLines.incrementAndGet();
+                            return true;
+                        default:
+                            while (size == ring.length && !released) {
+                                notFull.awaitUninterruptibly();
+                            }
+                            if (released) {
+                                return false;
+                            }
+                    }
+                }
+                ring[(head + size) % ring.length] = line;
+                size++;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Moves as many queued bytes as fit into the buffer.
+         */
+        void drainTo(ByteBuffer buffer) {
+            lock.lock();
+            try {
+                while (size > 0 && buffer.hasRemaining()) {
+                    byte[] line = ring[head];
+                    int length = Math.min(line.length - headOffset, buffer.remaining());
+                    buffer.put(line, headOffset, length);
+                    headOffset += length;
+                    if (headOffset == line.length) {
+                        ring[head] = null;
+                        head = (head + 1) % ring.length;
+                        size--;
+                        headOffset = 0;
+                    }
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Drops the queued lines and wakes producers waiting for room.
+         */
+        void release() {
+            lock.lock();
+            try {
+                released = true;
+                size = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
         }
     }
 }
@@ -1,17 +1,85 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.ResumePoints;
+import com.data_management.WireEncoder;
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * The {@code WebSocketOutputStrategy} class implements the {@link OutputStrategy} interface.
  * It outputs patient data to connected WebSocket clients.
+ *
+ * <p>By default every reading is sent to every client as a message of its own. In broadcast
+ * mode, readings are instead collected into batches of up to a maximum number of readings, one
+ * line per reading, and a batch is sent when it is full or when it has lingered for a short
+ * while. Each batch is encoded into a WebSocket frame once and the same frame is queued on every
+ * connection, so the cost of a reading no longer grows with the number of clients. A client whose
+ * connection has more than a maximum number of bytes queued and not yet written is disconnected,
+ * so a stalled dashboard cannot make the server buffer without bound.
+ *
+ * <p>Clients may subscribe to the readings of some patients, or of some labels of some patients,
+ * as described in {@link SubscriptionIndex}; a client that never subscribed receives every
+ * reading. A reading is only handed to the clients subscribed to it, found through an inverted
+ * index, so the cost of a reading grows with its subscribers rather than with all connections.
+ * In broadcast mode, the readings of a subscribed client are batched for it alone.
+ *
+ * <p>A client may ask for the compact binary protocol described in {@link WireEncoder} by sending
+ * {@value WireEncoder#NEGOTIATION_MESSAGE}. It then receives binary messages of whole frames,
+ * encoded once per reading in the default mode and once per batch in broadcast mode, and no
+ * longer receives readings with non-numeric data such as alerts.
+ *
+ * <p>With {@link #enableHistory(int)}, the most recent readings are kept in memory, and a client
+ * reconnecting after an outage may send a resume message, described in {@link ResumePoints}, to
+ * be sent the readings of the history it missed before its connection opened.
  */
-public class WebSocketOutputStrategy implements OutputStrategy {
+public class WebSocketOutputStrategy implements OutputStrategy, AutoCloseable {
+
+    private static final long START_TIMEOUT_SECONDS = 10;
 
     private WebSocketServer server;
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+    private final CountDownLatch started = new CountDownLatch(1); // counted down once bound, or failing to bind
+    private volatile Exception startFailure;
+
+    // Broadcast mode only; maxBatchReadings is 0 in the default mode
+    private final int maxBatchReadings;
+    private final long maxBufferedBytes;
+    private final ScheduledExecutorService linger;
+    private final Object batchLock = new Object();
+    private final StringBuilder batch = new StringBuilder();
+    private int batchReadings;
+    private final AtomicLong shedConnections = new AtomicLong();
+
+    // Binary protocol; the encoder and frame batches are guarded by the batch lock in both modes,
+    // so that a label reaches every binary client before the first frame using it
+    private final Set<WebSocket> binaryConnections = ConcurrentHashMap.newKeySet();
+    private final WireEncoder encoder = new WireEncoder();
+    private final WireEncoder.Batch frames = new WireEncoder.Batch();
+    private final Set<String> skippedLabels = ConcurrentHashMap.newKeySet();
+
+    // Replay to resuming clients; the history is guarded by the batch lock
+    private static final int REPLAY_BATCH_READINGS = 256;
+    private volatile ReadingHistory history;
+    private final Map<WebSocket, Long> openPositions = new ConcurrentHashMap<>(); // history position when opened
+    private final AtomicLong replayedReadings = new AtomicLong();
 
     /**
      * Constructs a new {@code WebSocketOutputStrategy} and starts a WebSocket server on the specified port.
@@ -19,9 +87,164 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      * @param port the port on which the WebSocket server will listen for connections
      */
     public WebSocketOutputStrategy(int port) {
-        server = new SimpleWebSocketServer(new InetSocketAddress(port));
+        server = new SimpleWebSocketServer(new InetSocketAddress(port), this::open, subscriptions,
+                this::enableBinary, this::resume, this::closed, this::started);
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        this.maxBatchReadings = 0;
+        this.maxBufferedBytes = Long.MAX_VALUE;
+        this.linger = null;
+    }
+
+    /**
+     * Constructs a new {@code WebSocketOutputStrategy} in broadcast mode and starts a WebSocket
+     * server on the specified port. Clients receive messages of one or more lines, each line
+     * holding one reading in the format of the default mode.
+     *
+     * @param port             the port on which the WebSocket server will listen for connections
+     * @param maxBatchReadings the number of readings at which a batch is sent right away
+     * @param lingerMillis     the longest time a reading waits for its batch to be sent
+     * @param maxBufferedBytes the number of bytes queued for a connection above which the client
+     *                         is disconnected as too slow
+     * @throws IllegalArgumentException if a limit is not positive
+     */
+    public WebSocketOutputStrategy(int port, int maxBatchReadings, long lingerMillis, long maxBufferedBytes) {
+        if (maxBatchReadings <= 0 || lingerMillis <= 0 || maxBufferedBytes <= 0) {
+            throw new IllegalArgumentException("Batch size, linger time and buffer limit must be positive");
+        }
+        this.maxBatchReadings = maxBatchReadings;
+        this.maxBufferedBytes = maxBufferedBytes;
+        server = new SimpleWebSocketServer(new InetSocketAddress(port), this::open, subscriptions,
+                this::enableBinary, this::resume, this::closed, this::started);
+        System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
+        server.start();
+        this.linger = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "websocket-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        linger.scheduleAtFixedRate(this::flush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the port the WebSocket server listens on, waiting for the server to bind it.
+     *
+     * @return the port, also when the server was asked for any free port
+     * @throws IllegalStateException if the server could not bind its port, or did not within
+     *                               {@value #START_TIMEOUT_SECONDS} seconds
+     */
+    public int getPort() {
+        try {
+            if (!started.await(START_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("WebSocket server did not start within " + START_TIMEOUT_SECONDS + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the WebSocket server to start", e);
+        }
+        if (startFailure != null) {
+            throw new IllegalStateException("WebSocket server could not start", startFailure);
+        }
+        return server.getPort();
+    }
+
+    /**
+     * Called by the server once it is bound, or with the exception that kept it from binding.
+     */
+    private void started(Exception failure) {
+        if (started.getCount() > 0) {
+            startFailure = failure;
+            started.countDown();
+        }
+    }
+
+    /**
+     * Returns the number of connected clients, counting a client once the server has opened its
+     * connection.
+     *
+     * @return the number of clients
+     */
+    public int getConnectionCount() {
+        return subscriptions.unfiltered().size() + subscriptions.subscriberCount();
+    }
+
+    /**
+     * Returns the number of clients that subscribed to some patients rather than receiving every
+     * reading.
+     *
+     * @return the number of subscribed clients
+     */
+    public int getSubscriberCount() {
+        return subscriptions.subscriberCount();
+    }
+
+    /**
+     * Returns the number of subscriptions of all clients, to a label of a patient or to all labels
+     * of a patient.
+     *
+     * @return the number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.subscriptionCount();
+    }
+
+    /**
+     * Returns the number of clients that switched to the binary protocol.
+     *
+     * @return the number of binary clients
+     */
+    public int getBinaryConnectionCount() {
+        return binaryConnections.size();
+    }
+
+    /**
+     * Returns the number of readings replayed to resuming clients, counting a reading once per
+     * client.
+     *
+     * @return the number of replayed readings
+     */
+    public long getReplayedReadings() {
+        return replayedReadings.get();
+    }
+
+    /**
+     * Keeps the most recent readings in memory from now on, for clients resuming after an outage.
+     * Readings are then sent under a lock, and the position of the history is recorded under the
+     * same lock when a connection opens. A client is sent the readings output after that position
+     * as they come, and a resume message only replays readings from before it, so that a reading
+     * is either replayed to a resuming client or sent to it live, never both, however late the
+     * client sends its resume message.
+     *
+     * @param capacity the number of readings kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public void enableHistory(int capacity) {
+        ReadingHistory created = new ReadingHistory(capacity);
+        synchronized (batchLock) {
+            history = created;
+            // Connections open so far are sent every reading of the new history
+            openPositions.clear();
+        }
+    }
+
+    /**
+     * Returns the number of readings in the history.
+     *
+     * @return the number of readings kept, 0 if the history is not enabled
+     */
+    public int getHistorySize() {
+        synchronized (batchLock) {
+            return history == null ? 0 : history.size();
+        }
+    }
+
+    /**
+     * Returns the number of clients disconnected in broadcast mode for falling behind.
+     *
+     * @return the number of shed connections
+     */
+    public long getShedConnections() {
+        return shedConnections.get();
     }
 
     /**
@@ -34,10 +257,329 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (maxBatchReadings > 0) {
+            addToBatch(patientId, timestamp, label, data);
+            return;
+        }
+        if (history == null) {
+            send(patientId, timestamp, label, data);
+            return;
+        }
+        synchronized (batchLock) {
+            history.add(patientId, timestamp, label, data);
+            send(patientId, timestamp, label, data);
+        }
+    }
+
+    /**
+     * Sends a reading as a message of its own, in the default mode.
+     */
+    private void send(int patientId, long timestamp, String label, String data) {
+        String message = patientId + "," + timestamp + "," + label + "," + data;
+        if (!subscriptions.hasSubscribers() && binaryConnections.isEmpty()) {
+            // Broadcast the message to all connected clients
+            for (WebSocket conn : everyConnection()) {
+                conn.send(message);
+            }
+            return;
+        }
+        List<WebSocket> recipients = new ArrayList<>(subscriptions.unfiltered());
+        subscriptions.forEachSubscriber(patientId, label, subscriber -> recipients.add(subscriber.conn));
+        List<WebSocket> binaryRecipients = new ArrayList<>();
+        recipients.removeIf(conn -> binaryConnections.contains(conn) && binaryRecipients.add(conn));
+        if (!recipients.isEmpty()) {
+            server.broadcast(message, recipients);
+        }
+        if (!binaryRecipients.isEmpty()) {
+            synchronized (batchLock) {
+                if (addFrame(frames, patientId, timestamp, label, data)) {
+                    server.broadcast(frames.toFrame(), binaryRecipients);
+                    frames.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the connections to send a reading for every client to, when no client has
+     * subscriptions. With a history, these are the connections registered by {@link #open}
+     * rather than every connection of the server, which may include one not yet registered and
+     * still without a history position.
+     */
+    private Collection<WebSocket> everyConnection() {
+        return history == null ? server.getConnections() : subscriptions.unfiltered();
+    }
+
+    private void addToBatch(int patientId, long timestamp, String label, String data) {
+        synchronized (batchLock) {
+            if (history != null) {
+                history.add(patientId, timestamp, label, data);
+            }
+            boolean subscribed = subscriptions.hasSubscribers();
+            if (!subscribed || !subscriptions.unfiltered().isEmpty()) {
+                if (batchReadings > 0) {
+                    batch.append('\n');
+                }
+                appendReading(batch, patientId, timestamp, label, data);
+                if (!binaryConnections.isEmpty()) {
+                    addFrame(frames, patientId, timestamp, label, data);
+                }
+                if (++batchReadings == maxBatchReadings) {
+                    sendBatch();
+                }
+            }
+            if (subscribed) {
+                subscriptions.forEachSubscriber(patientId, label, subscriber -> {
+                    if (binaryConnections.contains(subscriber.conn)) {
+                        if (addFrame(subscriber.frames, patientId, timestamp, label, data)
+                                && subscriber.frames.size() == maxBatchReadings) {
+                            sendBatch(subscriber);
+                        }
+                        return;
+                    }
+                    if (subscriber.batchReadings > 0) {
+                        subscriber.batch.append('\n');
+                    }
+                    appendReading(subscriber.batch, patientId, timestamp, label, data);
+                    if (++subscriber.batchReadings == maxBatchReadings) {
+                        sendBatch(subscriber);
+                    }
+                });
+            }
+        }
+    }
+
+    private static void appendReading(StringBuilder batch, int patientId, long timestamp, String label, String data) {
+        batch.append(patientId).append(',').append(timestamp).append(',').append(label).append(',').append(data);
+    }
+
+    /**
+     * Adds a reading to a batch of binary frames, under the batch lock. A label seen for the first
+     * time is sent to every binary client right away, before any frame using it.
+     *
+     * @return {@code false} if the data is not numeric and the reading was skipped
+     */
+    private boolean addFrame(WireEncoder.Batch target, int patientId, long timestamp, String label, String data) {
+        double value;
+        try {
+            value = WireEncoder.valueOf(data);
+        } catch (NumberFormatException e) {
+            if (skippedLabels.add(label)) {
+                System.err.println("Skipping non-numeric " + label + " data for binary clients: " + data);
+            }
+            return false;
+        }
+        int labelId = encoder.labelId(label);
+        byte[] newLabels = encoder.takeNewLabels();
+        if (newLabels != null) {
+            server.broadcast(newLabels, binaryConnections);
+        }
+        target.add(patientId, timestamp, labelId, value);
+        return true;
+    }
+
+    /**
+     * Switches a client to the binary protocol, sending it the labels defined so far. In broadcast
+     * mode, the pending batches are sent first, so a batch is never split between text and binary.
+     */
+    private void enableBinary(WebSocket conn) {
+        synchronized (batchLock) {
+            if (maxBatchReadings > 0) {
+                flush();
+            }
+            binaryConnections.add(conn);
+            byte[] dictionary = encoder.dictionary();
+            if (dictionary.length > 0) {
+                conn.send(dictionary);
+            }
+        }
+    }
+
+    /**
+     * Registers a new connection, which is sent readings from now on. With a history, its
+     * position is recorded for a later resume message, and in broadcast mode the pending batches
+     * are sent first, since their readings are before that position.
+     */
+    private void open(WebSocket conn) {
+        synchronized (batchLock) {
+            if (history != null) {
+                if (maxBatchReadings > 0) {
+                    flush();
+                }
+                openPositions.put(conn, history.position());
+            }
+            subscriptions.open(conn);
+        }
+    }
+
+    private void closed(WebSocket conn) {
+        binaryConnections.remove(conn);
+        openPositions.remove(conn);
+    }
+
+    /**
+     * Replays the readings of the history a resuming client missed, in messages of up to
+     * {@value #REPLAY_BATCH_READINGS} readings in the format the client receives. Only the
+     * readings output before the connection opened are replayed, the later ones having been sent
+     * to it live.
+     */
+    private void resume(WebSocket conn, String message) {
+        ResumePoints resumePoints;
+        try {
+            resumePoints = ResumePoints.parse(message);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring resume message from " + conn.getRemoteSocketAddress() + ": " + e.getMessage());
+            return;
+        }
+        synchronized (batchLock) {
+            if (history == null) {
+                System.err.println("Cannot resume " + conn.getRemoteSocketAddress() + ": no history kept");
+                return;
+            }
+            boolean binary = binaryConnections.contains(conn);
+            StringBuilder text = new StringBuilder();
+            WireEncoder.Batch replay = new WireEncoder.Batch();
+            int[] pending = new int[1];
+            long before = replayedReadings.get();
+            history.forEachBefore(openPositions.getOrDefault(conn, 0L), (patientId, timestamp, label, data) -> {
+                if (!resumePoints.isMissed(patientId, label, timestamp) || !subscriptions.receives(conn, patientId, label)) {
+                    return;
+                }
+                if (binary) {
+                    if (!addFrame(replay, patientId, timestamp, label, data)) {
+                        return;
+                    }
+                } else {
+                    if (pending[0] > 0) {
+                        text.append('\n');
+                    }
+                    appendReading(text, patientId, timestamp, label, data);
+                }
+                replayedReadings.incrementAndGet();
+                if (++pending[0] == REPLAY_BATCH_READINGS) {
+                    sendReplay(conn, text, replay);
+                    pending[0] = 0;
+                }
+            });
+            if (pending[0] > 0) {
+                sendReplay(conn, text, replay);
+            }
+            System.out.println("Replayed " + (replayedReadings.get() - before) + " readings to "
+                    + conn.getRemoteSocketAddress());
+        }
+    }
+
+    private static void sendReplay(WebSocket conn, StringBuilder text, WireEncoder.Batch replay) {
+        if (replay.size() > 0) {
+            conn.send(replay.toFrame());
+            replay.clear();
+        } else {
+            conn.send(text.toString());
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Sends the readings batched so far, if any. Called by the linger timer in broadcast mode.
+     */
+    private void flush() {
+        synchronized (batchLock) {
+            if (batchReadings > 0) {
+                sendBatch();
+            }
+            for (SubscriptionIndex.Subscriber subscriber : subscriptions.subscribers()) {
+                if (subscriber.batchReadings > 0 || subscriber.frames.size() > 0) {
+                    sendBatch(subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the shared batch under the batch lock, so that batches reach the clients in order.
+     * Sending only queues the frame on the connections and does not wait for the sockets.
+     */
+    private void sendBatch() {
+        Collection<WebSocket> recipients = subscriptions.hasSubscribers()
+                ? subscriptions.unfiltered() : everyConnection();
+        List<WebSocket> keepingUp = new ArrayList<>(recipients.size());
+        List<WebSocket> binaryKeepingUp = new ArrayList<>();
+        for (WebSocket conn : recipients) {
+            if (keepsUp(conn)) {
+                (binaryConnections.contains(conn) ? binaryKeepingUp : keepingUp).add(conn);
+            }
+        }
+        if (!keepingUp.isEmpty()) {
+            server.broadcast(batch.toString(), keepingUp);
+        }
+        if (!binaryKeepingUp.isEmpty() && frames.size() > 0) {
+            server.broadcast(frames.toFrame(), binaryKeepingUp);
+        }
+        batch.setLength(0);
+        batchReadings = 0;
+        frames.clear();
+    }
+
+    /**
+     * Sends the batch of a subscribed client, under the batch lock.
+     */
+    private void sendBatch(SubscriptionIndex.Subscriber subscriber) {
+        if (keepsUp(subscriber.conn)) {
+            if (subscriber.batchReadings > 0) {
+                subscriber.conn.send(subscriber.batch.toString());
+            }
+            if (subscriber.frames.size() > 0) {
+                subscriber.conn.send(subscriber.frames.toFrame());
+            }
+        }
+        subscriber.batch.setLength(0);
+        subscriber.batchReadings = 0;
+        subscriber.frames.clear();
+    }
+
+    /**
+     * Tells whether a connection is open and not too far behind, disconnecting it if it is.
+     */
+    private boolean keepsUp(WebSocket conn) {
+        if (!conn.isOpen()) {
+            return false;
+        }
+        if (bufferedBytes(conn) > maxBufferedBytes) {
+            shedConnections.incrementAndGet();
+            System.out.println("Closing slow connection: " + conn.getRemoteSocketAddress());
+            conn.close(CloseFrame.TRY_AGAIN_LATER, "Too slow");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bytes queued on a connection and not yet written to its socket.
+     */
+    private static long bufferedBytes(WebSocket conn) {
+        if (!(conn instanceof WebSocketImpl)) {
+            return 0;
+        }
+        long bytes = 0;
+        for (ByteBuffer buffer : ((WebSocketImpl) conn).outQueue) {
+            bytes += buffer.remaining();
+        }
+        return bytes;
+    }
+
+    /**
+     * Sends the pending batch and stops the server.
+     */
+    @Override
+    public void close() {
+        if (linger != null) {
+            linger.shutdownNow();
+            flush();
+        }
+        try {
+            server.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -47,13 +589,38 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      */
     private static class SimpleWebSocketServer extends WebSocketServer {
 
+        private final Consumer<WebSocket> onOpened;
+        private final SubscriptionIndex subscriptions;
+        private final Consumer<WebSocket> onBinaryRequest;
+        private final BiConsumer<WebSocket, String> onResume;
+        private final Consumer<WebSocket> onClosed;
+        private final Consumer<Exception> onStarted;
+
         /**
          * Constructs a new {@code SimpleWebSocketServer} with the specified address.
          *
-         * @param address the address on which the WebSocket server will listen for connections
+         * @param address         the address on which the WebSocket server will listen for connections
+         * @param onOpened        called when a connection is opened, to register it
+         * @param subscriptions   the subscriptions of the clients, maintained by the server
+         * @param onBinaryRequest called when a client asks for the binary protocol
+         * @param onResume        called with the resume message of a client
+         * @param onClosed        called when a connection is closed
+         * @param onStarted       called with {@code null} once the server is bound, or with the
+         *                        exception of a server error, which stops the server
          */
-        public SimpleWebSocketServer(InetSocketAddress address) {
+        public SimpleWebSocketServer(InetSocketAddress address, Consumer<WebSocket> onOpened,
+                                     SubscriptionIndex subscriptions, Consumer<WebSocket> onBinaryRequest,
+                                     BiConsumer<WebSocket, String> onResume, Consumer<WebSocket> onClosed,
+                                     Consumer<Exception> onStarted) {
             super(address);
+            this.onOpened = onOpened;
+            this.subscriptions = subscriptions;
+            this.onBinaryRequest = onBinaryRequest;
+            this.onResume = onResume;
+            this.onClosed = onClosed;
+            this.onStarted = onStarted;
+            // Lets a restarted server bind its port while connections of the previous one linger
+            setReuseAddr(true);
         }
 
         /**
@@ -65,6 +632,7 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
+            onOpened.accept(conn);
         }
 
         /**
@@ -78,36 +646,51 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
+            subscriptions.close(conn);
+            onClosed.accept(conn);
         }
 
         /**
-         * Called when a message is received from a WebSocket connection.
+         * Called when a message is received from a WebSocket connection. Clients send
+         * subscription messages, requests for the binary protocol and resume messages; other
+         * messages are reported and ignored.
          *
          * @param conn    the WebSocket connection
          * @param message the received message
          */
         @Override
         public void onMessage(WebSocket conn, String message) {
-            // Not used in this context
+            if (message.trim().equals(WireEncoder.NEGOTIATION_MESSAGE)) {
+                onBinaryRequest.accept(conn);
+            } else if (message.startsWith(ResumePoints.MESSAGE_PREFIX)) {
+                onResume.accept(conn, message);
+            } else if (!subscriptions.handle(conn, message)) {
+                System.err.println("Ignoring message from " + conn.getRemoteSocketAddress() + ": " + message);
+            }
         }
 
         /**
-         * Called when an error occurs on a WebSocket connection.
+         * Called when an error occurs on a WebSocket connection, or on the server itself, such as
+         * failing to bind its port.
          *
-         * @param conn the WebSocket connection
+         * @param conn the WebSocket connection, or {@code null} for an error of the server
          * @param ex   the exception that was thrown
          */
         @Override
         public void onError(WebSocket conn, Exception ex) {
             ex.printStackTrace();
+            if (conn == null) {
+                onStarted.accept(ex);
+            }
         }
 
         /**
-         * Called when the WebSocket server is started.
+         * Called when the WebSocket server is started, once its port is bound.
          */
         @Override
         public void onStart() {
             System.out.println("Server started successfully");
+            onStarted.accept(null);
         }
     }
 }
@@ -0,0 +1,182 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * Implements a {@link DataReader} for bulk imports of large historical data: every regular file
+ * in a directory (or a single file) is read in the line format of {@link FileDataReader}, using
+ * all cores.
+ *
+ * <p>Each file is memory-mapped with {@link FileChannel#map} and split into chunks that end on a
+ * line break. The chunks are parsed in parallel on a {@link ForkJoinPool}, each into a
+ * {@link RecordBatch} grouped by patient, and the batches are added to the {@link DataStorage}
+ * with one patient lookup and one lock acquisition per patient and chunk. Chunks are merged in file order while later
+ * chunks are still being parsed, so readings that are sorted by time in the file are appended in
+ * order and the number of chunks held in memory is bounded.
+ *
+ * <p>Files are imported one after another in the order of their names.
+ */
+public class BulkFileDataReader implements DataReader {
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final long REGION_SIZE = 1L << 30; // at most what one MappedByteBuffer can address
+
+    private final String directoryPath;
+    private final int parallelism;
+
+    /**
+     * Constructs a reader that parses on as many threads as there are available processors.
+     *
+     * @param directoryPath the directory holding the data files, or a single data file
+     */
+    public BulkFileDataReader(String directoryPath) {
+        this(directoryPath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a reader that parses on the given number of threads.
+     *
+     * @param directoryPath the directory holding the data files, or a single data file
+     * @param parallelism   the number of parsing threads
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public BulkFileDataReader(String directoryPath, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.directoryPath = directoryPath;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Imports every regular file of the directory into the provided {@code DataStorage}. Lines
+     * that do not conform to the format are logged as invalid.
+     *
+     * @param dataStorage the {@link DataStorage} instance in which the read data will be stored.
+     * @throws IOException if an I/O error occurs listing, opening or mapping the files.
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Path file : listFiles(Paths.get(directoryPath))) {
+                readFile(file, dataStorage, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Path> listFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(path)) {
+            entries.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+        return files;
+    }
+
+    private void readFile(Path file, DataStorage dataStorage, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            Deque<ForkJoinTask<RecordBatch>> parsing = new ArrayDeque<>();
+            while (position < size) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(REGION_SIZE, size - position));
+                int end = region.limit();
+                if (position + end < size) {
+                    // Leave the incomplete last line to the next region
+                    end = lastLineBreak(region, file) + 1;
+                }
+                for (int start = 0; start < end; ) {
+                    int stop = chunkEnd(region, start, end);
+                    if (parsing.size() == 2 * parallelism) {
+                        parsing.poll().join().addTo(dataStorage);
+                    }
+                    parsing.add(pool.submit(new ChunkParser(region, start, stop)));
+                    start = stop;
+                }
+                position += end;
+            }
+            while (!parsing.isEmpty()) {
+                parsing.poll().join().addTo(dataStorage);
+            }
+        }
+    }
+
+    private static int lastLineBreak(MappedByteBuffer region, Path file) throws IOException {
+        for (int i = region.limit() - 1; i >= 0; i--) {
+            if (region.get(i) == '\n') {
+                return i;
+            }
+        }
+        throw new IOException("Line longer than " + REGION_SIZE + " bytes in " + file);
+    }
+
+    /**
+     * Returns the position after the first line break at or after {@code start + CHUNK_SIZE - 1}.
+     */
+    private static int chunkEnd(MappedByteBuffer region, int start, int end) {
+        for (int i = (int) Math.min(end, (long) start + CHUNK_SIZE) - 1; i < end; i++) {
+            if (region.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Parses the lines of one chunk of a mapped file into a batch grouped by patient.
+     */
+    private static final class ChunkParser implements Callable<RecordBatch> {
+        private final MappedByteBuffer region;
+        private final int start;
+        private final int end;
+
+        ChunkParser(MappedByteBuffer region, int start, int end) {
+            this.region = region;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public RecordBatch call() {
+            RecordBatch batch = new RecordBatch();
+            RecordParser parser = new RecordParser(RecordParser.Format.FILE, batch);
+            int lineStart = start;
+            for (int i = start; i < end; i++) {
+                if (region.get(i) == '\n') {
+                    parseLine(parser, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < end) {
+                parseLine(parser, lineStart, end);
+            }
+            batch.groupByPatient();
+            return batch;
+        }
+
+        private void parseLine(RecordParser parser, int from, int to) {
+            if (!parser.parse(region, from, to)) {
+                System.out.println("Invalid line: " + RecordParser.decode(region, from, to));
+            }
+        }
+    }
+}
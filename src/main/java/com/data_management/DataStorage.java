@@ -1,10 +1,15 @@
 package com.data_management;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import com.alerts.AlertGenerator;
 import com.alerts.Alert;
 
@@ -13,17 +18,46 @@ import com.alerts.Alert;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ *
+ * <p>The storage is safe for concurrent use: readers such as the WebSocket
+ * clients may ingest on their own threads while alert evaluation and queries
+ * run on others. Patients are created atomically, writes are serialized per
+ * patient, and queries never block ingestion (see {@link Patient}).
+ *
+ * <p>By default all data is kept forever. A {@link RetentionPolicy} per record
+ * type bounds memory: {@link #startCompaction(long, TimeUnit)} periodically rolls
+ * old raw readings into aggregate tiers and evicts them, and queries transparently
+ * fall back to the finest tier that still covers the requested range.
+ *
+ * <p>Registered {@link RecordListener}s are notified of every record as it is
+ * added, which lets alert evaluation run incrementally. While listeners are
+ * registered, storing a record and notifying them happen under a lock of the
+ * patient, so the records of a patient reach the listeners in the order they
+ * were stored, even when several threads add them.
+ *
+ * <p>Data is kept in memory only, unless {@link #enablePersistence(String)} is
+ * called: every record is then written to a write-ahead log before it is stored,
+ * snapshots of the whole storage bound the length of the log, and the contents
+ * are restored from the directory when persistence is enabled again after a
+ * restart.
  */
 public class DataStorage {
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
-    private static DataStorage instance;
+    private final ConcurrentHashMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final ConcurrentHashMap<Integer, RetentionPolicy> retentionPolicies; // Indexed by record type id.
+    private final CopyOnWriteArrayList<RecordListener> listeners;
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+    private ScheduledExecutorService compactionScheduler;
+    private volatile Persistence persistence;
+    private static volatile DataStorage instance;
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     private DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.patientMap = new ConcurrentHashMap<>();
+        this.retentionPolicies = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
     }
 
     public static DataStorage getInstance() {
@@ -53,21 +87,235 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+        Patient patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        if (listeners.isEmpty()) {
+            store(patient, measurementValue, recordType, timestamp);
+            return;
+        }
+        synchronized (patient.notificationLock) {
+            store(patient, measurementValue, recordType, timestamp);
+            notifyListeners(new PatientRecord(patientId, measurementValue, recordType, timestamp));
+        }
+    }
+
+    private void store(Patient patient, double measurementValue, String recordType, long timestamp) {
+        Persistence durable = persistence;
+        if (durable == null) {
+            patient.addRecord(measurementValue, recordType, timestamp);
+        } else {
+            Lock lock = durable.ingestLock();
+            lock.lock();
+            try {
+                durable.log().append(patient.getPatientId(), RecordTypes.idOf(recordType), timestamp, measurementValue);
+                patient.addRecord(measurementValue, recordType, timestamp);
+            } finally {
+                lock.unlock();
+            }
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
     }
 
     public void addPatientData(int patientId, double[] measurementValues, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+        Patient patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        if (listeners.isEmpty()) {
+            store(patient, measurementValues, recordType, timestamp);
+            return;
+        }
+        synchronized (patient.notificationLock) {
+            store(patient, measurementValues, recordType, timestamp);
+            notifyListeners(new PatientRecord(patientId, measurementValues.clone(), recordType, timestamp));
+        }
+    }
+
+    private void store(Patient patient, double[] measurementValues, String recordType, long timestamp) {
+        Persistence durable = persistence;
+        if (durable == null) {
+            patient.addRecord(measurementValues, recordType, timestamp);
+        } else {
+            Lock lock = durable.ingestLock();
+            lock.lock();
+            try {
+                durable.log().append(patient.getPatientId(), RecordTypes.idOf(recordType), timestamp, measurementValues);
+                patient.addRecord(measurementValues, recordType, timestamp);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of scalar records of one patient, given as columns. The patient
+     * is looked up once and its records are appended under a single acquisition of
+     * its write lock, so a batch costs far less than the same number of calls to
+     * {@link #addPatientData(int, double, String, long)}.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since the Unix epoch
+     * @param typeIds    the record types, as ids from {@link RecordTypes#idOf(String)}
+     * @param values     the values of the health metrics being recorded
+     * @param count      the number of records, taken from the start of the arrays
+     * @throws IllegalArgumentException if an array holds fewer than {@code count}
+     *                                  elements or a record type id is not registered
+     */
+    public void addPatientData(int patientId, long[] timestamps, int[] typeIds, double[] values, int count) {
+        checkBatch(count, timestamps.length, typeIds.length, values.length);
+        addRun(patientId, timestamps, typeIds, values, 0, count);
+    }
+
+    /**
+     * Adds a batch of scalar records of any number of patients, given as columns.
+     * The records are grouped by patient, keeping their order within each patient,
+     * and every group is added with one patient lookup and one bulk append. Batches
+     * that are already grouped by patient are not reordered.
+     *
+     * @param patientIds the unique identifiers of the patients
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since the Unix epoch
+     * @param typeIds    the record types, as ids from {@link RecordTypes#idOf(String)}
+     * @param values     the values of the health metrics being recorded
+     * @param count      the number of records, taken from the start of the arrays
+     * @throws IllegalArgumentException if an array holds fewer than {@code count}
+     *                                  elements or a record type id is not registered
+     */
+    public void addPatientData(int[] patientIds, long[] timestamps, int[] typeIds, double[] values, int count) {
+        checkBatch(count, patientIds.length, timestamps.length, typeIds.length, values.length);
+        if (!isGroupedByPatient(patientIds, count)) {
+            int[] order = RecordBatch.groupOrder(patientIds, count);
+            int[] groupedIds = new int[count];
+            long[] groupedTimestamps = new long[count];
+            int[] groupedTypeIds = new int[count];
+            double[] groupedValues = new double[count];
+            for (int i = 0; i < count; i++) {
+                int from = order[i];
+                groupedIds[i] = patientIds[from];
+                groupedTimestamps[i] = timestamps[from];
+                groupedTypeIds[i] = typeIds[from];
+                groupedValues[i] = values[from];
+            }
+            patientIds = groupedIds;
+            timestamps = groupedTimestamps;
+            typeIds = groupedTypeIds;
+            values = groupedValues;
+        }
+        addGroupedPatientData(patientIds, timestamps, typeIds, values, count);
+    }
+
+    /**
+     * Adds a batch whose records are known to be grouped by patient, as produced by
+     * {@link RecordBatch#groupByPatient()}, without checking or reordering it.
+     */
+    void addGroupedPatientData(int[] patientIds, long[] timestamps, int[] typeIds, double[] values, int count) {
+        int from = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || patientIds[i] != patientIds[from]) {
+                addRun(patientIds[from], timestamps, typeIds, values, from, i);
+                from = i;
+            }
+        }
+    }
+
+    private void addRun(int patientId, long[] timestamps, int[] typeIds, double[] values, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        Patient patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        if (listeners.isEmpty()) {
+            storeRun(patient, timestamps, typeIds, values, from, to);
+            return;
+        }
+        synchronized (patient.notificationLock) {
+            storeRun(patient, timestamps, typeIds, values, from, to);
+            for (int i = from; i < to; i++) {
+                notifyListeners(new PatientRecord(patientId, values[i], RecordTypes.nameOf(typeIds[i]), timestamps[i]));
+            }
+        }
+    }
+
+    private void storeRun(Patient patient, long[] timestamps, int[] typeIds, double[] values, int from, int to) {
+        int patientId = patient.getPatientId();
+        Persistence durable = persistence;
+        if (durable == null) {
+            patient.addRecords(timestamps, typeIds, values, from, to);
+        } else {
+            for (int i = from; i < to; i++) {
+                RecordTypes.nameOf(typeIds[i]); // rejects unknown ids before they are logged
+            }
+            Lock lock = durable.ingestLock();
+            lock.lock();
+            try {
+                durable.log().append(patientId, timestamps, typeIds, values, from, to);
+                patient.addRecords(timestamps, typeIds, values, from, to);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a batch grouped by patient while the storage is being restored from its
+     * persistence directory: the records are neither logged nor passed to listeners.
+     */
+    void restoreGroupedPatientData(int[] patientIds, long[] timestamps, int[] typeIds, double[] values, int count) {
+        int from = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i == count || patientIds[i] != patientIds[from]) {
+                restorePatient(patientIds[from]).addRecords(timestamps, typeIds, values, from, i);
+                from = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the patient with the given id for restoring its data, creating it if needed.
+     */
+    Patient restorePatient(int patientId) {
+        return patientMap.computeIfAbsent(patientId, Patient::new);
+    }
+
+    private static void checkBatch(int count, int... lengths) {
+        for (int length : lengths) {
+            if (count < 0 || count > length) {
+                throw new IllegalArgumentException("Batch of " + count + " records exceeds an array of length " + length);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the records of every patient are adjacent. Only checks for
+     * non-decreasing ids, the common case of a sorted or single-patient batch;
+     * other batches are regrouped, which is harmless if they were grouped already.
+     */
+    private static boolean isGroupedByPatient(int[] patientIds, int count) {
+        for (int i = 1; i < count; i++) {
+            if (patientIds[i] < patientIds[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener to be notified of every record added from now on.
+     *
+     * @param listener the listener to register
+     */
+    public void addRecordListener(RecordListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addRecordListener(RecordListener)}.
+     *
+     * @param listener the listener to unregister
+     */
+    public void removeRecordListener(RecordListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(PatientRecord record) {
+        for (RecordListener listener : listeners) {
+            listener.onRecord(record);
         }
-        patient.addRecord(measurementValues, recordType, timestamp);
     }
 
     /**
@@ -91,6 +339,28 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Retrieves the records of one type for a specific patient, filtered by a time
+     * range.
+     *
+     * @param patientId  the unique identifier of the patient whose records are to be
+     *                   retrieved
+     * @param recordType the type of record, e.g., "HeartRate", "BloodPressure"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a list of PatientRecord objects of the given type that fall within the
+     *         specified time range
+     */
+    public List<PatientRecord> getRecords(int patientId, String recordType, long startTime, long endTime) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRecords(recordType, startTime, endTime);
+        }
+        return new ArrayList<>(); // return an empty list if no patient is found
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
@@ -100,8 +370,186 @@ public class DataStorage {
         return new ArrayList<>(patientMap.values());
     }
 
+    /**
+     * Sets how long records of the given type are kept and how they are downsampled.
+     * The policy takes effect at the next compaction.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param policy     the retention policy, or {@code null} to keep the records forever
+     */
+    public void setRetentionPolicy(String recordType, RetentionPolicy policy) {
+        int typeId = RecordTypes.idOf(recordType);
+        if (policy == null) {
+            retentionPolicies.remove(typeId);
+        } else {
+            retentionPolicies.put(typeId, policy);
+        }
+    }
+
+    /**
+     * Applies the retention policies to all patients once: raw records past their
+     * retention are rolled up into the aggregate tiers and evicted, and expired
+     * aggregates are dropped.
+     *
+     * @param now the current time, in milliseconds since the Unix epoch
+     */
+    public void compact(long now) {
+        if (retentionPolicies.isEmpty()) {
+            return;
+        }
+        for (Patient patient : patientMap.values()) {
+            patient.compact(retentionPolicies, now);
+        }
+    }
+
+    /**
+     * Starts a background task that calls {@link #compact(long)} with the current
+     * time at a fixed rate. Does nothing if compaction is already running.
+     *
+     * @param period the time between two compactions
+     * @param unit   the time unit of {@code period}
+     */
+    public synchronized void startCompaction(long period, TimeUnit unit) {
+        if (compactionScheduler != null) {
+            return;
+        }
+        compactionScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "data-storage-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionScheduler.scheduleAtFixedRate(() -> {
+            try {
+                compact(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                System.err.println("Error compacting data storage: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops the background compaction task, if running.
+     */
+    public synchronized void stopCompaction() {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+            compactionScheduler = null;
+        }
+    }
+
+    /**
+     * Makes the storage durable in the given directory with a commit interval of
+     * {@value #DEFAULT_COMMIT_INTERVAL_MILLIS} ms, see
+     * {@link #enablePersistence(String, long, TimeUnit)}.
+     *
+     * @param directory the directory of the log and snapshot files
+     * @throws IOException if the directory cannot be read or written
+     */
+    public void enablePersistence(String directory) throws IOException {
+        enablePersistence(directory, DEFAULT_COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes the storage durable in the given directory. The contents the directory
+     * holds from earlier runs are restored first: the latest snapshot is loaded and
+     * the write-ahead log written after it is replayed, without notifying listeners.
+     * From then on every record is logged before it is stored.
+     *
+     * <p>The log is forced to disk once per commit interval for all records logged
+     * in that interval, so ingesting threads never wait for the disk and a crash
+     * loses at most the records of the last interval. Use {@link #syncPersistence()}
+     * where a record must be durable before going on.
+     *
+     * @param directory      the directory of the log and snapshot files, created if missing
+     * @param commitInterval the longest time a record waits before it is forced to disk
+     * @param unit           the time unit of {@code commitInterval}
+     * @throws IOException           if the directory cannot be read or written
+     * @throws IllegalStateException if persistence is already enabled or the storage
+     *                               already holds data
+     */
+    public synchronized void enablePersistence(String directory, long commitInterval, TimeUnit unit)
+            throws IOException {
+        if (persistence != null) {
+            throw new IllegalStateException("Persistence is already enabled");
+        }
+        if (!patientMap.isEmpty()) {
+            throw new IllegalStateException("Persistence must be enabled before data is added");
+        }
+        persistence = Persistence.open(this, Paths.get(directory), commitInterval, unit);
+    }
+
+    /**
+     * Waits until every record added so far is forced to disk. Does nothing if
+     * persistence is not enabled.
+     *
+     * @throws IOException if writing the log failed
+     */
+    public void syncPersistence() throws IOException {
+        Persistence durable = persistence;
+        if (durable != null) {
+            durable.sync();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the whole storage to the persistence directory, which
+     * lets the write-ahead log written so far be deleted and shortens recovery.
+     * Ingestion pauses only while the storage is captured, not while the snapshot
+     * is written.
+     *
+     * @throws IOException           if the snapshot cannot be written
+     * @throws IllegalStateException if persistence is not enabled
+     */
+    public void snapshot() throws IOException {
+        requirePersistence().snapshot();
+    }
+
+    /**
+     * Starts a background task that calls {@link #snapshot()} at a fixed rate. Does
+     * nothing if snapshots are already scheduled.
+     *
+     * @param period the time between two snapshots
+     * @param unit   the time unit of {@code period}
+     * @throws IllegalStateException if persistence is not enabled
+     */
+    public void startSnapshots(long period, TimeUnit unit) {
+        requirePersistence().startSnapshots(period, unit);
+    }
+
+    /**
+     * Forces the write-ahead log to disk, stops scheduled snapshots and stops
+     * logging. Ingestion should be stopped first. Does nothing if persistence is not
+     * enabled.
+     *
+     * @throws IOException if the last commit of the log fails
+     */
+    public synchronized void disablePersistence() throws IOException {
+        Persistence durable = persistence;
+        if (durable != null) {
+            persistence = null;
+            durable.close();
+        }
+    }
+
+    private Persistence requirePersistence() {
+        Persistence durable = persistence;
+        if (durable == null) {
+            throw new IllegalStateException("Persistence is not enabled");
+        }
+        return durable;
+    }
+
     public static void resetInstance() {
         synchronized (DataStorage.class) {
+            if (instance != null) {
+                instance.stopCompaction();
+                try {
+                    instance.disablePersistence();
+                } catch (IOException e) {
+                    System.err.println("Error closing data storage persistence: " + e.getMessage());
+                }
+            }
             instance = null;
         }
     }
@@ -112,7 +560,12 @@ public class DataStorage {
         DataStorage storage = DataStorage.getInstance();
 
         try {
-            reader.readData(storage);
+            if (storage.getAllPatients().isEmpty()) { // nothing was restored from the persistence directory
+                reader.readData(storage);
+                if (storage.persistence != null) {
+                    storage.snapshot();
+                }
+            }
         } catch (IOException e) {
             System.err.println("Error reading data: " + e.getMessage());
             e.printStackTrace();
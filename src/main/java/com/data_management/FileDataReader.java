@@ -1,17 +1,35 @@
 package com.data_management;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Implements a {@link DataReader} that reads and parses data from a file located at a specified directory path.
  * The data read from the file is stored in a {@link DataStorage} instance. This reader specifically handles files
  * where each line represents patient data structured in a comma-separated format. Expected data format per line
  * should contain: Patient ID, Measurement Value, Record Type, and Timestamp.
+ * The file is read as raw bytes, every line is parsed in place by a {@link RecordParser}, and the
+ * readings are added to the storage in {@link RecordBatch}es.
+ *
+ * <p>The path may also be a directory of rolled segments written by {@code FileOutputStrategy}.
+ * If the directory has a {@link SegmentManifest}, its segments are read in the order of the
+ * manifest, and a reader constructed with a time range only opens the segments overlapping it;
+ * without a manifest, every {@code .csv} file of the directory is read in the order of the names.
  */
 public class FileDataReader implements DataReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BATCH_SIZE = 4096;
 
     private final String directoryPath;//The directory path where the file containing data is located
+    private final long startTime;
+    private final long endTime;
 
 
     /**
@@ -20,7 +38,24 @@ public class FileDataReader implements DataReader {
      * @param directoryPath the directory path where the data file is located. Must not be {@code null}.
      */
     public FileDataReader(String directoryPath) {
+        this(directoryPath, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a new {@code FileDataReader} that only loads the readings of a time range.
+     *
+     * @param directoryPath the data file, or the directory of the segments
+     * @param startTime     the start of the range, inclusive, in milliseconds since the Unix epoch
+     * @param endTime       the end of the range, inclusive, in milliseconds since the Unix epoch
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public FileDataReader(String directoryPath, long startTime, long endTime) {
+        if (startTime > endTime) {
+            throw new IllegalArgumentException("Start time " + startTime + " is after end time " + endTime);
+        }
         this.directoryPath = directoryPath;
+        this.startTime = startTime;
+        this.endTime = endTime;
     }
 
 
@@ -28,28 +63,88 @@ public class FileDataReader implements DataReader {
      * Reads data from the file specified by {@code directoryPath} and stores it in the provided {@code DataStorage}.
      * Each line of the file should consist of four comma-separated values: patient ID (integer), measurement value (double),
      * record type (string), and timestamp (long). Lines that do not conform to this format are logged as invalid.
+     * Readings outside the time range of the reader are skipped.
      *
      * @param dataStorage the {@link DataStorage} instance in which the read data will be stored.
      * @throws IOException if an I/O error occurs opening or reading from the file.
      */
     @Override
     public void readData(DataStorage dataStorage) throws IOException {
-        // TODO Implement this method
-        try(BufferedReader br = new BufferedReader(new FileReader(directoryPath))){
-            String line;
-            while((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    int patineId = Integer.parseInt(parts[0]);
-                    double measurementValue = Double.parseDouble(parts[1]);
-                    String recordType = parts[2];
-                    long timestamp = Long.parseLong(parts[3]);
-                    dataStorage.addPatientData(patineId, measurementValue, recordType, timestamp);
-                }else{
-                    System.out.println("Invalid line: " + line);
+        RecordBatch batch = new RecordBatch();
+        RecordParser.Sink sink = batch;
+        if (startTime != Long.MIN_VALUE || endTime != Long.MAX_VALUE) {
+            sink = (patientId, measurementValue, recordType, timestamp) -> {
+                if (timestamp >= startTime && timestamp <= endTime) {
+                    batch.accept(patientId, measurementValue, recordType, timestamp);
+                }
+            };
+        }
+        RecordParser parser = new RecordParser(RecordParser.Format.FILE, sink);
+        for (Path file : listFiles(Paths.get(directoryPath))) {
+            readFile(file, parser, batch, dataStorage);
+        }
+    }
+
+    private List<Path> listFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        List<Path> files = new ArrayList<>();
+        SegmentManifest manifest = SegmentManifest.read(path);
+        if (manifest != null) {
+            for (SegmentManifest.Entry entry : manifest.getEntries(startTime, endTime)) {
+                files.add(path.resolve(entry.getFile()));
+            }
+            return files;
+        }
+        try (Stream<Path> entries = Files.list(path)) {
+            entries.filter(entry -> entry.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .forEach(files::add);
+        }
+        return files;
+    }
+
+    private static void readFile(Path file, RecordParser parser, RecordBatch batch, DataStorage dataStorage)
+            throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteBuffer lines = ByteBuffer.wrap(buffer);
+            int filled = 0;
+            int read;
+            while ((read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+                int lineStart = 0;
+                for (int i = filled; i < filled + read; i++) {
+                    if (buffer[i] == '\n') {
+                        parseLine(parser, lines, lineStart, i);
+                        lineStart = i + 1;
+                        if (batch.size() == BATCH_SIZE) {
+                            batch.addTo(dataStorage);
+                            batch.clear();
+                        }
+                    }
                 }
+                filled += read;
 
+                // Keep the incomplete last line, growing the buffer if it is longer than the buffer
+                filled -= lineStart;
+                System.arraycopy(buffer, lineStart, buffer, 0, filled);
+                if (filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    lines = ByteBuffer.wrap(buffer);
+                }
+            }
+            if (filled > 0) {
+                parseLine(parser, lines, 0, filled);
             }
+            batch.addTo(dataStorage);
+            batch.clear();
+        }
+    }
+
+    private static void parseLine(RecordParser parser, ByteBuffer lines, int from, int to) {
+        if (!parser.parse(lines, from, to)) {
+            System.out.println("Invalid line: " + RecordParser.decode(lines, from, to));
         }
     }
 
@@ -0,0 +1,416 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples receiving messages from storing their readings, so that a slow insert or a pause of
+ * the storage does not hold up the thread reading the socket. The pipeline has three stages, each
+ * on its own thread:
+ *
+ * <ol>
+ *   <li>the receiving thread, normally the read thread of a WebSocket connection, only queues the
+ *       raw message in a bounded lock-free ring with {@link #offer(String)};
+ *   <li>the parser thread takes up to {@value #MAX_MESSAGES_PER_BATCH} queued messages at a time
+ *       and decodes them into one {@link RecordBatch};
+ *   <li>the storage thread adds each batch to the {@link DataStorage} with one call of its batch API.
+ * </ol>
+ *
+ * Batches come from a fixed pool. When the storage falls behind, the parser waits once the pool
+ * is used up, and the message ring fills. What happens to a message arriving at a full ring is set
+ * by the {@link OverflowPolicy}: by default it is dropped and counted, so the receiving thread
+ * never waits; with {@link OverflowPolicy#BLOCK}, the receiving thread waits for room and the
+ * backlog reaches the server through TCP flow control.
+ *
+ * <p>Every stage keeps {@link Stats}: the items it handled, the time it was busy and the time
+ * items waited for it. The busy time of the receiving stage is the latency the pipeline adds to
+ * reading the socket.
+ *
+ * <p>A pipeline serves one connection: the message ring has a single producer, and the parser
+ * keeps the label dictionary of the binary protocol.
+ */
+public final class IngestionPipeline implements AutoCloseable {
+    /**
+     * What {@link #offer} does when the message ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drops the new message, which is counted in {@link #getDroppedMessages()}; the receiving
+         * thread never waits.
+         */
+        DROP_NEWEST,
+        /**
+         * Waits until the parser has made room, so that no message is lost; a stalled storage
+         * stalls the receiving thread.
+         */
+        BLOCK
+    }
+
+    static final int MAX_MESSAGES_PER_BATCH = 256;
+    private static final int DEFAULT_MESSAGE_CAPACITY = 8192;
+    private static final int DEFAULT_BATCH_CAPACITY = 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final DataStorage dataStorage;
+    private final OverflowPolicy policy;
+    private final SpscRing<Object> messages; // String or ByteBuffer, from the receiving thread to the parser
+    private final SpscRing<Slot> parsed;     // from the parser to the storage thread
+    private final SpscRing<Slot> free;       // from the storage thread back to the parser
+    private final MessageDecoder decoder;
+    private RecordBatch current; // the batch being decoded into, parser thread only
+
+    private final Thread parserThread;
+    private final Thread storageThread;
+    private volatile boolean parserIdle;
+    private volatile boolean storageIdle;
+    private volatile boolean parserDone;
+    private volatile boolean closed;
+
+    private final Stats receiving = new Stats();
+    private final Stats parsing = new Stats();
+    private final Stats storing = new Stats();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong storedMessages = new AtomicLong();
+
+    /**
+     * Starts a pipeline with room for {@value #DEFAULT_MESSAGE_CAPACITY} messages and
+     * {@value #DEFAULT_BATCH_CAPACITY} batches, which drops messages when full.
+     *
+     * @param dataStorage the storage the readings are added to
+     */
+    public IngestionPipeline(DataStorage dataStorage) {
+        this(dataStorage, DEFAULT_MESSAGE_CAPACITY, DEFAULT_BATCH_CAPACITY, OverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * Starts a pipeline.
+     *
+     * @param dataStorage     the storage the readings are added to
+     * @param messageCapacity the number of raw messages queued for the parser, rounded up to a
+     *                        power of two
+     * @param batchCapacity   the number of parsed batches, queued for the storage or being filled
+     * @param policy          what to do with a message when the message ring is full
+     * @throws IllegalArgumentException if a capacity is not positive
+     */
+    public IngestionPipeline(DataStorage dataStorage, int messageCapacity, int batchCapacity, OverflowPolicy policy) {
+        if (messageCapacity <= 0 || batchCapacity <= 0) {
+            throw new IllegalArgumentException("Capacities must be positive");
+        }
+        this.dataStorage = dataStorage;
+        this.policy = policy;
+        this.messages = new SpscRing<>(messageCapacity);
+        this.parsed = new SpscRing<>(batchCapacity);
+        this.free = new SpscRing<>(batchCapacity);
+        for (int i = 0; i < batchCapacity; i++) {
+            free.offer(new Slot(), 0);
+        }
+        this.decoder = new MessageDecoder((patientId, value, recordType, timestamp) ->
+                current.accept(patientId, value, recordType, timestamp));
+
+        parserThread = new Thread(this::runParser, "ingest-parser");
+        parserThread.setDaemon(true);
+        storageThread = new Thread(this::runStorage, "ingest-storage");
+        storageThread.setDaemon(true);
+        parserThread.start();
+        storageThread.start();
+    }
+
+    /**
+     * Queues a text message of one or more newline-separated readings. Called by the receiving
+     * thread only.
+     *
+     * @param message the message received from the server
+     * @return {@code false} if the message was dropped, or the pipeline is closed
+     */
+    public boolean offer(String message) {
+        return enqueue(message);
+    }
+
+    /**
+     * Queues a binary message of wire protocol frames. The pipeline takes over the buffer, which
+     * must not be changed afterwards. Called by the receiving thread only.
+     *
+     * @param message the frames received from the server
+     * @return {@code false} if the message was dropped, or the pipeline is closed
+     */
+    public boolean offer(ByteBuffer message) {
+        return enqueue(message);
+    }
+
+    private boolean enqueue(Object message) {
+        if (closed) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean queued = messages.offer(message, start);
+        if (!queued) {
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                droppedMessages.incrementAndGet();
+                return false;
+            }
+            while (!(queued = messages.offer(message, start)) && !closed) {
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            }
+        }
+        if (parserIdle) {
+            LockSupport.unpark(parserThread);
+        }
+        receiving.record(queued ? 1 : 0, System.nanoTime() - start, 0);
+        return queued;
+    }
+
+    /**
+     * The loop of the parser thread: decodes the queued messages into batches and hands them to
+     * the storage thread, until the pipeline is closed and every message has been decoded.
+     */
+    private void runParser() {
+        Slot slot = null;
+        while (true) {
+            if (slot == null && (slot = free.poll()) == null) {
+                // Every batch is waiting for the storage
+                parserIdle = true;
+                if (free.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parserIdle = false;
+                continue;
+            }
+            Object message = messages.poll();
+            if (message == null) {
+                if (closed && messages.isEmpty()) {
+                    break;
+                }
+                parserIdle = true;
+                if (messages.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parserIdle = false;
+                continue;
+            }
+
+            long start = System.nanoTime();
+            long queuedNanos = 0;
+            int count = 0;
+            current = slot.batch;
+            do {
+                queuedNanos += start - messages.polledStamp();
+                if (message instanceof String) {
+                    decoder.decode((String) message);
+                } else {
+                    decoder.decode((ByteBuffer) message);
+                }
+                count++;
+            } while (count < MAX_MESSAGES_PER_BATCH && (message = messages.poll()) != null);
+            slot.messages = count;
+            long end = System.nanoTime();
+            parsing.record(count, end - start, queuedNanos);
+            parsed.offer(slot, end); // never full, the pool holds as many batches as the ring
+            if (storageIdle) {
+                LockSupport.unpark(storageThread);
+            }
+            slot = null;
+        }
+        parserDone = true;
+        LockSupport.unpark(storageThread);
+    }
+
+    /**
+     * The loop of the storage thread: adds the parsed batches to the storage, until the parser is
+     * done and every batch has been added.
+     */
+    private void runStorage() {
+        while (true) {
+            Slot slot = parsed.poll();
+            if (slot == null) {
+                if (parserDone && parsed.isEmpty()) {
+                    break;
+                }
+                storageIdle = true;
+                if (parsed.isEmpty() && !parserDone) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                storageIdle = false;
+                continue;
+            }
+
+            long start = System.nanoTime();
+            int readings = slot.batch.size();
+            try {
+                slot.batch.addTo(dataStorage);
+            } catch (RuntimeException e) {
+                System.err.println("Error storing " + readings + " readings: " + e.getMessage());
+            }
+            slot.batch.clear();
+            storing.record(readings, System.nanoTime() - start, (start - parsed.polledStamp()) * readings);
+            storedMessages.addAndGet(slot.messages);
+            free.offer(slot, 0);
+            if (parserIdle) {
+                LockSupport.unpark(parserThread);
+            }
+        }
+    }
+
+    /**
+     * Waits until every message queued so far has been stored.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     * @return {@code false} if the timeout elapsed first
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = receiving.getItems();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (storedMessages.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the counters of the receiving stage. Its items are the messages queued, and its busy
+     * time is the time spent queueing them, including any waiting under
+     * {@link OverflowPolicy#BLOCK}.
+     *
+     * @return the counters of the receiving thread
+     */
+    public Stats getReceivingStats() {
+        return receiving;
+    }
+
+    /**
+     * Returns the counters of the parser stage. Its items are the messages decoded, and its
+     * waiting time runs from queueing a message to decoding it.
+     *
+     * @return the counters of the parser thread
+     */
+    public Stats getParsingStats() {
+        return parsing;
+    }
+
+    /**
+     * Returns the counters of the storage stage. Its items are the readings stored, and its
+     * waiting time runs from parsing a batch to storing it.
+     *
+     * @return the counters of the storage thread
+     */
+    public Stats getStorageStats() {
+        return storing;
+    }
+
+    /**
+     * Returns the number of messages dropped because the message ring was full.
+     *
+     * @return the number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Stops accepting messages, stores the messages already queued and stops the stage threads.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(parserThread);
+        try {
+            parserThread.join();
+            storageThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A pooled batch with the number of messages decoded into it.
+     */
+    private static final class Slot {
+        final RecordBatch batch = new RecordBatch();
+        int messages;
+    }
+
+    /**
+     * The counters of one stage of the pipeline. Each stage updates its counters from its own
+     * thread; other threads read a recent, not necessarily consistent, snapshot.
+     */
+    public static final class Stats {
+        private volatile long items;
+        private volatile long batches;
+        private volatile long busyNanos;
+        private volatile long maxBusyNanos;
+        private volatile long waitNanos;
+
+        /**
+         * Records one round of work of the stage. Called by the thread of the stage only.
+         */
+        void record(int items, long busyNanos, long waitNanos) {
+            this.items += items;
+            this.batches++;
+            this.busyNanos += busyNanos;
+            this.waitNanos += waitNanos;
+            if (busyNanos > maxBusyNanos) {
+                maxBusyNanos = busyNanos;
+            }
+        }
+
+        /**
+         * @return the number of items the stage handled
+         */
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return the number of rounds of work, a message for the receiving stage and a batch for
+         * the others
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return the time the stage spent working, in nanoseconds
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * @return the longest round of work, in nanoseconds
+         */
+        public long getMaxBusyNanos() {
+            return maxBusyNanos;
+        }
+
+        /**
+         * @return the time items waited before the stage took them, summed over all items, in
+         * nanoseconds
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * Returns the throughput of the stage while working.
+         *
+         * @return the items handled per second of busy time, 0 before the first item
+         */
+        public double getItemsPerSecond() {
+            long busy = busyNanos;
+            return busy == 0 ? 0 : items * 1e9 / busy;
+        }
+    }
+}
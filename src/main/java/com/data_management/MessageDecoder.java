@@ -0,0 +1,58 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the messages received by the WebSocket readers into a {@link RecordParser.Sink}: text
+ * messages of one or more newline-separated readings in the {@code patientId,timestamp,label,data}
+ * format, and binary messages of frames of the wire protocol described in {@link WireEncoder}.
+ * Malformed readings are reported and skipped.
+ *
+ * <p>The decoder keeps the label dictionary of the binary protocol, so each connection needs its
+ * own decoder. Not thread-safe.
+ */
+final class MessageDecoder {
+    private final RecordParser parser;
+    private final WireDecoder wireDecoder;
+
+    MessageDecoder(RecordParser.Sink sink) {
+        this.parser = new RecordParser(RecordParser.Format.MESSAGE, sink);
+        this.wireDecoder = new WireDecoder(sink);
+    }
+
+    /**
+     * Decodes the readings of a text message.
+     *
+     * @param message the message received from the server
+     */
+    void decode(String message) {
+        int lineStart = 0;
+        while (lineStart < message.length()) {
+            int lineEnd = message.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = message.length();
+            }
+            if (!parser.parse(message, lineStart, lineEnd)) {
+                System.err.println("Invalid message format: " + message.substring(lineStart, lineEnd));
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Decodes the readings of a binary message. A message that cannot be decoded is reported and
+     * its remaining frames skipped.
+     *
+     * @param message the frames received from the server
+     */
+    void decode(ByteBuffer message) {
+        try {
+            wireDecoder.decode(message);
+            if (message.hasRemaining()) {
+                System.err.println("Truncated binary message: " + message.remaining() + " bytes left");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid binary message: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the readings of text messages in the {@code patientId,timestamp,label,data} format, as
+ * received by the WebSocket readers. A message holding a single reading is added directly; a
+ * message holding several newline-separated readings is collected into a {@link RecordBatch} and
+ * added with one call to the batch API of {@link DataStorage}. Malformed readings are reported and
+ * skipped. Binary messages hold frames of the wire protocol described in {@link WireEncoder},
+ * decoded into the same batch.
+ *
+ * <p>An ingestor may also record the latest timestamp per patient and label in
+ * {@link ResumePoints}, for a reader to resume from after reconnecting.
+ *
+ * <p>Not thread-safe: each reader owns one ingestor and calls it from its receiving thread.
+ */
+final class MessageIngestor {
+    private final DataStorage dataStorage;
+    private final RecordParser parser;
+    private final RecordBatch batch = new RecordBatch();
+    private final MessageDecoder decoder;
+
+    MessageIngestor(DataStorage dataStorage) {
+        this.dataStorage = dataStorage;
+        this.parser = new RecordParser(RecordParser.Format.MESSAGE, dataStorage::addPatientData);
+        this.decoder = new MessageDecoder(batch);
+    }
+
+    /**
+     * Constructs an ingestor that records the latest timestamp of each patient it stores.
+     */
+    MessageIngestor(DataStorage dataStorage, ResumePoints resumePoints) {
+        this.dataStorage = dataStorage;
+        this.parser = new RecordParser(RecordParser.Format.MESSAGE, (patientId, value, recordType, timestamp) -> {
+            dataStorage.addPatientData(patientId, value, recordType, timestamp);
+            resumePoints.update(patientId, recordType, timestamp);
+        });
+        this.decoder = new MessageDecoder((patientId, value, recordType, timestamp) -> {
+            batch.accept(patientId, value, recordType, timestamp);
+            resumePoints.update(patientId, recordType, timestamp);
+        });
+    }
+
+    /**
+     * Parses a message and stores its readings.
+     *
+     * @param message the message received from the server
+     */
+    void ingest(String message) {
+        if (message.indexOf('\n') < 0) {
+            if (!parser.parse(message)) {
+                System.err.println("Invalid message format: " + message);
+            }
+            return;
+        }
+        decoder.decode(message);
+        batch.addTo(dataStorage);
+        batch.clear();
+    }
+
+    /**
+     * Decodes a binary message and stores its readings.
+     *
+     * @param message the frames received from the server
+     */
+    void ingest(ByteBuffer message) {
+        decoder.decode(message);
+        batch.addTo(dataStorage);
+        batch.clear();
+    }
+}
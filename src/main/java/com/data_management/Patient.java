@@ -1,27 +1,41 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Records are kept column-wise in one {@link TimeSeries} per record type rather
+ * than as individual {@link PatientRecord} objects.
+ *
+ * <p>Writers are serialized per patient, so ingest for different patients never
+ * contends. Readers take no lock at all: they query snapshots of the series and
+ * are never blocked by, nor block, a concurrent writer.
  */
 public class Patient {
     private final int patientId;
-    private final List<PatientRecord> patientRecords;
+    private final Object writeLock = new Object();
+    final Object notificationLock = new Object(); // held by DataStorage across storing and notifying listeners
+    private volatile TimeSeries[] series; // in order of creation
+    private volatile TimeSeries[] scalarSeries; // indexed by record type id
+    private volatile TimeSeries[] vectorSeries; // indexed by record type id
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.series = new TimeSeries[0];
+        this.scalarSeries = new TimeSeries[0];
+        this.vectorSeries = new TimeSeries[0];
     }
 
     /**
@@ -36,37 +50,239 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        int typeId = RecordTypes.idOf(recordType);
+        synchronized (writeLock) {
+            TimeSeries[] index = scalarSeries;
+            if (typeId >= index.length || index[typeId] == null) {
+                index = register(index, new TimeSeries(typeId, 0));
+                scalarSeries = index;
+            }
+            index[typeId].append(timestamp, measurementValue);
+        }
     }
 
+    /**
+     * Adds a new multi-valued record, such as a systolic/diastolic blood pressure
+     * pair, to this patient's medical records. All records of one type must carry
+     * the same number of values.
+     *
+     * @param measurementValues the measurement values to store in the record
+     * @param recordType        the type of record, e.g., "BloodPressure"
+     * @param timestamp         the time at which the measurement was taken, in
+     *                          milliseconds since UNIX epoch
+     * @throws IllegalArgumentException if earlier records of this type carried a
+     *                                  different number of values
+     */
     public void addRecord(double[] measurementValues, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValues, recordType, timestamp);
-        this.patientRecords.add(record);
+        int typeId = RecordTypes.idOf(recordType);
+        synchronized (writeLock) {
+            TimeSeries[] index = vectorSeries;
+            if (typeId >= index.length || index[typeId] == null) {
+                index = register(index, new TimeSeries(typeId, measurementValues.length));
+                vectorSeries = index;
+            }
+            index[typeId].append(timestamp, measurementValues);
+        }
     }
 
+    /**
+     * Adds a batch of scalar records to this patient's medical records, taking the
+     * write lock once for the whole batch.
+     *
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since UNIX epoch
+     * @param typeIds    the interned record type ids, see {@link RecordTypes}
+     * @param values     the measurement values
+     * @param from       the position of the first record in the arrays
+     * @param to         the position after the last record in the arrays
+     * @throws IllegalArgumentException if a record type id is not registered
+     */
+    void addRecords(long[] timestamps, int[] typeIds, double[] values, int from, int to) {
+        synchronized (writeLock) {
+            TimeSeries[] index = scalarSeries;
+            for (int i = from; i < to; i++) {
+                int typeId = typeIds[i];
+                if (typeId >= index.length || index[typeId] == null) {
+                    RecordTypes.nameOf(typeId); // rejects unknown ids before they are stored
+                    index = register(index, new TimeSeries(typeId, 0));
+                    scalarSeries = index;
+                }
+                index[typeId].append(timestamps[i], values[i]);
+            }
+        }
+    }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The method filters records based on the start and end times provided,
+     * locating the range in each record series by binary search.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since UNIX epoch
-     * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     * @return a read-only list of PatientRecord objects that fall within the
+     *         specified time range, ordered by timestamp
      * @author Wenjie Liao
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        // TODO Implement and test this method
-        List<PatientRecord> filteredRecords = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                filteredRecords.add(record);
+        return view(series, startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of one type for this patient that fall within a
+     * specified time range. Only the series of that type is searched, so the
+     * cost does not depend on how much data of other types is stored.
+     *
+     * @param recordType the type of record, e.g., "HeartRate", "BloodPressure"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a read-only list of PatientRecord objects of the given type that fall
+     *         within the specified time range, ordered by timestamp
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        int typeId = RecordTypes.idOf(recordType);
+        TimeSeries[] scalars = scalarSeries;
+        TimeSeries[] vectors = vectorSeries;
+        List<TimeSeries> matching = new ArrayList<>(2);
+        if (typeId < scalars.length && scalars[typeId] != null) {
+            matching.add(scalars[typeId]);
+        }
+        if (typeId < vectors.length && vectors[typeId] != null) {
+            matching.add(vectors[typeId]);
+        }
+        return view(matching.toArray(new TimeSeries[0]), startTime, endTime);
+    }
+
+    /**
+     * Locates {@code [startTime, endTime]} in each series, and in its late readings not
+     * yet folded in, by binary search and wraps the non-empty ranges in a view, so a
+     * query costs O(log n) plus the records read.
+     * Where raw readings have already been evicted, the finest rollup tier that still
+     * covers the older part of the range fills in, as {@link RollupRecord}s.
+     */
+    private List<PatientRecord> view(TimeSeries[] candidates, long startTime, long endTime) {
+        List<RecordColumns> matching = new ArrayList<>(candidates.length);
+        List<int[]> ranges = new ArrayList<>(candidates.length);
+        for (TimeSeries candidate : candidates) {
+            TimeSeries.Snapshot raw = candidate.snapshot();
+            Rollup[] tiers = candidate.rollups();
+            int first = raw.lowerBound(startTime);
+            int last = raw.upperBound(endTime);
+            if (first < last) {
+                matching.add(raw);
+                ranges.add(new int[]{first, last});
+            }
+            long covered = raw.size() > 0 ? raw.timestampAt(0) : Long.MAX_VALUE;
+            TimeSeries.Snapshot late = raw.late();
+            if (late != null) {
+                first = late.lowerBound(startTime);
+                last = late.upperBound(endTime);
+                if (first < last) {
+                    matching.add(late);
+                    ranges.add(new int[]{first, last});
+                }
+                covered = Math.min(covered, late.timestampAt(0));
+            }
+
+            // Older data comes from each tier, up to where the next finer level begins
+            for (Rollup tier : tiers) {
+                long lastStart = covered == Long.MAX_VALUE ? endTime : Math.min(endTime, covered - tier.resolution());
+                first = tier.lowerBound(startTime);
+                last = tier.upperBound(lastStart);
+                if (first < last) {
+                    matching.add(tier);
+                    ranges.add(new int[]{first, last});
+                }
+                if (tier.size() > 0) {
+                    covered = Math.min(covered, tier.timestampAt(0));
+                }
             }
         }
-        return filteredRecords;
+
+        int[] from = new int[ranges.size()];
+        int[] to = new int[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            from[i] = ranges.get(i)[0];
+            to[i] = ranges.get(i)[1];
+        }
+        return new RecordView(patientId, matching.toArray(new RecordColumns[0]), from, to);
+    }
+
+    /**
+     * Applies the retention policies to every series of this patient: readings past
+     * their raw retention are rolled up and evicted, and expired rollups are dropped.
+     * Writers of this patient wait while it runs; readers are not affected.
+     *
+     * @param policies the retention policies, keyed by record type id
+     * @param now      the current time, in milliseconds since UNIX epoch
+     */
+    void compact(Map<Integer, RetentionPolicy> policies, long now) {
+        synchronized (writeLock) {
+            for (TimeSeries current : series) {
+                RetentionPolicy policy = policies.get(current.typeId());
+                if (policy != null) {
+                    current.compact(policy, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Captures the raw readings and rollup tiers of every series of this patient for a
+     * snapshot. The caller must keep writers of this patient out while capturing.
+     *
+     * @return the captured series
+     */
+    StorageSnapshot.PatientImage capture() {
+        TimeSeries[] current = series;
+        TimeSeries.Snapshot[] raw = new TimeSeries.Snapshot[current.length];
+        Rollup[][] tiers = new Rollup[current.length][];
+        for (int i = 0; i < current.length; i++) {
+            raw[i] = current[i].snapshot().merged();
+            tiers[i] = current[i].rollups();
+        }
+        return new StorageSnapshot.PatientImage(patientId, raw, tiers);
+    }
+
+    /**
+     * Adds a series restored from a snapshot to this patient.
+     *
+     * @param restored the restored series
+     * @throws IllegalStateException if the patient already has a series of that kind and type
+     */
+    void restore(TimeSeries restored) {
+        synchronized (writeLock) {
+            int typeId = restored.typeId();
+            if (restored.width() == 0) {
+                if (typeId < scalarSeries.length && scalarSeries[typeId] != null) {
+                    throw new IllegalStateException("Patient " + patientId + " already has "
+                            + RecordTypes.nameOf(typeId) + " readings");
+                }
+                scalarSeries = register(scalarSeries, restored);
+            } else {
+                if (typeId < vectorSeries.length && vectorSeries[typeId] != null) {
+                    throw new IllegalStateException("Patient " + patientId + " already has "
+                            + RecordTypes.nameOf(typeId) + " readings");
+                }
+                vectorSeries = register(vectorSeries, restored);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of {@code index} with {@code created} added, and publishes the
+     * new series. Arrays visible to readers are never modified in place.
+     */
+    private TimeSeries[] register(TimeSeries[] index, TimeSeries created) {
+        int typeId = created.typeId();
+        TimeSeries[] updated = Arrays.copyOf(index, Math.max(index.length, typeId + 1));
+        updated[typeId] = created;
+        TimeSeries[] all = Arrays.copyOf(series, series.length + 1);
+        all[all.length - 1] = created;
+        series = all;
+        return updated;
     }
 
 
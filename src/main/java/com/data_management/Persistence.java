@@ -0,0 +1,239 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Makes the contents of a {@link DataStorage} durable in a directory holding a
+ * {@link WriteAheadLog} and {@link StorageSnapshot}s.
+ *
+ * <p>Files are numbered by generation. The snapshot of generation {@code g} holds everything
+ * logged in the log files before {@code g}, so recovery loads the latest snapshot and replays
+ * the log files from its generation on. Taking a snapshot starts a new log file, captures the
+ * storage at exactly that point, writes the snapshot in the background of ingestion and then
+ * deletes the files it supersedes.
+ *
+ * <p>Ingesting threads log and store a reading while holding the shared side of a read-write
+ * lock; capturing the storage for a snapshot takes the exclusive side, which only pauses
+ * ingestion for the rotation of the log and the capture of the series, not for writing the
+ * snapshot.
+ */
+final class Persistence implements AutoCloseable {
+    private static final String LOG_PREFIX = "wal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final int REPLAY_BATCH_SIZE = 4096;
+
+    private final DataStorage storage;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ReentrantReadWriteLock ingestLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private long generation; // of the current log file, guarded by snapshotLock
+    private ScheduledExecutorService snapshotScheduler;
+
+    private Persistence(DataStorage storage, Path directory, WriteAheadLog log, long generation) {
+        this.storage = storage;
+        this.directory = directory;
+        this.log = log;
+        this.generation = generation;
+    }
+
+    /**
+     * Restores the storage from the directory and starts logging to it.
+     *
+     * @param storage        the storage to restore into; it must not hold any data yet
+     * @param directory      the directory of the log and snapshot files, created if missing
+     * @param commitInterval the longest time a logged reading waits before it is forced to disk
+     * @param unit           the time unit of {@code commitInterval}
+     * @return the persistence of the storage
+     * @throws IOException if the files cannot be read or the new log file cannot be created
+     */
+    static Persistence open(DataStorage storage, Path directory, long commitInterval, TimeUnit unit)
+            throws IOException {
+        Files.createDirectories(directory);
+        List<Long> snapshots = generations(directory, SNAPSHOT_PREFIX, ".bin");
+        List<Long> logs = generations(directory, LOG_PREFIX, ".log");
+
+        long next = 0;
+        if (!snapshots.isEmpty()) {
+            next = snapshots.get(snapshots.size() - 1);
+            StorageSnapshot.read(directory.resolve(StorageSnapshot.fileName(next)), storage);
+        }
+        Replayer replayer = new Replayer(storage);
+        for (long logged : logs) {
+            if (logged >= next) {
+                WriteAheadLog.replay(directory.resolve(WriteAheadLog.fileName(logged)), replayer);
+                replayer.flush();
+                next = logged + 1;
+            }
+        }
+        return new Persistence(storage, directory, new WriteAheadLog(directory, next, commitInterval, unit), next);
+    }
+
+    /**
+     * Returns the lock that ingesting threads hold while they log and store a reading. Many
+     * threads may hold it at once; taking a snapshot waits for all of them.
+     */
+    Lock ingestLock() {
+        return ingestLock.readLock();
+    }
+
+    WriteAheadLog log() {
+        return log;
+    }
+
+    /**
+     * Waits until every reading logged so far is forced to disk.
+     *
+     * @throws IOException if writing the log failed
+     */
+    void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Writes a snapshot of the storage and deletes the log and snapshot files it supersedes.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long covered = generation + 1;
+            List<StorageSnapshot.PatientImage> patients = new ArrayList<>();
+            Lock exclusive = ingestLock.writeLock();
+            exclusive.lock();
+            try {
+                log.rotate(covered);
+                generation = covered;
+                for (Patient patient : storage.getAllPatients()) {
+                    patients.add(patient.capture());
+                }
+            } finally {
+                exclusive.unlock();
+            }
+
+            StorageSnapshot.write(directory.resolve(StorageSnapshot.fileName(covered)), patients);
+            for (long superseded : generations(directory, LOG_PREFIX, ".log")) {
+                if (superseded < covered) {
+                    Files.deleteIfExists(directory.resolve(WriteAheadLog.fileName(superseded)));
+                }
+            }
+            for (long superseded : generations(directory, SNAPSHOT_PREFIX, ".bin")) {
+                if (superseded < covered) {
+                    Files.deleteIfExists(directory.resolve(StorageSnapshot.fileName(superseded)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a background task that calls {@link #snapshot()} at a fixed rate. Does nothing if
+     * snapshots are already scheduled.
+     *
+     * @param period the time between two snapshots
+     * @param unit   the time unit of {@code period}
+     */
+    synchronized void startSnapshots(long period, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            return;
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "data-storage-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleAtFixedRate(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error writing data storage snapshot: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops scheduled snapshots and closes the log after forcing it to disk.
+     *
+     * @throws IOException if the last commit of the log fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+                snapshotScheduler = null;
+            }
+        }
+        log.close();
+    }
+
+    /**
+     * Returns the generations of the files with the given prefix and suffix, in ascending order.
+     * Leftovers of interrupted snapshots are deleted.
+     */
+    private static List<Long> generations(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                String name = entry.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix + ".tmp")) {
+                    Files.deleteIfExists(entry);
+                } else if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        found.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        System.err.println("Ignoring unexpected file " + entry);
+                    }
+                }
+            }
+        }
+        found.sort(null);
+        return found;
+    }
+
+    /**
+     * Adds replayed readings to the storage in batches, without logging them again and without
+     * notifying listeners.
+     */
+    private static final class Replayer implements WriteAheadLog.Replay {
+        private final DataStorage storage;
+        private final RecordBatch batch = new RecordBatch();
+
+        Replayer(DataStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public void scalar(int patientId, int typeId, long timestamp, double value) {
+            batch.add(patientId, timestamp, typeId, value);
+            if (batch.size() == REPLAY_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void vector(int patientId, int typeId, long timestamp, double[] values) {
+            flush();
+            storage.restorePatient(patientId).addRecord(values, RecordTypes.nameOf(typeId), timestamp);
+        }
+
+        void flush() {
+            if (batch.size() == 0) {
+                return;
+            }
+            batch.groupByPatient();
+            batch.restoreTo(storage);
+            batch.clear();
+        }
+    }
+}
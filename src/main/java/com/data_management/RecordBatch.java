@@ -0,0 +1,164 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of scalar readings in the columnar form taken by
+ * {@link DataStorage#addPatientData(int[], long[], int[], double[], int)}. Readers collect
+ * readings in a batch, for example as the {@link RecordParser.Sink} of a parser, and hand the
+ * whole batch to the storage at once.
+ *
+ * <p>A batch is not thread-safe and is meant to be reused: {@link #clear()} keeps its arrays.
+ */
+public final class RecordBatch implements RecordParser.Sink {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] patientIds = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int[] typeIds = new int[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int size;
+    private boolean grouped; // whether the readings were grouped by patient since the last change
+    private String lastRecordType; // the label whose id was looked up last
+    private int lastTypeId;
+
+    /**
+     * Adds a reading to this batch.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time at which the measurement was taken, in milliseconds since the Unix epoch
+     * @param typeId    the record type, as an id from {@link RecordTypes#idOf(String)}
+     * @param value     the value of the health metric being recorded
+     */
+    public void add(int patientId, long timestamp, int typeId, double value) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        typeIds[size] = typeId;
+        values[size] = value;
+        size++;
+        grouped = false;
+    }
+
+    /**
+     * Adds a parsed reading to this batch. The id of the record type is looked up only when the
+     * label differs from the previous one; parsers intern labels, so an identity check suffices.
+     */
+    @Override
+    public void accept(int patientId, double measurementValue, String recordType, long timestamp) {
+        if (recordType != lastRecordType) {
+            lastTypeId = RecordTypes.idOf(recordType);
+            lastRecordType = recordType;
+        }
+        add(patientId, timestamp, lastTypeId, measurementValue);
+    }
+
+    /**
+     * Returns the number of readings in this batch.
+     *
+     * @return the number of readings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reorders the readings so that each patient's readings are adjacent, keeping their order
+     * within each patient. A grouped batch is added to the storage without further reordering, so
+     * grouping on the thread that fills the batch takes that work off the thread that stores it.
+     */
+    public void groupByPatient() {
+        int[] order = groupOrder(patientIds, size);
+        int[] groupedIds = new int[patientIds.length];
+        long[] groupedTimestamps = new long[timestamps.length];
+        int[] groupedTypeIds = new int[typeIds.length];
+        double[] groupedValues = new double[values.length];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            groupedIds[i] = patientIds[from];
+            groupedTimestamps[i] = timestamps[from];
+            groupedTypeIds[i] = typeIds[from];
+            groupedValues[i] = values[from];
+        }
+        patientIds = groupedIds;
+        timestamps = groupedTimestamps;
+        typeIds = groupedTypeIds;
+        values = groupedValues;
+        grouped = true;
+    }
+
+    /**
+     * Returns the positions of the first {@code count} readings ordered so that each patient's
+     * readings are adjacent, patients in order of their first reading and readings in their
+     * original order within each patient. A counting sort over the distinct patients keeps this
+     * linear in {@code count}.
+     *
+     * @param patientIds the patient of every reading
+     * @param count      the number of readings
+     * @return the reordered positions
+     */
+    static int[] groupOrder(int[] patientIds, int count) {
+        // Open addressing from patient id to a dense group number, at most half full
+        int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+        int[] keys = new int[capacity];
+        int[] groups = new int[capacity];
+        Arrays.fill(groups, -1);
+        int[] groupOf = new int[count];
+        int[] starts = new int[count + 1];
+        int groupCount = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = (patientIds[i] * 0x9E3779B9) & (capacity - 1);
+            while (groups[slot] >= 0 && keys[slot] != patientIds[i]) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (groups[slot] < 0) {
+                keys[slot] = patientIds[i];
+                groups[slot] = groupCount++;
+            }
+            groupOf[i] = groups[slot];
+            starts[groups[slot] + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            starts[g + 1] += starts[g];
+        }
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[starts[groupOf[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Adds all readings of this batch to the storage.
+     *
+     * @param dataStorage the storage to add the readings to
+     */
+    public void addTo(DataStorage dataStorage) {
+        if (grouped) {
+            dataStorage.addGroupedPatientData(patientIds, timestamps, typeIds, values, size);
+        } else {
+            dataStorage.addPatientData(patientIds, timestamps, typeIds, values, size);
+        }
+    }
+
+    /**
+     * Adds all readings of this batch to the storage while it is being restored, so without
+     * logging them or notifying listeners. The batch must be grouped by patient.
+     */
+    void restoreTo(DataStorage dataStorage) {
+        dataStorage.restoreGroupedPatientData(patientIds, timestamps, typeIds, values, size);
+    }
+
+    /**
+     * Removes all readings, keeping the allocated capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.data_management;
+
+/**
+ * Read access to a time-ordered column of readings, as used by {@link RecordView} to merge raw
+ * series and rollup tiers into a single list of records.
+ */
+interface RecordColumns {
+
+    /**
+     * Returns the timestamp of the reading at the given position.
+     *
+     * @param index the position of the reading
+     * @return the timestamp, in milliseconds since the Unix epoch
+     */
+    long timestampAt(int index);
+
+    /**
+     * Materializes the reading at the given position as a {@link PatientRecord}.
+     *
+     * @param patientId the patient the readings belong to
+     * @param index     the position of the reading
+     * @return a record holding the reading
+     */
+    PatientRecord recordAt(int patientId, int index);
+}
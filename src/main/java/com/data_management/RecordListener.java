@@ -0,0 +1,18 @@
+package com.data_management;
+
+/**
+ * Receives every record as it is added to a {@link DataStorage}, so consumers such as the alert
+ * system can process new data incrementally instead of re-reading a patient's history.
+ */
+public interface RecordListener {
+
+    /**
+     * Called after a record has been stored. The call happens on the thread that added the
+     * record, so implementations should be quick and must be thread-safe if several threads
+     * ingest concurrently. The records of one patient are passed one at a time, in the order
+     * they were stored; records of different patients may be passed concurrently.
+     *
+     * @param record the record that was stored
+     */
+    void onRecord(PatientRecord record);
+}
@@ -0,0 +1,442 @@
+package com.data_management;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses comma-separated patient readings in place and hands the fields straight to a
+ * {@link Sink}, typically {@code dataStorage::addPatientData}. Unlike {@code String.split}
+ * followed by {@code Integer/Long/Double.parseXxx}, a line is tokenized where it lies, in a
+ * {@link CharSequence} or a {@link ByteBuffer}, and its numbers are parsed from the character
+ * range, so well-formed lines do not allocate.
+ *
+ * <p>Decimal values with up to 15 significant digits and a decimal exponent of at most 22 are
+ * converted exactly with a single multiplication or division. Values with up to 19 significant
+ * digits, which covers the output of {@link Double#toString(double)}, are converted with the
+ * Eisel-Lemire algorithm, which multiplies the digits by a 128-bit approximation of the power of
+ * ten and detects the rare cases where that is not enough to round correctly. Those cases and any
+ * other syntax are handed to {@link Double#parseDouble(String)}, so the accepted syntax and the
+ * results are the same as before. As with {@code String.split}, trailing empty fields are
+ * ignored, so a line ending with a comma is accepted.
+ *
+ * <p>Record type labels are interned through {@link RecordTypes} and cached per parser, so a
+ * label is only materialized the first time it is seen.
+ *
+ * <p>A parser keeps mutable state and is meant to be owned by a single reader thread.
+ */
+public final class RecordParser {
+    /**
+     * The order of the fields within a line.
+     */
+    public enum Format {
+        /**
+         * {@code patientId,measurementValue,recordType,timestamp}, as read by {@link FileDataReader}.
+         */
+        FILE,
+        /**
+         * {@code patientId,timestamp,recordType,measurementValue}, as sent by the TCP and WebSocket outputs.
+         */
+        MESSAGE
+    }
+
+    /**
+     * Receives the fields of every well-formed line.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Accepts one parsed reading.
+         *
+         * @param patientId        the patient the reading belongs to
+         * @param measurementValue the measured value
+         * @param recordType       the interned record type label
+         * @param timestamp        the time of the reading, in milliseconds since the Unix epoch
+         */
+        void accept(int patientId, double measurementValue, String recordType, long timestamp);
+    }
+
+    private static final int FIELDS = 4;
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int MAX_LONG_DIGITS = 19;
+    private static final int MIN_EXPONENT = -342;
+    private static final int MAX_EXPONENT = 308;
+    // 128-bit mantissas of the powers of ten from MIN_EXPONENT to MAX_EXPONENT, high and low halves interleaved
+    private static final long[] POWER_MANTISSAS = powerMantissas();
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int LABEL_CACHE_SIZE = 64; // a power of two
+
+    private final Format format;
+    private final Sink sink;
+    private final String[] labels = new String[LABEL_CACHE_SIZE];
+    private final int[] starts = new int[FIELDS];
+    private final int[] ends = new int[FIELDS];
+    private CharSequence chars; // the line being parsed, if it is text
+    private ByteBuffer bytes;   // the line being parsed, if it is bytes
+    private byte[] array;       // the array backing bytes, if it has one
+    private int arrayOffset;
+    private boolean malformed;
+
+    /**
+     * Constructs a parser.
+     *
+     * @param format the order of the fields within a line
+     * @param sink   the receiver of every well-formed reading
+     */
+    public RecordParser(Format format, Sink sink) {
+        this.format = format;
+        this.sink = sink;
+    }
+
+    /**
+     * Parses one line of text.
+     *
+     * @param line the line, without its line terminator
+     * @return {@code true} if the line was well-formed and passed to the sink, {@code false} otherwise
+     */
+    public boolean parse(CharSequence line) {
+        return parse(line, 0, line.length());
+    }
+
+    /**
+     * Parses one line within a larger text.
+     *
+     * @param text the text holding the line
+     * @param from the position of the first character of the line
+     * @param to   the position after the last character of the line
+     * @return {@code true} if the line was well-formed and passed to the sink, {@code false} otherwise
+     */
+    public boolean parse(CharSequence text, int from, int to) {
+        chars = text;
+        boolean parsed = parseFields(from, to);
+        chars = null;
+        return parsed;
+    }
+
+    /**
+     * Parses one line of UTF-8 encoded bytes. The position and limit of the buffer are not used
+     * or changed, so the same buffer can be shared by several lines, e.g. a mapped file.
+     *
+     * @param buffer the bytes holding the line
+     * @param from   the position of the first byte of the line
+     * @param to     the position after the last byte of the line
+     * @return {@code true} if the line was well-formed and passed to the sink, {@code false} otherwise
+     */
+    public boolean parse(ByteBuffer buffer, int from, int to) {
+        bytes = buffer;
+        if (buffer.hasArray()) {
+            array = buffer.array();
+            arrayOffset = buffer.arrayOffset();
+        }
+        boolean parsed = parseFields(from, to);
+        bytes = null;
+        array = null;
+        return parsed;
+    }
+
+    /**
+     * Decodes a range of bytes, e.g. to report a malformed line.
+     *
+     * @param buffer the bytes holding the text
+     * @param from   the position of the first byte
+     * @param to     the position after the last byte
+     * @return the decoded text
+     */
+    public static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] copy = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            copy[i - from] = buffer.get(i);
+        }
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    private boolean parseFields(int from, int to) {
+        if (to > from && at(to - 1) == '\r') {
+            to--;
+        }
+        int field = 0;
+        starts[0] = from;
+        for (int i = from; i < to; i++) {
+            if (at(i) == ',') {
+                if (field == FIELDS - 1) {
+                    if (!onlyCommas(i, to)) {
+                        return false;
+                    }
+                    to = i;
+                    break;
+                }
+                ends[field++] = i;
+                starts[field] = i + 1;
+            }
+        }
+        if (field != FIELDS - 1) {
+            return false;
+        }
+        ends[field] = to;
+
+        int valueField = format == Format.FILE ? 1 : 3;
+        int timestampField = format == Format.FILE ? 3 : 1;
+        malformed = false;
+        long patientId = parseLong(starts[0], ends[0]);
+        double measurementValue = parseDouble(starts[valueField], ends[valueField]);
+        long timestamp = parseLong(starts[timestampField], ends[timestampField]);
+        if (malformed || patientId < Integer.MIN_VALUE || patientId > Integer.MAX_VALUE) {
+            return false;
+        }
+        sink.accept((int) patientId, measurementValue, label(starts[2], ends[2]), timestamp);
+        return true;
+    }
+
+    /**
+     * Tells whether a range holds nothing but commas, that is empty trailing fields, which
+     * {@code String.split} drops.
+     */
+    private boolean onlyCommas(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (at(i) != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int at(int index) {
+        if (array != null) {
+            return array[arrayOffset + index] & 0xFF;
+        }
+        return chars != null ? chars.charAt(index) : bytes.get(index) & 0xFF;
+    }
+
+    /**
+     * Parses a decimal integer with the syntax of {@link Long#parseLong(String)}.
+     */
+    private long parseLong(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            return fail();
+        }
+        // Accumulate negatively, as Long.parseLong does, so that Long.MIN_VALUE can be represented
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = at(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                return fail();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return fail();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a decimal number, with one of the fast paths if the digits allow it and with
+     * {@link Double#parseDouble(String)} otherwise.
+     */
+    private double parseDouble(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (at(i) == '-' || at(i) == '+')) {
+            negative = at(i) == '-';
+            i++;
+        }
+        long mantissa = 0; // unsigned, up to 19 digits
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < end && isDigit(at(i)); i++) {
+            anyDigit = true;
+            if (mantissa != 0 || at(i) != '0') {
+                if (++significantDigits > MAX_LONG_DIGITS) {
+                    return parseDoubleSlowly(start, end);
+                }
+                mantissa = mantissa * 10 + at(i) - '0';
+            }
+        }
+        if (i < end && at(i) == '.') {
+            for (i++; i < end && isDigit(at(i)); i++) {
+                anyDigit = true;
+                if (mantissa != 0 || at(i) != '0') {
+                    if (++significantDigits > MAX_LONG_DIGITS) {
+                        return parseDoubleSlowly(start, end);
+                    }
+                    mantissa = mantissa * 10 + at(i) - '0';
+                }
+                exponent--;
+            }
+        }
+        if (anyDigit && i < end && (at(i) == 'e' || at(i) == 'E')) {
+            int exponentStart = ++i;
+            if (i < end && (at(i) == '-' || at(i) == '+')) {
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return parseDoubleSlowly(start, end);
+            }
+            int explicitExponent = 0;
+            for (; i < end && isDigit(at(i)); i++) {
+                explicitExponent = explicitExponent * 10 + at(i) - '0';
+            }
+            exponent += at(exponentStart) == '-' ? -explicitExponent : explicitExponent;
+        }
+        if (!anyDigit || i != end) {
+            return parseDoubleSlowly(start, end);
+        }
+
+        if (significantDigits <= MAX_EXACT_DIGITS && exponent >= -22 && exponent <= 22) {
+            // Both the mantissa and the power of ten are exact doubles, so one operation rounds correctly
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        long bits = eiselLemire(mantissa, exponent);
+        if (bits < 0) {
+            return parseDoubleSlowly(start, end);
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * Converts {@code mantissa * 10^exponent} to the bits of the nearest double, or returns -1 if
+     * the 128-bit approximation cannot decide the rounding or the result is subnormal or infinite.
+     */
+    private static long eiselLemire(long mantissa, int exponent) {
+        if (mantissa == 0) {
+            return 0;
+        }
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return -1;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long normalized = mantissa << leadingZeros;
+        long exponent2 = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros; // 217706 / 2^16 ~ log2(10)
+
+        int power = 2 * (exponent - MIN_EXPONENT);
+        long high = unsignedMultiplyHigh(normalized, POWER_MANTISSAS[power]);
+        long low = normalized * POWER_MANTISSAS[power];
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + normalized, normalized) < 0) {
+            // The truncated bits may carry into the result: widen with the low half of the power
+            long lowHigh = unsignedMultiplyHigh(normalized, POWER_MANTISSAS[power + 1]);
+            long lowLow = normalized * POWER_MANTISSAS[power + 1];
+            long mergedLow = low + lowHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                high++;
+            }
+            if ((high & 0x1FF) == 0x1FF && mergedLow == -1 && Long.compareUnsigned(lowLow + normalized, normalized) < 0) {
+                return -1;
+            }
+            low = mergedLow;
+        }
+
+        long upperBit = high >>> 63;
+        long result = high >>> (upperBit + 9);
+        exponent2 -= 1 ^ upperBit;
+        if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+            return -1; // exactly halfway between two doubles
+        }
+        result += result & 1;
+        result >>>= 1;
+        if ((result >>> 53) > 0) {
+            result >>>= 1;
+            exponent2++;
+        }
+        if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+            return -1;
+        }
+        return exponent2 << 52 | result & 0x000FFFFFFFFFFFFFL;
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /**
+     * Computes the 128-bit mantissas of the powers of ten: the power of five shifted to 128 bits and
+     * truncated for non-negative exponents, and the reciprocal rounded up for negative ones.
+     */
+    private static long[] powerMantissas() {
+        long[] mantissas = new long[2 * (MAX_EXPONENT - MIN_EXPONENT + 1)];
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        for (int exponent = MIN_EXPONENT; exponent <= MAX_EXPONENT; exponent++) {
+            BigInteger power5 = BigInteger.valueOf(5).pow(Math.abs(exponent));
+            BigInteger mantissa;
+            if (exponent >= 0) {
+                int shift = 128 - power5.bitLength();
+                mantissa = shift >= 0 ? power5.shiftLeft(shift) : power5.shiftRight(-shift);
+            } else {
+                int bits = power5.subtract(BigInteger.ONE).bitLength(); // the smallest z with 2^z >= 5^-exponent
+                int scale = exponent >= -27 ? bits + 127 : 2 * bits + 128;
+                mantissa = BigInteger.ONE.shiftLeft(scale).divide(power5).add(BigInteger.ONE);
+                while (mantissa.compareTo(two128) >= 0) {
+                    mantissa = mantissa.shiftRight(1);
+                }
+            }
+            int index = 2 * (exponent - MIN_EXPONENT);
+            mantissas[index] = mantissa.shiftRight(64).longValue();
+            mantissas[index + 1] = mantissa.longValue();
+        }
+        return mantissas;
+    }
+
+    private double parseDoubleSlowly(int start, int end) {
+        try {
+            return Double.parseDouble(text(start, end));
+        } catch (NumberFormatException e) {
+            malformed = true;
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the interned label of the given range, looking it up in the cache of this parser first.
+     */
+    private String label(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + at(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (LABEL_CACHE_SIZE - 1);
+        String cached = labels[slot];
+        if (cached != null && matches(cached, start, end)) {
+            return cached;
+        }
+        String label = RecordTypes.nameOf(RecordTypes.idOf(text(start, end)));
+        labels[slot] = label;
+        return label;
+    }
+
+    private boolean matches(String label, int start, int end) {
+        if (label.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (label.charAt(i - start) != at(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text(int start, int end) {
+        return chars != null ? chars.subSequence(start, end).toString() : decode(bytes, start, end);
+    }
+
+    private long fail() {
+        malformed = true;
+        return 0;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+}
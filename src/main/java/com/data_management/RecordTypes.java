@@ -0,0 +1,59 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns record type labels such as "ECG" or "BloodPressure" to small integer ids.
+ * The storage engine keys its per-patient series by these ids so that a label is kept
+ * once per process instead of once per reading.
+ */
+public final class RecordTypes {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int count;
+
+    private RecordTypes() {
+        // Static registry, not meant to be instantiated
+    }
+
+    /**
+     * Returns the id of the given record type, registering it if it has not been seen before.
+     *
+     * @param recordType the record type label
+     * @return the interned id of the record type
+     */
+    public static int idOf(String recordType) {
+        Integer id = ids.get(recordType);
+        if (id != null) {
+            return id;
+        }
+        synchronized (RecordTypes.class) {
+            id = ids.get(recordType);
+            if (id == null) {
+                if (count == names.length) {
+                    names = Arrays.copyOf(names, count * 2);
+                }
+                id = count;
+                names[count++] = recordType;
+                ids.put(recordType, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the record type label registered under the given id.
+     *
+     * @param id the interned id of the record type
+     * @return the record type label
+     * @throws IllegalArgumentException if no record type is registered under {@code id}
+     */
+    public static String nameOf(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown record type id: " + id);
+        }
+        return current[id];
+    }
+}
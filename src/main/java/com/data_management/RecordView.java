@@ -0,0 +1,122 @@
+package com.data_management;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only {@link java.util.List} of {@link PatientRecord}s backed by contiguous ranges of one
+ * or more {@link RecordColumns}, such as snapshots of raw series and rollup tiers. Nothing is
+ * copied when the view is created; records are materialized on access, and later writes to the
+ * series are not visible through the view.
+ * Readings from different series are merged by timestamp; ties keep the order of the series.
+ */
+final class RecordView extends AbstractList<PatientRecord> {
+    private final int patientId;
+    private final RecordColumns[] series;
+    private final int[] from; // first position of the range in each series
+    private final int[] to;   // position after the last one of the range in each series
+    private final int size;
+    private volatile int[] seriesOf; // built on the first random access to a multi-series view
+    private int[] indexOf;           // published through seriesOf
+
+    /**
+     * Constructs a view over the readings {@code from[s] .. to[s] - 1} of each series {@code s}.
+     *
+     * @param patientId the patient the series belong to
+     * @param series    the columns holding the readings
+     * @param from      for each series, the first position to expose
+     * @param to        for each series, the position after the last one to expose
+     */
+    RecordView(int patientId, RecordColumns[] series, int[] from, int[] to) {
+        this.patientId = patientId;
+        this.series = series;
+        this.from = from;
+        this.to = to;
+        int total = 0;
+        for (int s = 0; s < series.length; s++) {
+            total += to[s] - from[s];
+        }
+        this.size = total;
+    }
+
+    @Override
+    public PatientRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (series.length == 1) {
+            return series[0].recordAt(patientId, from[0] + index);
+        }
+        if (seriesOf == null) {
+            buildMergeOrder();
+        }
+        return series[seriesOf[index]].recordAt(patientId, indexOf[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator that merges the series on the fly, without building the random-access
+     * merge order.
+     */
+    @Override
+    public Iterator<PatientRecord> iterator() {
+        if (series.length == 1 || seriesOf != null) {
+            return super.iterator();
+        }
+        return new Iterator<PatientRecord>() {
+            private final int[] cursors = from.clone();
+            private int returned;
+
+            @Override
+            public boolean hasNext() {
+                return returned < size;
+            }
+
+            @Override
+            public PatientRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int s = nextSeries(cursors);
+                returned++;
+                return series[s].recordAt(patientId, cursors[s]++);
+            }
+        };
+    }
+
+    private void buildMergeOrder() {
+        int[] order = new int[size];
+        int[] positions = new int[size];
+        int[] cursors = from.clone();
+        for (int i = 0; i < size; i++) {
+            int s = nextSeries(cursors);
+            order[i] = s;
+            positions[i] = cursors[s]++;
+        }
+        indexOf = positions;
+        seriesOf = order;
+    }
+
+    /**
+     * Returns the series whose next reading, at the given cursors, has the earliest timestamp.
+     */
+    private int nextSeries(int[] cursors) {
+        int next = -1;
+        long nextTimestamp = Long.MAX_VALUE;
+        for (int s = 0; s < series.length; s++) {
+            if (cursors[s] < to[s]) {
+                long timestamp = series[s].timestampAt(cursors[s]);
+                if (next == -1 || timestamp < nextTimestamp) {
+                    next = s;
+                    nextTimestamp = timestamp;
+                }
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,125 @@
+package com.data_management;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The latest timestamp a reader has stored per patient and label, sent to the server when the
+ * reader reconnects so that the server replays only the readings the reader missed. The resume
+ * message lists the labels of each patient with their latest timestamps:
+ *
+ * <pre>
+ * resume:1:ECG=1792245600012,1:Saturation=1792245600000,2:ECG=1792245600020
+ * </pre>
+ *
+ * The server replays, from its history, the readings of the listed patients and labels newer
+ * than their timestamps, and every reading of the patients and labels not listed. Points are kept
+ * per label because the outputs send several labels of a patient with the same timestamp, such as
+ * the systolic and diastolic pressures, and a reader disconnected between two of them must still
+ * be sent the second. The message is written by {@link WebSocketDataReader} and read by
+ * {@code WebSocketOutputStrategy}.
+ *
+ * <p>Not thread-safe: a reader updates and sends its resume points from the thread of its
+ * connection, and a server only reads the points it parsed.
+ */
+public final class ResumePoints {
+    /**
+     * The start of a resume message.
+     */
+    public static final String MESSAGE_PREFIX = "resume:";
+
+    private final Map<Integer, Map<String, long[]>> latest = new HashMap<>(); // by patient id and label, a single element
+
+    /**
+     * Records a stored reading.
+     *
+     * @param patientId the patient of the reading
+     * @param label     the label of the reading
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     */
+    public void update(int patientId, String label, long timestamp) {
+        Map<String, long[]> labels = latest.computeIfAbsent(patientId, id -> new HashMap<>());
+        long[] last = labels.get(label);
+        if (last == null) {
+            labels.put(label, new long[]{timestamp});
+        } else if (timestamp > last[0]) {
+            last[0] = timestamp;
+        }
+    }
+
+    /**
+     * Tells whether no reading has been recorded.
+     *
+     * @return {@code true} if there is nothing to resume from
+     */
+    public boolean isEmpty() {
+        return latest.isEmpty();
+    }
+
+    /**
+     * Tells whether a reading is newer than the resume point of its patient and label, or has no
+     * resume point, so that a reader resuming from these points has not stored it.
+     *
+     * @param patientId the patient of the reading
+     * @param label     the label of the reading
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     * @return {@code true} if the reading was missed
+     */
+    public boolean isMissed(int patientId, String label, long timestamp) {
+        Map<String, long[]> labels = latest.get(patientId);
+        long[] last = labels == null ? null : labels.get(label);
+        return last == null || timestamp > last[0];
+    }
+
+    /**
+     * Returns the resume message for the readings recorded so far.
+     *
+     * @return the message, starting with {@value #MESSAGE_PREFIX}
+     */
+    public String toMessage() {
+        StringBuilder message = new StringBuilder(MESSAGE_PREFIX.length() + latest.size() * 64).append(MESSAGE_PREFIX);
+        for (Map.Entry<Integer, Map<String, long[]>> patient : latest.entrySet()) {
+            for (Map.Entry<String, long[]> label : patient.getValue().entrySet()) {
+                if (message.length() > MESSAGE_PREFIX.length()) {
+                    message.append(',');
+                }
+                message.append(patient.getKey()).append(':').append(label.getKey())
+                        .append('=').append(label.getValue()[0]);
+            }
+        }
+        return message.toString();
+    }
+
+    /**
+     * Parses a resume message.
+     *
+     * @param message the message, starting with {@value #MESSAGE_PREFIX}
+     * @return the resume points of the message
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static ResumePoints parse(String message) {
+        if (!message.startsWith(MESSAGE_PREFIX)) {
+            throw new IllegalArgumentException("Not a resume message: " + message);
+        }
+        ResumePoints points = new ResumePoints();
+        String list = message.substring(MESSAGE_PREFIX.length()).trim();
+        if (list.isEmpty()) {
+            return points;
+        }
+        for (String point : list.split(",")) {
+            int labelStart = point.indexOf(':');
+            int separator = point.lastIndexOf('=');
+            if (labelStart < 0 || separator < labelStart + 2) {
+                throw new IllegalArgumentException("Malformed resume point: " + point);
+            }
+            try {
+                points.update(Integer.parseInt(point.substring(0, labelStart).trim()),
+                        point.substring(labelStart + 1, separator).trim(),
+                        Long.parseLong(point.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed resume point: " + point, e);
+            }
+        }
+        return points;
+    }
+}
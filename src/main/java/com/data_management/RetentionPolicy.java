@@ -0,0 +1,139 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Describes how long the readings of one record type are kept, and into which rollup tiers they
+ * are downsampled before the raw readings are evicted. For example, raw ECG for one hour,
+ * one-minute rollups for seven days and hourly rollups forever:
+ *
+ * <pre>{@code
+ * RetentionPolicy ecg = new RetentionPolicy(TimeUnit.HOURS.toMillis(1))
+ *         .withRollup(TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(7))
+ *         .withRollup(TimeUnit.HOURS.toMillis(1), RetentionPolicy.FOREVER);
+ * dataStorage.setRetentionPolicy("ECG", ecg);
+ * }</pre>
+ *
+ * Policies are immutable; {@link #withRollup(long, long)} returns a new policy.
+ */
+public final class RetentionPolicy {
+    /**
+     * Retention meaning the data is never evicted.
+     */
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private final long rawRetention;
+    private final long[] resolutions;
+    private final long[] retentions;
+
+    /**
+     * Constructs a policy that keeps raw readings for the given duration and has no rollup tiers,
+     * so older readings are simply dropped.
+     *
+     * @param rawRetentionMillis how long raw readings are kept, in milliseconds
+     * @throws IllegalArgumentException if the retention is not positive
+     */
+    public RetentionPolicy(long rawRetentionMillis) {
+        this(rawRetentionMillis, new long[0], new long[0]);
+    }
+
+    private RetentionPolicy(long rawRetention, long[] resolutions, long[] retentions) {
+        if (rawRetention <= 0) {
+            throw new IllegalArgumentException("Raw retention must be positive: " + rawRetention);
+        }
+        this.rawRetention = rawRetention;
+        this.resolutions = resolutions;
+        this.retentions = retentions;
+    }
+
+    /**
+     * Returns a copy of this policy with an additional, coarser rollup tier. Each tier keeps the
+     * count, minimum, maximum and average of the readings in every bucket of its resolution.
+     *
+     * @param resolutionMillis the bucket width of the tier, in milliseconds; a multiple of the
+     *                         resolution of the previous tier
+     * @param retentionMillis  how long the buckets of the tier are kept, in milliseconds, or
+     *                         {@link #FOREVER}; not shorter than the retention of the previous tier
+     * @return the extended policy
+     * @throws IllegalArgumentException if the tier does not extend the previous one
+     */
+    public RetentionPolicy withRollup(long resolutionMillis, long retentionMillis) {
+        int tiers = resolutions.length;
+        long finerResolution = tiers == 0 ? 1 : resolutions[tiers - 1];
+        long finerRetention = tiers == 0 ? rawRetention : retentions[tiers - 1];
+        if (resolutionMillis <= 0 || resolutionMillis % finerResolution != 0
+                || (tiers > 0 && resolutionMillis == finerResolution)) {
+            throw new IllegalArgumentException("Rollup resolution " + resolutionMillis
+                    + " must be a larger multiple of " + finerResolution);
+        }
+        if (retentionMillis < finerRetention) {
+            throw new IllegalArgumentException("Rollup retention " + retentionMillis
+                    + " must not be shorter than " + finerRetention);
+        }
+        long[] extendedResolutions = Arrays.copyOf(resolutions, tiers + 1);
+        long[] extendedRetentions = Arrays.copyOf(retentions, tiers + 1);
+        extendedResolutions[tiers] = resolutionMillis;
+        extendedRetentions[tiers] = retentionMillis;
+        return new RetentionPolicy(rawRetention, extendedResolutions, extendedRetentions);
+    }
+
+    /**
+     * Returns how long raw readings are kept.
+     *
+     * @return the raw retention, in milliseconds
+     */
+    public long getRawRetention() {
+        return rawRetention;
+    }
+
+    /**
+     * Returns the number of rollup tiers, finest first.
+     *
+     * @return the number of rollup tiers
+     */
+    public int getTierCount() {
+        return resolutions.length;
+    }
+
+    /**
+     * Returns the bucket width of a rollup tier.
+     *
+     * @param tier the tier, 0 being the finest
+     * @return the resolution, in milliseconds
+     */
+    public long getResolution(int tier) {
+        return resolutions[tier];
+    }
+
+    /**
+     * Returns how long the buckets of a rollup tier are kept.
+     *
+     * @param tier the tier, 0 being the finest
+     * @return the retention, in milliseconds, or {@link #FOREVER}
+     */
+    public long getRetention(int tier) {
+        return retentions[tier];
+    }
+
+    /**
+     * Returns the time before which raw readings are rolled up and evicted. The cutoff is
+     * aligned to the finest tier, so that a bucket is always built from complete raw data.
+     */
+    long rawCutoff(long now) {
+        return alignedCutoff(now, rawRetention, resolutions.length == 0 ? 1 : resolutions[0]);
+    }
+
+    /**
+     * Returns the time before which buckets of a tier are evicted, aligned to the next coarser tier.
+     */
+    long tierCutoff(int tier, long now) {
+        return alignedCutoff(now, retentions[tier], tier + 1 < resolutions.length ? resolutions[tier + 1] : 1);
+    }
+
+    private static long alignedCutoff(long now, long retention, long alignment) {
+        if (retention == FOREVER || retention > now) {
+            return Long.MIN_VALUE;
+        }
+        return Math.floorDiv(now - retention, alignment) * alignment;
+    }
+}
@@ -0,0 +1,272 @@
+package com.data_management;
+
+import java.io.IOException;
+
+/**
+ * One rollup tier of a {@link TimeSeries}: for every bucket of a fixed resolution, the count,
+ * minimum, maximum and sum of the readings that fell into it, stored column-wise like the raw
+ * series. Instances are immutable; compaction builds a new instance and publishes it, so readers
+ * can use a rollup without any locking.
+ */
+final class Rollup implements RecordColumns {
+    private final int typeId;
+    private final int width;  // 0 for scalar readings, the number of values per reading otherwise
+    private final int stride;
+    private final long resolution;
+    private final long[] starts;
+    private final long[] counts;
+    private final double[] minimums;
+    private final double[] maximums;
+    private final double[] sums;
+    private final int size;
+
+    private Rollup(int typeId, int width, long resolution, int capacity) {
+        this.typeId = typeId;
+        this.width = width;
+        this.stride = width == 0 ? 1 : width;
+        this.resolution = resolution;
+        this.starts = new long[capacity];
+        this.counts = new long[capacity];
+        this.minimums = new double[capacity * stride];
+        this.maximums = new double[capacity * stride];
+        this.sums = new double[capacity * stride];
+        this.size = 0;
+    }
+
+    /**
+     * Publishes the first {@code size} buckets of a tier under construction.
+     */
+    private Rollup(Rollup filled, int size) {
+        this.typeId = filled.typeId;
+        this.width = filled.width;
+        this.stride = filled.stride;
+        this.resolution = filled.resolution;
+        this.starts = filled.starts;
+        this.counts = filled.counts;
+        this.minimums = filled.minimums;
+        this.maximums = filled.maximums;
+        this.sums = filled.sums;
+        this.size = size;
+    }
+
+    /**
+     * Returns an empty tier.
+     *
+     * @param typeId     the interned id of the record type
+     * @param width      0 for scalar readings, or the number of values per reading
+     * @param resolution the bucket width, in milliseconds
+     * @return a tier without buckets
+     */
+    static Rollup empty(int typeId, int width, long resolution) {
+        return new Rollup(typeId, width, resolution, 0);
+    }
+
+    /**
+     * Writes this tier to a snapshot, in the form read by {@link #readFrom}.
+     *
+     * @param out the snapshot output
+     * @throws IOException if writing fails
+     */
+    void writeTo(StorageSnapshot.Output out) throws IOException {
+        out.putLong(resolution);
+        out.putInt(size);
+        out.putLongs(starts, 0, size);
+        out.putLongs(counts, 0, size);
+        out.putDoubles(minimums, 0, size * stride);
+        out.putDoubles(maximums, 0, size * stride);
+        out.putDoubles(sums, 0, size * stride);
+    }
+
+    /**
+     * Reads a tier written by {@link #writeTo(StorageSnapshot.Output)}.
+     *
+     * @param in     the snapshot input
+     * @param typeId the interned id of the record type
+     * @param width  0 for scalar readings, or the number of values per reading
+     * @return the restored tier
+     * @throws IOException if reading fails
+     */
+    static Rollup readFrom(StorageSnapshot.Input in, int typeId, int width) throws IOException {
+        long resolution = in.getLong();
+        int size = in.getInt();
+        Rollup tier = new Rollup(typeId, width, resolution, size);
+        in.getLongs(tier.starts, 0, size);
+        in.getLongs(tier.counts, 0, size);
+        in.getDoubles(tier.minimums, 0, size * tier.stride);
+        in.getDoubles(tier.maximums, 0, size * tier.stride);
+        in.getDoubles(tier.sums, 0, size * tier.stride);
+        return new Rollup(tier, size);
+    }
+
+    long resolution() {
+        return resolution;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a tier that also covers the raw readings {@code from .. to - 1} of the snapshot.
+     * Readings falling into an existing bucket are added to it.
+     *
+     * @param raw  a snapshot of the raw series
+     * @param from the first reading to roll up
+     * @param to   the position after the last reading to roll up
+     * @return the updated tier
+     */
+    Rollup merge(TimeSeries.Snapshot raw, int from, int to) {
+        if (from >= to) {
+            return this;
+        }
+        Rollup added = new Rollup(typeId, width, resolution, to - from);
+        int addedSize = 0;
+        for (int i = from; i < to; i++) {
+            long start = Math.floorDiv(raw.timestampAt(i), resolution) * resolution;
+            if (addedSize == 0 || added.starts[addedSize - 1] != start) {
+                added.starts[addedSize] = start;
+                added.initialize(addedSize, raw, i);
+                addedSize++;
+            } else {
+                added.accumulate(addedSize - 1, raw, i);
+            }
+        }
+
+        int capacity = size + addedSize;
+        Rollup merged = new Rollup(typeId, width, resolution, capacity);
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < addedSize) {
+            if (j == addedSize || (i < size && starts[i] < added.starts[j])) {
+                merged.copyBucket(k++, this, i++);
+            } else if (i == size || added.starts[j] < starts[i]) {
+                merged.copyBucket(k++, added, j++);
+            } else {
+                merged.copyBucket(k, this, i++);
+                merged.combineBucket(k++, added, j++);
+            }
+        }
+        return new Rollup(merged, k);
+    }
+
+    /**
+     * Returns a tier without the buckets that end at or before the cutoff.
+     *
+     * @param cutoff the time before which buckets are dropped, in milliseconds since the Unix epoch
+     * @return the trimmed tier
+     */
+    Rollup expire(long cutoff) {
+        int first = 0;
+        while (first < size && starts[first] + resolution <= cutoff) {
+            first++;
+        }
+        if (first == 0) {
+            return this;
+        }
+        Rollup trimmed = new Rollup(typeId, width, resolution, size - first);
+        for (int i = first; i < size; i++) {
+            trimmed.copyBucket(i - first, this, i);
+        }
+        return new Rollup(trimmed, size - first);
+    }
+
+    /**
+     * Returns the position of the first bucket starting at or after {@code timestamp}.
+     */
+    int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the first bucket starting after {@code timestamp}.
+     */
+    int upperBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public long timestampAt(int index) {
+        return starts[index];
+    }
+
+    @Override
+    public PatientRecord recordAt(int patientId, int index) {
+        String recordType = RecordTypes.nameOf(typeId);
+        long count = counts[index];
+        int offset = index * stride;
+        if (width == 0) {
+            return new RollupRecord(patientId, sums[offset] / count, minimums[offset], maximums[offset], count,
+                    recordType, starts[index], resolution);
+        }
+        double[] averages = new double[width];
+        double[] lows = new double[width];
+        double[] highs = new double[width];
+        for (int c = 0; c < width; c++) {
+            averages[c] = sums[offset + c] / count;
+            lows[c] = minimums[offset + c];
+            highs[c] = maximums[offset + c];
+        }
+        return new RollupRecord(patientId, averages, lows, highs, count, recordType, starts[index], resolution);
+    }
+
+    private void initialize(int bucket, TimeSeries.Snapshot raw, int reading) {
+        counts[bucket] = 1;
+        for (int c = 0; c < stride; c++) {
+            double value = raw.valueAt(reading, c);
+            minimums[bucket * stride + c] = value;
+            maximums[bucket * stride + c] = value;
+            sums[bucket * stride + c] = value;
+        }
+    }
+
+    private void accumulate(int bucket, TimeSeries.Snapshot raw, int reading) {
+        counts[bucket]++;
+        for (int c = 0; c < stride; c++) {
+            double value = raw.valueAt(reading, c);
+            int offset = bucket * stride + c;
+            minimums[offset] = Math.min(minimums[offset], value);
+            maximums[offset] = Math.max(maximums[offset], value);
+            sums[offset] += value;
+        }
+    }
+
+    private void copyBucket(int bucket, Rollup source, int sourceBucket) {
+        starts[bucket] = source.starts[sourceBucket];
+        counts[bucket] = source.counts[sourceBucket];
+        System.arraycopy(source.minimums, sourceBucket * stride, minimums, bucket * stride, stride);
+        System.arraycopy(source.maximums, sourceBucket * stride, maximums, bucket * stride, stride);
+        System.arraycopy(source.sums, sourceBucket * stride, sums, bucket * stride, stride);
+    }
+
+    private void combineBucket(int bucket, Rollup source, int sourceBucket) {
+        counts[bucket] += source.counts[sourceBucket];
+        for (int c = 0; c < stride; c++) {
+            int offset = bucket * stride + c;
+            int sourceOffset = sourceBucket * stride + c;
+            minimums[offset] = Math.min(minimums[offset], source.minimums[sourceOffset]);
+            maximums[offset] = Math.max(maximums[offset], source.maximums[sourceOffset]);
+            sums[offset] += source.sums[sourceOffset];
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.data_management;
+
+/**
+ * A {@link PatientRecord} that summarizes all readings of one bucket of a rollup tier (see
+ * {@link RetentionPolicy}). Its timestamp is the start of the bucket and its measurement value is
+ * the average of the readings; the minimum, maximum and count are available as well.
+ * For multi-valued record types every statistic is kept per value.
+ */
+public class RollupRecord extends PatientRecord {
+    private final long resolution;
+    private final long count;
+    private final double[] minimums;
+    private final double[] maximums;
+
+    /**
+     * Constructs a rollup of scalar readings.
+     *
+     * @param patientId  the unique identifier for the patient
+     * @param average    the average of the readings in the bucket
+     * @param minimum    the smallest reading in the bucket
+     * @param maximum    the largest reading in the bucket
+     * @param count      the number of readings in the bucket
+     * @param recordType the type of the readings
+     * @param start      the start of the bucket, in milliseconds since epoch
+     * @param resolution the width of the bucket, in milliseconds
+     */
+    public RollupRecord(int patientId, double average, double minimum, double maximum, long count,
+                        String recordType, long start, long resolution) {
+        super(patientId, average, recordType, start);
+        this.resolution = resolution;
+        this.count = count;
+        this.minimums = new double[]{minimum};
+        this.maximums = new double[]{maximum};
+    }
+
+    /**
+     * Constructs a rollup of multi-valued readings.
+     *
+     * @param patientId  the unique identifier for the patient
+     * @param averages   the per-value averages of the readings in the bucket
+     * @param minimums   the per-value minimums of the readings in the bucket
+     * @param maximums   the per-value maximums of the readings in the bucket
+     * @param count      the number of readings in the bucket
+     * @param recordType the type of the readings
+     * @param start      the start of the bucket, in milliseconds since epoch
+     * @param resolution the width of the bucket, in milliseconds
+     */
+    public RollupRecord(int patientId, double[] averages, double[] minimums, double[] maximums, long count,
+                        String recordType, long start, long resolution) {
+        super(patientId, averages, recordType, start);
+        this.resolution = resolution;
+        this.count = count;
+        this.minimums = minimums;
+        this.maximums = maximums;
+    }
+
+    /**
+     * Returns the width of the bucket this record summarizes.
+     *
+     * @return the resolution, in milliseconds
+     */
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the number of readings in the bucket.
+     *
+     * @return the reading count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest scalar reading in the bucket.
+     *
+     * @return the minimum
+     */
+    public double getMinimum() {
+        return minimums[0];
+    }
+
+    /**
+     * Returns the largest scalar reading in the bucket.
+     *
+     * @return the maximum
+     */
+    public double getMaximum() {
+        return maximums[0];
+    }
+
+    /**
+     * Returns the per-value minimums of multi-valued readings in the bucket.
+     *
+     * @return the minimums
+     */
+    public double[] getMinimumValues() {
+        return minimums;
+    }
+
+    /**
+     * Returns the per-value maximums of multi-valued readings in the bucket.
+     *
+     * @return the maximums
+     */
+    public double[] getMaximumValues() {
+        return maximums;
+    }
+}
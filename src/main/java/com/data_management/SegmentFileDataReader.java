@@ -0,0 +1,76 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implements a {@link DataReader} for compressed segment files written by {@link SegmentWriter},
+ * such as the archives of {@code SegmentOutputStrategy}. Reads a single segment or every
+ * {@value #SEGMENT_EXTENSION} file of a directory, in the order of their names.
+ *
+ * <p>Each block of a segment holds readings of one patient and record type; it is decoded into
+ * columns and added to the storage with one call to the batch API of {@link DataStorage}.
+ */
+public class SegmentFileDataReader implements DataReader {
+    /**
+     * The file name extension of segment files.
+     */
+    public static final String SEGMENT_EXTENSION = ".seg";
+
+    private final String path;
+
+    /**
+     * Constructs a reader of a segment file or of a directory of segment files.
+     *
+     * @param path the segment file, or the directory holding the segment files
+     */
+    public SegmentFileDataReader(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads every block of the segments into the provided {@code DataStorage}.
+     *
+     * @param dataStorage the {@link DataStorage} instance in which the read data will be stored.
+     * @throws IOException if a segment cannot be read or holds a corrupt block.
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        long[] timestamps = new long[SegmentWriter.BLOCK_READINGS];
+        double[] values = new double[SegmentWriter.BLOCK_READINGS];
+        int[] typeIds = new int[SegmentWriter.BLOCK_READINGS];
+        for (Path file : listSegments(Paths.get(path))) {
+            try (SegmentReader segment = new SegmentReader(file)) {
+                for (SegmentWriter.BlockInfo block : segment.blocks()) {
+                    if (block.count > timestamps.length) {
+                        timestamps = new long[block.count];
+                        values = new double[block.count];
+                        typeIds = new int[block.count];
+                    }
+                    segment.decode(block, timestamps, values);
+                    Arrays.fill(typeIds, 0, block.count, RecordTypes.idOf(block.recordType));
+                    dataStorage.addPatientData(block.patientId, timestamps, typeIds, values, block.count);
+                }
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(path)) {
+            entries.filter(entry -> entry.getFileName().toString().endsWith(SEGMENT_EXTENSION))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,215 @@
+package com.data_management;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the rolled segment files of a directory with the record type, shard and time range of
+ * each, so that a reader interested in a time range only opens the segments overlapping it. The
+ * manifest is the file {@value #FILE_NAME} of the directory, one line per segment:
+ *
+ * <pre>
+ * file,label,shard,firstTimestamp,lastTimestamp,lines
+ * ECG-2026-10-17T14.csv,ECG,0,1792245600012,1792249199987,360000
+ * </pre>
+ *
+ * <p>The manifest is written by {@code FileOutputStrategy} and read by {@link FileDataReader}.
+ * It is replaced atomically, so a reader never sees a partially written manifest. A manifest is
+ * not thread-safe.
+ */
+public final class SegmentManifest {
+    /**
+     * The file name of the manifest within its directory.
+     */
+    public static final String FILE_NAME = "manifest.csv";
+
+    private static final String HEADER = "file,label,shard,firstTimestamp,lastTimestamp,lines";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(); // by file name, in order of creation
+
+    /**
+     * Reads the manifest of a directory.
+     *
+     * @param directory the directory of the segments
+     * @return the manifest, or {@code null} if the directory has none
+     * @throws IOException if the manifest cannot be read or is malformed
+     */
+    public static SegmentManifest read(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        SegmentManifest manifest = new SegmentManifest();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).split(",");
+            try {
+                if (fields.length != 6) {
+                    throw new NumberFormatException("expected 6 fields");
+                }
+                Entry entry = manifest.add(fields[0], fields[1], Integer.parseInt(fields[2]));
+                entry.firstTimestamp = Long.parseLong(fields[3]);
+                entry.lastTimestamp = Long.parseLong(fields[4]);
+                entry.lines = Long.parseLong(fields[5]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed line " + (i + 1) + " of " + file + ": " + lines.get(i), e);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Adds an empty segment to the manifest.
+     *
+     * @param file  the file name of the segment, relative to the directory
+     * @param label the record type of the readings in the segment
+     * @param shard the patient shard of the segment, 0 if the readings are not sharded
+     * @return the entry of the segment
+     * @throws IllegalArgumentException if the manifest already lists the file
+     */
+    public Entry add(String file, String label, int shard) {
+        Entry entry = new Entry(file, label, shard);
+        if (entries.putIfAbsent(file, entry) != null) {
+            throw new IllegalArgumentException("Segment already in manifest: " + file);
+        }
+        return entry;
+    }
+
+    /**
+     * Tells whether the manifest lists a file.
+     *
+     * @param file the file name of the segment
+     * @return {@code true} if the manifest has an entry for the file
+     */
+    public boolean contains(String file) {
+        return entries.containsKey(file);
+    }
+
+    /**
+     * Returns every segment, in order of creation.
+     *
+     * @return an unmodifiable view of the entries
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Returns the segments holding readings within a time range, in order of creation.
+     *
+     * @param startTime the start of the range, inclusive, in milliseconds since the Unix epoch
+     * @param endTime   the end of the range, inclusive, in milliseconds since the Unix epoch
+     * @return the overlapping entries
+     */
+    public List<Entry> getEntries(long startTime, long endTime) {
+        List<Entry> overlapping = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.lines > 0 && entry.firstTimestamp <= endTime && entry.lastTimestamp >= startTime) {
+                overlapping.add(entry);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * Writes the manifest to a directory, replacing its previous manifest atomically.
+     *
+     * @param directory the directory of the segments
+     * @throws IOException if the manifest cannot be written
+     */
+    public void write(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Entry entry : entries.values()) {
+                out.write(entry.file + "," + entry.label + "," + entry.shard + "," + entry.firstTimestamp + ","
+                        + entry.lastTimestamp + "," + entry.lines);
+                out.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One segment of the manifest. The time range covers every line of the segment, also when
+     * its lines are not in time order.
+     */
+    public static final class Entry {
+        private final String file;
+        private final String label;
+        private final int shard;
+        private long firstTimestamp = Long.MAX_VALUE;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private long lines;
+
+        private Entry(String file, String label, int shard) {
+            this.file = file;
+            this.label = label;
+            this.shard = shard;
+        }
+
+        /**
+         * Records a line added to the segment.
+         *
+         * @param timestamp the timestamp of the line
+         */
+        public void include(long timestamp) {
+            firstTimestamp = Math.min(firstTimestamp, timestamp);
+            lastTimestamp = Math.max(lastTimestamp, timestamp);
+            lines++;
+        }
+
+        /**
+         * @return the file name of the segment, relative to the directory
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * @return the record type of the readings in the segment
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the patient shard of the segment, 0 if the readings are not sharded
+         */
+        public int getShard() {
+            return shard;
+        }
+
+        /**
+         * @return the earliest timestamp in the segment, or {@code Long.MAX_VALUE} if it is empty
+         */
+        public long getFirstTimestamp() {
+            return firstTimestamp;
+        }
+
+        /**
+         * @return the latest timestamp in the segment, or {@code Long.MIN_VALUE} if it is empty
+         */
+        public long getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        /**
+         * @return the number of lines in the segment
+         */
+        public long getLines() {
+            return lines;
+        }
+    }
+}
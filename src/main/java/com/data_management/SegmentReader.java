@@ -0,0 +1,226 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads a segment file written by {@link SegmentWriter}: lists its blocks, from the index if the
+ * segment was closed or by scanning the block headers otherwise, and decodes single blocks.
+ */
+final class SegmentReader implements AutoCloseable {
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer segment;
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * Opens and maps a segment file.
+     *
+     * @param file the segment file
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    SegmentReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment larger than 2 GiB: " + file);
+            }
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < 4 || segment.getInt(0) != SegmentWriter.MAGIC) {
+                throw new IOException("Not a segment file: " + file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the blocks of the segment in file order. Without an index, as after a crash of
+     * the writer, the blocks are found by scanning and the scan stops at the first incomplete or
+     * corrupt block, which is reported.
+     *
+     * @return the blocks of the segment
+     */
+    List<SegmentWriter.BlockInfo> blocks() {
+        List<SegmentWriter.BlockInfo> indexed = readIndex();
+        return indexed != null ? indexed : scan();
+    }
+
+    private List<SegmentWriter.BlockInfo> readIndex() {
+        int size = segment.limit();
+        if (size < 4 + 1 + 4 + 12 || segment.getInt(size - 4) != SegmentWriter.FOOTER_MAGIC) {
+            return null;
+        }
+        long indexPosition = segment.getLong(size - 12);
+        if (indexPosition < 4 || indexPosition > size - 12 - 5 || segment.get((int) indexPosition) != SegmentWriter.INDEX_MARKER) {
+            return null;
+        }
+        ByteBuffer in = segment.duplicate().position((int) indexPosition + 1).limit(size - 12);
+        int count = in.getInt();
+        List<SegmentWriter.BlockInfo> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int patientId = in.getInt();
+            String recordType = readLabel(in);
+            blocks.add(new SegmentWriter.BlockInfo(patientId, recordType, in.getLong(), in.getLong(), in.getInt(),
+                    in.getLong()));
+        }
+        return blocks;
+    }
+
+    private List<SegmentWriter.BlockInfo> scan() {
+        List<SegmentWriter.BlockInfo> blocks = new ArrayList<>();
+        ByteBuffer in = segment.duplicate().position(4);
+        while (in.hasRemaining() && in.get(in.position()) == SegmentWriter.BLOCK_MARKER) {
+            int offset = in.position();
+            try {
+                in.get();
+                int patientId = in.getInt();
+                String recordType = readLabel(in);
+                int count = in.getInt();
+                long firstTimestamp = in.getLong();
+                long lastTimestamp = in.getLong();
+                int length = in.getInt();
+                if (length < 0 || in.remaining() < length + 4 || !matchesChecksum(in, length)) {
+                    System.err.println("Ignoring corrupt block at " + offset + " of " + file);
+                    break;
+                }
+                in.position(in.position() + length + 4);
+                blocks.add(new SegmentWriter.BlockInfo(patientId, recordType, firstTimestamp, lastTimestamp, count,
+                        offset));
+            } catch (RuntimeException e) {
+                System.err.println("Ignoring incomplete block at " + offset + " of " + file);
+                break;
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Decodes the readings of a block into the given columns.
+     *
+     * @param block      the block, as listed by {@link #blocks()}
+     * @param timestamps receives the timestamps; must hold at least {@code block.count} elements
+     * @param values     receives the values; must hold at least {@code block.count} elements
+     * @throws IOException if the block is corrupt
+     */
+    void decode(SegmentWriter.BlockInfo block, long[] timestamps, double[] values) throws IOException {
+        ByteBuffer in = segment.duplicate().position((int) block.offset);
+        try {
+            in.get();
+            in.getInt();
+            readLabel(in);
+            int count = in.getInt();
+            in.position(in.position() + 16);
+            int length = in.getInt();
+            if (count != block.count || !matchesChecksum(in, length)) {
+                throw new IOException("Corrupt block at " + block.offset + " of " + file);
+            }
+            new BitReader(in, length).decode(count, timestamps, values);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt block at " + block.offset + " of " + file, e);
+        }
+    }
+
+    private boolean matchesChecksum(ByteBuffer in, int length) {
+        checksum.reset();
+        checksum.update(in.duplicate().limit(in.position() + length));
+        return (int) checksum.getValue() == in.getInt(in.position() + length);
+    }
+
+    private static String readLabel(ByteBuffer in) {
+        byte[] label = new byte[in.getShort()];
+        in.get(label);
+        return new String(label, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the bits of a block payload, most significant bit first, and decodes its readings.
+     */
+    private static final class BitReader {
+        private final long[] words;
+        private long position; // in bits
+
+        BitReader(ByteBuffer in, int length) {
+            words = new long[(length + 7) / 8 + 1];
+            int start = in.position();
+            for (int i = 0; i < length; i++) {
+                words[i >>> 3] |= (in.get(start + i) & 0xFFL) << (56 - 8 * (i & 7));
+            }
+        }
+
+        /**
+         * Reads the next {@code length} bits, 1 to 64 of them.
+         */
+        long read(int length) {
+            int word = (int) (position >>> 6);
+            int used = (int) (position & 63);
+            int free = 64 - used;
+            long result = (words[word] << used) >>> (64 - length);
+            if (length > free) {
+                result |= words[word + 1] >>> (64 - (length - free));
+            }
+            position += length;
+            return result;
+        }
+
+        void decode(int count, long[] timestamps, double[] values) {
+            if (count == 0) {
+                return;
+            }
+            long timestamp = read(64);
+            long valueBits = read(64);
+            timestamps[0] = timestamp;
+            values[0] = Double.longBitsToDouble(valueBits);
+            long delta = 0;
+            int leading = 0;
+            int trailing = 0;
+            for (int i = 1; i < count; i++) {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+                timestamps[i] = timestamp;
+
+                if (read(1) == 1) {
+                    if (read(1) == 1) {
+                        leading = (int) read(6);
+                        int meaningful = (int) read(6) + 1;
+                        trailing = 64 - leading - meaningful;
+                    }
+                    valueBits ^= read(64 - leading - trailing) << trailing;
+                }
+                values[i] = Double.longBitsToDouble(valueBits);
+            }
+        }
+
+        private long readDeltaOfDelta() {
+            if (read(1) == 0) {
+                return 0;
+            }
+            if (read(1) == 0) {
+                return read(7) - 63;
+            }
+            if (read(1) == 0) {
+                return read(9) - 255;
+            }
+            if (read(1) == 0) {
+                return read(12) - 2047;
+            }
+            return read(64);
+        }
+    }
+}
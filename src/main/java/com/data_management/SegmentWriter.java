@@ -0,0 +1,319 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes scalar readings to a compressed segment file, read back by {@link SegmentFileDataReader}.
+ *
+ * <p>Readings are encoded per patient and record type as in Facebook's Gorilla time series
+ * database: a timestamp is stored as the difference between its delta to the previous timestamp
+ * and the delta before (a single bit for a stream at a steady rate), and a value as its XOR with
+ * the previous value, storing only the bits between the leading and trailing zeros of the
+ * result (a single bit for an unchanged value).
+ *
+ * <p>A series is encoded in memory until it holds {@value #BLOCK_READINGS} readings or
+ * {@link #flush()} is called, and then appended to the file as a block. Every block starts with
+ * the patient, the record type, the number of readings and the time range it covers, and ends
+ * with a CRC32C, so a segment whose writer crashed can still be read up to its last complete
+ * block. {@link #close()} appends an index of all blocks, which lets readers skip blocks by
+ * patient or time range without decoding them.
+ *
+ * <p>The writer is thread-safe.
+ */
+public final class SegmentWriter implements AutoCloseable {
+    static final int MAGIC = 0x53454731; // "SEG1"
+    static final int FOOTER_MAGIC = 0x53494458; // "SIDX"
+    static final byte BLOCK_MARKER = 'B';
+    static final byte INDEX_MARKER = 'I';
+    static final int BLOCK_READINGS = 4096;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Long, SeriesEncoder> open = new HashMap<>(); // keyed by patient id and type id
+    private final List<BlockInfo> index = new ArrayList<>();
+    private final CRC32C checksum = new CRC32C();
+    private long position;
+    private boolean closed;
+
+    /**
+     * Creates a segment file, replacing any existing file.
+     *
+     * @param file the segment file
+     * @throws IOException if the file cannot be created
+     */
+    public SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        writeFully(ByteBuffer.allocate(4).putInt(MAGIC).flip());
+    }
+
+    /**
+     * Returns the segment file written.
+     *
+     * @return the segment file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Adds a reading. Readings of a series are best added in time order, but need not be.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "ECG"
+     * @param timestamp  the time of the reading, in milliseconds since the Unix epoch
+     * @param value      the measured value
+     * @throws IOException if a full block cannot be written
+     */
+    public synchronized void append(int patientId, String recordType, long timestamp, double value)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Segment is closed: " + file);
+        }
+        int typeId = RecordTypes.idOf(recordType);
+        SeriesEncoder encoder = open.computeIfAbsent((long) patientId << 32 | typeId,
+                key -> new SeriesEncoder(patientId, recordType));
+        encoder.add(timestamp, value);
+        if (encoder.count == BLOCK_READINGS) {
+            writeBlock(encoder);
+        }
+    }
+
+    /**
+     * Writes the readings of every series added since its last block as a block, so that they
+     * are in the file even if the writer is never closed.
+     *
+     * @throws IOException if a block cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        for (SeriesEncoder encoder : open.values()) {
+            if (encoder.count > 0) {
+                writeBlock(encoder);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending readings and the index, and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            long indexPosition = position;
+            ByteBuffer footer = ByteBuffer.allocate(1 + 4 + index.size() * 64 + 12);
+            footer.put(INDEX_MARKER).putInt(index.size());
+            for (BlockInfo block : index) {
+                byte[] label = block.recordType.getBytes(StandardCharsets.UTF_8);
+                while (footer.remaining() < 4 + 2 + label.length + 8 + 8 + 4 + 8 + 12) {
+                    footer = grow(footer);
+                }
+                footer.putInt(block.patientId).putShort((short) label.length).put(label)
+                        .putLong(block.firstTimestamp).putLong(block.lastTimestamp)
+                        .putInt(block.count).putLong(block.offset);
+            }
+            footer.putLong(indexPosition).putInt(FOOTER_MAGIC);
+            writeFully(footer.flip());
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        return larger.put(buffer.flip());
+    }
+
+    private void writeBlock(SeriesEncoder encoder) throws IOException {
+        byte[] label = encoder.recordType.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = encoder.bits.toByteArray();
+        checksum.reset();
+        checksum.update(payload);
+        ByteBuffer block = ByteBuffer.allocate(1 + 4 + 2 + label.length + 4 + 8 + 8 + 4 + payload.length + 4);
+        block.put(BLOCK_MARKER).putInt(encoder.patientId).putShort((short) label.length).put(label)
+                .putInt(encoder.count).putLong(encoder.minimumTimestamp).putLong(encoder.maximumTimestamp)
+                .putInt(payload.length).put(payload).putInt((int) checksum.getValue());
+        index.add(new BlockInfo(encoder.patientId, encoder.recordType, encoder.minimumTimestamp,
+                encoder.maximumTimestamp, encoder.count, position));
+        writeFully(block.flip());
+        encoder.reset();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Describes one block of a segment, as found in its header or in the index. The time range
+     * covers every reading of the block, also when its readings were not added in time order.
+     */
+    static final class BlockInfo {
+        final int patientId;
+        final String recordType;
+        final long firstTimestamp; // the earliest timestamp of the block
+        final long lastTimestamp;  // the latest timestamp of the block
+        final int count;
+        final long offset;
+
+        BlockInfo(int patientId, String recordType, long firstTimestamp, long lastTimestamp, int count, long offset) {
+            this.patientId = patientId;
+            this.recordType = recordType;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.count = count;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Encodes the readings of one series for the current block.
+     */
+    private static final class SeriesEncoder {
+        final int patientId;
+        final String recordType;
+        final BitWriter bits = new BitWriter();
+        int count;
+        long minimumTimestamp;
+        long maximumTimestamp;
+        private long lastTimestamp;
+        private long previousDelta;
+        private long previousValue; // the bits of the previous value
+        private int previousLeading;
+        private int previousTrailing;
+
+        SeriesEncoder(int patientId, String recordType) {
+            this.patientId = patientId;
+            this.recordType = recordType;
+        }
+
+        void add(long timestamp, double value) {
+            long valueBits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                bits.write(timestamp, 64);
+                bits.write(valueBits, 64);
+                minimumTimestamp = timestamp;
+                maximumTimestamp = timestamp;
+                previousDelta = 0;
+                previousLeading = -1;
+            } else {
+                long delta = timestamp - lastTimestamp;
+                writeDeltaOfDelta(delta - previousDelta);
+                previousDelta = delta;
+                writeXor(valueBits ^ previousValue);
+                minimumTimestamp = Math.min(minimumTimestamp, timestamp);
+                maximumTimestamp = Math.max(maximumTimestamp, timestamp);
+            }
+            lastTimestamp = timestamp;
+            previousValue = valueBits;
+            count++;
+        }
+
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                bits.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                bits.write(0b10, 2);
+                bits.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                bits.write(0b110, 3);
+                bits.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                bits.write(0b1110, 4);
+                bits.write(deltaOfDelta + 2047, 12);
+            } else {
+                bits.write(0b1111, 4);
+                bits.write(deltaOfDelta, 64);
+            }
+        }
+
+        private void writeXor(long xor) {
+            if (xor == 0) {
+                bits.write(0, 1);
+                return;
+            }
+            int leading = Long.numberOfLeadingZeros(xor);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // The meaningful bits fit in the window of the previous value
+                bits.write(0b10, 2);
+                bits.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                bits.write(0b11, 2);
+                bits.write(leading, 6);
+                bits.write(meaningful - 1, 6);
+                bits.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+
+        void reset() {
+            bits.clear();
+            count = 0;
+        }
+    }
+
+    /**
+     * A growable sequence of bits, written most significant bit first.
+     */
+    private static final class BitWriter {
+        private long[] words = new long[64];
+        private long size; // in bits
+
+        /**
+         * Appends the low {@code length} bits of {@code value}, 1 to 64 of them.
+         */
+        void write(long value, int length) {
+            if (length < 64) {
+                value &= (1L << length) - 1;
+            }
+            int word = (int) (size >>> 6);
+            int free = 64 - (int) (size & 63);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (length <= free) {
+                words[word] |= value << (free - length);
+            } else {
+                words[word] |= value >>> (length - free);
+                words[word + 1] |= value << (64 - (length - free));
+            }
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[(int) ((size + 7) >>> 3)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i >>> 3] >>> (56 - 8 * (i & 7)));
+            }
+            return bytes;
+        }
+
+        void clear() {
+            Arrays.fill(words, 0, (int) (size >>> 6) + 1, 0L);
+            size = 0;
+        }
+    }
+}
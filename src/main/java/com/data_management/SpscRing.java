@@ -0,0 +1,107 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free ring buffer for exactly one producer thread and one consumer thread. Each
+ * element carries a timestamp, used by the ingestion pipeline to measure how long elements wait.
+ *
+ * <p>The producer publishes an element by advancing the tail with an ordered write after storing
+ * it, and the consumer frees a slot by advancing the head the same way, so neither side locks or
+ * issues a full fence per element. Each side caches the last position it read of the other, and
+ * only reads it again when the ring looks full or empty.
+ *
+ * @param <E> the type of the elements
+ */
+final class SpscRing<E> {
+    private final Object[] elements;
+    private final long[] stamps;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next position to read, advanced by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next position to write, advanced by the producer
+    private long producerHead; // the head last seen by the producer
+    private long consumerTail; // the tail last seen by the consumer
+    private long polledStamp;  // the stamp of the element last polled, consumer only
+
+    /**
+     * Constructs a ring holding at least the given number of elements, rounded up to a power of two.
+     *
+     * @param capacity the minimum capacity
+     * @throws IllegalArgumentException if the capacity is not positive or too large
+     */
+    SpscRing(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring capacity out of range: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new Object[size];
+        this.stamps = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the number of elements the ring holds when full.
+     */
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Adds an element. Called by the producer only.
+     *
+     * @return {@code false} if the ring is full
+     */
+    boolean offer(E element, long stamp) {
+        long position = tail.get();
+        if (position - producerHead == elements.length) {
+            producerHead = head.get();
+            if (position - producerHead == elements.length) {
+                return false;
+            }
+        }
+        int index = (int) position & mask;
+        elements[index] = element;
+        stamps[index] = stamp;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element. Called by the consumer only.
+     *
+     * @return the element, or {@code null} if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long position = head.get();
+        if (position == consumerTail) {
+            consumerTail = tail.get();
+            if (position == consumerTail) {
+                return null;
+            }
+        }
+        int index = (int) position & mask;
+        E element = (E) elements[index];
+        elements[index] = null;
+        polledStamp = stamps[index];
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * Returns the stamp of the element last returned by {@link #poll()}. Called by the consumer only.
+     */
+    long polledStamp() {
+        return polledStamp;
+    }
+
+    /**
+     * Tells whether the ring is empty. Exact for the consumer, a snapshot for other threads.
+     */
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
@@ -0,0 +1,340 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes compact binary snapshots of the contents of a {@link DataStorage}.
+ *
+ * <p>A snapshot stores the label of every record type it uses, then for every patient each of
+ * its series: the raw timestamp and value columns followed by the rollup tiers. Columns are
+ * copied in bulk, so loading a snapshot costs little more than reading the file sequentially.
+ * The file ends with the CRC32C of its contents. It is written under a temporary name, forced to
+ * disk and then renamed, so a snapshot file is either complete or absent.
+ */
+final class StorageSnapshot {
+    private static final int MAGIC = 0x484d5353; // "HMSS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private StorageSnapshot() {
+        // Static utility, not meant to be instantiated
+    }
+
+    /**
+     * Returns the name of the snapshot file of the given generation. Names sort by generation.
+     *
+     * @param generation the generation of the snapshot, that is the first log file it does not cover
+     * @return the file name
+     */
+    static String fileName(long generation) {
+        return String.format("snapshot-%016d.bin", generation);
+    }
+
+    /**
+     * The series of one patient as captured at a consistent point in time.
+     */
+    static final class PatientImage {
+        final int patientId;
+        final TimeSeries.Snapshot[] raw;
+        final Rollup[][] rollups;
+
+        PatientImage(int patientId, TimeSeries.Snapshot[] raw, Rollup[][] rollups) {
+            this.patientId = patientId;
+            this.raw = raw;
+            this.rollups = rollups;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the captured patients.
+     *
+     * @param file     the snapshot file to create
+     * @param patients the captured patients
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(Path file, List<PatientImage> patients) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Output out = new Output(FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+
+            boolean[] used = new boolean[0];
+            for (PatientImage patient : patients) {
+                for (TimeSeries.Snapshot series : patient.raw) {
+                    if (series.typeId() >= used.length) {
+                        used = Arrays.copyOf(used, series.typeId() + 1);
+                    }
+                    used[series.typeId()] = true;
+                }
+            }
+            int typeCount = 0;
+            for (boolean isUsed : used) {
+                typeCount += isUsed ? 1 : 0;
+            }
+            out.putInt(typeCount);
+            for (int typeId = 0; typeId < used.length; typeId++) {
+                if (used[typeId]) {
+                    byte[] label = RecordTypes.nameOf(typeId).getBytes(StandardCharsets.UTF_8);
+                    out.putInt(typeId);
+                    out.putInt(label.length);
+                    out.putBytes(label);
+                }
+            }
+
+            out.putInt(patients.size());
+            for (PatientImage patient : patients) {
+                out.putInt(patient.patientId);
+                out.putInt(patient.raw.length);
+                for (int s = 0; s < patient.raw.length; s++) {
+                    TimeSeries.writeTo(out, patient.raw[s], patient.rollups[s]);
+                }
+            }
+            out.finish();
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads a snapshot into the storage, which must not hold any of its patients yet.
+     *
+     * @param file    the snapshot file
+     * @param storage the storage to restore the patients into
+     * @return the number of raw readings restored
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    static long read(Path file, DataStorage storage) throws IOException {
+        long readings = 0;
+        try (Input in = new Input(FileChannel.open(file, StandardOpenOption.READ), file)) {
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a snapshot of a supported format: " + file);
+            }
+            int typeCount = in.getInt();
+            int[] typeIds = new int[0]; // ids of the writing process to ids of this one
+            for (int t = 0; t < typeCount; t++) {
+                int typeId = in.getInt();
+                byte[] label = new byte[in.getInt()];
+                in.getBytes(label);
+                if (typeId >= typeIds.length) {
+                    typeIds = Arrays.copyOf(typeIds, typeId + 1);
+                }
+                typeIds[typeId] = RecordTypes.idOf(new String(label, StandardCharsets.UTF_8));
+            }
+
+            int patientCount = in.getInt();
+            for (int p = 0; p < patientCount; p++) {
+                Patient patient = storage.restorePatient(in.getInt());
+                int seriesCount = in.getInt();
+                for (int s = 0; s < seriesCount; s++) {
+                    TimeSeries series = TimeSeries.readFrom(in, typeIds);
+                    readings += series.size();
+                    patient.restore(series);
+                }
+            }
+            in.verify();
+        }
+        return readings;
+    }
+
+    /**
+     * Buffered output of primitives and primitive columns that keeps a running checksum.
+     */
+    static final class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void putLongs(long[] values, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asLongBuffer().put(values, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+
+        void putDoubles(double[] values, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asDoubleBuffer().put(values, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Appends the checksum and forces the file to disk.
+         */
+        void finish() throws IOException {
+            drain();
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Buffered input of primitives and primitive columns that verifies the checksum.
+     */
+    static final class Input implements AutoCloseable {
+        private final FileChannel channel;
+        private final Path file;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+        private final long contentSize; // the size of the file without the trailing checksum
+        private long consumed; // bytes of the content read into the buffer so far
+
+        Input(FileChannel channel, Path file) throws IOException {
+            this.channel = channel;
+            this.file = file;
+            this.contentSize = channel.size() - 4;
+            if (contentSize < 0) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        void getBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void getLongs(long[] values, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asLongBuffer().get(values, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+
+        void getDoubles(double[] values, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int length = Math.min(buffer.remaining() / 8, to - from);
+                buffer.asDoubleBuffer().get(values, from, length);
+                buffer.position(buffer.position() + length * 8);
+                from += length;
+            }
+        }
+
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            buffer.compact();
+            int limit = (int) Math.min(buffer.capacity(), buffer.position() + contentSize - consumed);
+            buffer.limit(limit);
+            int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, consumed + buffer.position() - start) < 0) {
+                    break;
+                }
+            }
+            ByteBuffer read = buffer.duplicate();
+            read.flip().position(start);
+            checksum.update(read);
+            consumed += buffer.position() - start;
+            buffer.flip();
+            if (buffer.remaining() < size) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+        }
+
+        /**
+         * Checks that the whole content was read and matches the trailing checksum.
+         */
+        void verify() throws IOException {
+            if (buffer.hasRemaining() || consumed != contentSize) {
+                throw new IOException("Snapshot has trailing data: " + file);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, contentSize + trailer.position()) < 0) {
+                    throw new IOException("Snapshot is truncated: " + file);
+                }
+            }
+            if (trailer.getInt(0) != (int) checksum.getValue()) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Stores the readings of one record type for one patient as parallel primitive columns.
+ * Timestamps live in a growable {@code long[]} and values in a growable {@code double[]},
+ * so a scalar reading costs 16 bytes instead of a boxed {@link PatientRecord}.
+ * Multi-valued readings such as blood pressure use a fixed-width value column where
+ * reading {@code i} occupies {@code values[i * width] .. values[i * width + width - 1]}.
+ *
+ * <p>Readings are kept sorted by timestamp. In-order readings are appended at the end. A late
+ * reading (e.g. a delayed WebSocket message, or a reading of another simulation shard) goes to a
+ * small sorted side buffer of late readings instead, after every late reading with the same or an
+ * earlier timestamp, so range lookups can use binary search on both. Views merge the two. Once
+ * the side buffer holds about the square root of the size of the series, it is folded into the
+ * columns in one merge, so a late reading costs O(sqrt n) amortized rather than a copy of the
+ * series; compaction and persistence snapshots fold it in as well.
+ *
+ * <p>A series has a single writer at a time (the owning {@link Patient} serializes its writers)
+ * and any number of lock-free readers. Readers work on a {@link Snapshot}: appends write past the
+ * published size of the current columns, so existing snapshots never observe them, while the side
+ * buffer is replaced rather than modified and folding merges into new columns. A version counter,
+ * odd while new columns are being published, lets {@link #snapshot()} read the columns, the size
+ * and the side buffer as one consistent set.
+ *
+ * <p>Under a {@link RetentionPolicy}, {@link #compact(RetentionPolicy, long)} rolls readings that
+ * are older than the raw retention into the {@link Rollup} tiers of the series and evicts them.
+ */
+final class TimeSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_LATE_CAPACITY = 64; // late readings held before folding into a small series
+    private static final Rollup[] NO_ROLLUPS = new Rollup[0];
+
+    private final int typeId;
+    private final int width; // 0 for scalar readings, the number of values per reading otherwise
+    private volatile long[] timestamps;
+    private volatile double[] values;
+    private volatile int size;
+    private volatile int version;
+    private volatile Snapshot late; // the late readings not yet folded into the columns, or null
+    private volatile Rollup[] rollups = NO_ROLLUPS; // finest tier first
+
+    /**
+     * Constructs an empty series.
+     *
+     * @param typeId the interned id of the record type, see {@link RecordTypes}
+     * @param width  0 for a scalar series, or the number of values stored per reading
+     */
+    TimeSeries(int typeId, int width) {
+        this.typeId = typeId;
+        this.width = width;
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY * stride()];
+    }
+
+    /**
+     * Constructs a series holding restored columns.
+     */
+    private TimeSeries(int typeId, int width, long[] timestamps, double[] values, int size, Rollup[] rollups) {
+        this.typeId = typeId;
+        this.width = width;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+        this.rollups = rollups;
+    }
+
+    /**
+     * Writes the raw readings and rollup tiers of a series to a snapshot, in the form read by
+     * {@link #readFrom(StorageSnapshot.Input, int[])}.
+     *
+     * @param out     the snapshot output
+     * @param raw     the raw readings of the series
+     * @param rollups the rollup tiers of the series, taken after {@code raw}
+     * @throws IOException if writing fails
+     */
+    static void writeTo(StorageSnapshot.Output out, Snapshot raw, Rollup[] rollups) throws IOException {
+        int stride = raw.width == 0 ? 1 : raw.width;
+        out.putInt(raw.typeId);
+        out.putInt(raw.width);
+        out.putInt(raw.size);
+        out.putLongs(raw.timestamps, 0, raw.size);
+        out.putDoubles(raw.values, 0, raw.size * stride);
+        out.putInt(rollups.length);
+        for (Rollup tier : rollups) {
+            tier.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a series written by {@link #writeTo(StorageSnapshot.Output, Snapshot, Rollup[])}.
+     *
+     * @param in      the snapshot input
+     * @param typeIds the record type ids of this process, indexed by those of the snapshot
+     * @return the restored series
+     * @throws IOException if reading fails
+     */
+    static TimeSeries readFrom(StorageSnapshot.Input in, int[] typeIds) throws IOException {
+        int typeId = typeIds[in.getInt()];
+        int width = in.getInt();
+        int size = in.getInt();
+        int stride = width == 0 ? 1 : width;
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        long[] timestamps = new long[capacity];
+        double[] values = new double[capacity * stride];
+        in.getLongs(timestamps, 0, size);
+        in.getDoubles(values, 0, size * stride);
+        Rollup[] rollups = new Rollup[in.getInt()];
+        for (int tier = 0; tier < rollups.length; tier++) {
+            rollups[tier] = Rollup.readFrom(in, typeId, width);
+        }
+        return new TimeSeries(typeId, width, timestamps, values, size, rollups.length == 0 ? NO_ROLLUPS : rollups);
+    }
+
+    /**
+     * Appends a scalar reading to this series.
+     *
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     * @param value     the measured value
+     */
+    void append(long timestamp, double value) {
+        if (isLate(timestamp)) {
+            appendLate(timestamp, value, null);
+            return;
+        }
+        int index = makeRoom();
+        timestamps[index] = timestamp;
+        values[index] = value;
+        size = index + 1;
+    }
+
+    /**
+     * Appends a multi-valued reading to this series.
+     *
+     * @param timestamp the time of the reading, in milliseconds since the Unix epoch
+     * @param readings  the measured values, exactly {@link #width()} of them
+     * @throws IllegalArgumentException if the number of values does not match the width of this series
+     */
+    void append(long timestamp, double[] readings) {
+        if (readings.length != width) {
+            throw new IllegalArgumentException("Record type " + RecordTypes.nameOf(typeId) + " expects "
+                    + width + " values per reading but got " + readings.length);
+        }
+        if (isLate(timestamp)) {
+            appendLate(timestamp, 0, readings);
+            return;
+        }
+        int index = makeRoom();
+        timestamps[index] = timestamp;
+        System.arraycopy(readings, 0, values, index * width, width);
+        size = index + 1;
+    }
+
+    int typeId() {
+        return typeId;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int size() {
+        Snapshot pending = late;
+        return size + (pending == null ? 0 : pending.size);
+    }
+
+    /**
+     * Returns a consistent, immutable view of the readings published so far. The late readings
+     * not yet folded into the columns are in {@link Snapshot#late()}.
+     *
+     * @return a snapshot of this series
+     */
+    Snapshot snapshot() {
+        while (true) {
+            int before = version;
+            int published = size; // read before the columns, which are always published first
+            long[] currentTimestamps = timestamps;
+            double[] currentValues = values;
+            Snapshot pending = late;
+            if ((before & 1) == 0 && version == before) {
+                return new Snapshot(typeId, width, currentTimestamps, currentValues, published, pending);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the rollup tiers of this series, finest first. Read them after taking a
+     * {@link #snapshot()}: compaction publishes the tiers before evicting raw readings, so the
+     * pair may overlap but never misses readings.
+     *
+     * @return the current rollup tiers
+     */
+    Rollup[] rollups() {
+        return rollups;
+    }
+
+    /**
+     * Rolls the readings older than the raw retention of the policy into the rollup tiers,
+     * evicts them, and drops the buckets that have outlived the retention of their tier.
+     * Must be called by the single writer of this series.
+     *
+     * @param policy the retention policy of the record type
+     * @param now    the current time, in milliseconds since the Unix epoch
+     */
+    void compact(RetentionPolicy policy, long now) {
+        if (late != null) {
+            fold();
+        }
+        Snapshot raw = snapshot();
+        int evicted = raw.lowerBound(policy.rawCutoff(now));
+
+        Rollup[] current = rollups;
+        Rollup[] updated = new Rollup[policy.getTierCount()];
+        for (int tier = 0; tier < updated.length; tier++) {
+            Rollup rollup = tier < current.length && current[tier].resolution() == policy.getResolution(tier)
+                    ? current[tier]
+                    : Rollup.empty(typeId, width, policy.getResolution(tier));
+            updated[tier] = rollup.merge(raw, 0, evicted).expire(policy.tierCutoff(tier, now));
+        }
+        rollups = updated;
+
+        if (evicted > 0) {
+            int stride = stride();
+            int remaining = raw.size() - evicted;
+            int capacity = Math.max(INITIAL_CAPACITY, grow(remaining));
+            long[] keptTimestamps = new long[capacity];
+            double[] keptValues = new double[capacity * stride];
+            System.arraycopy(timestamps, evicted, keptTimestamps, 0, remaining);
+            System.arraycopy(values, evicted * stride, keptValues, 0, remaining * stride);
+
+            version++;
+            timestamps = keptTimestamps;
+            values = keptValues;
+            size = remaining;
+            version++;
+        }
+    }
+
+    /**
+     * Tells whether a reading is earlier than the last reading of the columns, and so goes to the
+     * side buffer.
+     */
+    private boolean isLate(long timestamp) {
+        int count = size;
+        return count > 0 && timestamps[count - 1] > timestamp;
+    }
+
+    /**
+     * Returns the position at which the next in-order reading is to be written, making sure the
+     * columns can hold it. It is published by setting the size past it.
+     */
+    private int makeRoom() {
+        int count = size;
+        long[] currentTimestamps = timestamps;
+        if (count == currentTimestamps.length) {
+            int capacity = grow(count);
+            timestamps = Arrays.copyOf(currentTimestamps, capacity);
+            values = Arrays.copyOf(values, capacity * stride());
+        }
+        return count;
+    }
+
+    /**
+     * Publishes a copy of the side buffer holding a late reading, after every late reading with
+     * the same or an earlier timestamp, and folds the side buffer into the columns once it is
+     * full. The copy holds a few hundred readings at most, and snapshots keep the side buffer they
+     * were taken with.
+     *
+     * @param readings the values of a multi-valued reading, or {@code null} for a scalar one
+     */
+    private void appendLate(long timestamp, double value, double[] readings) {
+        Snapshot pending = late;
+        int count = pending == null ? 0 : pending.size;
+        int index = pending == null ? 0 : pending.upperBound(timestamp);
+        int stride = stride();
+        long[] lateTimestamps = new long[count + 1];
+        double[] lateValues = new double[(count + 1) * stride];
+        if (pending != null) {
+            System.arraycopy(pending.timestamps, 0, lateTimestamps, 0, index);
+            System.arraycopy(pending.timestamps, index, lateTimestamps, index + 1, count - index);
+            System.arraycopy(pending.values, 0, lateValues, 0, index * stride);
+            System.arraycopy(pending.values, index * stride, lateValues, (index + 1) * stride, (count - index) * stride);
+        }
+        lateTimestamps[index] = timestamp;
+        if (readings == null) {
+            lateValues[index] = value;
+        } else {
+            System.arraycopy(readings, 0, lateValues, index * stride, stride);
+        }
+        late = new Snapshot(typeId, width, lateTimestamps, lateValues, count + 1, null);
+
+        if (count + 1 >= Math.max(MIN_LATE_CAPACITY, (int) Math.sqrt(size))) {
+            fold();
+        }
+    }
+
+    /**
+     * Merges the side buffer into new columns and publishes them.
+     */
+    private void fold() {
+        Snapshot merged = snapshot().merge(Math.max(INITIAL_CAPACITY, grow(size())));
+
+        version++;
+        timestamps = merged.timestamps;
+        values = merged.values;
+        size = merged.size;
+        late = null;
+        version++;
+    }
+
+    private int stride() {
+        return width == 0 ? 1 : width;
+    }
+
+    private static int grow(int capacity) {
+        return Math.max(capacity + 1, capacity + (capacity >> 1));
+    }
+
+    /**
+     * An immutable view of the first {@code size} readings of a series, and of the late readings
+     * not yet folded into them. Snapshots share the columns of the series without copying them.
+     * The positions, sizes and bounds of a snapshot are those of its columns; the late readings
+     * are a snapshot of their own.
+     */
+    static final class Snapshot implements RecordColumns {
+        private final int typeId;
+        private final int width;
+        private final long[] timestamps;
+        private final double[] values;
+        private final int size;
+        private final Snapshot late;
+
+        Snapshot(int typeId, int width, long[] timestamps, double[] values, int size) {
+            this(typeId, width, timestamps, values, size, null);
+        }
+
+        Snapshot(int typeId, int width, long[] timestamps, double[] values, int size, Snapshot late) {
+            this.typeId = typeId;
+            this.width = width;
+            this.timestamps = timestamps;
+            this.values = values;
+            this.size = size;
+            this.late = late;
+        }
+
+        /**
+         * Returns the late readings of the series not yet folded into the columns of this
+         * snapshot.
+         *
+         * @return the late readings, sorted by timestamp, or {@code null} if there are none
+         */
+        Snapshot late() {
+            return late;
+        }
+
+        /**
+         * Returns this snapshot with its late readings merged into its columns, copying them if
+         * there are late readings.
+         *
+         * @return a snapshot without late readings
+         */
+        Snapshot merged() {
+            return late == null ? this : merge(size + late.size);
+        }
+
+        /**
+         * Merges the columns and the late readings of this snapshot into new columns of the
+         * given capacity. Ties keep the readings of the columns first, as they were received
+         * earlier.
+         */
+        private Snapshot merge(int capacity) {
+            int stride = width == 0 ? 1 : width;
+            int lateSize = late == null ? 0 : late.size;
+            int total = size + lateSize;
+            long[] mergedTimestamps = new long[capacity];
+            double[] mergedValues = new double[capacity * stride];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < total; k++) {
+                if (j == lateSize || i < size && timestamps[i] <= late.timestamps[j]) {
+                    mergedTimestamps[k] = timestamps[i];
+                    System.arraycopy(values, i * stride, mergedValues, k * stride, stride);
+                    i++;
+                } else {
+                    mergedTimestamps[k] = late.timestamps[j];
+                    System.arraycopy(late.values, j * stride, mergedValues, k * stride, stride);
+                    j++;
+                }
+            }
+            return new Snapshot(typeId, width, mergedTimestamps, mergedValues, total);
+        }
+
+        int typeId() {
+            return typeId;
+        }
+
+        int width() {
+            return width;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Override
+        public long timestampAt(int index) {
+            return timestamps[index];
+        }
+
+        double valueAt(int index) {
+            return values[index];
+        }
+
+        /**
+         * Returns one value of a reading; component 0 of a scalar reading is its value.
+         *
+         * @param index     the position of the reading in this series
+         * @param component the position of the value within the reading
+         * @return the value
+         */
+        double valueAt(int index, int component) {
+            return values[index * (width == 0 ? 1 : width) + component];
+        }
+
+        /**
+         * Returns a copy of the values of a multi-valued reading.
+         *
+         * @param index the position of the reading in this series
+         * @return a new array holding the values of the reading
+         */
+        double[] valuesAt(int index) {
+            int from = index * width;
+            return Arrays.copyOfRange(values, from, from + width);
+        }
+
+        /**
+         * Returns the position of the first reading whose timestamp is not before {@code timestamp},
+         * or {@link #size()} if there is none.
+         *
+         * @param timestamp the timestamp to look up, in milliseconds since the Unix epoch
+         * @return the lower bound of {@code timestamp} in this series
+         */
+        int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the position of the first reading whose timestamp is after {@code timestamp},
+         * or {@link #size()} if there is none.
+         *
+         * @param timestamp the timestamp to look up, in milliseconds since the Unix epoch
+         * @return the upper bound of {@code timestamp} in this series
+         */
+        int upperBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Materializes the reading at the given position as a {@link PatientRecord}.
+         *
+         * @param patientId the patient the series belongs to
+         * @param index     the position of the reading in this series
+         * @return a record holding the reading
+         */
+        @Override
+        public PatientRecord recordAt(int patientId, int index) {
+            String recordType = RecordTypes.nameOf(typeId);
+            if (width == 0) {
+                return new PatientRecord(patientId, values[index], recordType, timestamps[index]);
+            }
+            return new PatientRecord(patientId, valuesAt(index), recordType, timestamps[index]);
+        }
+    }
+}
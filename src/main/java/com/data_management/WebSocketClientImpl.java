@@ -4,6 +4,7 @@ import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.URISyntaxException;
 
 /**
@@ -11,7 +12,9 @@ import java.net.URISyntaxException;
  * It connects to a WebSocket server, receives messages, processes them, and stores the processed data in {@link DataStorage}.
  */
 public class WebSocketClientImpl extends WebSocketClient {
-    private final DataStorage dataStorage;
+    private final MessageIngestor ingestor; // null when a pipeline ingests the messages
+    private final IngestionPipeline pipeline;
+    private final boolean binary;
 
     /**
      * Constructs a new {@code WebSocketClientImpl}.
@@ -21,8 +24,41 @@ public class WebSocketClientImpl extends WebSocketClient {
      * @throws URISyntaxException If the serverUri is not a valid URI.
      */
     public WebSocketClientImpl(String serverUri, DataStorage dataStorage) throws URISyntaxException {
+        this(serverUri, dataStorage, false);
+    }
+
+    /**
+     * Constructs a new {@code WebSocketClientImpl} that optionally asks the server for the binary
+     * wire protocol described in {@link WireEncoder} once connected.
+     *
+     * @param serverUri   The URI of the WebSocket server to connect to.
+     * @param dataStorage The DataStorage instance to store the processed data.
+     * @param binary      Whether to ask the server for binary frames instead of text.
+     * @throws URISyntaxException If the serverUri is not a valid URI.
+     */
+    public WebSocketClientImpl(String serverUri, DataStorage dataStorage, boolean binary) throws URISyntaxException {
         super(new URI(serverUri));
-        this.dataStorage = dataStorage;
+        this.ingestor = new MessageIngestor(dataStorage);
+        this.pipeline = null;
+        this.binary = binary;
+    }
+
+    /**
+     * Constructs a new {@code WebSocketClientImpl} that hands the received messages to an
+     * {@link IngestionPipeline} instead of parsing and storing them on its read thread, so that
+     * the storage cannot hold up reading the socket. The pipeline must not be shared with other
+     * clients, and is not closed with the connection.
+     *
+     * @param serverUri The URI of the WebSocket server to connect to.
+     * @param pipeline  The pipeline that parses and stores the messages.
+     * @param binary    Whether to ask the server for binary frames instead of text.
+     * @throws URISyntaxException If the serverUri is not a valid URI.
+     */
+    public WebSocketClientImpl(String serverUri, IngestionPipeline pipeline, boolean binary) throws URISyntaxException {
+        super(new URI(serverUri));
+        this.ingestor = null;
+        this.pipeline = pipeline;
+        this.binary = binary;
     }
 
     /**
@@ -33,6 +69,9 @@ public class WebSocketClientImpl extends WebSocketClient {
     @Override
     public void onOpen(ServerHandshake serverHandshake) {
         System.out.println("Connected to WebSocket server");
+        if (binary) {
+            send(WireEncoder.NEGOTIATION_MESSAGE);
+        }
     }
 
     /**
@@ -50,6 +89,20 @@ public class WebSocketClientImpl extends WebSocketClient {
         }
     }
 
+    /**
+     * Callback method invoked when a binary message is received from the WebSocket server.
+     *
+     * @param bytes the frames of the received message
+     */
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        if (pipeline != null) {
+            pipeline.offer(bytes);
+        } else {
+            ingestor.ingest(bytes);
+        }
+    }
+
     /**
      * Callback method invoked when the WebSocket connection is closed.
      *
@@ -75,43 +128,16 @@ public class WebSocketClientImpl extends WebSocketClient {
 
     /**
      * Processes the message received from the WebSocket server and stores the data in the data storage.
-     * The message format is assumed to be: patientId,timestamp,label,data.
+     * The message format is assumed to be: patientId,timestamp,label,data, with several
+     * readings in one message separated by line breaks.
      *
      * @param message the message received from the WebSocket server
      */
     private void processMessage(String message) {
-        String[] parts = message.split(",");
-        if (parts.length != 4) {
-            System.err.println("Invalid message format: " + message);
-            return;
-        }
-
-        int patientId;
-        try {
-            patientId = Integer.parseInt(parts[0]);
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid patient ID: " + parts[0]);
-            return;
-        }
-
-        long timestamp;
-        try {
-            timestamp = Long.parseLong(parts[1]);
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid timestamp: " + parts[1]);
-            return;
+        if (pipeline != null) {
+            pipeline.offer(message);
+        } else {
+            ingestor.ingest(message);
         }
-
-        String recordType = parts[2];
-        double measurementValue;
-        try {
-            measurementValue = Double.parseDouble(parts[3]);
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid measurement value: " + parts[3]);
-            return;
-        }
-
-        // Store the data in DataStorage
-        dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
     }
 }
@@ -4,17 +4,37 @@ import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.URISyntaxException;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The {@code WebSocketDataReader} class implements the {@link DataReader} interface.
  * It reads patient data from a WebSocket server and stores it in a {@link DataStorage} instance.
+ *
+ * <p>When the connection is lost or cannot be established, the reader connects again after a
+ * delay that doubles with every failed attempt, from {@value #INITIAL_BACKOFF_MILLIS} ms up to
+ * {@value #MAX_BACKOFF_MILLIS} ms, of which a random half is taken so that readers disconnected
+ * together do not reconnect together. Once reconnected, the reader sends the latest timestamp it
+ * stored per patient and label, as described in {@link ResumePoints}, and a server keeping a
+ * history replays the readings missed in between. Reconnecting stops with {@link #close()}.
  */
-public class WebSocketDataReader implements DataReader {
+public class WebSocketDataReader implements DataReader, AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
 
     private final WebSocketClient webSocketClient;
-    private final DataStorage dataStorage;
+    private final MessageIngestor ingestor;
+    private final ResumePoints resumePoints = new ResumePoints();
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private final AtomicInteger reconnects = new AtomicInteger();
+    private ScheduledExecutorService reconnector; // created by readData
+    private volatile boolean closed;
 
     /**
      * Constructs a new {@code WebSocketDataReader} with the specified server URI and data storage.
@@ -25,7 +45,21 @@ public class WebSocketDataReader implements DataReader {
      * @throws URISyntaxException if the server URI is not a valid URI
      */
     public WebSocketDataReader(String serverUri, DataStorage dataStorage) throws URISyntaxException {
-        this.dataStorage = dataStorage;
+        this(serverUri, dataStorage, false);
+    }
+
+    /**
+     * Constructs a new {@code WebSocketDataReader} that optionally asks the server for the binary
+     * wire protocol described in {@link WireEncoder} once connected. Text messages are still
+     * accepted, so a server without binary support keeps working.
+     *
+     * @param serverUri    the URI of the WebSocket server
+     * @param dataStorage  the data storage system to store the received data
+     * @param binary       whether to ask the server for binary frames instead of text
+     * @throws URISyntaxException if the server URI is not a valid URI
+     */
+    public WebSocketDataReader(String serverUri, DataStorage dataStorage, boolean binary) throws URISyntaxException {
+        this.ingestor = new MessageIngestor(dataStorage, resumePoints);
 
         // Initialize WebSocketClient with the provided server URI
         this.webSocketClient = new WebSocketClient(new URI(serverUri)) {
@@ -37,6 +71,13 @@ public class WebSocketDataReader implements DataReader {
             @Override
             public void onOpen(ServerHandshake handshakedata) {
                 System.out.println("Connected to WebSocket server");
+                failedAttempts.set(0);
+                if (binary) {
+                    send(WireEncoder.NEGOTIATION_MESSAGE);
+                }
+                if (!resumePoints.isEmpty()) {
+                    send(resumePoints.toMessage());
+                }
             }
 
             /**
@@ -49,6 +90,16 @@ public class WebSocketDataReader implements DataReader {
                 processMessage(message);
             }
 
+            /**
+             * Callback method invoked when a binary message is received from the WebSocket server.
+             *
+             * @param bytes the frames of the received message
+             */
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                ingestor.ingest(bytes);
+            }
+
             /**
              * Callback method invoked when the WebSocket connection is closed.
              *
@@ -59,6 +110,7 @@ public class WebSocketDataReader implements DataReader {
             @Override
             public void onClose(int code, String reason, boolean remote) {
                 System.out.println("Disconnected from WebSocket server");
+                scheduleReconnect();
             }
 
             /**
@@ -68,7 +120,12 @@ public class WebSocketDataReader implements DataReader {
              */
             @Override
             public void onError(Exception ex) {
-                ex.printStackTrace();
+                if (ex instanceof IOException) {
+                    // Network errors are followed by a reconnect
+                    System.err.println("WebSocket error: " + ex);
+                } else {
+                    ex.printStackTrace();
+                }
             }
         };
     }
@@ -81,33 +138,90 @@ public class WebSocketDataReader implements DataReader {
      */
     @Override
     public void readData(DataStorage dataStorage) throws IOException {
+        synchronized (this) {
+            if (reconnector == null) {
+                reconnector = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "websocket-reconnect");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
         this.webSocketClient.connect();
     }
 
     /**
-     * Processes the message received from the WebSocket server and stores the data in the data storage.
-     * The message format is assumed to be: patientId,timestamp,label,data.
-     *
-     * @param message the message received from the WebSocket server
+     * Connects again after a backoff delay, unless the reader is closed. Called when the
+     * connection is closed, also when connecting failed.
      */
-    public void processMessage(String message) {
-        // Assuming the message format is: patientId,timestamp,label,data
-        String[] parts = message.split(",");
-        if (parts.length != 4) {
-            System.err.println("Invalid message format: " + message);
+    private synchronized void scheduleReconnect() {
+        if (closed || reconnector == null) {
             return;
         }
+        long delay = backoffMillis(failedAttempts.getAndIncrement());
+        System.out.println("Reconnecting to WebSocket server in " + delay + " ms");
+        reconnector.schedule(() -> {
+            if (!closed) {
+                reconnects.incrementAndGet();
+                // Not called on the threads of the connection, which reconnect() waits for
+                webSocketClient.reconnect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the delay before a reconnect attempt: exponential backoff with equal jitter, a
+     * random value between half and all of the backoff.
+     */
+    private static long backoffMillis(int failedAttempts) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failedAttempts, 16));
+        return ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+    }
+
+    /**
+     * Returns the number of reconnect attempts made, successful or not.
+     *
+     * @return the number of reconnect attempts
+     */
+    public int getReconnectCount() {
+        return reconnects.get();
+    }
+
+    /**
+     * Tells whether the reader is connected to the server.
+     *
+     * @return {@code true} if the connection is open
+     */
+    public boolean isConnected() {
+        return webSocketClient.isOpen();
+    }
+
+    /**
+     * Stops reconnecting and closes the connection.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (reconnector != null) {
+                reconnector.shutdownNow();
+            }
+        }
         try {
-            int patientId = Integer.parseInt(parts[0]);
-            long timestamp = Long.parseLong(parts[1]);
-            String recordType = parts[2];
-            double measurementValue = Double.parseDouble(parts[3]);
-
-            // Store the data in DataStorage
-            dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-        } catch (NumberFormatException e) {
-            System.err.println("Error parsing message: " + message);
-            e.printStackTrace();
+            webSocketClient.closeBlocking();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Processes the message received from the WebSocket server and stores the data in the data storage.
+     * The message format is assumed to be: patientId,timestamp,label,data, with several
+     * readings in one message separated by line breaks.
+     *
+     * @param message the message received from the WebSocket server
+     */
+    public void processMessage(String message) {
+        ingestor.ingest(message);
+    }
 }
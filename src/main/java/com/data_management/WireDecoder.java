@@ -0,0 +1,134 @@
+package com.data_management;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes frames of the binary wire protocol written by {@link WireEncoder} and hands the readings
+ * to a {@link RecordParser.Sink}. The decoder keeps the label dictionary of one stream, so each
+ * connection needs its own decoder.
+ *
+ * <p>A frame split across buffers, as happens on a TCP stream, is left in the buffer until the
+ * rest of it arrives; the readings of a batch frame reach the sink only once the whole frame has
+ * been read. A decoder is not thread-safe.
+ */
+public final class WireDecoder {
+    private static final int MIN_READING_BYTES = 4 + 1 + 1 + 8;
+
+    private final RecordParser.Sink sink;
+    private String[] labels = new String[16]; // interned, by label id
+    private int[] patientIds = new int[64];
+    private long[] timestamps = new long[64];
+    private String[] batchLabels = new String[64];
+    private double[] values = new double[64];
+
+    /**
+     * Constructs a decoder for one stream.
+     *
+     * @param sink receives the decoded readings
+     */
+    public WireDecoder(RecordParser.Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Decodes the complete frames at the position of a buffer. The position is left at the start
+     * of the first incomplete frame, or at the limit if every frame was complete.
+     *
+     * @param buffer the bytes received
+     * @return the number of readings decoded
+     * @throws IllegalArgumentException if the bytes are not valid frames, after which the stream
+     *                                  cannot be decoded any further
+     */
+    public int decode(ByteBuffer buffer) {
+        int readings = 0;
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            try {
+                byte type = buffer.get();
+                if (type == WireEncoder.DICTIONARY_FRAME) {
+                    readDictionaryFrame(buffer);
+                } else if (type == WireEncoder.READINGS_FRAME) {
+                    readings += readReadingsFrame(buffer);
+                } else {
+                    throw new IllegalArgumentException("Unknown frame type " + type + " at offset " + start);
+                }
+            } catch (BufferUnderflowException e) {
+                buffer.position(start);
+                break;
+            }
+        }
+        return readings;
+    }
+
+    private void readDictionaryFrame(ByteBuffer buffer) {
+        int id = readUnsignedInt(buffer);
+        int length = readUnsignedInt(buffer);
+        if (buffer.remaining() < length) {
+            throw new BufferUnderflowException();
+        }
+        byte[] name = new byte[length];
+        buffer.get(name);
+        if (id >= labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(id + 1, labels.length * 2));
+        }
+        labels[id] = RecordTypes.nameOf(RecordTypes.idOf(new String(name, StandardCharsets.UTF_8)));
+    }
+
+    private int readReadingsFrame(ByteBuffer buffer) {
+        int count = readUnsignedInt(buffer);
+        long timestamp = unzigzag(readVarint(buffer));
+        if ((long) count * MIN_READING_BYTES > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (count > patientIds.length) {
+            int capacity = Math.max(count, patientIds.length * 2);
+            patientIds = new int[capacity];
+            timestamps = new long[capacity];
+            batchLabels = new String[capacity];
+            values = new double[capacity];
+        }
+        // Decode the whole frame before emitting, so a truncated frame can be read again later
+        for (int i = 0; i < count; i++) {
+            patientIds[i] = buffer.getInt();
+            timestamp += unzigzag(readVarint(buffer));
+            timestamps[i] = timestamp;
+            int labelId = readUnsignedInt(buffer);
+            if (labelId >= labels.length || labels[labelId] == null) {
+                throw new IllegalArgumentException("Undefined label id " + labelId);
+            }
+            batchLabels[i] = labels[labelId];
+            values[i] = buffer.getDouble();
+        }
+        for (int i = 0; i < count; i++) {
+            sink.accept(patientIds[i], values[i], batchLabels[i], timestamps[i]);
+        }
+        return count;
+    }
+
+    private static int readUnsignedInt(ByteBuffer buffer) {
+        long value = readVarint(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of range: " + Long.toUnsignedString(value));
+        }
+        return (int) value;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 10 bytes");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
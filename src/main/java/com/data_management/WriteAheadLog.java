@@ -0,0 +1,422 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only binary log of the readings added to a {@link DataStorage}, written ahead of
+ * the in-memory storage so that the readings survive a restart.
+ *
+ * <p>Appends only copy the encoded reading into an in-memory buffer. A committer thread writes
+ * the buffer to the current log file and forces it to disk once per commit interval, or earlier
+ * when the buffer fills up, so all readings appended within an interval share one write and one
+ * {@code fsync} (group commit). Appending threads do not wait for the disk; a crash loses at most
+ * the readings of the last commit interval. {@link #sync()} waits until everything appended so
+ * far is durable.
+ *
+ * <p>Each commit is written as one block: its payload length, the CRC32C of the payload, and
+ * the payload of whole entries. Replay stops at the first incomplete or corrupt block, which is
+ * how a write torn by a crash shows up. Entries refer to record types by the ids of the writing
+ * process; the first use of a type in a file is preceded by an entry defining its label.
+ *
+ * <p>The log is split into numbered files, one generation per file; {@link #rotate(long)}
+ * starts a new file so that the older ones can be dropped once a snapshot covers them.
+ */
+final class WriteAheadLog implements AutoCloseable {
+    static final int MAX_BLOCK_SIZE = 1 << 20;
+
+    private static final byte TYPE_DEFINITION = 1;
+    private static final byte SCALAR_READING = 2;
+    private static final byte VECTOR_READING = 3;
+    private static final int SCALAR_READING_SIZE = 1 + 4 + 4 + 8 + 8;
+
+    private final Path directory;
+    private final long commitIntervalNanos;
+    private final Thread committer;
+    private final CRC32C checksum = new CRC32C(); // used by the committer only
+    private final ByteBuffer header = ByteBuffer.allocate(8); // used by the committer only
+
+    // Guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(MAX_BLOCK_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(MAX_BLOCK_SIZE);
+    private FileChannel channel;
+    private boolean[] definedTypes = new boolean[16]; // record type ids defined in the current file
+    private long appended; // number of entries appended
+    private long committed; // number of entries written and forced to disk
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Opens a new log file of the given generation and starts the committer thread.
+     *
+     * @param directory      the directory holding the log files
+     * @param generation     the generation of the first log file; the file must not exist yet
+     * @param commitInterval the longest time an appended reading waits before it is committed
+     * @param unit           the time unit of {@code commitInterval}
+     * @throws IOException if the log file cannot be created
+     */
+    WriteAheadLog(Path directory, long generation, long commitInterval, TimeUnit unit) throws IOException {
+        this.directory = directory;
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+        this.channel = open(directory, generation);
+        this.committer = new Thread(this::commitLoop, "write-ahead-log-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Returns the name of the log file of the given generation. Names sort by generation.
+     *
+     * @param generation the generation of the log file
+     * @return the file name
+     */
+    static String fileName(long generation) {
+        return String.format("wal-%016d.log", generation);
+    }
+
+    private static FileChannel open(Path directory, long generation) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(generation)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Appends a scalar reading.
+     *
+     * @throws UncheckedIOException if an earlier commit failed
+     */
+    synchronized void append(int patientId, int typeId, long timestamp, double value) {
+        defineType(typeId);
+        reserve(SCALAR_READING_SIZE);
+        pending.put(SCALAR_READING).putInt(patientId).putInt(typeId).putLong(timestamp).putDouble(value);
+        appended++;
+    }
+
+    /**
+     * Appends a multi-valued reading.
+     *
+     * @throws UncheckedIOException if an earlier commit failed
+     */
+    synchronized void append(int patientId, int typeId, long timestamp, double[] values) {
+        defineType(typeId);
+        reserve(1 + 4 + 4 + 8 + 4 + 8 * values.length);
+        pending.put(VECTOR_READING).putInt(patientId).putInt(typeId).putLong(timestamp).putInt(values.length);
+        for (double value : values) {
+            pending.putDouble(value);
+        }
+        appended++;
+    }
+
+    /**
+     * Appends the scalar readings {@code from .. to - 1} of a batch given as columns, with a
+     * single acquisition of the log.
+     *
+     * @throws UncheckedIOException if an earlier commit failed
+     */
+    synchronized void append(int patientId, long[] timestamps, int[] typeIds, double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            defineType(typeIds[i]);
+            reserve(SCALAR_READING_SIZE);
+            pending.put(SCALAR_READING).putInt(patientId).putInt(typeIds[i]).putLong(timestamps[i]).putDouble(values[i]);
+            appended++;
+        }
+    }
+
+    private void defineType(int typeId) {
+        if (typeId < definedTypes.length && definedTypes[typeId]) {
+            return;
+        }
+        byte[] label = RecordTypes.nameOf(typeId).getBytes(StandardCharsets.UTF_8);
+        reserve(1 + 4 + 2 + label.length);
+        pending.put(TYPE_DEFINITION).putInt(typeId).putShort((short) label.length).put(label);
+        appended++;
+        if (typeId >= definedTypes.length) {
+            definedTypes = Arrays.copyOf(definedTypes, Math.max(typeId + 1, definedTypes.length * 2));
+        }
+        definedTypes[typeId] = true;
+    }
+
+    /**
+     * Waits until the pending buffer has room for an entry of the given size, handing the buffer
+     * to the committer when it is full.
+     */
+    private void reserve(int size) {
+        if (size > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Entry of " + size + " bytes exceeds the block size of the log");
+        }
+        while (true) {
+            checkOpen();
+            if (pending.remaining() >= size) {
+                return;
+            }
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    /**
+     * Waits until every entry appended before the call is written and forced to disk.
+     *
+     * @throws IOException if a commit failed
+     */
+    synchronized void sync() throws IOException {
+        long target = appended;
+        while (committed < target && failure == null) {
+            syncRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while syncing the write-ahead log", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Commits everything appended so far to the current file and continues in a new file of the
+     * given generation. The caller must make sure no appends happen concurrently, so that the
+     * new file starts exactly at a known state of the storage.
+     *
+     * @param generation the generation of the new log file
+     * @throws IOException if the commit fails or the new file cannot be created
+     */
+    synchronized void rotate(long generation) throws IOException {
+        sync();
+        FileChannel next = open(directory, generation);
+        channel.close();
+        channel = next;
+        Arrays.fill(definedTypes, false);
+    }
+
+    /**
+     * Commits everything appended so far and closes the log.
+     *
+     * @throws IOException if the last commit fails or the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } catch (IOException e) {
+                error = e;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer block;
+            FileChannel target;
+            long entries;
+            synchronized (this) {
+                long deadline = System.nanoTime() + commitIntervalNanos;
+                while (!closed && failure == null && !isCommitDue(deadline)) {
+                    long remaining = deadline - System.nanoTime();
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, Math.max(remaining, 1));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    if (closed || failure != null) {
+                        return;
+                    }
+                    continue;
+                }
+                block = pending;
+                pending = spare;
+                spare = null;
+                target = channel;
+                entries = appended;
+                syncRequested = false;
+                notifyAll(); // appenders waiting for room can continue in the fresh buffer
+            }
+
+            IOException error = null;
+            try {
+                write(target, block.flip());
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                spare = block.clear();
+                if (error == null) {
+                    committed = entries;
+                } else {
+                    failure = error;
+                    System.err.println("Error writing the write-ahead log: " + error.getMessage());
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the pending entries are to be committed now: once the interval is over,
+     * when the buffer is nearly full or appenders wait for room, or when a sync is requested.
+     */
+    private boolean isCommitDue(long deadline) {
+        if (pending.position() == 0) {
+            return false;
+        }
+        return syncRequested
+                || pending.remaining() < MAX_BLOCK_SIZE / 4
+                || System.nanoTime() - deadline >= 0;
+    }
+
+    private void write(FileChannel target, ByteBuffer payload) throws IOException {
+        checksum.reset();
+        checksum.update(payload.duplicate());
+        header.clear();
+        header.putInt(payload.remaining()).putInt((int) checksum.getValue()).flip();
+        ByteBuffer[] buffers = {header, payload};
+        while (header.hasRemaining() || payload.hasRemaining()) {
+            target.write(buffers);
+        }
+        target.force(false);
+    }
+
+    /**
+     * Receives the entries of a log file during replay.
+     */
+    interface Replay {
+        void scalar(int patientId, int typeId, long timestamp, double value);
+
+        void vector(int patientId, int typeId, long timestamp, double[] values);
+    }
+
+    /**
+     * Reads a log file and passes its readings to {@code replay}, with the record type ids
+     * translated to those of this process. Reading stops at the first incomplete or corrupt
+     * block, which is reported.
+     *
+     * @param file   the log file
+     * @param replay the receiver of the readings
+     * @return the number of readings replayed
+     * @throws IOException if the file cannot be read
+     */
+    static long replay(Path file, Replay replay) throws IOException {
+        long readings = 0;
+        int[] typeIds = new int[16]; // ids of the writing process to ids of this one
+        Arrays.fill(typeIds, -1);
+        CRC32C crc = new CRC32C();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        ByteBuffer block = ByteBuffer.allocate(MAX_BLOCK_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                header.clear();
+                if (!readFully(channel, header, position)) {
+                    System.err.println("Ignoring incomplete block at " + position + " of " + file);
+                    break;
+                }
+                int length = header.getInt(0);
+                if (length <= 0 || length > MAX_BLOCK_SIZE) {
+                    System.err.println("Ignoring corrupt block at " + position + " of " + file);
+                    break;
+                }
+                block.clear().limit(length);
+                if (!readFully(channel, block, position + 8)) {
+                    System.err.println("Ignoring incomplete block at " + position + " of " + file);
+                    break;
+                }
+                block.flip();
+                crc.reset();
+                crc.update(block.duplicate());
+                if ((int) crc.getValue() != header.getInt(4)) {
+                    System.err.println("Ignoring corrupt block at " + position + " of " + file);
+                    break;
+                }
+                while (block.hasRemaining()) {
+                    byte kind = block.get();
+                    if (kind == TYPE_DEFINITION) {
+                        int typeId = block.getInt();
+                        byte[] label = new byte[block.getShort()];
+                        block.get(label);
+                        if (typeId >= typeIds.length) {
+                            int oldLength = typeIds.length;
+                            typeIds = Arrays.copyOf(typeIds, Math.max(typeId + 1, oldLength * 2));
+                            Arrays.fill(typeIds, oldLength, typeIds.length, -1);
+                        }
+                        typeIds[typeId] = RecordTypes.idOf(new String(label, StandardCharsets.UTF_8));
+                    } else if (kind == SCALAR_READING) {
+                        int patientId = block.getInt();
+                        int typeId = typeIds[block.getInt()];
+                        replay.scalar(patientId, typeId, block.getLong(), block.getDouble());
+                        readings++;
+                    } else if (kind == VECTOR_READING) {
+                        int patientId = block.getInt();
+                        int typeId = typeIds[block.getInt()];
+                        long timestamp = block.getLong();
+                        double[] values = new double[block.getInt()];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = block.getDouble();
+                        }
+                        replay.vector(patientId, typeId, timestamp, values);
+                        readings++;
+                    } else {
+                        throw new IOException("Unknown entry kind " + kind + " in " + file);
+                    }
+                }
+                position += 8 + length;
+            }
+        }
+        return readings;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
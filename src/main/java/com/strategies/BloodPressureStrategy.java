@@ -2,26 +2,21 @@ package com.strategies;
 
 import com.data_management.PatientRecord;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 /**
  * The {@code BloodPressureStrategy} class implements the {@link AlertStrategy} interface.
  * It defines alert conditions for blood pressure readings, including critical thresholds
  * and trends in blood pressure measurements.
+ *
+ * <p>The last measurements are kept in preallocated primitive ring buffers, so checking a
+ * reading does not allocate and one instance can be reused for all readings of a patient.
  */
 public class BloodPressureStrategy implements AlertStrategy {
-    private static class BloodPressureMeasurement {
-        double systolic;
-        double diastolic;
-
-        BloodPressureMeasurement(double systolic, double diastolic) {
-            this.systolic = systolic;
-            this.diastolic = diastolic;
-        }
-    }
+    private static final int WINDOW = 4;
 
-    private final Queue<BloodPressureMeasurement> measurements = new LinkedList<>();
+    private final double[] systolic = new double[WINDOW];
+    private final double[] diastolic = new double[WINDOW];
+    private int head;  // position the next measurement is written to
+    private int count;
 
     /**
      * Checks whether the given patient record meets the criteria for triggering an alert.
@@ -33,18 +28,19 @@ public class BloodPressureStrategy implements AlertStrategy {
     @Override
     public boolean checkAlert(PatientRecord record) {
         double[] bpValues = record.getMeasurementValues();
-        double systolic = bpValues[0];
-        double diastolic = bpValues[1];
-
-        // Add current measurement to the queue
-        measurements.add(new BloodPressureMeasurement(systolic, diastolic));
-
-        // Keep only the last 4 measurements
-        if (measurements.size() > 4) {
-            measurements.poll();
+        double currentSystolic = bpValues[0];
+        double currentDiastolic = bpValues[1];
+
+        // Add current measurement, overwriting the oldest once the last 4 are kept
+        systolic[head] = currentSystolic;
+        diastolic[head] = currentDiastolic;
+        head = (head + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
         }
 
-        boolean criticalThresholdAlert = systolic > 180 || systolic < 90 || diastolic > 120 || diastolic < 60;
+        boolean criticalThresholdAlert = currentSystolic > 180 || currentSystolic < 90
+                || currentDiastolic > 120 || currentDiastolic < 60;
         boolean trendAlert = checkIncreasingSystolicTrend() || checkDecreasingSystolicTrend() ||
                 checkIncreasingDiastolicTrend() || checkDecreasingDiastolicTrend();
 
@@ -72,12 +68,7 @@ public class BloodPressureStrategy implements AlertStrategy {
      * @return {@code true} if there is an increasing trend in systolic blood pressure, {@code false} otherwise
      */
     public boolean checkIncreasingSystolicTrend() {
-        if (measurements.size() < 4) return false;
-
-        BloodPressureMeasurement[] lastFour = measurements.toArray(new BloodPressureMeasurement[0]);
-        return lastFour[1].systolic > lastFour[0].systolic + 10 &&
-                lastFour[2].systolic > lastFour[1].systolic + 10 &&
-                lastFour[3].systolic > lastFour[2].systolic + 10;
+        return checkTrend(systolic, 1);
     }
 
     /**
@@ -87,12 +78,7 @@ public class BloodPressureStrategy implements AlertStrategy {
      * @return {@code true} if there is a decreasing trend in systolic blood pressure, {@code false} otherwise
      */
     public boolean checkDecreasingSystolicTrend() {
-        if (measurements.size() < 4) return false;
-
-        BloodPressureMeasurement[] lastFour = measurements.toArray(new BloodPressureMeasurement[0]);
-        return lastFour[1].systolic < lastFour[0].systolic - 10 &&
-                lastFour[2].systolic < lastFour[1].systolic - 10 &&
-                lastFour[3].systolic < lastFour[2].systolic - 10;
+        return checkTrend(systolic, -1);
     }
 
     /**
@@ -102,12 +88,7 @@ public class BloodPressureStrategy implements AlertStrategy {
      * @return {@code true} if there is an increasing trend in diastolic blood pressure, {@code false} otherwise
      */
     public boolean checkIncreasingDiastolicTrend() {
-        if (measurements.size() < 4) return false;
-
-        BloodPressureMeasurement[] lastFour = measurements.toArray(new BloodPressureMeasurement[0]);
-        return lastFour[1].diastolic > lastFour[0].diastolic + 10 &&
-                lastFour[2].diastolic > lastFour[1].diastolic + 10 &&
-                lastFour[3].diastolic > lastFour[2].diastolic + 10;
+        return checkTrend(diastolic, 1);
     }
 
     /**
@@ -117,11 +98,28 @@ public class BloodPressureStrategy implements AlertStrategy {
      * @return {@code true} if there is a decreasing trend in diastolic blood pressure, {@code false} otherwise
      */
     public boolean checkDecreasingDiastolicTrend() {
-        if (measurements.size() < 4) return false;
+        return checkTrend(diastolic, -1);
+    }
 
-        BloodPressureMeasurement[] lastFour = measurements.toArray(new BloodPressureMeasurement[0]);
-        return lastFour[1].diastolic < lastFour[0].diastolic - 10 &&
-                lastFour[2].diastolic < lastFour[1].diastolic - 10 &&
-                lastFour[3].diastolic < lastFour[2].diastolic - 10;
+    /**
+     * Checks whether every one of the last 4 measurements in the ring buffer differs from its
+     * predecessor by more than 10 mmHg in the given direction.
+     *
+     * @param column    the ring buffer of systolic or diastolic values
+     * @param direction 1 for an increasing trend, -1 for a decreasing one
+     * @return {@code true} if the trend is present, {@code false} otherwise
+     */
+    private boolean checkTrend(double[] column, int direction) {
+        if (count < WINDOW) return false;
+
+        // Once full, the oldest measurement is the one that will be overwritten next
+        for (int i = 1; i < WINDOW; i++) {
+            double previous = column[(head + i - 1) % WINDOW];
+            double current = column[(head + i) % WINDOW];
+            if (!(direction * (current - previous) > 10)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
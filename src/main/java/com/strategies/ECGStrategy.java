@@ -11,6 +11,7 @@ import java.util.List;
  * and irregular heartbeat patterns.
  */
 public class ECGStrategy implements AlertStrategy {
+    private long lastBeatTimestamp = Long.MIN_VALUE; // timestamp of the last heart rate seen by isIrregularBeat
 
     /**
      * Checks whether the given patient record meets the criteria for triggering an alert.
@@ -53,4 +54,22 @@ public class ECGStrategy implements AlertStrategy {
         }
         return false;
     }
+
+    /**
+     * Checks whether the interval between the previous heart rate record passed to this method and
+     * the given one is irregular, using the same criterion as {@link #checkIrregularBeat(List)}.
+     * Only the timestamp of the previous record is kept, so the check costs O(1) per record.
+     *
+     * @param record the next heart rate record, in time order
+     * @return {@code true} if the interval to the previous record is irregular, {@code false} otherwise
+     */
+    public boolean isIrregularBeat(PatientRecord record) {
+        long previous = lastBeatTimestamp;
+        lastBeatTimestamp = record.getTimestamp();
+        if (previous == Long.MIN_VALUE) {
+            return false;
+        }
+        long interval = record.getTimestamp() - previous;
+        return interval != 0 && Math.abs(interval - 60000 / record.getMeasurementValue()) > 200;
+    }
 }
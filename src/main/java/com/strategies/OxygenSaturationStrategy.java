@@ -1,40 +1,32 @@
 package com.strategies;
 
 import com.data_management.PatientRecord;
-import java.time.LocalDateTime;
-import java.util.LinkedList;
-import java.util.Queue;
 
 /**
  * The {@code OxygenSaturationStrategy} class implements the {@link AlertStrategy} interface.
  * It defines alert conditions for blood oxygen saturation levels, including low saturation and rapid drops.
+ *
+ * <p>Rapid drops are measured against the maximum of the last 10 minutes, which a monotonic
+ * deque answers in amortized O(1) per reading: the deque holds only the measurements that are
+ * higher than every later one, so its head is the window maximum. The deque lives in primitive
+ * ring buffers that only grow when it holds more readings than ever before, so one instance can
+ * be reused for all readings of a patient without allocating per reading.
  */
 public class OxygenSaturationStrategy implements AlertStrategy {
 
-    /**
-     * Inner class to represent a measurement with a timestamp and a value.
-     */
-    private static class Measurement {
-        LocalDateTime timestamp;
-        double value;
-
-        /**
-         * Constructs a new {@code Measurement}.
-         *
-         * @param timestamp the time at which the measurement was taken
-         * @param value     the measured value
-         */
-        Measurement(LocalDateTime timestamp, double value) {
-            this.timestamp = timestamp;
-            this.value = value;
-        }
-    }
+    private static final long WINDOW_MILLIS = 10 * 60 * 1000;
+    private static final int INITIAL_CAPACITY = 16;
 
-    private final Queue<Measurement> measurements = new LinkedList<>();
+    // Monotonic deque of the window: timestamps increase and values strictly decrease from head to tail
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int head;
+    private int count;
 
     /**
      * Checks whether the given patient record meets the criteria for triggering an alert.
      * The criteria include blood oxygen saturation levels below 92% and rapid drops of 5% or more within a 10-minute window.
+     * The window is measured in record timestamps, so it stays bounded however fast records arrive.
      *
      * @param record the patient record to check
      * @return {@code true} if the record meets the alert criteria, {@code false} otherwise
@@ -42,18 +34,28 @@ public class OxygenSaturationStrategy implements AlertStrategy {
     @Override
     public boolean checkAlert(PatientRecord record) {
         double currentSaturation = record.getMeasurementValue();
-        LocalDateTime currentTime = LocalDateTime.now();
+        long currentTime = record.getTimestamp();
 
-        // Remove measurements older than 10 minutes
-        while (!measurements.isEmpty() && measurements.peek().timestamp.isBefore(currentTime.minusMinutes(10))) {
-            measurements.poll();
+        // Remove measurements older than 10 minutes; only the head can have left the window
+        while (count > 0 && timestamps[head] < currentTime - WINDOW_MILLIS) {
+            head = (head + 1) & (timestamps.length - 1);
+            count--;
         }
 
         boolean lowSaturationAlert = currentSaturation < 92;
         boolean rapidDropAlert = checkRapidDropAlert(currentSaturation);
 
-        // Add the current measurement to the list
-        measurements.add(new Measurement(currentTime, currentSaturation));
+        // Add the current measurement, dropping the earlier ones it will outlast without exceeding
+        while (count > 0 && values[(head + count - 1) & (values.length - 1)] <= currentSaturation) {
+            count--;
+        }
+        if (count == timestamps.length) {
+            grow();
+        }
+        int tail = (head + count) & (timestamps.length - 1);
+        timestamps[tail] = currentTime;
+        values[tail] = currentSaturation;
+        count++;
 
         return lowSaturationAlert || rapidDropAlert;
     }
@@ -81,17 +83,29 @@ public class OxygenSaturationStrategy implements AlertStrategy {
 
     /**
      * Checks if there has been a rapid drop in saturation compared to previous measurements.
-     * A rapid drop is defined as a decrease of 5% or more within the last 10 minutes.
+     * A rapid drop is defined as a decrease of 5% or more from the highest measurement within the last 10 minutes.
      *
      * @param currentSaturation the current saturation value
      * @return {@code true} if there is a rapid drop, {@code false} otherwise
      */
     private boolean checkRapidDropAlert(double currentSaturation) {
-        for (Measurement measurement : measurements) {
-            if (measurement.value - currentSaturation >= 5) {
-                return true;
-            }
+        return count > 0 && values[head] - currentSaturation >= 5;
+    }
+
+    /**
+     * Doubles the capacity of the ring buffers, moving the head of the deque to position 0.
+     * The capacity stays a power of two so positions can wrap with a mask.
+     */
+    private void grow() {
+        long[] grownTimestamps = new long[timestamps.length * 2];
+        double[] grownValues = new double[values.length * 2];
+        for (int i = 0; i < count; i++) {
+            int from = (head + i) & (timestamps.length - 1);
+            grownTimestamps[i] = timestamps[from];
+            grownValues[i] = values[from];
         }
-        return false;
+        timestamps = grownTimestamps;
+        values = grownValues;
+        head = 0;
     }
 }
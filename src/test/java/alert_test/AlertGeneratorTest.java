@@ -3,11 +3,18 @@ import com.alerts.Alert;
 import com.alerts.AlertGenerator;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import static com.alerts.AlertGenerator.evaluateData;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class AlertGeneratorTest {
     private AlertGenerator alertGenerator;
@@ -171,6 +178,26 @@ public class AlertGeneratorTest {
         assertEquals(1, alerts.size(), "Expected one rapid drop in blood saturation alert");
     }
 
+    @Test
+    void testRapidBloodSaturationDropWindow() {
+        alerts = new ArrayList<Alert>();
+        DataStorage storage = DataStorage.getInstance();
+        AlertGenerator a = new AlertGenerator(storage, alerts);
+
+        // The drop is measured from the highest reading of the last 10 minutes of record time
+        Patient p21 = new Patient(21);
+        storage.addPatientData(21, 100.0, "BloodSaturation", 1714376789050L); // Window maximum
+        storage.addPatientData(21, 98.0, "BloodSaturation", 1714376849050L);
+        storage.addPatientData(21, 96.0, "BloodSaturation", 1714377329050L); // 4% below the maximum
+        storage.addPatientData(21, 95.0, "BloodSaturation", 1714377389050L); // 5% below the maximum
+        storage.addPatientData(21, 94.0, "BloodSaturation", 1714377449050L); // The maximum has left the window
+        evaluateData(p21);
+
+        assertEquals(1, alerts.size(), "Expected one rapid drop in blood saturation alert");
+        assertEquals("RapidBloodSaturationDrop", alerts.get(0).getCondition());
+        assertEquals(1714377389050L, alerts.get(0).getTimestamp());
+    }
+
 
     @Test
     void testBloodPressureTrendAlerts() {
@@ -261,4 +288,88 @@ public class AlertGeneratorTest {
 
     }
 
+    @Test
+    void testBloodPressureTrendAcrossEvaluations() {
+        alerts = new ArrayList<Alert>();
+        DataStorage storage = DataStorage.getInstance();
+        AlertGenerator a = new AlertGenerator(storage, alerts);
+
+        // The trend starts in one evaluation cycle and completes in the next
+        Patient p19 = new Patient(19);
+        storage.addPatientData(19, new double[]{120.0, 80.0}, "BloodPressure", 1714376789050L); // Normal
+        storage.addPatientData(19, new double[]{131.0, 80.0}, "BloodPressure", 1714376889050L); // Increase > 10
+        evaluateData(p19);
+        assertEquals(0, alerts.size(), "Expected no alert before the trend is complete");
+
+        storage.addPatientData(19, new double[]{142.0, 80.0}, "BloodPressure", 1714376989050L); // Increase > 10
+        storage.addPatientData(19, new double[]{153.0, 80.0}, "BloodPressure", 1714377089050L); // Increase > 10
+        evaluateData(p19);
+        assertEquals(1, alerts.size(), "Expected one increasing systolic blood pressure trend alert");
+        assertEquals("IncreasingSystolicBloodPressureTrend", alerts.get(0).getCondition());
+    }
+
+    @Test
+    void testRecordsAreEvaluatedOnce() {
+        alerts = new ArrayList<Alert>();
+        DataStorage storage = DataStorage.getInstance();
+        AlertGenerator a = new AlertGenerator(storage, alerts);
+
+        Patient p20 = new Patient(20);
+        storage.addPatientData(20, 110.0, "HeartRate", 1714376789050L); // Abnormal heart rate
+        evaluateData(p20);
+        evaluateData(p20);
+        assertEquals(1, alerts.size(), "Expected the abnormal heart rate alert only once");
+
+        storage.addPatientData(20, 45.0, "HeartRate", 1714376789600L); // Abnormal heart rate
+        evaluateData(p20);
+        assertEquals(3, alerts.size(), "Expected one abnormal heart rate and one irregular heartbeat alert");
+        assertEquals("AbnormalHeartRate", alerts.get(1).getCondition());
+        assertEquals("IrregularHeartBeat", alerts.get(2).getCondition());
+    }
+
+    @Test
+    void testEvaluationOnlyIteratesNewRecords() {
+        alerts = new ArrayList<Alert>();
+        DataStorage storage = mock(DataStorage.class);
+        AlertGenerator a = new AlertGenerator(storage, alerts);
+        List<PatientRecord> records = List.of(
+                new PatientRecord(21, 110.0, "HeartRate", 1714376789050L),
+                new PatientRecord(21, 97.0, "BloodSaturation", 1714376789060L));
+        when(storage.getRecords(eq(21), anyLong(), anyLong())).thenReturn(new IterationOnlyList(records));
+
+        evaluateData(new Patient(21));
+        assertEquals(1, alerts.size(), "Expected one abnormal heart rate alert");
+
+        // Only records after the latest evaluated one are asked for next time
+        when(storage.getRecords(eq(21), eq(1714376789061L), anyLong())).thenReturn(List.of());
+        evaluateData(new Patient(21));
+        assertEquals(1, alerts.size(), "Expected the records to be evaluated once");
+    }
+
+    /**
+     * A list that can be iterated but not indexed, as indexing a merged view of the storage
+     * builds the merge order of all its records.
+     */
+    private static final class IterationOnlyList extends AbstractList<PatientRecord> {
+        private final List<PatientRecord> records;
+
+        IterationOnlyList(List<PatientRecord> records) {
+            this.records = records;
+        }
+
+        @Override
+        public PatientRecord get(int index) {
+            throw new UnsupportedOperationException("Indexed access");
+        }
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+
+        @Override
+        public Iterator<PatientRecord> iterator() {
+            return records.iterator();
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package alert_test;
+
+import com.alerts.Alert;
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamingAlertTest {
+    private DataStorage storage;
+    private AlertGenerator alertGenerator;
+    private List<Alert> alerts;
+
+    @BeforeEach
+    void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+        alerts = new ArrayList<>();
+        alertGenerator = new AlertGenerator(storage, alerts);
+        alertGenerator.startMonitoring();
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertGenerator.stopMonitoring();
+        DataStorage.resetInstance();
+    }
+
+    @Test
+    void testEachAlertFiresOnce() {
+        storage.addPatientData(1, 120.0, "HeartRate", 1714376789050L);
+        assertEquals(1, alerts.size());
+        assertEquals("AbnormalHeartRate", alerts.get(0).getCondition());
+
+        // Normal readings that follow do not re-fire the earlier alert
+        storage.addPatientData(1, 60.0, "HeartRate", 1714376790050L);
+        storage.addPatientData(1, 60.0, "HeartRate", 1714376791050L);
+        assertEquals(1, alerts.size());
+    }
+
+    @Test
+    void testIrregularHeartBeat() {
+        storage.addPatientData(3, 70.0, "HeartRate", 1714376789050L);
+        storage.addPatientData(3, 72.0, "HeartRate", 1714376849050L);
+
+        assertEquals(1, alerts.size());
+        assertEquals("IrregularHeartBeat", alerts.get(0).getCondition());
+        assertEquals(1714376849050L, alerts.get(0).getTimestamp());
+    }
+
+    @Test
+    void testBloodPressureTrendAcrossReadings() {
+        storage.addPatientData(13, new double[]{120.0, 80.0}, "BloodPressure", 1714376789050L);
+        storage.addPatientData(13, new double[]{131.0, 80.0}, "BloodPressure", 1714376889050L);
+        storage.addPatientData(13, new double[]{142.0, 80.0}, "BloodPressure", 1714376989050L);
+        assertEquals(0, alerts.size());
+
+        storage.addPatientData(13, new double[]{153.0, 80.0}, "BloodPressure", 1714377089050L);
+        assertEquals(1, alerts.size());
+        assertEquals("IncreasingSystolicBloodPressureTrend", alerts.get(0).getCondition());
+    }
+
+    @Test
+    void testHypotensiveHypoxemia() {
+        storage.addPatientData(5, new double[]{85.0, 60.0}, "BloodPressure", 1714376789050L);
+        storage.addPatientData(5, 90.0, "BloodSaturation", 1714376789050L);
+
+        assertEquals(3, alerts.size());
+        assertEquals("CriticalBloodPressureThreshold", alerts.get(0).getCondition());
+        assertEquals("LowBloodSaturation", alerts.get(1).getCondition());
+        assertEquals("HypotensiveHypoxemiaAlert", alerts.get(2).getCondition());
+
+        // Blood pressure recovers, so a further low saturation is not hypotensive hypoxemia
+        storage.addPatientData(5, new double[]{120.0, 80.0}, "BloodPressure", 1714376799050L);
+        storage.addPatientData(5, 90.0, "BloodSaturation", 1714376799050L);
+        assertEquals(4, alerts.size());
+        assertEquals("LowBloodSaturation", alerts.get(3).getCondition());
+    }
+
+    @Test
+    void testHypotensiveHypoxemiaFiresOnceWhileItLasts() {
+        long time = 1714376789050L;
+        storage.addPatientData(5, new double[]{85.0, 60.0}, "BloodPressure", time);
+        for (int i = 1; i <= 4; i++) {
+            storage.addPatientData(5, 90.0, "BloodSaturation", time + i * 1000L);
+            storage.addPatientData(5, new double[]{85.0, 60.0}, "BloodPressure", time + i * 1000L);
+        }
+        assertEquals(1, countOf("HypotensiveHypoxemiaAlert"));
+
+        // Saturation recovers, then drops again: a new episode
+        storage.addPatientData(5, 97.0, "BloodSaturation", time + 5000L);
+        storage.addPatientData(5, new double[]{85.0, 60.0}, "BloodPressure", time + 6000L);
+        assertEquals(1, countOf("HypotensiveHypoxemiaAlert"));
+        storage.addPatientData(5, 90.0, "BloodSaturation", time + 7000L);
+        storage.addPatientData(5, 90.0, "BloodSaturation", time + 8000L);
+        assertEquals(2, countOf("HypotensiveHypoxemiaAlert"));
+    }
+
+    private long countOf(String condition) {
+        return alerts.stream().filter(alert -> alert.getCondition().equals(condition)).count();
+    }
+
+    @Test
+    void testPatientsAreEvaluatedIndependently() {
+        storage.addPatientData(1, 70.0, "HeartRate", 1714376789050L);
+        storage.addPatientData(2, 70.0, "HeartRate", 1714376790000L);
+        storage.addPatientData(1, 70.0, "HeartRate", 1714376789907L);
+
+        assertEquals(0, alerts.size());
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+
+/**
+ * Shows how the cost of alert evaluation develops as a patient's history grows. Incremental
+ * monitoring is measured per reading in consecutive blocks of readings; for comparison, one full
+ * {@link AlertGenerator#evaluateData(Patient)} rescan is timed at the end of each of the first
+ * blocks.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.AlertEvaluationBenchmark 5000000}
+ * for a history of 5M readings. All readings are normal, so no alerts are printed.
+ */
+public class AlertEvaluationBenchmark {
+    private static final int BLOCK = 500_000;
+    private static final int RESCANNED_BLOCKS = 4;
+
+    public static void main(String[] args) {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        AlertGenerator alertGenerator = new AlertGenerator(storage);
+        alertGenerator.startMonitoring();
+
+        long timestamp = 1_700_000_000_000L;
+        double[] bloodPressure = {120.0, 80.0};
+        for (int block = 0; block * BLOCK < readings; block++) {
+            long began = System.nanoTime();
+            for (int i = 0; i < BLOCK; i++) {
+                switch (i % 3) {
+                    case 0:
+                        timestamp += 1000; // one reading of each type per second
+                        storage.addPatientData(1, 60.0, "HeartRate", timestamp);
+                        break;
+                    case 1:
+                        storage.addPatientData(1, 97.0, "BloodSaturation", timestamp);
+                        break;
+                    default:
+                        storage.addPatientData(1, bloodPressure, "BloodPressure", timestamp);
+                        break;
+                }
+            }
+            double perReading = (double) (System.nanoTime() - began) / BLOCK;
+            int history = (block + 1) * BLOCK;
+
+            if (block < RESCANNED_BLOCKS) {
+                Patient patient = storage.getAllPatients().get(0);
+                new AlertGenerator(storage); // fresh evaluation state, so the whole history is rescanned
+                long rescanBegan = System.nanoTime();
+                AlertGenerator.evaluateData(patient);
+                double rescanMillis = (System.nanoTime() - rescanBegan) / 1e6;
+                System.out.printf("history %,10d: incremental %6.0f ns/reading, full rescan %8.1f ms%n",
+                        history, perReading, rescanMillis);
+            } else {
+                System.out.printf("history %,10d: incremental %6.0f ns/reading%n", history, perReading);
+            }
+        }
+        alertGenerator.stopMonitoring();
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BatchDataGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Measures the values each generator produces per second on one thread, one patient at a time
+ * through {@code generate} into an output that only counts the readings, and a shard of patients
+ * at a time through {@code generateBatch}.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.BatchGenerationBenchmark 100000 1024}
+ * for 100000 patients in batches of 1024.
+ */
+public class BatchGenerationBenchmark {
+    private static long readings;
+    private static double sink;
+
+    public static void main(String[] args) {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        BatchDataGenerator[] generators = {
+                new ECGDataGenerator(patientCount),
+                new BloodSaturationDataGenerator(patientCount),
+                new BloodPressureDataGenerator(patientCount),
+                new BloodLevelsDataGenerator(patientCount),
+                new AlertGenerator(patientCount),
+        };
+        for (int round = 1; round <= 3; round++) {
+            for (BatchDataGenerator generator : generators) {
+                double single = runSingle(generator, patientCount);
+                double batched = runBatched(generator, patientCount, batchSize);
+                System.out.printf("round %d, %-28s: generate %,12.0f values/s, generateBatch %,12.0f values/s (%.1fx)%n",
+                        round, generator.getClass().getSimpleName(), single, batched, batched / single);
+            }
+        }
+        System.out.printf("checksum %.1f%n", readings + sink); // keeps the generated values alive
+    }
+
+    private static double runSingle(BatchDataGenerator generator, int patientCount) {
+        OutputStrategy output = (patientId, timestamp, label, data) -> readings++;
+        long values = 0;
+        long began = System.nanoTime();
+        for (int pass = 0; pass < 10; pass++) {
+            for (int patientId = 1; patientId <= patientCount; patientId++) {
+                generator.generate(patientId, output);
+            }
+            values += (long) patientCount * generator.getLabels().length;
+        }
+        return values * 1e9 / (System.nanoTime() - began);
+    }
+
+    private static double runBatched(BatchDataGenerator generator, int patientCount, int batchSize) {
+        int[] patientIds = new int[batchSize];
+        double[] out = new double[generator.getLabels().length * batchSize];
+        long values = 0;
+        long began = System.nanoTime();
+        for (int pass = 0; pass < 10; pass++) {
+            for (int first = 1; first <= patientCount; first += batchSize) {
+                int count = Math.min(batchSize, patientCount - first + 1);
+                for (int i = 0; i < count; i++) {
+                    patientIds[i] = first + i;
+                }
+                generator.generateBatch(patientIds, count, System.currentTimeMillis(), out);
+                sink += out[0];
+                values += (long) count * generator.getLabels().length;
+            }
+        }
+        return values * 1e9 / (System.nanoTime() - began);
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordBatch;
+import com.data_management.RecordTypes;
+
+import java.util.Random;
+
+/**
+ * Compares adding readings to {@link DataStorage} one call per reading against the columnar
+ * batch API, for batches of several sizes. Readings cycle over a number of patients the way a
+ * live feed interleaves them.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.BatchIngestBenchmark 5000000 1000}
+ * for 5M readings of 1000 patients.
+ */
+public class BatchIngestBenchmark {
+    private static final String[] LABELS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int[] BATCH_SIZES = {16, 256, 4096};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int patients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Random random = new Random(42);
+        int[] patientIds = new int[readings];
+        long[] timestamps = new long[readings];
+        int[] typeIds = new int[readings];
+        String[] labels = new String[readings];
+        double[] values = new double[readings];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < readings; i++) {
+            patientIds[i] = 1 + i % patients;
+            timestamp += i % patients == 0 ? 1000 : 0;
+            timestamps[i] = timestamp;
+            labels[i] = LABELS[random.nextInt(LABELS.length)];
+            typeIds[i] = RecordTypes.idOf(labels[i]);
+            values[i] = random.nextDouble() * 200;
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            DataStorage.resetInstance();
+            DataStorage storage = DataStorage.getInstance();
+            long began = System.nanoTime();
+            for (int i = 0; i < readings; i++) {
+                storage.addPatientData(patientIds[i], values[i], labels[i], timestamps[i]);
+            }
+            report(round, "single", readings, System.nanoTime() - began);
+
+            for (int batchSize : BATCH_SIZES) {
+                DataStorage.resetInstance();
+                storage = DataStorage.getInstance();
+                RecordBatch batch = new RecordBatch();
+                began = System.nanoTime();
+                for (int i = 0; i < readings; i++) {
+                    batch.add(patientIds[i], timestamps[i], typeIds[i], values[i]);
+                    if (batch.size() == batchSize) {
+                        batch.addTo(storage);
+                        batch.clear();
+                    }
+                }
+                batch.addTo(storage);
+                batch.clear();
+                report(round, "batch of " + batchSize, readings, System.nanoTime() - began);
+            }
+        }
+        DataStorage.resetInstance();
+    }
+
+    private static void report(int round, String path, int readings, long nanos) {
+        System.out.printf("round %d: %-14s %,12.0f records/s%n", round, path, readings / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import com.data_management.BulkFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares importing a directory of exported readings file by file with {@link FileDataReader}
+ * against {@link BulkFileDataReader} on 1 up to the number of available cores.
+ *
+ * <p>Run with e.g.
+ * {@code java -Xmx4g -cp target/classes:target/test-classes benchmark.BulkLoadBenchmark 4 2000000}
+ * for 4 files of 2M lines each.
+ */
+public class BulkLoadBenchmark {
+    private static final String[] LABELS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int linesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        long lines = (long) files * linesPerFile;
+
+        Path directory = Files.createTempDirectory("readings");
+        try {
+            List<Path> written = write(directory, files, linesPerFile);
+            for (int round = 1; round <= ROUNDS; round++) {
+                long began = System.nanoTime();
+                DataStorage.resetInstance();
+                for (Path file : written) {
+                    new FileDataReader(file.toString()).readData(DataStorage.getInstance());
+                }
+                report(round, "FileDataReader", lines, System.nanoTime() - began);
+
+                for (int threads = 1; threads <= cores; threads *= 2) {
+                    began = System.nanoTime();
+                    DataStorage.resetInstance();
+                    new BulkFileDataReader(directory.toString(), threads).readData(DataStorage.getInstance());
+                    report(round, "BulkFileDataReader x" + threads, lines, System.nanoTime() - began);
+                }
+            }
+        } finally {
+            DataStorage.resetInstance();
+            try (Stream<Path> entries = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) entries::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static List<Path> write(Path directory, int files, int linesPerFile) throws IOException {
+        Random random = new Random(42);
+        long timestamp = 1_700_000_000_000L;
+        List<Path> written = new ArrayList<>();
+        for (int f = 0; f < files; f++) {
+            Path file = directory.resolve(String.format("export-%03d.csv", f));
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for (int i = 0; i < linesPerFile; i++) {
+                    timestamp += random.nextInt(10);
+                    writer.write((1 + random.nextInt(1000)) + "," + random.nextDouble() * 200 + ","
+                            + LABELS[random.nextInt(LABELS.length)] + "," + timestamp);
+                    writer.newLine();
+                }
+            }
+            written.add(file);
+        }
+        return written;
+    }
+
+    private static void report(int round, String reader, long lines, long nanos) {
+        System.out.printf("round %d: %-22s %,12.0f lines/s%n", round, reader, lines / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures {@link DataStorage#addPatientData(int, double, String, long)} throughput for 1 up to
+ * the number of available cores, with every thread ingesting for its own set of patients and one
+ * extra thread continuously querying.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.ConcurrentIngestBenchmark 2000000}
+ * for 2M readings per writer thread.
+ */
+public class ConcurrentIngestBenchmark {
+    private static final int PATIENTS_PER_THREAD = 100;
+
+    public static void main(String[] args) throws Exception {
+        int readingsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        run(1, readingsPerThread); // warm-up
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double perSecond = run(threads, readingsPerThread);
+            System.out.printf("%2d writer thread(s): %,14.0f readings/s%n", threads, perSecond);
+        }
+    }
+
+    private static double run(int threads, int readingsPerThread) throws Exception {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int firstPatient = 1 + t * PATIENTS_PER_THREAD;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < readingsPerThread; i++) {
+                    storage.addPatientData(firstPatient + i % PATIENTS_PER_THREAD, i, "ECG", i);
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            long sink = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                sink += storage.getRecords(1, 0L, Long.MAX_VALUE).size();
+            }
+            return sink;
+        });
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        long elapsed = System.nanoTime() - began;
+        reader.cancel(true);
+        executor.shutdownNow();
+        return (double) threads * readingsPerThread / elapsed * 1e9;
+    }
+}
@@ -0,0 +1,122 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.RecordParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares the former {@code String.split}-based line parsing with {@link RecordParser} on a
+ * generated file of {@code patientId,value,label,timestamp} lines: first parsing alone, with the
+ * readings only summed up, on lines read as strings and on the raw bytes of the file, then end to
+ * end through {@link FileDataReader} into {@link DataStorage}.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.CsvParseBenchmark 5000000}
+ * for a file of 5M lines.
+ */
+public class CsvParseBenchmark {
+    private static final String[] LABELS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure", "Cholesterol"};
+    private static final int ROUNDS = 5;
+
+    private static double sink;
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path file = Files.createTempFile("readings", ".csv");
+        try {
+            write(file, lines);
+            System.out.printf("%,d lines, %,d bytes%n", lines, Files.size(file));
+            for (int round = 1; round <= ROUNDS; round++) {
+                long split = time(() -> parseWithSplit(file));
+                long parser = time(() -> parseWithRecordParser(file));
+                long bytes = time(() -> parseBytesWithRecordParser(file));
+                long reader = time(() -> {
+                    DataStorage.resetInstance();
+                    new FileDataReader(file.toString()).readData(DataStorage.getInstance());
+                });
+                System.out.printf("round %d: split %4.0f ns/line, RecordParser on lines %4.0f ns/line, "
+                                + "on bytes %4.0f ns/line, FileDataReader into DataStorage %4.0f ns/line%n",
+                        round, (double) split / lines, (double) parser / lines, (double) bytes / lines,
+                        (double) reader / lines);
+            }
+        } finally {
+            DataStorage.resetInstance();
+            Files.delete(file);
+        }
+    }
+
+    private static void write(Path file, int lines) throws IOException {
+        Random random = new Random(42);
+        long timestamp = 1_700_000_000_000L;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < lines; i++) {
+                timestamp += random.nextInt(10);
+                writer.write((1 + random.nextInt(1000)) + "," + random.nextDouble() * 200 + ","
+                        + LABELS[random.nextInt(LABELS.length)] + "," + timestamp);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * The parsing FileDataReader did before it used RecordParser.
+     */
+    private static void parseWithSplit(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length == 4) {
+                    int patientId = Integer.parseInt(parts[0]);
+                    double measurementValue = Double.parseDouble(parts[1]);
+                    String recordType = parts[2];
+                    long timestamp = Long.parseLong(parts[3]);
+                    sink += patientId + measurementValue + recordType.length() + timestamp;
+                }
+            }
+        }
+    }
+
+    private static void parseWithRecordParser(Path file) throws IOException {
+        RecordParser parser = new RecordParser(RecordParser.Format.FILE, (patientId, measurementValue, recordType, timestamp) ->
+                sink += patientId + measurementValue + recordType.length() + timestamp);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parser.parse(line);
+            }
+        }
+    }
+
+    private static void parseBytesWithRecordParser(Path file) throws IOException {
+        RecordParser parser = new RecordParser(RecordParser.Format.FILE, (patientId, measurementValue, recordType, timestamp) ->
+                sink += patientId + measurementValue + recordType.length() + timestamp);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int lineStart = 0;
+        for (int i = 0; i < bytes.limit(); i++) {
+            if (bytes.get(i) == '\n') {
+                parser.parse(bytes, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    private static long time(IoTask task) throws IOException {
+        long began = System.nanoTime();
+        task.run();
+        return System.nanoTime() - began;
+    }
+
+    private interface IoTask {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures the lines per second {@link FileOutputStrategy} accepts from concurrent simulator
+ * threads, against the previous behaviour of opening, writing and closing the label file for
+ * every line. Each thread writes the ECG and saturation lines of its share of the patients.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.FileOutputBenchmark 8 200000}
+ * for 8 threads writing 200000 lines each.
+ */
+public class FileOutputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int linesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        for (int round = 1; round <= 3; round++) {
+            // The line count of the old strategy is cut by 10, as it is that much slower
+            Path legacyDirectory = Files.createTempDirectory("legacy");
+            double legacy = run(threads, linesPerThread / 10, new LegacyFileOutputStrategy(legacyDirectory));
+            delete(legacyDirectory);
+
+            Path directory = Files.createTempDirectory("buffered");
+            FileOutputStrategy strategy = new FileOutputStrategy(directory.toString());
+            long began = System.nanoTime();
+            double buffered = run(threads, linesPerThread, strategy);
+            strategy.close();
+            double withClose = (double) threads * linesPerThread * 1e9 / (System.nanoTime() - began);
+            delete(directory);
+
+            System.out.printf("round %d: open per line %,.0f lines/s, buffered %,.0f lines/s (%,.0f including close)%n",
+                    round, legacy, buffered, withClose);
+        }
+    }
+
+    private static double run(int threads, int linesPerThread, OutputStrategy strategy) throws InterruptedException {
+        Thread[] writers = new Thread[threads];
+        long began = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i += 2) {
+                    int patientId = thread + threads * (i % 1000);
+                    long timestamp = 1_700_000_000_000L + i;
+                    strategy.output(patientId, timestamp, "ECG", Double.toString(Math.sin(i)));
+                    strategy.output(patientId, timestamp, "Saturation", (95 + i % 5) + ".0%");
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        return (double) threads * linesPerThread * 1e9 / (System.nanoTime() - began);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> entries = Files.walk(directory)) {
+            entries.sorted(Comparator.reverseOrder()).forEach(entry -> entry.toFile().delete());
+        }
+    }
+
+    /**
+     * The previous file output: one open, write and close per line.
+     */
+    private static final class LegacyFileOutputStrategy implements OutputStrategy {
+        private final Path baseDirectory;
+
+        LegacyFileOutputStrategy(Path baseDirectory) {
+            this.baseDirectory = baseDirectory;
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, String data) {
+            try {
+                Files.createDirectories(baseDirectory);
+                try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(baseDirectory.resolve(label + ".txt"),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                    out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label,
+                            data);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + label + ".txt: " + e.getMessage());
+            }
+        }
+    }
+}
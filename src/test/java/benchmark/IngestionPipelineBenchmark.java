@@ -0,0 +1,98 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+import com.data_management.IngestionPipeline;
+import com.data_management.WebSocketClientImpl;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time the WebSocket read thread spends in {@code onMessage} while the storage is
+ * slowed down by pauses, as a garbage collection or a slow insert would: ingesting on the read
+ * thread, and handing the messages to an {@link IngestionPipeline} with each overflow policy.
+ * Messages hold 64 readings, as sent by the broadcast mode of the WebSocket output, and the
+ * storage pauses for a few milliseconds every so many readings.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes:<Java-WebSocket and slf4j jars> benchmark.IngestionPipelineBenchmark 20000 5}
+ * for 20000 messages and pauses of 5 ms.
+ */
+public class IngestionPipelineBenchmark {
+    private static final int READINGS_PER_MESSAGE = 64;
+    private static final int READINGS_PER_PAUSE = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long pauseMillis = args.length > 1 ? Long.parseLong(args[1]) : 5;
+
+        String[] messages = new String[messageCount];
+        for (int m = 0; m < messageCount; m++) {
+            StringBuilder message = new StringBuilder();
+            for (int r = 0; r < READINGS_PER_MESSAGE; r++) {
+                int i = m * READINGS_PER_MESSAGE + r;
+                if (r > 0) {
+                    message.append('\n');
+                }
+                message.append(i % 1000).append(',').append(1_700_000_000_000L + i).append(",ECG,").append(Math.sin(i));
+            }
+            messages[m] = message.toString();
+        }
+
+        for (int round = 1; round <= 3; round++) {
+            run(round, "read thread        ", messages, pauseMillis, null);
+            run(round, "pipeline, drop     ", messages, pauseMillis, IngestionPipeline.OverflowPolicy.DROP_NEWEST);
+            run(round, "pipeline, block    ", messages, pauseMillis, IngestionPipeline.OverflowPolicy.BLOCK);
+        }
+    }
+
+    private static void run(int round, String name, String[] messages, long pauseMillis,
+                            IngestionPipeline.OverflowPolicy policy) throws Exception {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        long[] stored = new long[1];
+        storage.addRecordListener(record -> {
+            if (++stored[0] % READINGS_PER_PAUSE == 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        IngestionPipeline pipeline = policy == null ? null : new IngestionPipeline(storage, 8192, 16, policy);
+        WebSocketClientImpl client = pipeline == null
+                ? new WebSocketClientImpl("ws://localhost:8080", storage)
+                : new WebSocketClientImpl("ws://localhost:8080", pipeline, false);
+
+        long[] latencies = new long[messages.length];
+        long began = System.nanoTime();
+        for (int m = 0; m < messages.length; m++) {
+            long start = System.nanoTime();
+            client.onMessage(messages[m]);
+            latencies[m] = System.nanoTime() - start;
+        }
+        long received = System.nanoTime() - began;
+        if (pipeline != null) {
+            pipeline.flush(5, TimeUnit.MINUTES);
+        }
+        long total = System.nanoTime() - began;
+
+        Arrays.sort(latencies);
+        System.out.printf("round %d, %s: onMessage p50 %6.1f us, p99 %8.1f us, max %8.1f us; received in %5d ms, "
+                        + "stored in %5d ms; %d messages dropped%n",
+                round, name, latencies[latencies.length / 2] / 1e3, latencies[latencies.length * 99 / 100] / 1e3,
+                latencies[latencies.length - 1] / 1e3, received / 1_000_000, total / 1_000_000,
+                pipeline == null ? 0 : pipeline.getDroppedMessages());
+        if (pipeline != null) {
+            IngestionPipeline.Stats parsing = pipeline.getParsingStats();
+            IngestionPipeline.Stats storing = pipeline.getStorageStats();
+            System.out.printf("         parser %,.0f messages/s in %d batches, storage %,.0f readings/s, "
+                            + "mean wait for storage %.1f ms%n",
+                    parsing.getItemsPerSecond(), parsing.getBatches(), storing.getItemsPerSecond(),
+                    storing.getItems() == 0 ? 0 : storing.getWaitNanos() / 1e6 / storing.getItems());
+            pipeline.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.RecordBatch;
+import com.data_management.RecordTypes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of durability: ingest throughput with persistence off and on, for single
+ * readings and for batches, then the time to write a snapshot and the startup time from the
+ * snapshot, from the write-ahead log alone, and from re-reading the readings as CSV.
+ *
+ * <p>Run with e.g.
+ * {@code java -Xmx6g -cp target/classes:target/test-classes benchmark.PersistenceBenchmark 20000000 1000}
+ * for 20M readings of 1000 patients.
+ */
+public class PersistenceBenchmark {
+    private static final String[] LABELS = {"ECG", "Saturation", "SystolicPressure", "DiastolicPressure"};
+    private static final int BATCH_SIZE = 4096;
+
+    public static void main(String[] args) throws IOException {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int patients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        Random random = new Random(42);
+        int[] patientIds = new int[readings];
+        long[] timestamps = new long[readings];
+        int[] typeIds = new int[readings];
+        String[] labels = new String[readings];
+        double[] values = new double[readings];
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < readings; i++) {
+            patientIds[i] = 1 + i % patients;
+            timestamp += i % patients == 0 ? 1000 : 0;
+            timestamps[i] = timestamp;
+            labels[i] = LABELS[random.nextInt(LABELS.length)];
+            typeIds[i] = RecordTypes.idOf(labels[i]);
+            values[i] = random.nextDouble() * 200;
+        }
+
+        Path directory = Files.createTempDirectory("persistence");
+        Path csv = Files.createTempFile("readings", ".csv");
+        try {
+            for (boolean durable : new boolean[]{false, true}) {
+                DataStorage storage = fresh(durable ? directory : null);
+                long began = System.nanoTime();
+                for (int i = 0; i < readings; i++) {
+                    storage.addPatientData(patientIds[i], values[i], labels[i], timestamps[i]);
+                }
+                storage.syncPersistence();
+                report("single, persistence " + (durable ? "on" : "off"), readings, System.nanoTime() - began);
+
+                storage = fresh(durable ? directory : null);
+                RecordBatch batch = new RecordBatch();
+                began = System.nanoTime();
+                for (int i = 0; i < readings; i++) {
+                    batch.add(patientIds[i], timestamps[i], typeIds[i], values[i]);
+                    if (batch.size() == BATCH_SIZE) {
+                        batch.addTo(storage);
+                        batch.clear();
+                    }
+                }
+                batch.addTo(storage);
+                storage.syncPersistence();
+                report("batch, persistence " + (durable ? "on" : "off"), readings, System.nanoTime() - began);
+            }
+
+            // The directory now holds the log of the batched run
+            long began = System.nanoTime();
+            DataStorage.resetInstance();
+            DataStorage.getInstance().enablePersistence(directory.toString());
+            report("recovery from log", readings, System.nanoTime() - began);
+
+            began = System.nanoTime();
+            DataStorage.getInstance().snapshot();
+            report("snapshot", readings, System.nanoTime() - began);
+
+            began = System.nanoTime();
+            DataStorage.resetInstance();
+            DataStorage.getInstance().enablePersistence(directory.toString());
+            report("recovery from snapshot", readings, System.nanoTime() - began);
+
+            try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+                for (int i = 0; i < readings; i++) {
+                    writer.write(patientIds[i] + "," + values[i] + "," + labels[i] + "," + timestamps[i]);
+                    writer.newLine();
+                }
+            }
+            began = System.nanoTime();
+            DataStorage.resetInstance();
+            new FileDataReader(csv.toString()).readData(DataStorage.getInstance());
+            report("re-reading CSV", readings, System.nanoTime() - began);
+        } finally {
+            DataStorage.resetInstance();
+            Files.deleteIfExists(csv);
+            try (Stream<Path> entries = Files.walk(directory)) {
+                for (Path entry : (Iterable<Path>) entries.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(entry);
+                }
+            }
+        }
+    }
+
+    private static DataStorage fresh(Path directory) throws IOException {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        if (directory != null) {
+            try (Stream<Path> entries = Files.list(directory)) {
+                for (Path entry : (Iterable<Path>) entries::iterator) {
+                    Files.delete(entry);
+                }
+            }
+            storage.enablePersistence(directory.toString());
+        }
+        return storage;
+    }
+
+    private static void report(String phase, int readings, long nanos) {
+        System.out.printf("%-28s %8.0f ms %,14.0f records/s%n", phase, nanos / 1e6, readings / (nanos / 1e9));
+    }
+}
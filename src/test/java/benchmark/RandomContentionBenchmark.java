@@ -0,0 +1,99 @@
+package benchmark;
+
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the blood levels generated per second by more and more threads, each generating its
+ * own range of patients: with the random numbers drawn from a single shared {@link Random}, as
+ * every generator did before, from {@link ThreadLocalRandom}, and from the per-patient streams
+ * the generators now use. The shared generator's seed is updated with a compare-and-set by every
+ * draw, so its threads contend once they run on separate cores.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.RandomContentionBenchmark 8 100000 2}
+ * for up to 8 threads, 100000 patients and 2 seconds per run.
+ */
+public class RandomContentionBenchmark {
+    private static final Random SHARED = new Random();
+    private static final int BATCH = 1024;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int patientCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        System.out.printf("%d available processors%n", Runtime.getRuntime().availableProcessors());
+        double[] baselines = new double[3 * (patientCount + 1)];
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double shared = run(threads, patientCount, seconds, (first, count, out) -> {
+                for (int i = 0; i < count; i++) {
+                    int patientId = first + i;
+                    out[i] = baselines[3 * patientId] + (SHARED.nextDouble() - 0.5) * 10;
+                    out[count + i] = baselines[3 * patientId + 1] + (SHARED.nextDouble() - 0.5) * 1;
+                    out[2 * count + i] = baselines[3 * patientId + 2] + (SHARED.nextDouble() - 0.5) * 0.2;
+                }
+            });
+            double threadLocal = run(threads, patientCount, seconds, (first, count, out) -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < count; i++) {
+                    int patientId = first + i;
+                    out[i] = baselines[3 * patientId] + (random.nextDouble() - 0.5) * 10;
+                    out[count + i] = baselines[3 * patientId + 1] + (random.nextDouble() - 0.5) * 1;
+                    out[2 * count + i] = baselines[3 * patientId + 2] + (random.nextDouble() - 0.5) * 0.2;
+                }
+            });
+            BloodLevelsDataGenerator generator = new BloodLevelsDataGenerator(patientCount, 42);
+            double perPatient = run(threads, patientCount, seconds, new Work() {
+                private final ThreadLocal<int[]> patientIds = ThreadLocal.withInitial(() -> new int[BATCH]);
+
+                @Override
+                public void generate(int first, int count, double[] out) {
+                    int[] ids = patientIds.get();
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = first + i;
+                    }
+                    generator.generateBatch(ids, count, 0L, out);
+                }
+            });
+            System.out.printf("%2d threads: shared Random %,13.0f values/s, ThreadLocalRandom %,13.0f values/s, "
+                    + "per-patient streams %,13.0f values/s%n", threads, shared, threadLocal, perPatient);
+        }
+    }
+
+    private interface Work {
+        void generate(int first, int count, double[] out);
+    }
+
+    private static double run(int threadCount, int patientCount, int seconds, Work work) throws Exception {
+        LongAdder values = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(threadCount);
+        int perThread = patientCount / threadCount;
+        for (int t = 0; t < threadCount; t++) {
+            int from = 1 + t * perThread;
+            new Thread(() -> {
+                double[] out = new double[3 * BATCH];
+                while (!stop.get()) {
+                    for (int first = from; first < from + perThread; first += BATCH) {
+                        int count = Math.min(BATCH, from + perThread - first);
+                        work.generate(first, count, out);
+                        values.add(3L * count);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        long began = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        stop.set(true);
+        done.await();
+        return values.sum() * 1e9 / (System.nanoTime() - began);
+    }
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.SegmentFileDataReader;
+import com.data_management.SegmentWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares the disk usage and reload time of the compressed segment format against text. The
+ * readings mimic the simulator: per patient a 1 Hz ECG stream of full-precision noisy values and
+ * a 1 Hz saturation stream of whole percentages, with a few milliseconds of scheduling jitter.
+ * Reported are the bytes per reading of the {@code FileOutputStrategy} text lines, of the CSV
+ * lines read by {@link FileDataReader}, and of segments, and the time to load CSV and segments.
+ *
+ * <p>Run with e.g.
+ * {@code java -Xmx4g -cp target/classes:target/test-classes benchmark.SegmentBenchmark 100 7200}
+ * for 100 patients over two hours.
+ */
+public class SegmentBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 7200;
+        long readingsPerType = (long) patients * seconds;
+
+        Random random = new Random(42);
+        Path text = Files.createTempFile("readings", ".txt");
+        Path csv = Files.createTempFile("readings", ".csv");
+        Path ecgSegment = Files.createTempFile("ecg", SegmentFileDataReader.SEGMENT_EXTENSION);
+        Path saturationSegment = Files.createTempFile("saturation", SegmentFileDataReader.SEGMENT_EXTENSION);
+        try {
+            long start = 1_700_000_000_000L;
+            int[] saturation = new int[patients + 1];
+            try (BufferedWriter textOut = Files.newBufferedWriter(text);
+                 BufferedWriter csvOut = Files.newBufferedWriter(csv);
+                 SegmentWriter ecgOut = new SegmentWriter(ecgSegment);
+                 SegmentWriter saturationOut = new SegmentWriter(saturationSegment)) {
+                for (int s = 0; s < seconds; s++) {
+                    for (int patient = 1; patient <= patients; patient++) {
+                        long timestamp = start + s * 1000L + random.nextInt(3);
+                        double t = timestamp / 1000.0;
+                        double ecg = 0.1 * Math.sin(2 * Math.PI * t) + 0.5 * Math.sin(6 * Math.PI * t)
+                                + random.nextDouble() * 0.05;
+                        if (s == 0) {
+                            saturation[patient] = 95 + random.nextInt(5);
+                        }
+                        saturation[patient] = Math.min(Math.max(saturation[patient] + random.nextInt(3) - 1, 90), 100);
+
+                        textOut.write(String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                                patient, timestamp, "ECG", Double.toString(ecg)));
+                        textOut.write(String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                                patient, timestamp, "Saturation", (double) saturation[patient] + "%"));
+                        csvOut.write(patient + "," + ecg + ",ECG," + timestamp + "\n");
+                        csvOut.write(patient + "," + (double) saturation[patient] + ",Saturation," + timestamp + "\n");
+                        ecgOut.append(patient, "ECG", timestamp, ecg);
+                        saturationOut.append(patient, "Saturation", timestamp, saturation[patient]);
+                    }
+                }
+            }
+
+            long readings = 2 * readingsPerType;
+            report("text (FileOutputStrategy)", Files.size(text), readings);
+            report("CSV", Files.size(csv), readings);
+            report("segment, ECG", Files.size(ecgSegment), readingsPerType);
+            report("segment, saturation", Files.size(saturationSegment), readingsPerType);
+            report("segment, both", Files.size(ecgSegment) + Files.size(saturationSegment), readings);
+
+            for (int round = 1; round <= 3; round++) {
+                DataStorage.resetInstance();
+                long began = System.nanoTime();
+                new FileDataReader(csv.toString()).readData(DataStorage.getInstance());
+                long csvNanos = System.nanoTime() - began;
+
+                DataStorage.resetInstance();
+                began = System.nanoTime();
+                new SegmentFileDataReader(ecgSegment.toString()).readData(DataStorage.getInstance());
+                new SegmentFileDataReader(saturationSegment.toString()).readData(DataStorage.getInstance());
+                long segmentNanos = System.nanoTime() - began;
+                System.out.printf("round %d: load CSV %6.0f ms, segments %6.0f ms%n", round, csvNanos / 1e6,
+                        segmentNanos / 1e6);
+            }
+        } finally {
+            DataStorage.resetInstance();
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(ecgSegment);
+            Files.deleteIfExists(saturationSegment);
+        }
+    }
+
+    private static void report(String format, long bytes, long readings) {
+        System.out.printf("%-26s %,14d bytes %6.2f bytes/reading%n", format, bytes, (double) bytes / readings);
+    }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates the ECG of every patient once a second, as the simulator does, with the scheduled
+ * thread pool the simulator used to create (four threads per patient, a task per patient) and
+ * with the {@link SimulationEngine}, and reports the readings generated per second, the threads
+ * started and the jitter: how far the time between two readings of a patient is from a second.
+ * The pool cannot start enough threads for the patient counts the engine handles, so it is run
+ * with fewer patients.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.SimulationEngineBenchmark 100000 2000 10}
+ * for 100000 patients on the engine, 2000 on the pool and 10 seconds per run.
+ */
+public class SimulationEngineBenchmark {
+    private static final long PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        int enginePatients = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int poolPatients = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        run("scheduled pool", poolPatients, seconds, false);
+        run("engine        ", poolPatients, seconds, true);
+        run("engine        ", enginePatients, seconds, true);
+    }
+
+    private static void run(String name, int patientCount, int seconds, boolean engine) throws Exception {
+        AtomicLong readings = new AtomicLong();
+        OutputStrategy output = (patientId, timestamp, label, data) -> readings.incrementAndGet();
+        ECGDataGenerator ecg = new ECGDataGenerator(patientCount);
+        long[] lastRun = new long[patientCount + 1];
+        long[] deviations = new long[patientCount * (seconds + 2)];
+        AtomicInteger deviationCount = new AtomicInteger();
+        PatientDataGenerator timed = (patientId, outputStrategy) -> {
+            long now = System.nanoTime();
+            if (lastRun[patientId] != 0) {
+                int i = deviationCount.getAndIncrement();
+                if (i < deviations.length) {
+                    deviations[i] = Math.abs(now - lastRun[patientId] - PERIOD_NANOS);
+                }
+            }
+            lastRun[patientId] = now;
+            ecg.generate(patientId, outputStrategy);
+        };
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= patientCount; i++) {
+            patientIds.add(i);
+        }
+
+        int threadsBefore = Thread.activeCount();
+        int threads;
+        long began = System.nanoTime();
+        if (engine) {
+            try (SimulationEngine simulation = new SimulationEngine(output)) {
+                simulation.schedule(timed, 1, TimeUnit.SECONDS);
+                simulation.start(patientIds);
+                threads = Thread.activeCount() - threadsBefore;
+                Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            }
+        } else {
+            ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+            Random random = new Random();
+            for (int patientId : patientIds) {
+                scheduler.scheduleAtFixedRate(() -> timed.generate(patientId, output),
+                        random.nextInt(1000), 1000, TimeUnit.MILLISECONDS);
+            }
+            threads = Thread.activeCount() - threadsBefore;
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - began;
+
+        long[] sorted = Arrays.copyOf(deviations, Math.min(deviationCount.get(), deviations.length));
+        Arrays.sort(sorted);
+        System.out.printf("%s, %6d patients: %,10.0f readings/s (%,.0f expected), %5d threads, "
+                        + "jitter p50 %6.2f ms, p99 %7.2f ms, max %7.2f ms%n",
+                name, patientCount, readings.get() * 1e9 / elapsed, (double) patientCount, threads,
+                percentile(sorted, 50), percentile(sorted, 99), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        return sorted.length == 0 ? 0 : sorted[(int) ((long) (sorted.length - 1) * percent / 100)] / 1e6;
+    }
+}
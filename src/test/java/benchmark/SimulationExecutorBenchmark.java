@@ -0,0 +1,130 @@
+package benchmark;
+
+import com.cardio_generator.PatientThreadSimulation;
+import com.cardio_generator.Simulation;
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the ways the simulator can run its patients: the {@link SimulationEngine}, a platform
+ * thread per patient and a virtual thread per patient (on Java 21 or later), simulating the ECG of
+ * every patient once a second. Each executor is run with more and more patients until it falls
+ * behind, that is until it generates less than 99% of the expected readings or the p99 jitter
+ * (how far the time between two readings of a patient is from a second) exceeds 100 ms; the
+ * largest patient count it kept up with is reported as its maximum, along with the heap used and
+ * the threads started. The output can be made to block for a while on every reading, as a TCP
+ * client applying back-pressure would.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.SimulationExecutorBenchmark 5 200000 20000 0}
+ * for runs of 5 seconds, up to 200000 patients, up to 20000 platform threads and an output that
+ * does not block; pass e.g. 50 as the last argument for an output blocking 50 us per reading.
+ */
+public class SimulationExecutorBenchmark {
+    private static final long PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int maxPatients = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int maxPlatformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        long blockMicros = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        System.out.printf("Output blocking %d us per reading%n", blockMicros);
+        sweep("engine  ", maxPatients, seconds, blockMicros);
+        sweep("platform", Math.min(maxPatients, maxPlatformThreads), seconds, blockMicros);
+        if (PatientThreadSimulation.isVirtualThreadSupported()) {
+            sweep("virtual ", maxPatients, seconds, blockMicros);
+        } else {
+            System.out.println("virtual : skipped, virtual threads need Java 21 or later");
+        }
+    }
+
+    private static void sweep(String name, int maxPatients, int seconds, long blockMicros) throws Exception {
+        int sustained = 0;
+        for (int patientCount = 1000; patientCount <= maxPatients; patientCount *= 2) {
+            if (!run(name, patientCount, seconds, blockMicros)) {
+                break;
+            }
+            sustained = patientCount;
+        }
+        System.out.printf("%s: kept up with %d patients%n", name, sustained);
+    }
+
+    private static Simulation create(String name, OutputStrategy output) {
+        switch (name.trim()) {
+            case "engine":
+                return new SimulationEngine(output);
+            case "platform":
+                return new PatientThreadSimulation(output, Thread::new);
+            default:
+                return PatientThreadSimulation.withVirtualThreads(output);
+        }
+    }
+
+    /**
+     * Runs an executor with the given number of patients and tells whether it kept up.
+     */
+    private static boolean run(String name, int patientCount, int seconds, long blockMicros) throws Exception {
+        AtomicLong readings = new AtomicLong();
+        OutputStrategy output = (patientId, timestamp, label, data) -> {
+            if (blockMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockMicros));
+            }
+            readings.incrementAndGet();
+        };
+        ECGDataGenerator ecg = new ECGDataGenerator(patientCount);
+        long[] lastRun = new long[patientCount + 1];
+        long[] deviations = new long[patientCount * (seconds + 2)];
+        AtomicInteger deviationCount = new AtomicInteger();
+        PatientDataGenerator timed = (patientId, outputStrategy) -> {
+            long now = System.nanoTime();
+            if (lastRun[patientId] != 0) {
+                int i = deviationCount.getAndIncrement();
+                if (i < deviations.length) {
+                    deviations[i] = Math.abs(now - lastRun[patientId] - PERIOD_NANOS);
+                }
+            }
+            lastRun[patientId] = now;
+            ecg.generate(patientId, outputStrategy);
+        };
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= patientCount; i++) {
+            patientIds.add(i);
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        int threadsBefore = Thread.activeCount();
+        long began = System.nanoTime();
+        long heap;
+        int threads;
+        try (Simulation simulation = create(name, output)) {
+            simulation.schedule(timed, 1, TimeUnit.SECONDS);
+            simulation.start(patientIds);
+            threads = Thread.activeCount() - threadsBefore;
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            heap = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        }
+        long elapsed = System.nanoTime() - began;
+
+        long[] sorted = Arrays.copyOf(deviations, Math.min(deviationCount.get(), deviations.length));
+        Arrays.sort(sorted);
+        double rate = readings.get() * 1e9 / elapsed;
+        double p99 = sorted.length == 0 ? 0 : sorted[(int) ((long) (sorted.length - 1) * 99 / 100)] / 1e6;
+        System.out.printf("%s, %6d patients: %,10.0f readings/s, %6d platform threads, heap %5d MB, "
+                        + "jitter p99 %8.2f ms%n",
+                name, patientCount, rate, threads, heap >> 20, p99);
+        return rate >= patientCount * 0.99 && p99 <= 100;
+    }
+}
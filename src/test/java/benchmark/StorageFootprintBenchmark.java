@@ -0,0 +1,90 @@
+package benchmark;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap footprint of the columnar {@link Patient} storage against the former
+ * layout of one boxed {@link PatientRecord} per reading in an {@link ArrayList}.
+ *
+ * <p>Run with a fixed heap for stable numbers, e.g.
+ * {@code java -Xms2g -Xmx2g -cp target/classes:target/test-classes benchmark.StorageFootprintBenchmark 2000 600}
+ * for 2000 patients with 600 readings per record type each.
+ */
+public class StorageFootprintBenchmark {
+    private static final String[] SCALAR_TYPES = {"ECG", "Saturation", "HeartRate"};
+
+    public static void main(String[] args) {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int readingsPerType = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        long readings = (long) patientCount * readingsPerType * (SCALAR_TYPES.length + 1);
+
+        long before = usedHeap();
+        List<List<PatientRecord>> legacy = fillLegacy(patientCount, readingsPerType);
+        long legacyBytes = usedHeap() - before;
+        report("ArrayList<PatientRecord>", legacyBytes, readings);
+        legacy.clear();
+        legacy = null;
+
+        before = usedHeap();
+        List<Patient> columnar = fillColumnar(patientCount, readingsPerType);
+        long columnarBytes = usedHeap() - before;
+        report("Columnar Patient", columnarBytes, readings);
+
+        System.out.printf("Reduction: %.1fx (%d patients kept)%n",
+                (double) legacyBytes / columnarBytes, columnar.size());
+    }
+
+    private static List<List<PatientRecord>> fillLegacy(int patientCount, int readingsPerType) {
+        List<List<PatientRecord>> patients = new ArrayList<>();
+        for (int id = 1; id <= patientCount; id++) {
+            List<PatientRecord> records = new ArrayList<>();
+            for (int i = 0; i < readingsPerType; i++) {
+                long timestamp = 1_700_000_000_000L + i * 1000L;
+                for (String type : SCALAR_TYPES) {
+                    records.add(new PatientRecord(id, 95.0 + i % 5, type, timestamp));
+                }
+                records.add(new PatientRecord(id, new double[]{120.0, 80.0}, "BloodPressure", timestamp));
+            }
+            patients.add(records);
+        }
+        return patients;
+    }
+
+    private static List<Patient> fillColumnar(int patientCount, int readingsPerType) {
+        List<Patient> patients = new ArrayList<>();
+        double[] bloodPressure = {120.0, 80.0};
+        for (int id = 1; id <= patientCount; id++) {
+            Patient patient = new Patient(id);
+            for (int i = 0; i < readingsPerType; i++) {
+                long timestamp = 1_700_000_000_000L + i * 1000L;
+                for (String type : SCALAR_TYPES) {
+                    patient.addRecord(95.0 + i % 5, type, timestamp);
+                }
+                patient.addRecord(bloodPressure, "BloodPressure", timestamp);
+            }
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void report(String layout, long bytes, long readings) {
+        System.out.printf("%-26s %,14d bytes  %6.1f bytes/reading%n", layout, bytes, (double) bytes / readings);
+    }
+}
@@ -0,0 +1,85 @@
+package benchmark;
+
+import com.cardio_generator.SimulationClock;
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.BatchOutputStrategy;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates the patients of the simulator, with all its generators at their periods, on a
+ * virtual clock for a number of simulated hours, and reports how many readings are generated
+ * per second and how much faster than real time the simulation runs. The output only counts the
+ * readings, so this is the rate at which the simulator can feed a storage benchmark. Each round
+ * runs once with an output taking a string per reading, and once with a
+ * {@link BatchOutputStrategy}, to which the engine passes batches.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes benchmark.VirtualTimeBenchmark 1000 6}
+ * for six hours of 1000 patients.
+ */
+public class VirtualTimeBenchmark {
+    public static void main(String[] args) throws Exception {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long hours = args.length > 1 ? Long.parseLong(args[1]) : 6;
+
+        for (int round = 1; round <= 3; round++) {
+            LongAdder readings = new LongAdder();
+            run("strings", round, patientCount, hours, readings,
+                    (patientId, timestamp, label, data) -> readings.increment());
+            LongAdder batchReadings = new LongAdder();
+            run("batches", round, patientCount, hours, batchReadings, new BatchOutputStrategy() {
+                @Override
+                public void outputBatch(int[] patientIds, int count, long timestamp, String[] labels, double[] values) {
+                    int reported = 0;
+                    for (int i = 0; i < labels.length * count; i++) {
+                        if (!Double.isNaN(values[i])) {
+                            reported++;
+                        }
+                    }
+                    batchReadings.add(reported);
+                }
+
+                @Override
+                public void output(int patientId, long timestamp, String label, String data) {
+                    batchReadings.increment();
+                }
+            });
+        }
+    }
+
+    private static void run(String name, int round, int patientCount, long hours, LongAdder readings,
+                            OutputStrategy output) throws InterruptedException {
+        SimulationEngine engine = new SimulationEngine(output, SimulationClock.virtual(1_700_000_000_000L));
+        engine.schedule(new ECGDataGenerator(patientCount, 1), 1, TimeUnit.SECONDS);
+        engine.schedule(new BloodSaturationDataGenerator(patientCount, 1), 1, TimeUnit.SECONDS);
+        engine.schedule(new BloodPressureDataGenerator(patientCount, 1), 1, TimeUnit.MINUTES);
+        engine.schedule(new BloodLevelsDataGenerator(patientCount, 1), 2, TimeUnit.MINUTES);
+        engine.schedule(new AlertGenerator(patientCount, 1), 20, TimeUnit.SECONDS);
+        engine.setDuration(hours, TimeUnit.HOURS);
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= patientCount; i++) {
+            patientIds.add(i);
+        }
+
+        long began = System.nanoTime();
+        engine.start(patientIds);
+        engine.awaitTermination();
+        long elapsed = System.nanoTime() - began;
+        engine.close();
+
+        System.out.printf("round %d, %s: %d patients for %d simulated hours: %,d readings in %.1f s, "
+                        + "%,.0f readings/s, %,.0fx real time%n",
+                round, name, patientCount, hours, readings.sum(), elapsed / 1e9, readings.sum() * 1e9 / elapsed,
+                TimeUnit.HOURS.toNanos(hours) / (double) elapsed);
+    }
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast readings reach many WebSocket dashboards: the time from the first output
+ * until every client has received every reading, with a message per reading and client (the
+ * default mode) and with batches encoded once for all clients (broadcast mode).
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes:<Java-WebSocket and slf4j jars> benchmark.WebSocketBroadcastBenchmark 100 20000}
+ * for 100 clients and 20000 readings.
+ */
+public class WebSocketBroadcastBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int readings = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        for (int round = 1; round <= 3; round++) {
+            double perReading = run(new WebSocketOutputStrategy(0), clientCount, readings);
+            double batched = run(new WebSocketOutputStrategy(0, 64, 5, 64L << 20), clientCount, readings);
+            System.out.printf("round %d, %d clients: message per reading %,.0f readings/s, batched %,.0f readings/s%n",
+                    round, clientCount, perReading, batched);
+        }
+    }
+
+    private static double run(WebSocketOutputStrategy strategy, int clientCount, int readings) throws Exception {
+        CountDownLatch received = new CountDownLatch(clientCount);
+        List<WebSocketClient> clients = new ArrayList<>();
+        for (int c = 0; c < clientCount; c++) {
+            WebSocketClient client = new WebSocketClient(new URI("ws://localhost:" + strategy.getPort())) {
+                private int lines;
+
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                }
+
+                @Override
+                public void onMessage(String message) {
+                    int before = lines;
+                    for (int i = 0; i < message.length(); i++) {
+                        if (message.charAt(i) == '\n') {
+                            lines++;
+                        }
+                    }
+                    lines++;
+                    if (before < readings && lines >= readings) {
+                        received.countDown();
+                    }
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                    ex.printStackTrace();
+                }
+            };
+            client.connectBlocking();
+            clients.add(client);
+        }
+
+        while (strategy.getConnectionCount() < clientCount) {
+            Thread.sleep(1);
+        }
+
+        long began = System.nanoTime();
+        for (int i = 0; i < readings; i++) {
+            strategy.output(i % 1000, 1_700_000_000_000L + i, "ECG", Double.toString(Math.sin(i)));
+        }
+        if (!received.await(5, TimeUnit.MINUTES)) {
+            System.out.println("Timed out; " + received.getCount() + " clients incomplete");
+        }
+        double rate = readings * 1e9 / (System.nanoTime() - began);
+
+        for (WebSocketClient client : clients) {
+            client.closeBlocking();
+        }
+        strategy.close();
+        return rate;
+    }
+}
@@ -0,0 +1,98 @@
+package benchmark;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.WebSocketClientImpl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the text and binary wire protocols end to end: readings are output by a
+ * {@link WebSocketOutputStrategy} in broadcast mode, received by {@link WebSocketClientImpl}
+ * clients and stored, and the clock stops once every client has stored every reading. Reports
+ * the readings per second and the bytes per reading on the wire, excluding WebSocket framing.
+ *
+ * <p>Run with e.g.
+ * {@code java -cp target/classes:target/test-classes:<Java-WebSocket and slf4j jars> benchmark.WireProtocolBenchmark 4 50000}
+ * for 4 clients and 50000 readings.
+ */
+public class WireProtocolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int readings = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        for (int round = 1; round <= 3; round++) {
+            report(round, "text  ", clientCount, readings, false);
+            report(round, "binary", clientCount, readings, true);
+        }
+    }
+
+    private static void report(int round, String name, int clientCount, int readings, boolean binary) throws Exception {
+        AtomicLong bytes = new AtomicLong();
+        double rate = run(clientCount, readings, binary, bytes);
+        System.out.printf("round %d, %s: %,.0f readings/s, %.1f bytes/reading%n",
+                round, name, rate, (double) bytes.get() / clientCount / readings);
+    }
+
+    private static double run(int clientCount, int readings, boolean binary, AtomicLong bytes) throws Exception {
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(0, 64, 5, 64L << 20);
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        AtomicLong stored = new AtomicLong();
+        storage.addRecordListener(record -> stored.incrementAndGet());
+
+        List<WebSocketClientImpl> clients = new ArrayList<>();
+        for (int c = 0; c < clientCount; c++) {
+            WebSocketClientImpl client = new WebSocketClientImpl("ws://localhost:" + strategy.getPort(), storage, binary) {
+                @Override
+                public void onMessage(String message) {
+                    bytes.addAndGet(message.getBytes(StandardCharsets.UTF_8).length);
+                    super.onMessage(message);
+                }
+
+                @Override
+                public void onMessage(ByteBuffer message) {
+                    bytes.addAndGet(message.remaining());
+                    super.onMessage(message);
+                }
+            };
+            client.connectBlocking();
+            clients.add(client);
+        }
+        while (strategy.getConnectionCount() < clientCount
+                || binary && strategy.getBinaryConnectionCount() < clientCount) {
+            Thread.sleep(1);
+        }
+
+        long began = System.nanoTime();
+        for (int i = 0; i < readings; i++) {
+            int patientId = i % 1000;
+            if (i % 4 == 0) {
+                strategy.output(patientId, 1_700_000_000_000L + i, "Saturation", Integer.toString(90 + i % 10));
+            } else {
+                strategy.output(patientId, 1_700_000_000_000L + i, "ECG", Double.toString(Math.sin(i)));
+            }
+        }
+        long expected = (long) readings * clientCount;
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (stored.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        double rate = readings * 1e9 / (System.nanoTime() - began);
+        if (stored.get() < expected) {
+            System.out.println("Timed out; " + stored.get() + " of " + expected + " readings stored");
+        }
+
+        for (WebSocketClientImpl client : clients) {
+            client.closeBlocking();
+        }
+        strategy.close();
+        return rate;
+    }
+}
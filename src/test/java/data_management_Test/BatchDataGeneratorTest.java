@@ -0,0 +1,147 @@
+package data_management_Test;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BatchDataGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchDataGeneratorTest {
+    private static final int PATIENTS = 100;
+    private static final long NOW = 1_700_000_000_000L;
+
+    private static int[] patientIds() {
+        int[] patientIds = new int[PATIENTS + 10];
+        for (int i = 0; i < PATIENTS; i++) {
+            patientIds[i] = i + 1;
+        }
+        return patientIds;
+    }
+
+    private static double[] batch(BatchDataGenerator generator) {
+        double[] out = new double[generator.getLabels().length * PATIENTS + 1];
+        out[out.length - 1] = -1; // past the batch
+        generator.generateBatch(patientIds(), PATIENTS, NOW, out);
+        assertEquals(-1, out[out.length - 1]);
+        return out;
+    }
+
+    private static void assertInRange(double[] out, int label, double min, double max) {
+        for (int i = label * PATIENTS; i < (label + 1) * PATIENTS; i++) {
+            assertTrue(out[i] >= min && out[i] <= max, "value " + out[i] + " at " + i);
+        }
+    }
+
+    private static void assertInRange(double[] out, double min, double max) {
+        assertInRange(out, 0, min, max);
+    }
+
+    @Test
+    public void testLabelsAndRanges() {
+        BloodPressureDataGenerator pressure = new BloodPressureDataGenerator(PATIENTS);
+        assertArrayEquals(new String[]{"SystolicPressure", "DiastolicPressure"}, pressure.getLabels());
+        double[] out = batch(pressure);
+        assertInRange(out, 0, 90, 180);
+        assertInRange(out, 1, 60, 120);
+
+        BloodLevelsDataGenerator levels = new BloodLevelsDataGenerator(PATIENTS);
+        assertArrayEquals(new String[]{"Cholesterol", "WhiteBloodCells", "RedBloodCells"}, levels.getLabels());
+        out = batch(levels);
+        assertInRange(out, 0, 145, 205);
+        assertInRange(out, 1, 3.5, 10.5);
+        assertInRange(out, 2, 4.4, 6.1);
+
+        BloodSaturationDataGenerator saturation = new BloodSaturationDataGenerator(PATIENTS);
+        assertArrayEquals(new String[]{"Saturation"}, saturation.getLabels());
+        assertInRange(batch(saturation), 0, 90, 100);
+
+        ECGDataGenerator ecg = new ECGDataGenerator(PATIENTS);
+        assertArrayEquals(new String[]{"ECG"}, ecg.getLabels());
+        assertInRange(batch(ecg), -0.8, 0.85);
+    }
+
+    @Test
+    public void testBatchesAdvancePatientState() {
+        BloodSaturationDataGenerator saturation = new BloodSaturationDataGenerator(PATIENTS);
+        double[] previous = batch(saturation);
+        for (int round = 0; round < 50; round++) {
+            double[] next = batch(saturation);
+            for (int i = 0; i < PATIENTS; i++) {
+                assertTrue(Math.abs(next[i] - previous[i]) <= 1, "saturation jumped for patient " + (i + 1));
+            }
+            previous = next;
+        }
+
+        // The single-patient path continues from the state left by the batches
+        List<String> readings = new ArrayList<>();
+        saturation.generate(1, (patientId, timestamp, label, data) -> readings.add(data));
+        double value = Double.parseDouble(readings.get(0).replace("%", ""));
+        assertTrue(Math.abs(value - previous[0]) <= 1);
+    }
+
+    @Test
+    public void testAlertsReportOnlyChanges() {
+        AlertGenerator alerts = new AlertGenerator(PATIENTS);
+        boolean[] active = new boolean[PATIENTS];
+        int changes = 0;
+        for (int round = 0; round < 100; round++) {
+            double[] out = batch(alerts);
+            for (int i = 0; i < PATIENTS; i++) {
+                if (Double.isNaN(out[i])) {
+                    continue;
+                }
+                // An alert is only resolved once triggered, and only triggered once resolved
+                assertEquals(active[i] ? 0.0 : 1.0, out[i]);
+                active[i] = !active[i];
+                changes++;
+            }
+        }
+        assertTrue(changes > 0);
+    }
+
+    @Test
+    public void testSeedMakesValuesReproducible() throws InterruptedException {
+        BloodLevelsDataGenerator first = new BloodLevelsDataGenerator(PATIENTS, 42);
+        BloodLevelsDataGenerator second = new BloodLevelsDataGenerator(PATIENTS, 42);
+        double[] expected = batch(first);
+
+        // Each patient draws from its own stream, so neither the order of the patients nor the threads matter
+        int[] reversed = new int[PATIENTS];
+        for (int i = 0; i < PATIENTS; i++) {
+            reversed[i] = PATIENTS - i;
+        }
+        double[] out = new double[3 * PATIENTS];
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            int from = t * PATIENTS / 2;
+            threads[t] = new Thread(() -> {
+                int[] half = Arrays.copyOfRange(reversed, from, from + PATIENTS / 2);
+                double[] halfOut = new double[3 * half.length];
+                second.generateBatch(half, half.length, NOW, halfOut);
+                for (int v = 0; v < 3; v++) {
+                    for (int i = 0; i < half.length; i++) {
+                        out[v * PATIENTS + half[i] - 1] = halfOut[v * half.length + i];
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < 3 * PATIENTS; i++) {
+            assertEquals(expected[i], out[i]);
+        }
+
+        double[] other = batch(new BloodLevelsDataGenerator(PATIENTS, 43));
+        assertNotEquals(expected[0], other[0]);
+    }
+}
@@ -0,0 +1,94 @@
+package data_management_Test;
+
+import com.data_management.BulkFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkFileDataReaderTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DataStorage.resetInstance();
+    }
+
+    @Test
+    public void testReadsEveryFileInDirectory() throws IOException {
+        Files.writeString(directory.resolve("a.csv"), "1,98.6,HeartRate,1622470420000\n2,120.0,Saturation,1622470520000\n");
+        Files.writeString(directory.resolve("b.csv"), "1,99.1,HeartRate,1622470430000\ninvalid,line\n1,97.0,Saturation,1622470440000");
+        Files.createDirectory(directory.resolve("nested"));
+
+        DataStorage storage = DataStorage.getInstance();
+        new BulkFileDataReader(directory.toString(), 2).readData(storage);
+
+        assertEquals(2, storage.getAllPatients().size());
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(3, records.size());
+        assertEquals(98.6, records.get(0).getMeasurementValue(), 0.0);
+        assertEquals("HeartRate", records.get(1).getRecordType());
+        assertEquals(1622470440000L, records.get(2).getTimestamp());
+        assertEquals(1, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testMatchesFileDataReaderAcrossChunks() throws IOException {
+        // Large enough to be split into several chunks
+        Path file = directory.resolve("readings.csv");
+        long timestamp = 1_700_000_000_000L;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < 400_000; i++) {
+                writer.write((i % 7) + "," + (i * 0.37) + "," + (i % 3 == 0 ? "ECG" : "Saturation") + "," + (timestamp + i));
+                writer.newLine();
+            }
+        }
+
+        DataStorage expected = DataStorage.getInstance();
+        new FileDataReader(file.toString()).readData(expected);
+        List<List<PatientRecord>> expectedRecords = recordsOf(expected);
+        DataStorage.resetInstance();
+
+        DataStorage actual = DataStorage.getInstance();
+        new BulkFileDataReader(directory.toString(), 4).readData(actual);
+        List<List<PatientRecord>> actualRecords = recordsOf(actual);
+
+        assertEquals(expectedRecords.size(), actualRecords.size());
+        for (int patient = 0; patient < expectedRecords.size(); patient++) {
+            List<PatientRecord> expectedList = expectedRecords.get(patient);
+            List<PatientRecord> actualList = actualRecords.get(patient);
+            assertEquals(expectedList.size(), actualList.size());
+            for (int i = 0; i < expectedList.size(); i++) {
+                assertEquals(expectedList.get(i).getTimestamp(), actualList.get(i).getTimestamp());
+                assertEquals(expectedList.get(i).getMeasurementValue(), actualList.get(i).getMeasurementValue(), 0.0);
+                assertEquals(expectedList.get(i).getRecordType(), actualList.get(i).getRecordType());
+            }
+        }
+    }
+
+    private static List<List<PatientRecord>> recordsOf(DataStorage storage) {
+        return storage.getAllPatients().stream()
+                .map(Patient::getPatientId)
+                .sorted()
+                .map(id -> storage.getRecords(id, 0, Long.MAX_VALUE))
+                .collect(java.util.stream.Collectors.toList());
+    }
+}
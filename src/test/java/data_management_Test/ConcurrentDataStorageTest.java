@@ -0,0 +1,137 @@
+package data_management_Test;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentDataStorageTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int PATIENTS = 8;
+    private static final int READINGS_PER_WRITER = 20_000;
+
+    private DataStorage dataStorage;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+        dataStorage = DataStorage.getInstance();
+    }
+
+    @Test
+    public void testConcurrentIngestAndQuery() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < READINGS_PER_WRITER; i++) {
+                    int patientId = 1 + i % PATIENTS; // every writer touches every patient
+                    long timestamp = i * 10L + writer;
+                    if (i % 100 == 99) {
+                        timestamp -= 500; // a late reading that has to be inserted in the middle
+                    }
+                    if (i % 2 == 0) {
+                        dataStorage.addPatientData(patientId, i, "ECG", timestamp);
+                    } else {
+                        dataStorage.addPatientData(patientId, new double[]{120.0, 80.0}, "BloodPressure", timestamp);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (int patientId = 1; patientId <= PATIENTS; patientId++) {
+                        List<PatientRecord> records = dataStorage.getRecords(patientId, 0L, Long.MAX_VALUE);
+                        long previous = Long.MIN_VALUE;
+                        for (PatientRecord record : records) {
+                            assertTrue(record.getTimestamp() >= previous, "records must stay sorted");
+                            previous = record.getTimestamp();
+                            if (record.getRecordType().equals("BloodPressure")) {
+                                assertArrayEquals(new double[]{120.0, 80.0}, record.getMeasurementValues(), 0.0);
+                            }
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Patient> patients = dataStorage.getAllPatients();
+        assertEquals(PATIENTS, patients.size());
+        int total = 0;
+        for (Patient patient : patients) {
+            total += patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE).size();
+        }
+        assertEquals(WRITERS * READINGS_PER_WRITER, total);
+    }
+
+    @Test
+    public void testListenersSeeAPatientsRecordsInStorageOrder() throws Exception {
+        int patientId = 1;
+        int readings = 2_000;
+        AtomicInteger notified = new AtomicInteger();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        dataStorage.addRecordListener(record -> {
+            Thread.yield(); // give another writer the chance to store in between
+            int stored = dataStorage.getRecords(patientId, Long.MIN_VALUE, Long.MAX_VALUE).size();
+            if (stored != notified.incrementAndGet()) {
+                outOfOrder.incrementAndGet();
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < readings; i++) {
+                    dataStorage.addPatientData(patientId, i, "ECG", i * 10L + writer);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(WRITERS * readings, notified.get());
+        assertEquals(0, outOfOrder.get(), "a listener was passed a record after a later one was stored");
+    }
+}
@@ -3,9 +3,11 @@ package data_management_Test;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -134,4 +136,49 @@ public class DataStorageTest {
         List<PatientRecord> records = dataStorage.getRecords(1, 1622470600000L, 1622470700000L);
         assertTrue(records.isEmpty());
     }
+
+    @Test
+    public void testAddPatientDataBatchGroupsByPatient() {
+        int heartRate = RecordTypes.idOf("HeartRate");
+        int saturation = RecordTypes.idOf("Saturation");
+        List<PatientRecord> notified = new ArrayList<>();
+        dataStorage.addRecordListener(notified::add);
+
+        int[] patientIds = {2, 1, 2, 1, 3};
+        long[] timestamps = {1000L, 1000L, 2000L, 2000L, 1500L};
+        int[] typeIds = {heartRate, saturation, heartRate, saturation, heartRate};
+        double[] values = {70.0, 97.0, 72.0, 96.0, 65.0, 0.0};
+        dataStorage.addPatientData(patientIds, timestamps, typeIds, values, 5);
+
+        assertEquals(3, dataStorage.getAllPatients().size());
+        List<PatientRecord> records = dataStorage.getRecords(2, 0L, Long.MAX_VALUE);
+        assertEquals(2, records.size());
+        assertEquals(70.0, records.get(0).getMeasurementValue(), 0.0);
+        assertEquals(72.0, records.get(1).getMeasurementValue(), 0.0);
+        records = dataStorage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(96.0, records.get(1).getMeasurementValue(), 0.0);
+        assertEquals(5, notified.size());
+    }
+
+    @Test
+    public void testAddPatientDataBatchOfOnePatient() {
+        int heartRate = RecordTypes.idOf("HeartRate");
+        dataStorage.addPatientData(1, new long[]{3000L, 1000L, 2000L}, new int[]{heartRate, heartRate, heartRate},
+                new double[]{3.0, 1.0, 2.0}, 3);
+
+        List<PatientRecord> records = dataStorage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(3, records.size());
+        assertEquals(1000L, records.get(0).getTimestamp());
+        assertEquals(3.0, records.get(2).getMeasurementValue(), 0.0);
+    }
+
+    @Test
+    public void testAddPatientDataBatchRejectsInvalidInput() {
+        int heartRate = RecordTypes.idOf("HeartRate");
+        assertThrows(IllegalArgumentException.class, () -> dataStorage.addPatientData(
+                new int[]{1}, new long[]{1000L}, new int[]{heartRate}, new double[]{70.0}, 2));
+        assertThrows(IllegalArgumentException.class, () -> dataStorage.addPatientData(
+                1, new long[]{1000L}, new int[]{Integer.MAX_VALUE}, new double[]{70.0}, 1));
+    }
 }
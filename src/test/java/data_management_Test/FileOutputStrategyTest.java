@@ -0,0 +1,198 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.RollingPolicy;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+import com.data_management.SegmentManifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileOutputStrategyTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testWritesLinesPerLabel() throws IOException {
+        Path base = directory.resolve("output");
+        FileOutputStrategy strategy = new FileOutputStrategy(base.toString(), 1, TimeUnit.HOURS);
+        strategy.output(1, 1000L, "ECG", "0.25");
+        strategy.output(2, 2000L, "Saturation", "97.0%");
+        strategy.output(1, 3000L, "ECG", "0.5");
+        strategy.flush();
+
+        assertEquals(List.of("Patient ID: 1, Timestamp: 1000, Label: ECG, Data: 0.25",
+                        "Patient ID: 1, Timestamp: 3000, Label: ECG, Data: 0.5"),
+                Files.readAllLines(base.resolve("ECG.txt")));
+        assertEquals(List.of("Patient ID: 2, Timestamp: 2000, Label: Saturation, Data: 97.0%"),
+                Files.readAllLines(base.resolve("Saturation.txt")));
+
+        strategy.output(3, 4000L, "ECG", "0.75");
+        strategy.close();
+        assertEquals(3, Files.readAllLines(base.resolve("ECG.txt")).size());
+    }
+
+    @Test
+    public void testAppendsToExistingFile() throws IOException {
+        Files.write(directory.resolve("Alert.txt"), List.of("earlier line"));
+        FileOutputStrategy strategy = new FileOutputStrategy(directory.toString());
+        strategy.output(1, 1000L, "Alert", "triggered");
+        strategy.close();
+
+        assertEquals(List.of("earlier line", "Patient ID: 1, Timestamp: 1000, Label: Alert, Data: triggered"),
+                Files.readAllLines(directory.resolve("Alert.txt")));
+    }
+
+    @Test
+    public void testKeepsLinesOfConcurrentWritersWhole() throws Exception {
+        FileOutputStrategy strategy = new FileOutputStrategy(directory.toString(), 5, TimeUnit.MILLISECONDS);
+        int threads = 4;
+        int linesPerThread = 50_000; // more than the queue holds, so writers wait for the writer thread
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int patientId = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < linesPerThread; i++) {
+                    strategy.output(patientId, i, "ECG", Integer.toString(i));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        strategy.close();
+
+        List<String> lines = Files.readAllLines(directory.resolve("ECG.txt"));
+        assertEquals(threads * linesPerThread, lines.size());
+        Set<String> distinct = new HashSet<>(lines);
+        assertEquals(lines.size(), distinct.size());
+        assertTrue(distinct.contains("Patient ID: 3, Timestamp: 49999, Label: ECG, Data: 49999"));
+    }
+
+    @Test
+    public void testConcurrentClosesAndFlushesReturn() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (int round = 0; round < 200; round++) {
+                Path base = directory.resolve("round" + round);
+                FileOutputStrategy strategy = new FileOutputStrategy(base.toString(), 1, TimeUnit.HOURS);
+                strategy.output(1, round, "ECG", "0.25");
+                CountDownLatch start = new CountDownLatch(1);
+                Thread[] callers = new Thread[4];
+                for (int t = 0; t < callers.length; t++) {
+                    boolean closing = t % 2 == 0;
+                    callers[t] = new Thread(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        if (closing) {
+                            strategy.close();
+                        } else {
+                            strategy.flush();
+                        }
+                    });
+                    callers[t].start();
+                }
+                start.countDown();
+                for (Thread caller : callers) {
+                    caller.join();
+                }
+                // Every caller returned after the line was written, and later calls return too
+                assertEquals(1, Files.readAllLines(base.resolve("ECG.txt")).size());
+                strategy.flush();
+                strategy.close();
+            }
+        });
+    }
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long START = Instant.parse("2026-10-17T14:00:00Z").toEpochMilli();
+
+    @Test
+    public void testRollsSegmentsByWindowAndSize() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(directory.toString(),
+                new RollingPolicy(HOUR).withMaxBytes(100), 1, TimeUnit.HOURS);
+        strategy.output(1, START, "Saturation", "97.0%");
+        strategy.output(1, START + 1000, "ECG", "0.25");
+        strategy.output(2, START + 2 * HOUR, "ECG", "0.5");
+        strategy.output(2, START + 2 * HOUR - 1000, "ECG", "0.75"); // late, stays in the current segment
+        for (int i = 0; i < 8; i++) {
+            strategy.output(3, START + 2 * HOUR + i, "Saturation", "95.0%"); // 8 lines of 30 bytes
+        }
+        strategy.close();
+
+        List<SegmentManifest.Entry> segments = SegmentManifest.read(directory).getEntries();
+        assertEquals(List.of("Saturation-2026-10-17T14.csv", "ECG-2026-10-17T14.csv", "ECG-2026-10-17T16.csv",
+                        "Saturation-2026-10-17T16.csv", "Saturation-2026-10-17T16.1.csv",
+                        "Saturation-2026-10-17T16.2.csv"),
+                segments.stream().map(SegmentManifest.Entry::getFile).collect(Collectors.toList()));
+        SegmentManifest.Entry late = segments.get(2);
+        assertEquals(START + 2 * HOUR - 1000, late.getFirstTimestamp());
+        assertEquals(START + 2 * HOUR, late.getLastTimestamp());
+        assertEquals(List.of("2,0.5,ECG," + (START + 2 * HOUR), "2,0.75,ECG," + (START + 2 * HOUR - 1000)),
+                Files.readAllLines(directory.resolve(late.getFile())));
+        assertEquals(List.of("1,97.0,Saturation," + START),
+                Files.readAllLines(directory.resolve("Saturation-2026-10-17T14.csv")));
+        assertEquals(3, segments.get(3).getLines());
+        assertEquals(3, segments.get(4).getLines());
+        assertEquals(2, segments.get(5).getLines());
+    }
+
+    @Test
+    public void testShardsSegmentsByPatient() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(directory.toString(),
+                new RollingPolicy(TimeUnit.MINUTES.toMillis(10)).withPatientShards(2));
+        strategy.output(1, START, "ECG", "0.25");
+        strategy.output(2, START, "ECG", "0.5");
+        strategy.output(3, START + 1000, "ECG", "0.75");
+        strategy.close();
+
+        assertEquals(List.of("1,0.25,ECG," + START, "3,0.75,ECG," + (START + 1000)),
+                Files.readAllLines(directory.resolve("ECG-s1-2026-10-17T1400.csv")));
+        assertEquals(List.of("2,0.5,ECG," + START), Files.readAllLines(directory.resolve("ECG-s0-2026-10-17T1400.csv")));
+    }
+
+    @Test
+    public void testReaderSkipsSegmentsOutsideTimeRange() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(directory.toString(), new RollingPolicy(HOUR));
+        for (long t = START; t < START + 3 * HOUR; t += 60_000) {
+            strategy.output(1, t, "ECG", "1.0");
+        }
+        strategy.close();
+        // A restarted strategy keeps the manifest and does not reuse segment names
+        strategy = new FileOutputStrategy(directory.toString(), new RollingPolicy(HOUR));
+        strategy.output(2, START + 2 * HOUR, "ECG", "2.0");
+        strategy.close();
+        assertEquals(4, SegmentManifest.read(directory).getEntries().size());
+        // Proves that the reader does not open the segment of the first hour
+        Files.write(directory.resolve("ECG-2026-10-17T14.csv"), List.of("not a reading"));
+
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        new FileDataReader(directory.toString(), START + HOUR + 30 * 60_000, START + 2 * HOUR + 59 * 60_000)
+                .readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(90, records.size()); // minutes 90 to 179
+        assertEquals(START + HOUR + 30 * 60_000, records.get(0).getTimestamp());
+        assertEquals(1, storage.getRecords(2, 0L, Long.MAX_VALUE).size());
+        DataStorage.resetInstance();
+    }
+}
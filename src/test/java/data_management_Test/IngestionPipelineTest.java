@@ -0,0 +1,140 @@
+package data_management_Test;
+
+import com.data_management.DataStorage;
+import com.data_management.IngestionPipeline;
+import com.data_management.WebSocketClientImpl;
+import com.data_management.WireEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestionPipelineTest {
+    private DataStorage storage;
+    private IngestionPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+        storage = DataStorage.getInstance();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        DataStorage.resetInstance();
+    }
+
+    private AtomicInteger countStored(CountDownLatch release) {
+        AtomicInteger stored = new AtomicInteger();
+        storage.addRecordListener(record -> {
+            stored.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return stored;
+    }
+
+    @Test
+    public void testStoresTextAndBinaryMessages() throws InterruptedException {
+        pipeline = new IngestionPipeline(storage);
+        WireEncoder encoder = new WireEncoder();
+        WireEncoder.Batch batch = new WireEncoder.Batch();
+        batch.add(3, 3000L, encoder.labelId("ECG"), 0.5);
+        byte[] labels = encoder.takeNewLabels();
+        byte[] frame = batch.toFrame();
+
+        assertTrue(pipeline.offer("1,1000,HeartRate,78.0"));
+        assertTrue(pipeline.offer("2,2000,Saturation,97.0\ninvalid\n2,2001,Saturation,96.0"));
+        assertTrue(pipeline.offer(ByteBuffer.allocate(labels.length + frame.length).put(labels).put(frame).flip()));
+        assertTrue(pipeline.flush(10, TimeUnit.SECONDS));
+
+        assertEquals(78.0, storage.getRecords(1, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+        assertEquals(2, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+        assertEquals(0.5, storage.getRecords(3, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+        assertEquals(3, pipeline.getReceivingStats().getItems());
+        assertEquals(3, pipeline.getParsingStats().getItems());
+        assertEquals(4, pipeline.getStorageStats().getItems());
+        assertEquals(0, pipeline.getDroppedMessages());
+    }
+
+    @Test
+    public void testDropsNewestMessagesWhenStorageStalls() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger stored = countStored(release);
+        pipeline = new IngestionPipeline(storage, 4, 1, IngestionPipeline.OverflowPolicy.DROP_NEWEST);
+
+        int accepted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (pipeline.offer("1," + (1000 + i) + ",HeartRate,78.0")) {
+                accepted++;
+            }
+        }
+        assertTrue(pipeline.getDroppedMessages() > 0);
+        assertEquals(1000, accepted + pipeline.getDroppedMessages());
+        assertEquals(accepted, pipeline.getReceivingStats().getItems());
+
+        release.countDown();
+        assertTrue(pipeline.flush(10, TimeUnit.SECONDS));
+        assertEquals(accepted, stored.get());
+        assertEquals(accepted, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForStorage() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger stored = countStored(release);
+        pipeline = new IngestionPipeline(storage, 4, 1, IngestionPipeline.OverflowPolicy.BLOCK);
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(pipeline.offer("1," + (1000 + i) + ",HeartRate,78.0"));
+            }
+        });
+        producer.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline, "Producer never blocked");
+            Thread.sleep(5);
+        }
+        assertTrue(pipeline.getReceivingStats().getItems() < 1000);
+
+        release.countDown();
+        producer.join(10_000);
+        assertFalse(producer.isAlive());
+        assertTrue(pipeline.flush(10, TimeUnit.SECONDS));
+        assertEquals(1000, stored.get());
+        assertEquals(0, pipeline.getDroppedMessages());
+    }
+
+    @Test
+    public void testCloseStoresQueuedMessages() {
+        pipeline = new IngestionPipeline(storage);
+        for (int i = 0; i < 500; i++) {
+            pipeline.offer("1," + (1000 + i) + ",HeartRate,78.0");
+        }
+        pipeline.close();
+        assertEquals(500, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertFalse(pipeline.offer("1,5000,HeartRate,78.0"));
+    }
+
+    @Test
+    public void testClientHandsMessagesToPipeline() throws Exception {
+        pipeline = new IngestionPipeline(storage);
+        WebSocketClientImpl client = new WebSocketClientImpl("ws://localhost:8080", pipeline, false);
+        client.onMessage("1,1622470420000,HeartRate,78.0");
+        assertTrue(pipeline.flush(10, TimeUnit.SECONDS));
+        assertEquals(1, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,155 @@
+package data_management_Test;
+
+import com.cardio_generator.PatientThreadSimulation;
+import com.cardio_generator.SimulationClock;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class PatientThreadSimulationTest {
+    private static final OutputStrategy DISCARD = (patientId, timestamp, label, data) -> { };
+
+    private PatientThreadSimulation simulation;
+
+    @AfterEach
+    public void tearDown() {
+        if (simulation != null) {
+            simulation.close();
+        }
+    }
+
+    private static List<Integer> patients(int count) {
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            patientIds.add(i);
+        }
+        return patientIds;
+    }
+
+    @Test
+    public void testRunsEachPatientOnItsOwnThread() throws InterruptedException {
+        Map<Integer, Thread> threads = new ConcurrentHashMap<>();
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger slow = new AtomicInteger();
+        simulation = new PatientThreadSimulation(DISCARD, Thread::new);
+        simulation.schedule((patientId, output) -> {
+            threads.put(patientId, Thread.currentThread());
+            fast.incrementAndGet();
+        }, 50, TimeUnit.MILLISECONDS);
+        simulation.schedule((patientId, output) -> slow.incrementAndGet(), 250, TimeUnit.MILLISECONDS);
+        simulation.start(patients(10));
+        Thread.sleep(1000);
+        simulation.close();
+
+        assertEquals(10, simulation.getThreadCount());
+        assertEquals(10, threads.values().stream().distinct().count());
+        assertTrue(fast.get() >= 10 * 15 && fast.get() <= 10 * 21, "fast: " + fast.get());
+        assertTrue(slow.get() >= 10 * 3 && slow.get() <= 10 * 5, "slow: " + slow.get());
+        assertEquals(fast.get() + slow.get(), simulation.getFiredCount());
+        for (Thread thread : threads.values()) {
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testBlockedPatientDoesNotHoldUpOthers() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger others = new AtomicInteger();
+        simulation = new PatientThreadSimulation(DISCARD, Thread::new);
+        simulation.schedule((patientId, output) -> {
+            if (patientId == 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                others.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        simulation.start(patients(3));
+        Thread.sleep(300);
+        release.countDown();
+
+        assertTrue(others.get() >= 2 * 8, "others: " + others.get());
+    }
+
+    @Test
+    public void testAwaitTerminationReturnsOnceClosed() throws InterruptedException {
+        simulation = new PatientThreadSimulation(DISCARD, Thread::new);
+        simulation.schedule((patientId, output) -> { }, 1, TimeUnit.SECONDS);
+        simulation.start(patients(5));
+        Thread waiter = new Thread(() -> {
+            try {
+                simulation.awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        assertTrue(waiter.isAlive());
+        simulation.close();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    public void testFollowsVirtualClockForItsDuration() throws InterruptedException {
+        Map<Integer, List<Long>> timestamps = new ConcurrentHashMap<>();
+        simulation = new PatientThreadSimulation((patientId, timestamp, label, data) ->
+                timestamps.computeIfAbsent(patientId, id -> new ArrayList<>()).add(timestamp),
+                Thread::new, SimulationClock.virtual(0L));
+        simulation.schedule(new BloodSaturationDataGenerator(3, 7), 1, TimeUnit.SECONDS);
+        simulation.setDuration(10, TimeUnit.MINUTES);
+        simulation.start(patients(3));
+        simulation.awaitTermination();
+
+        assertEquals(3, timestamps.size());
+        for (List<Long> patient : timestamps.values()) {
+            assertEquals(600, patient.size());
+            for (int i = 1; i < patient.size(); i++) {
+                assertEquals(1000L, patient.get(i) - patient.get(i - 1));
+            }
+        }
+        assertEquals(3 * 600, simulation.getFiredCount());
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        if (!PatientThreadSimulation.isVirtualThreadSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> PatientThreadSimulation.withVirtualThreads(DISCARD));
+        }
+        assumeTrue(PatientThreadSimulation.isVirtualThreadSupported(), "Virtual threads need Java 21 or later");
+        AtomicInteger runs = new AtomicInteger();
+        simulation = PatientThreadSimulation.withVirtualThreads(DISCARD);
+        simulation.schedule((patientId, output) -> runs.incrementAndGet(), 20, TimeUnit.MILLISECONDS);
+        simulation.start(patients(1000));
+        Thread.sleep(300);
+        simulation.close();
+        assertTrue(runs.get() >= 1000 * 10, "runs: " + runs.get());
+    }
+
+    @Test
+    public void testRejectsInvalidSchedules() {
+        simulation = new PatientThreadSimulation(DISCARD, Thread::new);
+        assertThrows(IllegalArgumentException.class,
+                () -> simulation.schedule((patientId, output) -> { }, 0, TimeUnit.SECONDS));
+        simulation.start(patients(1));
+        assertThrows(IllegalStateException.class,
+                () -> simulation.schedule((patientId, output) -> { }, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> simulation.start(patients(1)));
+    }
+}
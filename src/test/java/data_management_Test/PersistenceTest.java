@@ -0,0 +1,138 @@
+package data_management_Test;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollupRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DataStorage.resetInstance();
+    }
+
+    /**
+     * Simulates a restart: the storage is dropped and a new one recovers from the directory.
+     */
+    private DataStorage restart() throws IOException {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        storage.enablePersistence(directory.toString());
+        return storage;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.map(entry -> entry.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testRecoversFromLog() throws IOException {
+        DataStorage storage = restart();
+        storage.addPatientData(1, 98.6, "HeartRate", 1000L);
+        storage.addPatientData(1, new double[]{120.0, 80.0}, "BloodPressure", 2000L);
+        int saturation = RecordTypes.idOf("Saturation");
+        storage.addPatientData(new int[]{2, 1}, new long[]{3000L, 4000L}, new int[]{saturation, saturation},
+                new double[]{97.0, 96.0}, 2);
+
+        storage = restart();
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(3, records.size());
+        assertEquals(98.6, records.get(0).getMeasurementValue(), 0.0);
+        assertArrayEquals(new double[]{120.0, 80.0}, records.get(1).getMeasurementValues(), 0.0);
+        assertEquals("Saturation", records.get(2).getRecordType());
+        assertEquals(97.0, storage.getRecords(2, 0L, Long.MAX_VALUE).get(0).getMeasurementValue(), 0.0);
+    }
+
+    @Test
+    public void testRecoversFromSnapshotAndLogTail() throws IOException {
+        DataStorage storage = restart();
+        for (long t = 0; t < 1000; t++) {
+            storage.addPatientData((int) (t % 3), t * 0.5, "ECG", t);
+        }
+        storage.snapshot();
+        storage.addPatientData(7, 42.0, "ECG", 5000L);
+
+        storage = restart();
+
+        assertEquals(4, storage.getAllPatients().size());
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(333, records.size());
+        assertEquals(0.5, records.get(0).getMeasurementValue(), 0.0);
+        assertEquals(997L, records.get(332).getTimestamp());
+        assertEquals(42.0, storage.getRecords(7, 0L, Long.MAX_VALUE).get(0).getMeasurementValue(), 0.0);
+
+        // The snapshot superseded the first log file; recovery started a new one after the tail
+        assertEquals(List.of("snapshot-0000000000000001.bin", "wal-0000000000000001.log", "wal-0000000000000002.log"),
+                files());
+    }
+
+    @Test
+    public void testIgnoresTornLogTail() throws IOException {
+        DataStorage storage = restart();
+        storage.addPatientData(1, 98.6, "HeartRate", 1000L);
+        DataStorage.resetInstance();
+        // A block header promising more than was written before the crash
+        Files.write(directory.resolve("wal-0000000000000000.log"), new byte[]{0, 0, 1, 0, 42, 42},
+                StandardOpenOption.APPEND);
+
+        storage = restart();
+        storage.addPatientData(1, 99.1, "HeartRate", 2000L);
+        storage = restart();
+
+        assertEquals(2, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testSnapshotKeepsRollups() throws IOException {
+        long hour = 3_600_000L;
+        DataStorage storage = restart();
+        storage.setRetentionPolicy("ECG", new RetentionPolicy(hour).withRollup(hour, RetentionPolicy.FOREVER));
+        for (long t = 0; t < 2 * hour; t += 1000) {
+            storage.addPatientData(1, 1.0, "ECG", t);
+        }
+        storage.compact(2 * hour);
+        storage.snapshot();
+
+        storage = restart();
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, 2 * hour);
+        assertEquals(1 + 3600, records.size());
+        RollupRecord rollup = (RollupRecord) records.get(0);
+        assertEquals(3600, rollup.getCount());
+        assertEquals(hour, records.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testRequiresEmptyStorage() {
+        DataStorage storage = DataStorage.getInstance();
+        storage.addPatientData(1, 98.6, "HeartRate", 1000L);
+        assertThrows(IllegalStateException.class, () -> storage.enablePersistence(directory.toString()));
+        assertThrows(IllegalStateException.class, storage::snapshot);
+    }
+}
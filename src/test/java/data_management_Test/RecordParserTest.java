@@ -0,0 +1,122 @@
+package data_management_Test;
+
+import com.data_management.RecordParser;
+import com.data_management.RecordTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordParserTest {
+    private List<Object[]> parsed;
+    private RecordParser fileParser;
+    private RecordParser messageParser;
+
+    @BeforeEach
+    public void setUp() {
+        parsed = new ArrayList<>();
+        RecordParser.Sink sink = (patientId, measurementValue, recordType, timestamp) ->
+                parsed.add(new Object[]{patientId, measurementValue, recordType, timestamp});
+        fileParser = new RecordParser(RecordParser.Format.FILE, sink);
+        messageParser = new RecordParser(RecordParser.Format.MESSAGE, sink);
+    }
+
+    @Test
+    public void testFieldOrders() {
+        assertTrue(fileParser.parse("1,98.6,HeartRate,1622470420000"));
+        assertTrue(messageParser.parse("2,1627842123000,ECG,-0.25"));
+
+        assertArrayEquals(new Object[]{1, 98.6, "HeartRate", 1622470420000L}, parsed.get(0));
+        assertArrayEquals(new Object[]{2, -0.25, "ECG", 1627842123000L}, parsed.get(1));
+    }
+
+    @Test
+    public void testLabelsAreInterned() {
+        String line = "1,1627842123000,HeartRate,78.0";
+        messageParser.parse(line);
+        messageParser.parse(new StringBuilder(line));
+
+        String label = RecordTypes.nameOf(RecordTypes.idOf("HeartRate"));
+        assertSame(label, parsed.get(0)[2]);
+        assertSame(label, parsed.get(1)[2]);
+    }
+
+    @Test
+    public void testDoublesMatchDoubleParseDouble() {
+        String[] values = {"0", "-0.0", "78.0", "0.1", "99.99999", "1e3", "2.5E-7", "123456789.123456",
+                "0.30000000000000004", "1e300", "4.9e-324", "78.0d", " 12.5 ", "NaN", "-Infinity"};
+        for (String value : values) {
+            parsed.clear();
+            assertTrue(messageParser.parse("1,0,ECG," + value), value);
+            assertEquals(Double.parseDouble(value), (double) parsed.get(0)[1], value);
+        }
+    }
+
+    @Test
+    public void testRandomDoublesRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            double expected = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextDouble() * 200;
+            String[] values = {Double.toString(expected), String.format("%.12f", expected),
+                    random.nextLong() + "." + Math.abs(random.nextInt()) + "e" + (random.nextInt(80) - 40)};
+            for (String value : values) {
+                parsed.clear();
+                if (messageParser.parse("1,0,ECG," + value)) {
+                    assertEquals(Double.doubleToLongBits(Double.parseDouble(value)),
+                            Double.doubleToLongBits((double) parsed.get(0)[1]), value);
+                } else {
+                    assertThrows(NumberFormatException.class, () -> Double.parseDouble(value), value);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedLines() {
+        String[] lines = {"", "invalid,line", "1,2,3,4,5", "x,1627842123000,HeartRate,78.0",
+                "1,notatimestamp,HeartRate,78.0", "1,1627842123000,HeartRate,nonNumericData",
+                "1,1627842123000,Saturation,98%", "2147483648,0,ECG,1", "1,9223372036854775808,ECG,1",
+                "1,-,ECG,1", "1,0,ECG,", "1,0,ECG,1e"};
+        for (String line : lines) {
+            assertFalse(messageParser.parse(line), line);
+        }
+        assertTrue(parsed.isEmpty());
+        assertTrue(messageParser.parse("-2147483648,-9223372036854775808,ECG,1"));
+    }
+
+    @Test
+    public void testTrailingEmptyFieldsAreIgnored() {
+        // As with String.split, which the readers used before
+        assertTrue(fileParser.parse("1,98.6,HeartRate,1622470420000,"));
+        assertTrue(messageParser.parse("2,1627842123000,ECG,-0.25,,"));
+        assertFalse(messageParser.parse("2,1627842123000,ECG,-0.25,,x"));
+        assertFalse(messageParser.parse("2,1627842123000,ECG,,"));
+
+        assertEquals(2, parsed.size());
+        assertArrayEquals(new Object[]{1, 98.6, "HeartRate", 1622470420000L}, parsed.get(0));
+        assertArrayEquals(new Object[]{2, -0.25, "ECG", 1627842123000L}, parsed.get(1));
+        ByteBuffer bytes = ByteBuffer.wrap("3,1.5,ECG,1000,\r".getBytes(StandardCharsets.UTF_8));
+        assertTrue(fileParser.parse(bytes, 0, bytes.limit()));
+        assertArrayEquals(new Object[]{3, 1.5, "ECG", 1000L}, parsed.get(2));
+    }
+
+    @Test
+    public void testBytesWithinBuffer() {
+        byte[] text = "1,98.6,HeartRate,1622470420000\r\n2,120.0,Saturation,1622470520000\n"
+                .getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(text);
+        int firstEnd = 31;
+        assertTrue(fileParser.parse(buffer, 0, firstEnd));
+        assertTrue(fileParser.parse(buffer, firstEnd + 1, text.length - 1));
+
+        assertArrayEquals(new Object[]{1, 98.6, "HeartRate", 1622470420000L}, parsed.get(0));
+        assertArrayEquals(new Object[]{2, 120.0, "Saturation", 1622470520000L}, parsed.get(1));
+        assertEquals(0, buffer.position());
+    }
+}
@@ -0,0 +1,110 @@
+package data_management_Test;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollupRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetentionPolicyTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 1_700_000_000_000L - 1_700_000_000_000L % HOUR;
+
+    private DataStorage dataStorage;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+        dataStorage = DataStorage.getInstance();
+        dataStorage.setRetentionPolicy("ECG", new RetentionPolicy(HOUR)
+                .withRollup(MINUTE, 2 * HOUR)
+                .withRollup(HOUR, RetentionPolicy.FOREVER));
+    }
+
+    @Test
+    public void testOldRawRecordsAreRolledUp() {
+        // Three hours of one reading per second, alternating between 1.0 and 3.0
+        for (long t = START; t < START + 3 * HOUR; t += 1000) {
+            dataStorage.addPatientData(1, (t / 1000) % 2 == 0 ? 1.0 : 3.0, "ECG", t);
+        }
+
+        dataStorage.compact(START + 3 * HOUR);
+
+        List<PatientRecord> lastHour = dataStorage.getRecords(1, START + 2 * HOUR, START + 3 * HOUR);
+        assertEquals(3600, lastHour.size());
+        assertFalse(lastHour.get(0) instanceof RollupRecord);
+
+        List<PatientRecord> secondHour = dataStorage.getRecords(1, START + HOUR, START + 2 * HOUR - 1);
+        assertEquals(60, secondHour.size());
+        RollupRecord minute = (RollupRecord) secondHour.get(0);
+        assertEquals(START + HOUR, minute.getTimestamp());
+        assertEquals(MINUTE, minute.getResolution());
+        assertEquals(60, minute.getCount());
+        assertEquals(2.0, minute.getMeasurementValue(), 1e-9);
+        assertEquals(1.0, minute.getMinimum(), 0.0);
+        assertEquals(3.0, minute.getMaximum(), 0.0);
+
+        List<PatientRecord> firstHour = dataStorage.getRecords(1, START, START + HOUR - 1);
+        assertEquals(1, firstHour.size());
+        RollupRecord hour = (RollupRecord) firstHour.get(0);
+        assertEquals(HOUR, hour.getResolution());
+        assertEquals(3600, hour.getCount());
+
+        assertEquals(1 + 60 + 3600, dataStorage.getRecords(1, START, START + 3 * HOUR).size());
+    }
+
+    @Test
+    public void testRepeatedCompactionDoesNotDoubleCount() {
+        for (long t = START; t < START + 2 * HOUR; t += 1000) {
+            dataStorage.addPatientData(1, 5.0, "ECG", t);
+            dataStorage.compact(t - t % MINUTE + HOUR);
+        }
+        dataStorage.compact(START + 2 * HOUR);
+
+        long total = 0;
+        for (PatientRecord record : dataStorage.getRecords(1, START, START + 2 * HOUR)) {
+            total += record instanceof RollupRecord ? ((RollupRecord) record).getCount() : 1;
+        }
+        assertEquals(7200, total);
+    }
+
+    @Test
+    public void testRecordTypesWithoutPolicyAreKept() {
+        dataStorage.addPatientData(1, 98.0, "Saturation", START);
+        dataStorage.addPatientData(1, new double[]{120.0, 80.0}, "BloodPressure", START);
+
+        dataStorage.compact(START + 1000 * HOUR);
+
+        assertEquals(2, dataStorage.getRecords(1, START, START).size());
+    }
+
+    @Test
+    public void testMultiValuedRecordsAreRolledUpPerValue() {
+        dataStorage.setRetentionPolicy("BloodPressure", new RetentionPolicy(MINUTE).withRollup(MINUTE, HOUR));
+        dataStorage.addPatientData(1, new double[]{120.0, 80.0}, "BloodPressure", START);
+        dataStorage.addPatientData(1, new double[]{140.0, 60.0}, "BloodPressure", START + 1000);
+
+        dataStorage.compact(START + 2 * MINUTE);
+
+        List<PatientRecord> records = dataStorage.getRecords(1, "BloodPressure", START, START + MINUTE);
+        assertEquals(1, records.size());
+        RollupRecord rollup = (RollupRecord) records.get(0);
+        assertArrayEquals(new double[]{130.0, 70.0}, rollup.getMeasurementValues(), 1e-9);
+        assertArrayEquals(new double[]{120.0, 60.0}, rollup.getMinimumValues(), 0.0);
+        assertArrayEquals(new double[]{140.0, 80.0}, rollup.getMaximumValues(), 0.0);
+    }
+
+    @Test
+    public void testRollupsMustGetCoarser() {
+        RetentionPolicy policy = new RetentionPolicy(HOUR).withRollup(MINUTE, HOUR);
+        assertThrows(IllegalArgumentException.class, () -> policy.withRollup(90_000, HOUR));
+        assertThrows(IllegalArgumentException.class, () -> policy.withRollup(HOUR, MINUTE));
+    }
+}
@@ -0,0 +1,149 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.SegmentOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.SegmentFileDataReader;
+import com.data_management.SegmentWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentFileDataReaderTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        DataStorage.resetInstance();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DataStorage.resetInstance();
+    }
+
+    @Test
+    public void testRoundTripsArbitraryReadings() throws IOException {
+        Random random = new Random(7);
+        int count = 10_000; // spans several blocks
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = 1_700_000_000_000L;
+        double[] specials = {0.0, -0.0, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, -1e300, 97.0};
+        for (int i = 0; i < count; i++) {
+            // Regular steps, jitter, and the occasional large jump in either direction
+            int kind = random.nextInt(10);
+            timestamp += kind < 6 ? 1000 : kind < 9 ? random.nextInt(5000) : random.nextInt(2_000_000_000) - 1_000_000_000;
+            timestamps[i] = timestamp;
+            values[i] = random.nextInt(4) == 0 ? specials[random.nextInt(specials.length)] : random.nextGaussian() * 100;
+        }
+
+        Path file = directory.resolve("readings.seg");
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                writer.append(3, "ECG", timestamps[i], values[i]);
+            }
+        }
+
+        DataStorage storage = DataStorage.getInstance();
+        new SegmentFileDataReader(file.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(3, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(count, records.size());
+        // The storage orders readings by timestamp, keeping the order of equal timestamps
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> timestamps[i]));
+        for (int i = 0; i < count; i++) {
+            assertEquals(timestamps[order[i]], records.get(i).getTimestamp());
+            assertEquals(values[order[i]], records.get(i).getMeasurementValue());
+        }
+    }
+
+    @Test
+    public void testCompressesRegularStreams() throws IOException {
+        Path file = directory.resolve("regular.seg");
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (int i = 0; i < 36_000; i++) {
+                writer.append(1, "Saturation", 1_700_000_000_000L + i * 1000L, 95 + (i / 60) % 3);
+            }
+        }
+        assertTrue(Files.size(file) < 36_000 / 2, "Segment of " + Files.size(file) + " bytes");
+    }
+
+    @Test
+    public void testReadsCompleteBlocksOfUnclosedSegment() throws IOException {
+        Path file = directory.resolve("crashed.seg");
+        SegmentWriter writer = new SegmentWriter(file);
+        for (int i = 0; i < 100; i++) {
+            writer.append(1, "ECG", 1000L * i, i);
+            writer.append(2, "Saturation", 1000L * i, 97.0);
+        }
+        writer.flush();
+        writer.append(1, "ECG", 1_000_000L, 1.0);
+        writer.flush();
+        // The writer dies halfway through the last block
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        DataStorage storage = DataStorage.getInstance();
+        new SegmentFileDataReader(directory.toString()).readData(storage);
+
+        assertEquals(100, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(100, storage.getRecords(2, 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testSegmentOutputStrategy() throws IOException {
+        SegmentOutputStrategy strategy = new SegmentOutputStrategy(directory.toString(), 1, TimeUnit.HOURS);
+        strategy.output(1, 1000L, "Saturation", "97.0%");
+        strategy.output(1, 2000L, "ECG", "0.25");
+        strategy.output(1, 3000L, "Alert", "triggered");
+        strategy.close();
+
+        DataStorage storage = DataStorage.getInstance();
+        new SegmentFileDataReader(directory.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(2, records.size());
+        assertEquals(97.0, records.get(0).getMeasurementValue(), 0.0);
+        assertEquals("ECG", records.get(1).getRecordType());
+    }
+
+    @Test
+    public void testSegmentOutputStrategyBatches() throws IOException {
+        SegmentOutputStrategy strategy = new SegmentOutputStrategy(directory.toString(), 1, TimeUnit.HOURS);
+        strategy.outputBatch(new int[]{1, 2, 0}, 2, 1000L, new String[]{"SystolicPressure", "DiastolicPressure"},
+                new double[]{120.0, Double.NaN, 80.0, 75.0});
+        strategy.outputBatch(new int[]{1, 2}, 2, 2000L, new String[]{"Alert"}, new double[]{1, 0});
+        strategy.close();
+
+        DataStorage storage = DataStorage.getInstance();
+        new SegmentFileDataReader(directory.toString()).readData(storage);
+
+        List<PatientRecord> first = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(2, first.size());
+        assertEquals(120.0, storage.getRecords(1, "SystolicPressure", 0L, Long.MAX_VALUE).get(0).getMeasurementValue(), 0.0);
+        List<PatientRecord> second = storage.getRecords(2, 0L, Long.MAX_VALUE);
+        assertEquals(1, second.size());
+        assertEquals(75.0, second.get(0).getMeasurementValue(), 0.0);
+    }
+}
@@ -0,0 +1,221 @@
+package data_management_Test;
+
+import com.cardio_generator.SimulationClock;
+import com.cardio_generator.SimulationEngine;
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.BatchOutputStrategy;
+import com.cardio_generator.outputs.OutputStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationEngineTest {
+    private static final OutputStrategy DISCARD = (patientId, timestamp, label, data) -> { };
+
+    private SimulationEngine engine;
+
+    @AfterEach
+    public void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private static List<Integer> patients(int count) {
+        List<Integer> patientIds = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            patientIds.add(i);
+        }
+        return patientIds;
+    }
+
+    @Test
+    public void testRunsGeneratorsAtTheirPeriods() throws InterruptedException {
+        Map<Integer, AtomicInteger> fast = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> slow = new ConcurrentHashMap<>();
+        engine = new SimulationEngine(DISCARD, 3, 5, SimulationClock.virtual(1_000_000L));
+        engine.schedule((patientId, output) -> fast.computeIfAbsent(patientId, id -> new AtomicInteger()).incrementAndGet(),
+                50, TimeUnit.MILLISECONDS);
+        engine.schedule((patientId, output) -> slow.computeIfAbsent(patientId, id -> new AtomicInteger()).incrementAndGet(),
+                250, TimeUnit.MILLISECONDS);
+        engine.setDuration(1, TimeUnit.SECONDS);
+        engine.start(patients(20));
+        engine.awaitTermination();
+
+        // The first run of a patient falls within the first period, so a second holds exactly
+        // 20 runs of the fast generator and 4 of the slow one for every patient
+        assertEquals(20, fast.size());
+        assertEquals(20, slow.size());
+        for (int patientId = 1; patientId <= 20; patientId++) {
+            assertEquals(20, fast.get(patientId).get(), "fast runs of patient " + patientId);
+            assertEquals(4, slow.get(patientId).get(), "slow runs of patient " + patientId);
+        }
+        assertEquals(20 * 20 + 20 * 4, engine.getFiredCount());
+    }
+
+    @Test
+    public void testServesEachPatientFromOneThread() throws InterruptedException {
+        Map<Integer, String> threads = new ConcurrentHashMap<>();
+        AtomicInteger moved = new AtomicInteger();
+        engine = new SimulationEngine(DISCARD, 4, 5);
+        engine.schedule((patientId, output) -> {
+            String previous = threads.putIfAbsent(patientId, Thread.currentThread().getName());
+            if (previous != null && !previous.equals(Thread.currentThread().getName())) {
+                moved.incrementAndGet();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        engine.start(patients(100));
+        Thread.sleep(300);
+        engine.close();
+
+        assertEquals(100, threads.size());
+        assertEquals(4, threads.values().stream().distinct().count());
+        assertEquals(0, moved.get());
+    }
+
+    @Test
+    public void testPassesOutputAndSurvivesFailingGenerators() throws InterruptedException {
+        AtomicLong readings = new AtomicLong();
+        engine = new SimulationEngine((patientId, timestamp, label, data) -> readings.incrementAndGet(), 2, 5);
+        engine.schedule((patientId, output) -> {
+            throw new IllegalStateException("broken generator");
+        }, 20, TimeUnit.MILLISECONDS);
+        engine.schedule((patientId, output) -> output.output(patientId, 0L, "ECG", "0.5"), 20, TimeUnit.MILLISECONDS);
+        engine.start(patients(10));
+        Thread.sleep(200);
+        engine.close();
+
+        long stopped = readings.get();
+        assertTrue(stopped >= 10 * 5, "readings: " + stopped);
+        Thread.sleep(50);
+        assertEquals(stopped, readings.get());
+    }
+
+    @Test
+    public void testRejectsInvalidSchedules() {
+        assertThrows(IllegalArgumentException.class, () -> new SimulationEngine(DISCARD, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new SimulationEngine(DISCARD, 1, 0));
+        engine = new SimulationEngine(DISCARD, 1, 10);
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.schedule((patientId, output) -> { }, 1, TimeUnit.MILLISECONDS));
+        engine.start(patients(1));
+        assertThrows(IllegalStateException.class,
+                () -> engine.schedule((patientId, output) -> { }, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> engine.start(patients(1)));
+    }
+
+    private static List<String> simulateHourOfEcg(int shardCount) throws InterruptedException {
+        List<String> readings = Collections.synchronizedList(new ArrayList<>());
+        SimulationEngine simulation = new SimulationEngine((patientId, timestamp, label, data) ->
+                readings.add(patientId + "," + timestamp + "," + data), shardCount, 10, SimulationClock.virtual(1_000_000L));
+        simulation.schedule(new ECGDataGenerator(5, 42), 1, TimeUnit.SECONDS);
+        simulation.setDuration(1, TimeUnit.HOURS);
+        simulation.start(patients(5));
+        simulation.awaitTermination();
+        simulation.close();
+        Collections.sort(readings);
+        return readings;
+    }
+
+    @Test
+    public void testVirtualClockRunsAsFastAsPossible() throws InterruptedException {
+        long began = System.nanoTime();
+        List<String> readings = simulateHourOfEcg(3);
+        assertTrue(System.nanoTime() - began < TimeUnit.SECONDS.toNanos(20));
+
+        // An hour of readings a second apart, stamped with the simulated time
+        assertEquals(5 * 3600, readings.size());
+        for (String reading : readings) {
+            long timestamp = Long.parseLong(reading.split(",")[1]);
+            assertTrue(timestamp >= 1_000_000L && timestamp < 1_000_000L + TimeUnit.HOURS.toMillis(1), reading);
+        }
+        // The same seed and start give the same readings, whatever the shards
+        assertEquals(readings, simulateHourOfEcg(1));
+    }
+
+    @Test
+    public void testScaledClockRunsFasterThanRealTime() throws InterruptedException {
+        List<Long> timestamps = Collections.synchronizedList(new ArrayList<>());
+        engine = new SimulationEngine((patientId, timestamp, label, data) -> timestamps.add(timestamp),
+                2, 10, SimulationClock.scaled(100));
+        engine.schedule(new ECGDataGenerator(4, 42), 1, TimeUnit.SECONDS);
+        long began = System.currentTimeMillis();
+        engine.start(patients(4));
+        Thread.sleep(500);
+        engine.close();
+
+        // Half a second at a speedup of 100 simulates 50 seconds
+        assertTrue(timestamps.size() >= 4 * 40 && timestamps.size() <= 4 * 60, "runs: " + timestamps.size());
+        long last = Collections.max(timestamps);
+        assertTrue(last - began >= 40_000 && last - began <= 60_000, "simulated " + (last - began) + " ms");
+    }
+
+    private static void simulateMinuteOfVitals(OutputStrategy output) throws InterruptedException {
+        SimulationEngine simulation = new SimulationEngine(output, 2, 1000, SimulationClock.virtual(1_000_000L));
+        simulation.schedule(new ECGDataGenerator(10, 7), 1, TimeUnit.SECONDS);
+        simulation.schedule(new BloodSaturationDataGenerator(10, 7), 1, TimeUnit.SECONDS);
+        simulation.schedule(new BloodPressureDataGenerator(10, 7), 1, TimeUnit.SECONDS);
+        simulation.schedule(new AlertGenerator(10, 7), 1, TimeUnit.SECONDS);
+        simulation.setDuration(1, TimeUnit.MINUTES);
+        simulation.start(patients(10));
+        simulation.awaitTermination();
+        simulation.close();
+    }
+
+    private static String reading(int patientId, long timestamp, String label, double value) {
+        return patientId + "," + timestamp + "," + label + "," + value;
+    }
+
+    @Test
+    public void testBatchOutputTakesTheSameReadingsInBatches() throws InterruptedException {
+        List<String> expected = Collections.synchronizedList(new ArrayList<>());
+        simulateMinuteOfVitals((patientId, timestamp, label, data) -> {
+            double value = data.equals("triggered") ? 1 : data.equals("resolved") ? 0
+                    : Double.parseDouble(data.replace("%", ""));
+            expected.add(reading(patientId, timestamp, label, value));
+        });
+
+        List<String> batched = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger single = new AtomicInteger();
+        simulateMinuteOfVitals(new BatchOutputStrategy() {
+            @Override
+            public void outputBatch(int[] patientIds, int count, long timestamp, String[] labels, double[] values) {
+                batches.incrementAndGet();
+                for (int v = 0; v < labels.length; v++) {
+                    for (int i = 0; i < count; i++) {
+                        if (!Double.isNaN(values[v * count + i])) {
+                            batched.add(reading(patientIds[i], timestamp, labels[v], values[v * count + i]));
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                single.incrementAndGet();
+            }
+        });
+
+        Collections.sort(expected);
+        Collections.sort(batched);
+        assertTrue(expected.size() > 10 * 60 * 2, "readings: " + expected.size());
+        assertEquals(expected, batched);
+        assertEquals(0, single.get());
+        // With a tick of a second, the patients of a shard share a batch per generator and tick
+        assertEquals(2 * 60 * 4, batches.get());
+    }
+}
@@ -0,0 +1,195 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TcpOutputStrategyTest {
+    private static final String LARGE_DATA = "x".repeat(1000);
+
+    private TcpOutputStrategy strategy;
+
+    @AfterEach
+    public void tearDown() {
+        if (strategy != null) {
+            strategy.close();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("localhost", strategy.getPort()));
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSendsToEveryClient() throws Exception {
+        strategy = new TcpOutputStrategy(0);
+        try (Socket first = connect(); Socket second = connect()) {
+            await(() -> strategy.getClientCount() == 2);
+            strategy.output(1, 1000L, "ECG", "0.25");
+
+            try (Socket late = connect()) {
+                await(() -> strategy.getClientCount() == 3);
+                strategy.output(2, 2000L, "Saturation", "97%");
+
+                BufferedReader firstIn = reader(first);
+                assertEquals("1,1000,ECG,0.25", firstIn.readLine());
+                assertEquals("2,2000,Saturation,97%", firstIn.readLine());
+                assertEquals("1,1000,ECG,0.25", reader(second).readLine());
+                assertEquals("2,2000,Saturation,97%", reader(late).readLine());
+            }
+        }
+        await(() -> strategy.getClientCount() == 0);
+    }
+
+    @Test
+    public void testDropsOldestLinesOfSlowClient() throws Exception {
+        strategy = new TcpOutputStrategy(0, TcpOutputStrategy.SlowConsumerPolicy.DROP_OLDEST, 16);
+        try (Socket slow = connect()) {
+            await(() -> strategy.getClientCount() == 1);
+            // Far more than the socket buffers hold; output must not wait for the client
+            int lines = 50_000;
+            for (int i = 0; i < lines; i++) {
+                strategy.output(1, i, "ECG", LARGE_DATA);
+            }
+            assertTrue(strategy.getDroppedLines() > 0);
+            strategy.output(1, lines, "ECG", "last");
+
+            BufferedReader in = reader(slow);
+            long previous = -1;
+            String line;
+            while (!(line = in.readLine()).endsWith("last")) {
+                long timestamp = Long.parseLong(line.split(",")[1]);
+                assertTrue(timestamp > previous, "Lines stay in order");
+                previous = timestamp;
+            }
+            assertEquals(1, strategy.getClientCount());
+        }
+    }
+
+    @Test
+    public void testDisconnectsSlowClient() throws Exception {
+        strategy = new TcpOutputStrategy(0, TcpOutputStrategy.SlowConsumerPolicy.DISCONNECT, 16);
+        try (Socket slow = connect()) {
+            await(() -> strategy.getClientCount() == 1);
+            for (int i = 0; i < 50_000 && strategy.getClientCount() == 1; i++) {
+                strategy.output(1, i, "ECG", LARGE_DATA);
+            }
+            await(() -> strategy.getClientCount() == 0);
+            BufferedReader in = reader(slow);
+            while (in.readLine() != null) {
+                // the lines written before the disconnect
+            }
+        }
+        // The client may reconnect and receive current data
+        try (Socket reconnected = connect()) {
+            await(() -> strategy.getClientCount() == 1);
+            strategy.output(1, 1000L, "ECG", "0.25");
+            assertEquals("1,1000,ECG,0.25", reader(reconnected).readLine());
+        }
+    }
+
+    @Test
+    public void testBlocksUntilSlowClientReads() throws Exception {
+        strategy = new TcpOutputStrategy(0, TcpOutputStrategy.SlowConsumerPolicy.BLOCK, 16);
+        try (Socket slow = connect()) {
+            await(() -> strategy.getClientCount() == 1);
+            int lines = 20_000;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < lines; i++) {
+                    strategy.output(1, i, "ECG", LARGE_DATA);
+                }
+            });
+            producer.start();
+            BufferedReader in = reader(slow);
+            for (int i = 0; i < lines; i++) {
+                assertEquals(i, Long.parseLong(in.readLine().split(",")[1]));
+            }
+            producer.join();
+            assertEquals(0, strategy.getDroppedLines());
+        }
+    }
+
+    @Test
+    public void testBlockedClientDoesNotHoldUpOtherThreads() throws Exception {
+        strategy = new TcpOutputStrategy(0, TcpOutputStrategy.SlowConsumerPolicy.BLOCK, 16);
+        try (Socket fast = connect()) {
+            await(() -> strategy.getClientCount() == 1);
+            CountDownLatch received = new CountDownLatch(1);
+            Thread fastReader = new Thread(() -> {
+                try {
+                    BufferedReader in = reader(fast);
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.startsWith("2,")) {
+                            received.countDown();
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed by the test
+                }
+            });
+            fastReader.start();
+
+            Socket stalled = connect();
+            await(() -> strategy.getClientCount() == 2);
+            AtomicInteger sent = new AtomicInteger();
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread blocked = new Thread(() -> {
+                while (!stop.get()) {
+                    strategy.output(1, sent.getAndIncrement(), "ECG", LARGE_DATA);
+                }
+            });
+            blocked.start();
+            // Blocked for good once the socket buffers of the stalled client are full
+            await(() -> {
+                int before = sent.get();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                return sent.get() == before && blocked.getState() == Thread.State.WAITING;
+            });
+
+            // Another thread still reaches the client that reads, before waiting for the stalled one
+            Thread other = new Thread(() -> strategy.output(2, 0L, "Saturation", "97%"));
+            other.start();
+            assertTrue(received.await(10, TimeUnit.SECONDS));
+
+            stop.set(true);
+            stalled.close();
+            blocked.join();
+            other.join();
+        }
+    }
+}
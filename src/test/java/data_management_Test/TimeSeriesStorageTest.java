@@ -0,0 +1,146 @@
+package data_management_Test;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSeriesStorageTest {
+    private Patient patient;
+
+    @BeforeEach
+    public void setUp() {
+        patient = new Patient(1);
+    }
+
+    @Test
+    public void testRecordTypesAreInterned() {
+        int id = RecordTypes.idOf("ECG");
+        assertEquals(id, RecordTypes.idOf(new String("ECG")));
+        assertEquals("ECG", RecordTypes.nameOf(id));
+        assertNotEquals(id, RecordTypes.idOf("Saturation"));
+    }
+
+    @Test
+    public void testSeriesGrowBeyondInitialCapacity() {
+        for (int i = 0; i < 1000; i++) {
+            patient.addRecord(i, "ECG", 1000L + i);
+            patient.addRecord(new double[]{120.0 + i, 80.0}, "BloodPressure", 1000L + i);
+        }
+        List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+
+        assertEquals(2000, records.size());
+        assertEquals(999.0, records.get(1998).getMeasurementValue(), 0.0);
+        assertArrayEquals(new double[]{1119.0, 80.0}, records.get(1999).getMeasurementValues(), 0.0);
+    }
+
+    @Test
+    public void testRecordsFromDifferentTypesAreMergedByTimestamp() {
+        patient.addRecord(1.0, "ECG", 1000L);
+        patient.addRecord(2.0, "ECG", 3000L);
+        patient.addRecord(97.0, "Saturation", 2000L);
+
+        List<PatientRecord> records = patient.getRecords(0L, 5000L);
+
+        assertEquals(3, records.size());
+        assertEquals(1000L, records.get(0).getTimestamp());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(3000L, records.get(2).getTimestamp());
+    }
+
+    @Test
+    public void testMultiValuedRecordsKeepTheirWidth() {
+        patient.addRecord(new double[]{120.0, 80.0}, "BloodPressure", 1000L);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> patient.addRecord(new double[]{120.0, 80.0, 60.0}, "BloodPressure", 2000L));
+    }
+
+    @Test
+    public void testRecordsViewIsReadOnly() {
+        patient.addRecord(1.0, "ECG", 1000L);
+        List<PatientRecord> records = patient.getRecords(0L, 5000L);
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> records.add(new PatientRecord(1, 2.0, "ECG", 2000L)));
+    }
+
+    @Test
+    public void testLateRecordIsInsertedInTimeOrder() {
+        patient.addRecord(1.0, "ECG", 1000L);
+        patient.addRecord(3.0, "ECG", 3000L);
+        patient.addRecord(2.0, "ECG", 2000L);
+        patient.addRecord(2.5, "ECG", 2000L);
+
+        List<PatientRecord> records = patient.getRecords(0L, 5000L);
+
+        assertEquals(4, records.size());
+        assertEquals(1.0, records.get(0).getMeasurementValue(), 0.0);
+        assertEquals(2.0, records.get(1).getMeasurementValue(), 0.0);
+        assertEquals(2.5, records.get(2).getMeasurementValue(), 0.0);
+        assertEquals(3.0, records.get(3).getMeasurementValue(), 0.0);
+    }
+
+    @Test
+    public void testManyLateRecordsStaySortedAcrossFolds() {
+        List<PatientRecord> early = null;
+        for (int i = 0; i < 20_000; i += 2) {
+            // Pairwise swapped, so every other reading is late
+            patient.addRecord(i + 1, "ECG", 1000L + i + 1);
+            patient.addRecord(i, "ECG", 1000L + i);
+            patient.addRecord(new double[]{i, 80.0}, "BloodPressure", 1000L + i + 1);
+            patient.addRecord(new double[]{i + 1, 80.0}, "BloodPressure", 1000L + i);
+            if (i == 100) {
+                early = patient.getRecords("ECG", 0L, Long.MAX_VALUE);
+            }
+        }
+
+        List<PatientRecord> records = patient.getRecords("ECG", 0L, Long.MAX_VALUE);
+        assertEquals(20_000, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(1000L + i, records.get(i).getTimestamp());
+            assertEquals(i, records.get(i).getMeasurementValue(), 0.0);
+        }
+        List<PatientRecord> pressures = patient.getRecords("BloodPressure", 1000L, 1009L);
+        assertEquals(10, pressures.size());
+        assertArrayEquals(new double[]{1.0, 80.0}, pressures.get(0).getMeasurementValues(), 0.0);
+        assertArrayEquals(new double[]{0.0, 80.0}, pressures.get(1).getMeasurementValues(), 0.0);
+        assertEquals(102, early.size());
+        assertEquals(1101L, early.get(101).getTimestamp());
+        assertEquals(40_000, patient.getRecords(0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testRangeBoundsAreInclusive() {
+        for (long t = 1000L; t <= 10000L; t += 1000L) {
+            patient.addRecord(t, "ECG", t);
+        }
+
+        List<PatientRecord> records = patient.getRecords(3000L, 6000L);
+
+        assertEquals(4, records.size());
+        assertEquals(3000L, records.get(0).getTimestamp());
+        assertEquals(6000L, records.get(3).getTimestamp());
+        assertTrue(patient.getRecords(3001L, 3999L).isEmpty());
+    }
+
+    @Test
+    public void testGetRecordsByType() {
+        patient.addRecord(1.0, "ECG", 1000L);
+        patient.addRecord(97.0, "Saturation", 1500L);
+        patient.addRecord(2.0, "ECG", 2000L);
+
+        List<PatientRecord> records = patient.getRecords("ECG", 0L, 5000L);
+
+        assertEquals(2, records.size());
+        for (PatientRecord record : records) {
+            assertEquals("ECG", record.getRecordType());
+        }
+        assertTrue(patient.getRecords("HeartRate", 0L, 5000L).isEmpty());
+    }
+}
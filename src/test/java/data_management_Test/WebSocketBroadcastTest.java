@@ -0,0 +1,235 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebSocketBroadcastTest {
+    private WebSocketOutputStrategy strategy;
+    private final List<WebSocketClient> clients = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        for (WebSocketClient client : clients) {
+            client.closeBlocking();
+        }
+        strategy.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private BlockingQueue<String> connect() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        WebSocketClient client = new WebSocketClient(new URI("ws://localhost:" + strategy.getPort())) {
+            @Override
+            public void onOpen(ServerHandshake handshake) {
+            }
+
+            @Override
+            public void onMessage(String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+            }
+
+            @Override
+            public void onError(Exception ex) {
+            }
+        };
+        clients.add(client);
+        assertTrue(client.connectBlocking(10, TimeUnit.SECONDS));
+        // The client may see the handshake complete before the server registers the connection
+        await(() -> strategy.getConnectionCount() == clients.size());
+        return messages;
+    }
+
+    @Test
+    public void testBatchesReadingsForEveryClient() throws Exception {
+        strategy = new WebSocketOutputStrategy(0, 64, 20, 1 << 20);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        BlockingQueue<String> first = connect();
+        BlockingQueue<String> second = connect();
+
+        for (int i = 0; i < 100; i++) {
+            strategy.output(i, 1000L + i, "ECG", "0.5");
+        }
+
+        for (BlockingQueue<String> messages : List.of(first, second)) {
+            String full = messages.poll(10, TimeUnit.SECONDS);
+            String lingered = messages.poll(10, TimeUnit.SECONDS);
+            assertNotNull(lingered);
+            String[] lines = (full + "\n" + lingered).split("\n");
+            assertEquals(64, full.split("\n").length);
+            assertEquals(100, lines.length);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i + "," + (1000L + i) + ",ECG,0.5", lines[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testReportsPortOnlyOnceBound() throws Exception {
+        strategy = new WebSocketOutputStrategy(0);
+        int port = strategy.getPort();
+        try (ServerSocket taken = new ServerSocket()) {
+            // Connecting proves the port is bound, not just reported
+            try (Socket socket = new Socket("localhost", port)) {
+                assertTrue(socket.isConnected());
+            }
+            taken.bind(new InetSocketAddress(0));
+            WebSocketOutputStrategy clashing = new WebSocketOutputStrategy(taken.getLocalPort());
+            try {
+                assertThrows(IllegalStateException.class, clashing::getPort);
+            } finally {
+                clashing.close();
+            }
+        }
+    }
+
+    @Test
+    public void testShedsClientThatStopsReading() throws Exception {
+        strategy = new WebSocketOutputStrategy(0, 1, 1000, 64 * 1024);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        BlockingQueue<String> reading = connect();
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", strategy.getPort()));
+            OutputStream out = stalled.getOutputStream();
+            out.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = stalled.getInputStream();
+            StringBuilder response = new StringBuilder();
+            while (response.indexOf("\r\n\r\n") < 0) {
+                response.append((char) in.read());
+            }
+            assertTrue(response.toString().startsWith("HTTP/1.1 101"));
+
+            // The stalled client reads nothing more, while the other one receives every reading
+            String data = "x".repeat(1000);
+            for (int i = 0; i < 50_000 && strategy.getShedConnections() == 0; i++) {
+                strategy.output(1, i, "ECG", data);
+                assertNotNull(reading.poll(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, strategy.getShedConnections());
+        }
+        // The client that kept reading is still served
+        strategy.output(2, 0L, "ECG", "last");
+        String message;
+        do {
+            message = reading.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+        } while (!message.endsWith("last"));
+        assertEquals(1, strategy.getShedConnections());
+    }
+
+    private WebSocketClient lastClient() {
+        return clients.get(clients.size() - 1);
+    }
+
+    private static void assertReceived(BlockingQueue<String> messages, String... expected) throws InterruptedException {
+        for (String message : expected) {
+            assertEquals(message, messages.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testSendsOnlySubscribedReadings() throws Exception {
+        strategy = new WebSocketOutputStrategy(0);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        BlockingQueue<String> ward = connect();
+        lastClient().send("subscribe:1,2");
+        BlockingQueue<String> saturation = connect();
+        lastClient().send("subscribe:2:Saturation");
+        BlockingQueue<String> everything = connect();
+        await(() -> strategy.getSubscriberCount() == 2);
+
+        strategy.output(1, 1000L, "ECG", "0.1");
+        strategy.output(2, 1000L, "ECG", "0.2");
+        strategy.output(2, 1000L, "Saturation", "97%");
+        strategy.output(3, 1000L, "ECG", "0.3");
+        strategy.output(2, 2000L, "Saturation", "96%");
+
+        assertReceived(ward, "1,1000,ECG,0.1", "2,1000,ECG,0.2", "2,1000,Saturation,97%", "2,2000,Saturation,96%");
+        assertReceived(saturation, "2,1000,Saturation,97%", "2,2000,Saturation,96%");
+        assertReceived(everything, "1,1000,ECG,0.1", "2,1000,ECG,0.2", "2,1000,Saturation,97%", "3,1000,ECG,0.3",
+                "2,2000,Saturation,96%");
+    }
+
+    @Test
+    public void testUnsubscribes() throws Exception {
+        strategy = new WebSocketOutputStrategy(0);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        BlockingQueue<String> messages = connect();
+        WebSocketClient client = lastClient();
+        client.send("subscribe:1:ECG,Saturation");
+        await(() -> strategy.getSubscriptionCount() == 2);
+        client.send("unsubscribe:1:ECG");
+        await(() -> strategy.getSubscriptionCount() == 1);
+
+        strategy.output(1, 1000L, "ECG", "0.1");
+        strategy.output(1, 1000L, "Saturation", "97%");
+        assertReceived(messages, "1,1000,Saturation,97%");
+
+        client.send("subscribe:*");
+        await(() -> strategy.getSubscriberCount() == 0);
+        strategy.output(1, 2000L, "ECG", "0.2");
+        assertReceived(messages, "1,2000,ECG,0.2");
+    }
+
+    @Test
+    public void testBatchesPerSubscriber() throws Exception {
+        strategy = new WebSocketOutputStrategy(0, 64, 20, 1 << 20);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        BlockingQueue<String> subscribed = connect();
+        lastClient().send("subscribe:1");
+        BlockingQueue<String> everything = connect();
+        await(() -> strategy.getSubscriberCount() == 1);
+
+        for (int i = 0; i < 10; i++) {
+            strategy.output(1 + i % 2, i, "ECG", "0.5");
+        }
+
+        // The linger timer may split the readings over more than one message
+        assertEquals(List.of("1,0,ECG,0.5", "1,2,ECG,0.5", "1,4,ECG,0.5", "1,6,ECG,0.5", "1,8,ECG,0.5"),
+                lines(subscribed, 5));
+        assertEquals(10, lines(everything, 10).size());
+    }
+
+    private static List<String> lines(BlockingQueue<String> messages, int count) throws InterruptedException {
+        List<String> lines = new ArrayList<>();
+        while (lines.size() < count) {
+            String message = messages.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message);
+            lines.addAll(List.of(message.split("\n")));
+        }
+        return lines;
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.net.URISyntaxException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 public class WebSocketDataReaderTest {
@@ -50,4 +51,17 @@ public class WebSocketDataReaderTest {
         verify(dataStorage, never()).addPatientData(anyInt(), anyDouble(), anyString(), anyLong());
     }
 
+    @Test
+    void testProcessMultiReadingMessage() throws URISyntaxException {
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        WebSocketDataReader reader = new WebSocketDataReader("ws://localhost:8080", storage);
+
+        reader.processMessage("1,1627842123000,HeartRate,78.0\n2,1627842123000,Saturation,97.0\n"
+                + "invalid\n1,1627842124000,HeartRate,79.0");
+
+        assertEquals(2, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        assertEquals(97.0, storage.getRecords(2, 0L, Long.MAX_VALUE).get(0).getMeasurementValue(), 0.0);
+        DataStorage.resetInstance();
+    }
 }
@@ -0,0 +1,244 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.ResumePoints;
+import com.data_management.WebSocketDataReader;
+import com.data_management.WireDecoder;
+import com.data_management.WireEncoder;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebSocketResumeTest {
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Collections.reverse(resources);
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+        DataStorage.resetInstance();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private WebSocketOutputStrategy start(int port) throws InterruptedException {
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(port);
+        strategy.enableHistory(100);
+        resources.add(strategy);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        return strategy;
+    }
+
+    /**
+     * Connects a raw client that sends the given messages once connected and collects the
+     * readings it receives, as text lines.
+     */
+    private List<String> connect(WebSocketOutputStrategy strategy, String... messages) throws Exception {
+        List<String> readings = Collections.synchronizedList(new ArrayList<>());
+        connect(strategy, readings, messages);
+        return readings;
+    }
+
+    private WebSocketClient connect(WebSocketOutputStrategy strategy, List<String> readings, String... messages)
+            throws Exception {
+        WireDecoder decoder = new WireDecoder((patientId, value, recordType, timestamp) ->
+                readings.add(patientId + "," + timestamp + "," + recordType + "," + value));
+        WebSocketClient client = new WebSocketClient(new URI("ws://localhost:" + strategy.getPort())) {
+            @Override
+            public void onOpen(ServerHandshake handshake) {
+                for (String message : messages) {
+                    send(message);
+                }
+            }
+
+            @Override
+            public void onMessage(String message) {
+                readings.addAll(List.of(message.split("\n")));
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                decoder.decode(bytes);
+            }
+
+            @Override
+            public void onClose(int code, String reason, boolean remote) {
+            }
+
+            @Override
+            public void onError(Exception ex) {
+            }
+        };
+        resources.add(client::closeBlocking);
+        assertTrue(client.connectBlocking(10, TimeUnit.SECONDS));
+        return client;
+    }
+
+    @Test
+    public void testResumePointsRoundTrip() {
+        ResumePoints points = new ResumePoints();
+        assertTrue(points.isEmpty());
+        points.update(1, "ECG", 1000L);
+        points.update(1, "ECG", 900L);
+        points.update(1, "SystolicPressure", 950L);
+        points.update(2, "ECG", 2000L);
+
+        ResumePoints parsed = ResumePoints.parse(points.toMessage());
+        assertFalse(parsed.isMissed(1, "ECG", 1000L));
+        assertTrue(parsed.isMissed(1, "ECG", 1001L));
+        assertFalse(parsed.isMissed(1, "SystolicPressure", 950L));
+        assertTrue(parsed.isMissed(1, "DiastolicPressure", 950L));
+        assertTrue(parsed.isMissed(3, "ECG", 0L));
+        assertTrue(ResumePoints.parse("resume:").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ResumePoints.parse("resume:1=1000"));
+        assertThrows(IllegalArgumentException.class, () -> ResumePoints.parse("resume:1:ECG"));
+    }
+
+    @Test
+    public void testReplaysMissedReadings() throws Exception {
+        WebSocketOutputStrategy strategy = start(0);
+        for (int i = 0; i < 10; i++) {
+            strategy.output(1, 1000L + i, "ECG", "0." + i);
+        }
+        strategy.output(2, 1000L, "ECG", "0.5");
+        assertEquals(11, strategy.getHistorySize());
+
+        List<String> readings = connect(strategy, "resume:1:ECG=1007");
+        await(() -> readings.size() == 3);
+        assertEquals(List.of("1,1008,ECG,0.8", "1,1009,ECG,0.9", "2,1000,ECG,0.5"), readings);
+
+        strategy.output(1, 1010L, "ECG", "0.1");
+        await(() -> readings.size() == 4);
+        assertEquals("1,1010,ECG,0.1", readings.get(3));
+        assertEquals(3, strategy.getReplayedReadings());
+    }
+
+    @Test
+    public void testHistoryKeepsLatestReadings() throws Exception {
+        WebSocketOutputStrategy strategy = start(0);
+        for (int i = 0; i < 150; i++) {
+            strategy.output(1, 1000L + i, "ECG", "0.5");
+        }
+        assertEquals(100, strategy.getHistorySize());
+
+        List<String> readings = connect(strategy, "subscribe:1", "resume:");
+        await(() -> readings.size() == 100);
+        assertEquals("1,1050,ECG,0.5", readings.get(0));
+    }
+
+    @Test
+    public void testReplaysFramesToBinaryClients() throws Exception {
+        WebSocketOutputStrategy strategy = start(0);
+        strategy.output(1, 1000L, "ECG", "0.25");
+        strategy.output(1, 1001L, "Alert", "triggered");
+        strategy.output(2, 1002L, "Saturation", "97%");
+
+        List<String> readings = connect(strategy, WireEncoder.NEGOTIATION_MESSAGE, "resume:1:ECG=1000,1:Alert=1001");
+        await(() -> readings.size() == 1);
+        assertEquals("2,1002,Saturation,97.0", readings.get(0));
+    }
+
+    @Test
+    public void testDoesNotReplayReadingsSentBeforeTheResumeMessage() throws Exception {
+        WebSocketOutputStrategy strategy = start(0);
+        for (int i = 0; i < 5; i++) {
+            strategy.output(1, 1000L + i, "ECG", "0." + i);
+        }
+        // Pressures share a timestamp; the client stored the systolic one and not the diastolic one
+        strategy.output(1, 1005L, "SystolicPressure", "120");
+        strategy.output(1, 1005L, "DiastolicPressure", "80");
+
+        List<String> readings = Collections.synchronizedList(new ArrayList<>());
+        WebSocketClient client = connect(strategy, readings);
+        await(() -> strategy.getConnectionCount() == 1);
+        strategy.output(1, 1006L, "ECG", "0.6");
+        strategy.output(1, 1006L, "Saturation", "97%");
+        await(() -> readings.size() == 2);
+
+        client.send("resume:1:ECG=1002,1:SystolicPressure=1005");
+        await(() -> readings.size() == 5);
+        strategy.output(1, 1007L, "ECG", "0.7");
+        await(() -> readings.size() == 6);
+        assertEquals(List.of("1,1006,ECG,0.6", "1,1006,Saturation,97%",
+                "1,1003,ECG,0.3", "1,1004,ECG,0.4", "1,1005,DiastolicPressure,80",
+                "1,1007,ECG,0.7"), readings);
+        assertEquals(3, strategy.getReplayedReadings());
+    }
+
+    @Test
+    public void testReplaysOnlyReadingsBeforeOpenInBroadcastMode() throws Exception {
+        WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(0, 1000, 20, 1 << 20);
+        strategy.enableHistory(100);
+        resources.add(strategy);
+        assertTrue(strategy.getPort() > 0); // waits until the server is bound
+        strategy.output(1, 1000L, "ECG", "0.1");
+        strategy.output(1, 1001L, "ECG", "0.2");
+
+        List<String> readings = Collections.synchronizedList(new ArrayList<>());
+        WebSocketClient client = connect(strategy, readings);
+        await(() -> strategy.getConnectionCount() == 1);
+        strategy.output(1, 1002L, "ECG", "0.3");
+        client.send("resume:1:ECG=1000");
+        await(() -> strategy.getReplayedReadings() == 1);
+        strategy.output(1, 1003L, "ECG", "0.4");
+        await(() -> readings.contains("1,1003,ECG,0.4"));
+
+        List<String> received = new ArrayList<>(readings);
+        Collections.sort(received);
+        assertEquals(List.of("1,1001,ECG,0.2", "1,1002,ECG,0.3", "1,1003,ECG,0.4"), received);
+    }
+
+    @Test
+    public void testReaderReconnectsAndResumes() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        WebSocketOutputStrategy first = start(port);
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        WebSocketDataReader reader = new WebSocketDataReader("ws://localhost:" + port, storage);
+        resources.add(reader);
+        reader.readData(storage);
+        await(() -> first.getConnectionCount() == 1);
+        for (int i = 0; i < 5; i++) {
+            first.output(1, 1000L + i, "HeartRate", "70");
+        }
+        await(() -> storage.getRecords(1, 0, Long.MAX_VALUE).size() == 5);
+
+        first.close();
+        await(() -> !reader.isConnected());
+        // The restarted server has the readings sent before the outage and some sent during it
+        WebSocketOutputStrategy second = start(port);
+        for (int i = 0; i < 10; i++) {
+            second.output(1, 1000L + i, "HeartRate", "70");
+        }
+        await(() -> second.getReplayedReadings() == 5);
+        await(() -> storage.getRecords(1, 0, Long.MAX_VALUE).size() == 10);
+
+        second.output(1, 1010L, "HeartRate", "71");
+        await(() -> storage.getRecords(1, 0, Long.MAX_VALUE).size() == 11);
+        assertTrue(reader.getReconnectCount() >= 1);
+    }
+}
@@ -0,0 +1,214 @@
+package data_management_Test;
+
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.RecordParser;
+import com.data_management.WebSocketClientImpl;
+import com.data_management.WebSocketDataReader;
+import com.data_management.WireDecoder;
+import com.data_management.WireEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireProtocolTest {
+    private AutoCloseable strategy;
+    private WebSocketClientImpl client;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.closeBlocking();
+        }
+        if (strategy != null) {
+            strategy.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static RecordParser.Sink collect(List<String> readings) {
+        return (patientId, value, recordType, timestamp) ->
+                readings.add(patientId + "," + timestamp + "," + recordType + "," + value);
+    }
+
+    private static byte[] encode(WireEncoder encoder, int[] patientIds, long[] timestamps, String[] labels, double[] values) {
+        WireEncoder.Batch batch = new WireEncoder.Batch();
+        for (int i = 0; i < patientIds.length; i++) {
+            batch.add(patientIds[i], timestamps[i], encoder.labelId(labels[i]), values[i]);
+        }
+        byte[] newLabels = encoder.takeNewLabels();
+        byte[] frame = batch.toFrame();
+        byte[] frames = Arrays.copyOf(newLabels, newLabels.length + frame.length);
+        System.arraycopy(frame, 0, frames, newLabels.length, frame.length);
+        return frames;
+    }
+
+    @Test
+    public void testRoundTripsReadings() {
+        WireEncoder encoder = new WireEncoder();
+        byte[] frames = encode(encoder, new int[]{1, 2, 1}, new long[]{1_700_000_000_000L, 1_699_999_999_990L, 1_700_000_001_000L},
+                new String[]{"ECG", "Saturation", "ECG"}, new double[]{0.25, 97.0, -1.5});
+        assertNull(encoder.takeNewLabels());
+
+        List<String> readings = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(frames);
+        assertEquals(3, new WireDecoder(collect(readings)).decode(buffer));
+        assertFalse(buffer.hasRemaining());
+        assertEquals(List.of("1,1700000000000,ECG,0.25", "2,1699999999990,Saturation,97.0",
+                "1,1700000001000,ECG,-1.5"), readings);
+        assertEquals(97.0, WireEncoder.valueOf("97%"));
+    }
+
+    @Test
+    public void testReadingsAreCompact() {
+        WireEncoder encoder = new WireEncoder();
+        int count = 1000;
+        int[] patientIds = new int[count];
+        long[] timestamps = new long[count];
+        String[] labels = new String[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            patientIds[i] = i % 50;
+            timestamps[i] = 1_700_000_000_000L + i * 3;
+            labels[i] = i % 2 == 0 ? "ECG" : "Saturation";
+            values[i] = i * 0.01;
+        }
+        byte[] frames = encode(encoder, patientIds, timestamps, labels, values);
+        assertTrue(frames.length < count * 15, "Bytes per reading: " + (double) frames.length / count);
+    }
+
+    @Test
+    public void testDecodesFramesSplitAcrossBuffers() {
+        WireEncoder encoder = new WireEncoder();
+        byte[] first = encode(encoder, new int[]{1, 2}, new long[]{1000, 1001}, new String[]{"ECG", "ECG"}, new double[]{1, 2});
+        byte[] second = encode(encoder, new int[]{3}, new long[]{900}, new String[]{"Saturation"}, new double[]{95});
+        byte[] stream = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, stream, first.length, second.length);
+
+        List<String> readings = new ArrayList<>();
+        WireDecoder decoder = new WireDecoder(collect(readings));
+        ByteBuffer buffer = ByteBuffer.allocate(stream.length);
+        for (byte b : stream) {
+            buffer.put(b).flip();
+            decoder.decode(buffer);
+            buffer.compact();
+        }
+        assertEquals(0, buffer.position());
+        assertEquals(List.of("1,1000,ECG,1.0", "2,1001,ECG,2.0", "3,900,Saturation,95.0"), readings);
+    }
+
+    @Test
+    public void testRejectsUndefinedLabel() {
+        WireEncoder.Batch batch = new WireEncoder.Batch();
+        batch.add(1, 1000, 3, 0.5);
+        WireDecoder decoder = new WireDecoder(collect(new ArrayList<>()));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(batch.toFrame())));
+    }
+
+    @Test
+    public void testWebSocketClientNegotiatesBinary() throws Exception {
+        WebSocketOutputStrategy webSocket = new WebSocketOutputStrategy(0);
+        strategy = webSocket;
+        assertTrue(webSocket.getPort() > 0); // waits until the server is bound
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        client = new WebSocketClientImpl("ws://localhost:" + webSocket.getPort(), storage, true);
+        assertTrue(client.connectBlocking(10, TimeUnit.SECONDS));
+        await(() -> webSocket.getBinaryConnectionCount() == 1);
+
+        webSocket.output(1, 1000L, "ECG", "0.25");
+        webSocket.output(1, 2000L, "Alert", "triggered");
+        webSocket.output(1, 3000L, "Saturation", "97%");
+        await(() -> storage.getRecords(1, 0, Long.MAX_VALUE).size() == 2);
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals("ECG", records.get(0).getRecordType());
+        assertEquals(0.25, records.get(0).getMeasurementValue());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(97.0, records.get(1).getMeasurementValue());
+    }
+
+    @Test
+    public void testBroadcastModeSendsBinaryBatches() throws Exception {
+        WebSocketOutputStrategy webSocket = new WebSocketOutputStrategy(0, 64, 20, 1 << 20);
+        strategy = webSocket;
+        assertTrue(webSocket.getPort() > 0); // waits until the server is bound
+        DataStorage.resetInstance();
+        DataStorage storage = DataStorage.getInstance();
+        new WebSocketDataReader("ws://localhost:" + webSocket.getPort(), storage, true).readData(storage);
+        await(() -> webSocket.getBinaryConnectionCount() == 1);
+
+        for (int i = 0; i < 100; i++) {
+            webSocket.output(i % 5, 1000L + i, i % 2 == 0 ? "ECG" : "Saturation", i + "%");
+        }
+        await(() -> storage.getAllPatients().stream()
+                .mapToInt(patient -> storage.getRecords(patient.getPatientId(), 0, Long.MAX_VALUE).size()).sum() == 100);
+        List<PatientRecord> records = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(20, records.size());
+        assertEquals(1003L, records.get(0).getTimestamp());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals(3.0, records.get(0).getMeasurementValue());
+    }
+
+    @Test
+    public void testTcpClientSwitchesToBinary() throws Exception {
+        TcpOutputStrategy tcp = new TcpOutputStrategy(0);
+        strategy = tcp;
+        try (Socket socket = new Socket("localhost", tcp.getPort())) {
+            socket.setSoTimeout(10_000);
+            await(() -> tcp.getClientCount() == 1);
+            tcp.output(1, 1000L, "ECG", "0.25");
+
+            OutputStream out = socket.getOutputStream();
+            out.write((WireEncoder.NEGOTIATION_MESSAGE + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            await(() -> tcp.getBinaryClientCount() == 1);
+            tcp.output(2, 2000L, "Saturation", "97%");
+            tcp.output(3, 3000L, "Alert", "triggered");
+            tcp.output(4, 1500L, "ECG", "-0.5");
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            StringBuilder line = new StringBuilder();
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                line.append((char) c);
+            }
+            assertEquals("1,1000,ECG,0.25", line.toString().trim());
+            byte[] header = new byte[WireEncoder.STREAM_HEADER.length];
+            in.readFully(header);
+            assertArrayEquals(WireEncoder.STREAM_HEADER, header);
+
+            List<String> readings = new ArrayList<>();
+            WireDecoder decoder = new WireDecoder(collect(readings));
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (readings.size() < 2) {
+                int b = in.read();
+                assertTrue(b >= 0, "Stream ended");
+                buffer.put((byte) b).flip();
+                decoder.decode(buffer);
+                buffer.compact();
+            }
+            assertEquals(List.of("2,2000,Saturation,97.0", "4,1500,ECG,-0.5"), readings);
+        }
+    }
+}